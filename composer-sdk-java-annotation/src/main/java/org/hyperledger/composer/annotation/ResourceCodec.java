@@ -0,0 +1,82 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.annotation;
+
+/**
+ * Reads, writes and creates instances of one model class without reflection.
+ * <p>
+ * Implementations are generated at compile time by
+ * {@link org.hyperledger.composer.annotation.processing.ResourceCodecProcessor} for every class declaring model
+ * fields. A codec only covers the fields declared by its own class that the generated code can reach; the others
+ * are left to reflection.
+ */
+public interface ResourceCodec<T> {
+	String SUFFIX = "_ComposerCodec";
+
+	/**
+	 * @return the binary name of the codec generated for the class of the given binary name
+	 */
+	static String codecName(String binaryName) {
+		int packageEnd = binaryName.lastIndexOf('.') + 1;
+		return binaryName.substring(0, packageEnd) + binaryName.substring(packageEnd).replace('$', '_') + SUFFIX;
+	}
+
+	Class<T> type();
+
+	/**
+	 * @return a new instance, or null if the codec cannot create one and reflection has to
+	 */
+	default T newInstance() {
+		return null;
+	}
+
+	/**
+	 * @return the index of the field of the given name declared by {@link #type()}, or -1 if this codec does not
+	 * handle it
+	 */
+	int field(String name);
+
+	Object get(T resource, int field);
+
+	void set(T resource, int field, Object value);
+
+	/**
+	 * The primitive variants must only be called for fields of the matching primitive type; generated codecs
+	 * override them so they never box.
+	 */
+	default long getLong(T resource, int field) {
+		return (Long) get(resource, field);
+	}
+
+	default void setLong(T resource, int field, long value) {
+		set(resource, field, value);
+	}
+
+	default int getInt(T resource, int field) {
+		return (Integer) get(resource, field);
+	}
+
+	default void setInt(T resource, int field, int value) {
+		set(resource, field, value);
+	}
+
+	default double getDouble(T resource, int field) {
+		return (Double) get(resource, field);
+	}
+
+	default void setDouble(T resource, int field, double value) {
+		set(resource, field, value);
+	}
+
+	default boolean getBoolean(T resource, int field) {
+		return (Boolean) get(resource, field);
+	}
+
+	default void setBoolean(T resource, int field, boolean value) {
+		set(resource, field, value);
+	}
+}
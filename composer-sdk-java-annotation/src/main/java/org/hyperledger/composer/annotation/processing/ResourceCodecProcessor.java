@@ -0,0 +1,263 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.annotation.processing;
+
+import org.hyperledger.composer.annotation.*;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.*;
+
+/**
+ * Generates a {@link ResourceCodec} for every class that is annotated as a model or declares model fields.
+ * <p>
+ * The codec is a package-private class next to the model class, named by {@link ResourceCodec#codecName(String)}.
+ */
+public class ResourceCodecProcessor extends AbstractProcessor {
+	private static final List<Class<? extends Annotation>> MODEL_ANNOTATIONS = Arrays.asList(Asset.class,
+			Participant.class, Transaction.class, Concept.class, Event.class);
+
+	private static final List<TypeKind> PRIMITIVE_KINDS = Arrays.asList(TypeKind.LONG, TypeKind.INT, TypeKind.DOUBLE,
+			TypeKind.BOOLEAN);
+	private static final String NO_SUCH_FIELD =
+			"\t\t\tdefault:\n\t\t\t\tthrow new IllegalArgumentException(\"no such field: \" + field);\n\t\t}\n\t}\n\n";
+
+	private final Set<String> generated = new HashSet<>();
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		Set<String> result = new HashSet<>();
+		for (Class<? extends Annotation> annotation : MODEL_ANNOTATIONS) {
+			result.add(annotation.getCanonicalName());
+		}
+		result.add(DataField.class.getCanonicalName());
+		result.add(Pointer.class.getCanonicalName());
+		return result;
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		Set<TypeElement> types = new LinkedHashSet<>();
+		for (Class<? extends Annotation> annotation : MODEL_ANNOTATIONS) {
+			types.addAll(ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation)));
+		}
+		List<Element> fields = new ArrayList<>(roundEnv.getElementsAnnotatedWith(DataField.class));
+		fields.addAll(roundEnv.getElementsAnnotatedWith(Pointer.class));
+		for (Element field : fields) {
+			Element enclosing = field.getEnclosingElement();
+			if (enclosing.getKind() == ElementKind.CLASS) {
+				types.add((TypeElement) enclosing);
+			}
+		}
+
+		for (TypeElement type : types) {
+			if (type.getKind() != ElementKind.CLASS || !reachable(type) || auxiliary(type)) {
+				continue;
+			}
+			String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+			if (generated.add(binaryName)) {
+				try {
+					write(type, ResourceCodec.codecName(binaryName));
+				} catch (IOException e) {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+							"unable to generate codec for " + binaryName + ": " + e.getMessage(), type);
+				}
+			}
+		}
+		// other processors may handle the model annotations as well
+		return false;
+	}
+
+	/**
+	 * whether code in the same package can refer to the type
+	 */
+	private static boolean reachable(TypeElement type) {
+		Element element = type;
+		while (element.getKind() != ElementKind.PACKAGE) {
+			if (element.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+			Element enclosing = element.getEnclosingElement();
+			if (enclosing.getKind() != ElementKind.PACKAGE && !element.getModifiers().contains(Modifier.STATIC)) {
+				return false;
+			}
+			element = enclosing;
+		}
+		return type.getTypeParameters().isEmpty();
+	}
+
+	/**
+	 * whether the top-level class of the type is declared in the source file of another class; javac warns on every
+	 * reference to such a class from another file, so those are left to reflection. The source file is only known
+	 * through the compiler tree API, looked up reflectively so that other compilers generate codecs for all classes.
+	 */
+	private boolean auxiliary(TypeElement type) {
+		Element topLevel = type;
+		while (topLevel.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+			topLevel = topLevel.getEnclosingElement();
+		}
+		try {
+			ClassLoader compiler = processingEnv.getClass().getClassLoader();
+			Class<?> trees = Class.forName("com.sun.source.util.Trees", false, compiler);
+			Object instance = trees.getMethod("instance", ProcessingEnvironment.class).invoke(null, processingEnv);
+			Object path = trees.getMethod("getPath", Element.class).invoke(instance, topLevel);
+			if (path == null) {
+				return false;
+			}
+			Object unit = Class.forName("com.sun.source.util.TreePath", false, compiler)
+					.getMethod("getCompilationUnit").invoke(path);
+			JavaFileObject file = (JavaFileObject) Class.forName("com.sun.source.tree.CompilationUnitTree", false, compiler)
+					.getMethod("getSourceFile").invoke(unit);
+			return !file.isNameCompatible(topLevel.getSimpleName().toString(), JavaFileObject.Kind.SOURCE);
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			return false;
+		}
+	}
+
+	private static boolean accessible(VariableElement field) {
+		Set<Modifier> modifiers = field.getModifiers();
+		return !modifiers.contains(Modifier.PRIVATE) && !modifiers.contains(Modifier.STATIC)
+				&& !modifiers.contains(Modifier.FINAL)
+				&& (field.getAnnotation(DataField.class) != null || field.getAnnotation(Pointer.class) != null);
+	}
+
+	private static boolean instantiable(TypeElement type) {
+		if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+			return false;
+		}
+		List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+		for (ExecutableElement constructor : constructors) {
+			if (constructor.getParameters().isEmpty()) {
+				return !constructor.getModifiers().contains(Modifier.PRIVATE);
+			}
+		}
+		return false;
+	}
+
+	private void write(TypeElement type, String codecName) throws IOException {
+		String typeName = type.getQualifiedName().toString();
+		int packageEnd = codecName.lastIndexOf('.');
+		String simpleName = codecName.substring(packageEnd + 1);
+
+		List<VariableElement> fields = new ArrayList<>();
+		for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			if (accessible(field)) {
+				fields.add(field);
+			}
+		}
+		boolean instantiable = instantiable(type);
+
+		StringBuilder source = new StringBuilder();
+		source.append("// this code is generated by ").append(getClass().getName()).append(" and should not be modified\n");
+		if (packageEnd > 0) {
+			source.append("package ").append(codecName, 0, packageEnd).append(";\n\n");
+		}
+		source.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+		source.append("final class ").append(simpleName).append(" implements ")
+				.append(ResourceCodec.class.getCanonicalName()).append('<').append(typeName).append("> {\n");
+
+		source.append("\t@Override\n\tpublic Class<").append(typeName).append("> type() {\n");
+		source.append("\t\treturn ").append(typeName).append(".class;\n\t}\n\n");
+
+		// otherwise the default newInstance() returns null and the instance is created by reflection
+		if (instantiable) {
+			source.append("\t@Override\n\tpublic ").append(typeName).append(" newInstance() {\n");
+			source.append("\t\treturn new ").append(typeName).append("();\n\t}\n\n");
+		}
+
+		source.append("\t@Override\n\tpublic int field(String name) {\n\t\tswitch (name) {\n");
+		for (int i = 0; i < fields.size(); i++) {
+			source.append("\t\t\tcase \"").append(fields.get(i).getSimpleName()).append("\":\n");
+			source.append("\t\t\t\treturn ").append(i).append(";\n");
+		}
+		source.append("\t\t\tdefault:\n\t\t\t\treturn -1;\n\t\t}\n\t}\n\n");
+
+		source.append("\t@Override\n\tpublic Object get(").append(typeName).append(" resource, int field) {\n");
+		source.append("\t\tswitch (field) {\n");
+		for (int i = 0; i < fields.size(); i++) {
+			source.append("\t\t\tcase ").append(i).append(":\n");
+			source.append("\t\t\t\treturn resource.").append(fields.get(i).getSimpleName()).append(";\n");
+		}
+		source.append(NO_SUCH_FIELD);
+
+		source.append("\t@Override\n\tpublic void set(").append(typeName).append(" resource, int field, Object value) {\n");
+		source.append("\t\tswitch (field) {\n");
+		for (int i = 0; i < fields.size(); i++) {
+			VariableElement field = fields.get(i);
+			String castName = boxedName(field.asType());
+			source.append("\t\t\tcase ").append(i).append(":\n");
+			source.append("\t\t\t\tresource.").append(field.getSimpleName()).append(" = ");
+			if (!Object.class.getName().equals(castName)) {
+				source.append('(').append(castName).append(") ");
+			}
+			source.append("value;\n\t\t\t\treturn;\n");
+		}
+		source.append(NO_SUCH_FIELD);
+
+		for (TypeKind kind : PRIMITIVE_KINDS) {
+			writePrimitiveAccessors(source, typeName, fields, kind);
+		}
+		source.setLength(source.length() - 1);
+		source.append("}\n");
+
+		try (Writer writer = processingEnv.getFiler().createSourceFile(codecName, type).openWriter()) {
+			writer.write(source.toString());
+		}
+	}
+
+	/**
+	 * Override the accessors of the given primitive kind, if the class has fields of that kind, so they never box
+	 */
+	private static void writePrimitiveAccessors(StringBuilder source, String typeName, List<VariableElement> fields,
+	                                            TypeKind kind) {
+		String primitive = kind.name().toLowerCase(Locale.ROOT);
+		String suffix = Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1);
+		StringBuilder getter = new StringBuilder(), setter = new StringBuilder();
+		for (int i = 0; i < fields.size(); i++) {
+			if (fields.get(i).asType().getKind() == kind) {
+				getter.append("\t\t\tcase ").append(i).append(":\n\t\t\t\treturn resource.")
+						.append(fields.get(i).getSimpleName()).append(";\n");
+				setter.append("\t\t\tcase ").append(i).append(":\n\t\t\t\tresource.")
+						.append(fields.get(i).getSimpleName()).append(" = value;\n\t\t\t\treturn;\n");
+			}
+		}
+		if (getter.length() == 0) {
+			return;
+		}
+		source.append("\t@Override\n\tpublic ").append(primitive).append(" get").append(suffix).append('(')
+				.append(typeName).append(" resource, int field) {\n\t\tswitch (field) {\n").append(getter)
+				.append(NO_SUCH_FIELD);
+		source.append("\t@Override\n\tpublic void set").append(suffix).append('(').append(typeName)
+				.append(" resource, int field, ").append(primitive).append(" value) {\n\t\tswitch (field) {\n")
+				.append(setter).append(NO_SUCH_FIELD);
+	}
+
+	private String boxedName(TypeMirror type) {
+		if (type.getKind().isPrimitive()) {
+			return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type)
+					.getQualifiedName().toString();
+		}
+		return processingEnv.getTypeUtils().erasure(type).toString();
+	}
+}
@@ -9,14 +9,21 @@ package org.hyperledger.composer.bna.plugin;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPlugin;
 import org.gradle.api.plugins.JavaPluginConvention;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.SourceSet;
 import org.gradle.api.tasks.TaskAction;
 import org.hyperledger.composer.bna.util.BnaGenerator;
 import org.hyperledger.composer.bna.util.JavaParser;
 import org.hyperledger.composer.bna.util.ZipHolder;
+import org.hyperledger.composer.query.NamedQueries;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -25,30 +32,59 @@ public class BnaGeneratorPlugin extends DefaultTask implements Plugin<Project> {
 	@Override
 	public void apply(Project project) {
 		project.getExtensions().create("bna", BNAGeneratorExtension.class, project);
-		project.getTasks().create("generate", BnaGeneratorPlugin.class)
-				.dependsOn(project.getTasksByName("classes", false))
-				.setGroup("bna");
+		project.getPlugins().withType(JavaPlugin.class, java -> {
+			// the task parses the compiled classes; it cannot depend on "classes", which depends on its output below
+			BnaGeneratorPlugin generate = project.getTasks().create("generate", BnaGeneratorPlugin.class);
+			generate.dependsOn(JavaPlugin.COMPILE_JAVA_TASK_NAME).setGroup("bna");
+			// the names of the queries go with the classes, for the runtime to execute them by name
+			mainSourceSet(project).getOutput().dir(Collections.singletonMap("builtBy", generate),
+					generatedResourcesDir(project));
+		});
 	}
 
 	@TaskAction
 	public void generate() throws Exception {
 		BNAGeneratorExtension extension = getProject().getExtensions().getByType(BNAGeneratorExtension.class);
-		FileOutputStream bnaOutputStream = new FileOutputStream(extension.getOutputDir());
+		FileOutputStream bnaOutputStream = new FileOutputStream(getBnaFile());
 		JavaParser javaParser = new JavaParser(getSourceFiles());
 		ZipHolder zipHolder = new ZipHolder(bnaOutputStream);
 		String name = getProject().getName();
 		String version = getProject().getVersion().toString();
 		String description = extension.getDescription();
-		BnaGenerator bnaGenerator = new BnaGenerator(javaParser, zipHolder, name, version, description);
+		// only written if the classes declare queries
+		Files.deleteIfExists(getNamedQueriesFile().toPath());
+		BnaGenerator bnaGenerator = new BnaGenerator(javaParser, zipHolder, name, version, description,
+				getNamedQueriesFile());
 		bnaGenerator.generate();
 	}
 
-	private List<File> getSourceFiles() {
+	@InputFiles
+	public List<File> getSourceFiles() {
 		List<File> sourceFiles = new LinkedList<>();
 		getProject().getConfigurations().findByName("runtime").forEach(sourceFiles::add);
-		getProject().getConvention().getPlugin(JavaPluginConvention.class).getSourceSets()
-				.getByName("main").getOutput().getClassesDirs().forEach(sourceFiles::add);
+		mainSourceSet(getProject()).getOutput().getClassesDirs().forEach(sourceFiles::add);
 		return sourceFiles;
 	}
 
+	@OutputFile
+	public File getBnaFile() {
+		return getProject().file(getProject().getExtensions().getByType(BNAGeneratorExtension.class).getOutputDir());
+	}
+
+	/**
+	 * @return the names of the queries, in a resources directory of its own that the main output includes
+	 */
+	@OutputFile
+	public File getNamedQueriesFile() {
+		return new File(generatedResourcesDir(getProject()), NamedQueries.RESOURCE);
+	}
+
+	private static File generatedResourcesDir(Project project) {
+		return new File(project.getBuildDir(), "generated-resources/bna");
+	}
+
+	private static SourceSet mainSourceSet(Project project) {
+		return project.getConvention().getPlugin(JavaPluginConvention.class).getSourceSets()
+				.getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+	}
 }
@@ -7,8 +7,11 @@
 package org.hyperledger.composer.bna.part;
 
 import org.hyperledger.composer.bna.model.QueryModel;
+import org.hyperledger.composer.query.NamedQueries;
 
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 public class QueryPart extends BNAPart {
 
@@ -19,12 +22,32 @@ public class QueryPart extends BNAPart {
 	@Override
 	public String toString() {
 		StringBuilder result = new StringBuilder();
-		int queryId = 0;
-		for (QueryModel model : new LinkedList<QueryModel>(entries)) {
-			result.append("query Q").append(queryId++).append(" {\n");
+		for (Map.Entry<String, QueryModel> entry : byName().entrySet()) {
+			QueryModel model = entry.getValue();
+			result.append("query ").append(entry.getKey()).append(" {\n");
 			result.append("\tdescription: \"").append(model.description()).append("\"\n");
 			result.append("\tstatement: ").append(model.sql()).append("\n}\n\n");
 		}
 		return result.toString();
 	}
+
+	/**
+	 * @return the names of the queries by their text, to execute them by name at runtime
+	 */
+	public NamedQueries namedQueries() {
+		Map<String, String> names = new LinkedHashMap<>();
+		byName().forEach((name, model) -> names.put(model.sql(), name));
+		return new NamedQueries(names);
+	}
+
+	/**
+	 * @return the queries by their stable name, the first one of those with the same text
+	 */
+	private Map<String, QueryModel> byName() {
+		Map<String, QueryModel> result = new LinkedHashMap<>();
+		for (QueryModel model : new LinkedList<QueryModel>(entries)) {
+			result.putIfAbsent(NamedQueries.stableName(model.sql()), model);
+		}
+		return result;
+	}
 }
@@ -11,10 +11,14 @@ import org.hyperledger.composer.bna.part.ACLPart;
 import org.hyperledger.composer.bna.part.BNAPart;
 import org.hyperledger.composer.bna.part.PackageJsonPart;
 import org.hyperledger.composer.bna.part.QueryPart;
+import org.hyperledger.composer.query.NamedQueries;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -27,14 +31,24 @@ public class BnaGenerator {
 	private String packageJsonName;
 	private String packageJsonVersion;
 	private String packageJsonDescription;
+	private File namedQueries;
 
 	public BnaGenerator(JavaParser javaParser, ZipHolder zipHolder, String packageJsonName,
 	                    String packageJsonVersion, String packageJsonDescription) {
+		this(javaParser, zipHolder, packageJsonName, packageJsonVersion, packageJsonDescription, null);
+	}
+
+	/**
+	 * @param namedQueries where to write the names of the queries, see {@link NamedQueries#RESOURCE}, or null
+	 */
+	public BnaGenerator(JavaParser javaParser, ZipHolder zipHolder, String packageJsonName,
+	                    String packageJsonVersion, String packageJsonDescription, File namedQueries) {
 		this.javaParser = javaParser;
 		this.zipHolder = zipHolder;
 		this.packageJsonName = packageJsonName;
 		this.packageJsonVersion = packageJsonVersion;
 		this.packageJsonDescription = packageJsonDescription;
+		this.namedQueries = namedQueries;
 	}
 
 	public void generate() throws ComposerException {
@@ -43,6 +57,9 @@ public class BnaGenerator {
 			QueryPart queryPart = javaParser.parseQueryModel();
 			if (queryPart != null) {
 				bnaParts.add(queryPart);
+				if (namedQueries != null) {
+					writeNamedQueries(queryPart.namedQueries());
+				}
 			}
 			bnaParts.add(new PackageJsonPart(packageJsonName, packageJsonVersion, packageJsonDescription));
 			bnaParts.add(new ACLPart());
@@ -55,4 +72,13 @@ public class BnaGenerator {
 			throw new ComposerException(e.getMessage());
 		}
 	}
+
+	private void writeNamedQueries(NamedQueries queries) throws IOException {
+		logger.info("write {} named queries to {}", queries.size(), namedQueries);
+		File parent = namedQueries.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("fail to create " + parent);
+		}
+		Files.write(namedQueries.toPath(), queries.toProperties().getBytes(StandardCharsets.ISO_8859_1));
+	}
 }
@@ -8,6 +8,7 @@ package org.hyperledger.composer.bna.part;
 
 import org.hyperledger.composer.bna.model.Model;
 import org.hyperledger.composer.bna.model.QueryModel;
+import org.hyperledger.composer.query.NamedQueries;
 import org.testng.annotations.Test;
 
 import java.io.InputStream;
@@ -43,12 +44,28 @@ public class BNAPartTest {
 		when(mock.description()).thenReturn("description");
 		when(mock.sql()).thenReturn("SELECT org.acme.model.Table WHERE (value > 'a')");
 		queryPart.addEntry(mock);
-		assertEquals(queryPart.toString(), "query Q0 {\n" +
+		assertEquals(queryPart.toString(), "query " + NamedQueries.stableName("SELECT org.acme.model.Table WHERE (value > 'a')") + " {\n" +
 				"\tdescription: \"description\"\n" +
 				"\tstatement: SELECT org.acme.model.Table WHERE (value > 'a')\n" +
 				"}\n\n");
 		verify(mock).description();
-		verify(mock).sql();
+		verify(mock, atLeastOnce()).sql();
+	}
+
+	@Test
+	public void testQueryPartNamesAreStable() {
+		QueryPart first = new QueryPart(), second = new QueryPart();
+		QueryModel a = new QueryModel("a", "SELECT org.acme.model.Table WHERE (value > _$v0)");
+		QueryModel b = new QueryModel("b", "SELECT org.acme.model.Table ORDER BY [value ASC]");
+		first.addEntry(a);
+		first.addEntry(b);
+		first.addEntry(new QueryModel("same text", a.sql()));
+		second.addEntry(b);
+		second.addEntry(a);
+		assertEquals(first.namedQueries().name(a.sql()), second.namedQueries().name(a.sql()));
+		assertEquals(first.namedQueries().name(b.sql()), NamedQueries.stableName(b.sql()));
+		assertEquals(first.namedQueries().size(), 2);
+		assertEquals(first.toString().split("query ").length, 3);
 	}
 
 	@Test
@@ -8,14 +8,20 @@ package org.hyperledger.composer.bna.util;
 
 import org.hyperledger.composer.ComposerException;
 import org.hyperledger.composer.bna.part.CTOPart;
+import org.hyperledger.composer.bna.model.QueryModel;
 import org.hyperledger.composer.bna.part.QueryPart;
+import org.hyperledger.composer.query.NamedQueries;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -71,6 +77,22 @@ public class BnaGeneratorTest {
 		}
 	}
 
+	@Test
+	public void testWriteNamedQueries() throws Exception {
+		QueryPart queryPart = new QueryPart();
+		String sql = "SELECT org.acme.model.Table WHERE (value > _$v0)";
+		queryPart.addEntry(new QueryModel("description", sql));
+		when(javaParser.parseCTOModel()).thenReturn(Collections.emptySet());
+		when(javaParser.parseQueryModel()).thenReturn(queryPart);
+		File dir = Files.createTempDirectory("bna").toFile();
+		File namedQueries = new File(dir, NamedQueries.RESOURCE);
+		new BnaGenerator(javaParser, mock(ZipHolder.class), "pk", "ver", "des", namedQueries).generate();
+
+		assertEquals(new String(Files.readAllBytes(namedQueries.toPath())), NamedQueries.stableName(sql) + "=" + sql + "\n");
+		NamedQueries loaded = NamedQueries.load(new URLClassLoader(new URL[]{dir.toURI().toURL()}, null));
+		assertEquals(loaded.name(sql), NamedQueries.stableName(sql));
+	}
+
 	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "Permission Denied")
 	void testIOException() throws Exception {
 		when(javaParser.parseQueryModel()).thenReturn(null);
@@ -11,6 +11,7 @@ import org.hyperledger.composer.annotation.Asset;
 import org.hyperledger.composer.annotation.Query;
 import org.hyperledger.composer.bna.part.CTOPart;
 import org.hyperledger.composer.bna.part.QueryPart;
+import org.hyperledger.composer.query.NamedQueries;
 import org.hyperledger.composer.query.SelectQuery;
 import org.hyperledger.composer.system.Network;
 import org.reflections.Reflections;
@@ -71,9 +72,10 @@ public class JavaParserTest {
 				.thenReturn(Collections.singleton(QueryTest.class.getDeclaredMethod("normalQuery", SelectQuery.class)));
 		JavaParser javaParser = new JavaParser(reflections);
 		QueryPart queryPart = javaParser.parseQueryModel();
-		assertEquals(queryPart.toString(), "query Q0 {\n" +
+		String sql = "SELECT org.hyperledger.composer.bna.util.TestAsset WHERE (id = '1') ORDER BY [id DESC] LIMIT 10 SKIP 10";
+		assertEquals(queryPart.toString(), "query " + NamedQueries.stableName(sql) + " {\n" +
 				"\tdescription: \"description\"\n" +
-				"\tstatement: SELECT org.hyperledger.composer.bna.util.TestAsset WHERE (id = '1') ORDER BY [id DESC] LIMIT 10 SKIP 10\n" +
+				"\tstatement: " + sql + "\n" +
 				"}\n\n");
 		verify(reflections).getMethodsAnnotatedWith(Query.class);
 	}
@@ -6,34 +6,59 @@
 
 package org.hyperledger.composer.client;
 
+import org.hyperledger.composer.AsyncEngine;
 import org.hyperledger.composer.ComposerException;
 import org.hyperledger.composer.Engine;
 
-import java.lang.reflect.Proxy;
-import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 public interface ComposerChaincodeAPI {
 	String queryChaincode(String functionName, String... args) throws ComposerException;
 
 	String invokeChaincode(String functionName, String... args) throws ComposerException;
 
-	static Engine asEngine(ComposerChaincodeAPI connector) {
-		return (Engine) Proxy.newProxyInstance(ComposerChaincodeAPI.class.getClassLoader(), new Class[]{Engine.class}, (proxy, method, args) -> {
-			String methodName = method.getName();
-			if ("toString".equals(methodName)) {
-				return "EngineProxy for connector:" + connector;
+	/**
+	 * Query the chaincode without blocking the caller. The blocking query runs on the given executor unless the
+	 * connector is able to complete the future from its own callbacks.
+	 */
+	default CompletableFuture<String> queryChaincodeAsync(Executor executor, String functionName, String... args) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return queryChaincode(functionName, args);
+			} catch (ComposerException e) {
+				throw new CompletionException(e);
 			}
+		}, executor);
+	}
 
-			String[] strArgs;
-			if (args.length > 1 && args[1] instanceof String[]) {
-				int size = ((String[]) args[1]).length;
-				strArgs = new String[size + 1];
-				strArgs[0] = args[0].toString();
-				System.arraycopy(args[1], 0, strArgs, 1, size);
-			} else {
-				strArgs = Arrays.stream(args).map(Object::toString).toArray(String[]::new);
+	/**
+	 * Invoke the chaincode without blocking the caller. The blocking invocation runs on the given executor unless
+	 * the connector is able to complete the future from its own callbacks.
+	 */
+	default CompletableFuture<String> invokeChaincodeAsync(Executor executor, String functionName, String... args) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return invokeChaincode(functionName, args);
+			} catch (ComposerException e) {
+				throw new CompletionException(e);
 			}
-			return connector.invokeChaincode(methodName, strArgs);
-		});
+		}, executor);
+	}
+
+	/**
+	 * @return an Engine sending read only calls through {@link #queryChaincode} and the others through
+	 * {@link #invokeChaincode}; ChaincodeEngine is generated along with Engine by the codegen module
+	 */
+	static Engine asEngine(ComposerChaincodeAPI connector) {
+		return new ChaincodeEngine(connector);
+	}
+
+	/**
+	 * @param executor runs the parts of the calls the connector cannot complete from its own callbacks
+	 */
+	static AsyncEngine asAsyncEngine(ComposerChaincodeAPI connector, Executor executor) {
+		return new AsyncChaincodeEngine(connector, executor);
 	}
 }
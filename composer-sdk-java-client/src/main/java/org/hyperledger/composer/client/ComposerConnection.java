@@ -6,27 +6,114 @@
 
 package org.hyperledger.composer.client;
 
+import org.hyperledger.composer.AdaptiveChunker;
+import org.hyperledger.composer.AsyncComposerAPI;
+import org.hyperledger.composer.BulkResult;
 import org.hyperledger.composer.ComposerAPI;
 import org.hyperledger.composer.ComposerException;
+import org.hyperledger.composer.QueryCache;
+import org.hyperledger.composer.ResourceCache;
 import org.hyperledger.composer.ResourceSerializer;
+import org.hyperledger.composer.RetryPolicy;
+import org.hyperledger.composer.TransactionBatcher;
+import org.hyperledger.composer.WriteScheduler;
 import org.hyperledger.composer.system.Identity;
 import org.hyperledger.composer.system.IssueIdentity;
 import org.hyperledger.composer.system.RevokeIdentity;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 
 public class ComposerConnection<C extends ComposerConnector> extends ComposerAPI implements ComposerCA {
-
 	private final C connector;
-	private static final int INSERTION_BASH_SIZE = 500;
+	private volatile AsyncComposerAPI async;
+	private volatile AdaptiveChunker chunker = new AdaptiveChunker();
 
 	ComposerConnection(C connector) {
 		super(ComposerChaincodeAPI.asEngine(connector));
 		this.connector = connector;
+		this.async = async(writeExecutor());
+	}
+
+	/**
+	 * @param writeExecutor also serializes the chunks of the bulk writes of this connection
+	 */
+	@Override
+	public ComposerConnection<C> writeExecutor(Executor writeExecutor) {
+		super.writeExecutor(writeExecutor);
+		this.async = async(writeExecutor);
+		return this;
+	}
+
+	/**
+	 * @return the chunker splitting the bulk operations of this connection
+	 */
+	public AdaptiveChunker chunker() {
+		return chunker;
+	}
+
+	public ComposerConnection<C> chunker(AdaptiveChunker chunker) {
+		if (chunker == null) {
+			throw new IllegalArgumentException("chunker is null");
+		}
+		this.chunker = chunker;
+		return this;
+	}
+
+	@Override
+	public ComposerConnection<C> cache(ResourceCache cache) {
+		super.cache(cache);
+		return this;
+	}
+
+	@Override
+	public ComposerConnection<C> writeScheduler(WriteScheduler writeScheduler) {
+		super.writeScheduler(writeScheduler);
+		return this;
+	}
+
+	@Override
+	public ComposerConnection<C> queryCache(QueryCache queryCache) {
+		super.queryCache(queryCache);
+		return this;
+	}
+
+	/**
+	 * @param retryPolicy also used by the bulk operations of this connection and by the async views created later
+	 */
+	@Override
+	public ComposerConnection<C> retryPolicy(RetryPolicy retryPolicy) {
+		super.retryPolicy(retryPolicy);
+		async.retryPolicy(retryPolicy);
+		return this;
+	}
+
+	/**
+	 * @return a non-blocking view of this connection running on the common fork-join pool
+	 */
+	public AsyncComposerAPI async() {
+		return async(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param executor runs serialization, decoding and the parts of the calls the connector cannot complete from
+	 *                 its own callbacks
+	 * @return a non-blocking view of this connection, whose writes invalidate the caches of this connection
+	 */
+	public AsyncComposerAPI async(Executor executor) {
+		return new AsyncComposerAPI(ComposerChaincodeAPI.asAsyncEngine(connector, executor), executor)
+				.retryPolicy(retryPolicy()).caches(this);
+	}
+
+	/**
+	 * @return a batcher merging the single resource operations of concurrent callers into shared transactions,
+	 * see {@link TransactionBatcher}; close it before disconnecting
+	 */
+	public TransactionBatcher batcher(int maxBatchSize, int maxPayloadChars, long lingerMillis) {
+		return new TransactionBatcher(async(), maxBatchSize, maxPayloadChars, lingerMillis);
 	}
 
 	public void disconnect() {
@@ -61,20 +148,50 @@ public class ComposerConnection<C extends ComposerConnector> extends ComposerAPI
 	}
 
 	@Override
-	public <T> void createAssets(Collection<T> assets) throws ComposerException {
-		if (assets == null || assets.isEmpty()) return;
-		Iterator<T> iterator = assets.iterator();
-		List<T> list = new LinkedList<>();
-		int i = 0;
-		while (iterator.hasNext()) {
-			list.add(iterator.next());
-			if (i++ % INSERTION_BASH_SIZE == 0) {
-				super.createAssets(list);
-				list.clear();
-			}
+	public <T> BulkResult createParticipants(Collection<T> participants) throws ComposerException {
+		return BulkResult.write(participants, writeExecutor(),
+				partition -> scheduled(() -> resourceIds(partition), false, () -> chunker.submit(partition, AdaptiveChunker::estimatedChars,
+						chunk -> async.createParticipants(chunk))));
+	}
+
+	@Override
+	public <T> BulkResult updateParticipants(Collection<T> participants) throws ComposerException {
+		return BulkResult.write(participants, writeExecutor(),
+				partition -> scheduled(() -> resourceIds(partition), true, () -> chunker.submit(partition, AdaptiveChunker::estimatedChars,
+						chunk -> async.updateParticipants(chunk))));
+	}
+
+	@Override
+	public <T> void removeParticipants(Class<T> participantClass, Collection<String> participantIds) throws ComposerException {
+		if (participantIds == null || participantIds.isEmpty()) return;
+		if (participantClass == null) {
+			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR, "Cannot remove participants with null asset class");
 		}
-		if (!list.isEmpty()) {
-			super.createAssets(list);
+		scheduled(() -> resourceIds(participantClass, participantIds), false, () -> chunker.submit(new ArrayList<>(participantIds), String::length,
+				chunk -> async.removeParticipants(participantClass, chunk)));
+	}
+
+	@Override
+	public <T> BulkResult createAssets(Collection<T> assets) throws ComposerException {
+		return BulkResult.write(assets, writeExecutor(),
+				partition -> scheduled(() -> resourceIds(partition), false, () -> chunker.submit(partition, AdaptiveChunker::estimatedChars,
+						chunk -> async.createAssets(chunk))));
+	}
+
+	@Override
+	public <T> BulkResult updateAssets(Collection<T> assets) throws ComposerException {
+		return BulkResult.write(assets, writeExecutor(),
+				partition -> scheduled(() -> resourceIds(partition), true, () -> chunker.submit(partition, AdaptiveChunker::estimatedChars,
+						chunk -> async.updateAssets(chunk))));
+	}
+
+	@Override
+	public <T> void removeAssets(Class<T> assetClass, Collection<String> assetIds) throws ComposerException {
+		if (assetIds == null || assetIds.isEmpty()) return;
+		if (assetClass == null) {
+			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR, "Cannot remove assets with null asset class");
 		}
+		scheduled(() -> resourceIds(assetClass, assetIds), false, () -> chunker.submit(new ArrayList<>(assetIds), String::length,
+				chunk -> async.removeAssets(assetClass, chunk)));
 	}
 }
@@ -11,6 +11,9 @@ import org.hyperledger.composer.ResourceSerializer;
 import org.hyperledger.composer.system.ActivateCurrentIdentity;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 public interface ComposerConnector extends ComposerChaincodeAPI {
 
@@ -57,5 +60,29 @@ public interface ComposerConnector extends ComposerChaincodeAPI {
 
 	String _invokeChaincode(String functionName, Map<String, byte[]> transientMap, String... args) throws ComposerException;
 
+	@Override
+	default CompletableFuture<String> invokeChaincodeAsync(Executor executor, String functionName, String... args) {
+		if (functionName == null || functionName.isEmpty()) {
+			CompletableFuture<String> result = new CompletableFuture<>();
+			result.completeExceptionally(new ComposerException(ComposerException.INVALID_INPUT_ERROR, "functionName not specified"));
+			return result;
+		}
+		return _invokeChaincodeAsync(executor, functionName, null, args);
+	}
+
+	/**
+	 * Runs the blocking invocation on the executor; connectors override this to complete the future from the
+	 * callbacks of their SDK instead
+	 */
+	default CompletableFuture<String> _invokeChaincodeAsync(Executor executor, String functionName, Map<String, byte[]> transientMap, String... args) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return _invokeChaincode(functionName, transientMap, args);
+			} catch (ComposerException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
 	void on(ComposerEventListener listener) throws ComposerException;
 }
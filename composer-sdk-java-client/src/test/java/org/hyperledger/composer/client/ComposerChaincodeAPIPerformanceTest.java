@@ -0,0 +1,82 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.client;
+
+import org.hyperledger.composer.ComposerException;
+import org.hyperledger.composer.Engine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+@Test(groups = "performance")
+public class ComposerChaincodeAPIPerformanceTest {
+	private static final Logger logger = LoggerFactory.getLogger(ComposerChaincodeAPIPerformanceTest.class);
+
+	private static final int CALLS = 1000000;
+	private static final int ROUNDS = 20;
+
+	/**
+	 * counts the calls so the JIT cannot drop them
+	 */
+	private static class CountingChaincode implements ComposerChaincodeAPI {
+		int queries, invocations;
+
+		@Override
+		public String queryChaincode(String functionName, String... args) {
+			queries += args.length;
+			return functionName;
+		}
+
+		@Override
+		public String invokeChaincode(String functionName, String... args) {
+			invocations += args.length;
+			return functionName;
+		}
+	}
+
+	/**
+	 * the reflective proxy asEngine returned before the adapter was generated
+	 */
+	private static Engine proxyEngine(ComposerChaincodeAPI connector) {
+		return (Engine) Proxy.newProxyInstance(ComposerChaincodeAPI.class.getClassLoader(), new Class[]{Engine.class}, (proxy, method, args) -> {
+			String[] strArgs;
+			if (args.length > 1 && args[1] instanceof String[]) {
+				int size = ((String[]) args[1]).length;
+				strArgs = new String[size + 1];
+				strArgs[0] = args[0].toString();
+				System.arraycopy(args[1], 0, strArgs, 1, size);
+			} else {
+				strArgs = Arrays.stream(args).map(Object::toString).toArray(String[]::new);
+			}
+			return connector.invokeChaincode(method.getName(), strArgs);
+		});
+	}
+
+	private static long time(Engine engine) throws ComposerException {
+		long start = System.nanoTime();
+		for (int i = 0; i < CALLS; i++) {
+			engine.getResourceInRegistry("Asset", "org.acme.Car", "1");
+		}
+		return System.nanoTime() - start;
+	}
+
+	@Test
+	public void compareEngineCalls() throws ComposerException {
+		Engine proxy = proxyEngine(new CountingChaincode());
+		Engine generated = ComposerChaincodeAPI.asEngine(new CountingChaincode());
+		long proxied = Long.MAX_VALUE, direct = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			proxied = Math.min(proxied, time(proxy));
+			direct = Math.min(direct, time(generated));
+		}
+		logger.info("per engine call: reflective proxy {}ns, generated adapter {}ns",
+				(double) proxied / CALLS, (double) direct / CALLS);
+	}
+}
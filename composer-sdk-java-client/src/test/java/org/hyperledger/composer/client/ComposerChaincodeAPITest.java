@@ -0,0 +1,72 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.client;
+
+import org.hyperledger.composer.AsyncEngine;
+import org.hyperledger.composer.ComposerException;
+import org.hyperledger.composer.Engine;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public class ComposerChaincodeAPITest {
+	@Mock
+	ComposerChaincodeAPI chaincode;
+
+	private Engine engine;
+
+	@BeforeMethod(alwaysRun = true)
+	public void init() {
+		MockitoAnnotations.initMocks(this);
+		engine = ComposerChaincodeAPI.asEngine(chaincode);
+	}
+
+	@Test
+	public void testReadsAreQueried() throws ComposerException {
+		when(chaincode.queryChaincode("getResourceInRegistry", "Asset", "org.acme.Car", "1")).thenReturn("{}");
+		assertEquals(engine.getResourceInRegistry("Asset", "org.acme.Car", "1"), "{}");
+		engine.executeQuery("build", "SELECT org.acme.Car", "{}");
+		engine.ping();
+		verify(chaincode).queryChaincode("executeQuery", "build", "SELECT org.acme.Car", "{}");
+		verify(chaincode).queryChaincode("ping");
+		verify(chaincode, never()).invokeChaincode(any(), any());
+	}
+
+	@Test
+	public void testWritesAreInvoked() throws ComposerException {
+		when(chaincode.invokeChaincode("submitTransaction", "{}")).thenReturn("tx");
+		assertEquals(engine.submitTransaction("{}"), "tx");
+		engine.invoke("func", new String[]{"a", "b"});
+		verify(chaincode).invokeChaincode("invoke", "func", "a", "b");
+		verify(chaincode, never()).queryChaincode(any(), any());
+	}
+
+	@Test
+	public void testAsyncEngine() throws Exception {
+		when(chaincode.queryChaincodeAsync(any(), any(), any())).thenCallRealMethod();
+		when(chaincode.invokeChaincodeAsync(any(), any(), any())).thenCallRealMethod();
+		when(chaincode.queryChaincode("getResourceInRegistry", "Asset", "org.acme.Car", "1")).thenReturn("{}");
+		when(chaincode.invokeChaincode("submitTransaction", "{}")).thenThrow(new ComposerException("failed"));
+
+		AsyncEngine async = ComposerChaincodeAPI.asAsyncEngine(chaincode, Runnable::run);
+		assertEquals(async.getResourceInRegistry("Asset", "org.acme.Car", "1").get(), "{}");
+		try {
+			async.submitTransaction("{}").get();
+			fail("the failure of the chaincode should be passed on");
+		} catch (ExecutionException e) {
+			assertEquals(e.getCause().getMessage(), "failed");
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.client;
+
+import org.hyperledger.composer.AdaptiveChunker;
+import org.hyperledger.composer.BulkResult;
+import org.hyperledger.composer.ComposerException;
+import org.hyperledger.composer.ResourceSerializer;
+import org.hyperledger.composer.annotation.Asset;
+import org.hyperledger.composer.annotation.DataField;
+import org.hyperledger.composer.system.AddAsset;
+import org.hyperledger.composer.system.RemoveAsset;
+import org.hyperledger.composer.system.UpdateAsset;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+import static org.testng.Assert.assertEquals;
+
+public class ComposerConnectionTest {
+
+	private RecordingConnector connector;
+	private ComposerConnection<RecordingConnector> connection;
+
+	@BeforeMethod(alwaysRun = true)
+	public void init() {
+		connector = new RecordingConnector();
+		connection = new ComposerConnection<>(connector);
+	}
+
+	private static List<Car> cars(int count) {
+		List<Car> cars = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Car car = new Car();
+			car.vin = String.valueOf(i);
+			cars.add(car);
+		}
+		return cars;
+	}
+
+	@Test
+	public void testSingleChunk() throws ComposerException {
+		connection.createAssets(cars(3));
+		assertEquals(connector.transactions.size(), 1);
+		assertEquals(ResourceSerializer.fromJSON(connector.transactions.get(0), AddAsset.class).resources.length, 3);
+	}
+
+	@Test
+	public void testChunkedByBytes() throws ComposerException {
+		int size = AdaptiveChunker.estimatedChars(cars(1).get(0));
+		connection.chunker(new AdaptiveChunker(size * 2, size * 2, size * 2, 1, Long.MAX_VALUE));
+		connection.updateAssets(cars(5));
+		assertEquals(connector.transactions.size(), 3);
+		int total = 0;
+		for (String json : connector.transactions) {
+			total += ResourceSerializer.fromJSON(json, UpdateAsset.class).resources.length;
+		}
+		assertEquals(total, 5);
+	}
+
+	@Test
+	public void testMixedClassesGoToTheirRegistries() throws ComposerException {
+		List<Object> assets = new ArrayList<>(cars(2));
+		Truck truck = new Truck();
+		truck.plate = "t";
+		assets.add(1, truck);
+		BulkResult result = connection.createAssets(assets);
+		assertEquals(result.succeeded(), new HashSet<>(Arrays.asList(Car.class.getName(), Truck.class.getName())));
+		Map<String, Integer> sizes = new HashMap<>();
+		for (String json : connector.transactions) {
+			AddAsset transaction = ResourceSerializer.fromJSON(json, AddAsset.class);
+			sizes.put(transaction.targetRegistry.registryId, transaction.resources.length);
+		}
+		assertEquals(sizes.get(Car.class.getName()), Integer.valueOf(2));
+		assertEquals(sizes.get(Truck.class.getName()), Integer.valueOf(1));
+	}
+
+	@Test
+	public void testRemoveChunks() throws ComposerException {
+		connection.chunker(new AdaptiveChunker(2, 2, 2, 2, Long.MAX_VALUE));
+		connection.removeAssets(Car.class, Arrays.asList("1", "2", "3"));
+		assertEquals(connector.transactions.size(), 2);
+		Set<String> removed = new HashSet<>();
+		for (String json : connector.transactions) {
+			removed.addAll(Arrays.asList(ResourceSerializer.fromJSON(json, RemoveAsset.class).resourceIds));
+		}
+		assertEquals(removed, new HashSet<>(Arrays.asList("1", "2", "3")));
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "Cannot remove assets with null asset class")
+	public void testRemoveNullClass() throws ComposerException {
+		connection.removeAssets(null, Collections.singleton("1"));
+	}
+
+	static class RecordingConnector implements ComposerConnector {
+		final List<String> transactions = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public void disconnect() {
+		}
+
+		@Override
+		public void enroll(ComposerIdentity composerIdentity, boolean ignoreExisting) {
+		}
+
+		@Override
+		public void _login(ComposerIdentity composerIdentity) {
+		}
+
+		@Override
+		public String register(ComposerIdentity request) {
+			return null;
+		}
+
+		@Override
+		public String _queryChaincode(String functionName, String... args) {
+			return null;
+		}
+
+		@Override
+		public String _invokeChaincode(String functionName, Map<String, byte[]> transientMap, String... args) {
+			transactions.add(args[0]);
+			return "";
+		}
+
+		@Override
+		public void on(ComposerEventListener listener) {
+		}
+	}
+}
+
+@Asset
+class Car {
+	@DataField(primary = true)
+	String vin;
+}
+
+@Asset
+class Truck {
+	@DataField(primary = true)
+	String plate;
+}
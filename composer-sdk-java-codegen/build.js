@@ -9,7 +9,8 @@
 const JavaVisitor = require("./ctoparser");
 const EngineGenerator = require("./enginegen");
 
-new EngineGenerator("../composer-sdk-java-common/src/main/java/org/hyperledger/composer");
+new EngineGenerator("../composer-sdk-java-common/src/main/java/org/hyperledger/composer",
+	"../composer-sdk-java-client/src/main/java/org/hyperledger/composer/client");
 new JavaVisitor()
 	.visitAsync("../composer-sdk-java-system-cto/src/main/java")
 	.catch((e) => {
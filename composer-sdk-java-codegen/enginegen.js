@@ -10,53 +10,206 @@ const engine = require('composer-runtime').Engine;
 const FileWriter = require("./filewriter");
 const version = require("./package.json");
 
+// engine functions that do not change the world state, these are sent as queries so they skip ordering
+const READ_ONLY = /^(ping|executeQuery|get[A-Z]|exists[A-Z]|resolve[A-Z])/;
+
 class EngineGenerator {
 	/**
 	 * parse engine and output java file into given dir
 	 * @param {string} dir - output dir path string
+	 * @param {string} adapterDir - output dir path string of the ChaincodeEngine adapter, none generated if absent
 	 */
-	constructor(dir) {
+	constructor(dir, adapterDir) {
 		this.fileWriter = new FileWriter(dir);
 		this.generate();
+		if (adapterDir) {
+			this.fileWriter = new FileWriter(adapterDir);
+			this.generateAdapter();
+		}
+	}
+
+	writeHeader() {
+		this.fileWriter.writeLine(0, '/*');
+		this.fileWriter.writeLine(0, ' * Copyright IBM Corp. 2017 All Rights Reserved.');
+		this.fileWriter.writeLine(0, ' *');
+		this.fileWriter.writeLine(0, ' * SPDX-License-Identifier: Apache-2.0');
+		this.fileWriter.writeLine(0, ' */');
+		this.fileWriter.writeLine(0, '');
+		this.fileWriter.writeLine(0, '// this code is generated and should not be modified');
+	}
+
+	forEachMethod(callback) {
+		Object.getOwnPropertyNames(engine.prototype).forEach((method) => {
+			const property = engine.prototype[method];
+			if (typeof property !== 'function') return;
+			callback(property, method);
+		});
 	}
 
 	generate() {
 		console.log("generating Engine.java");
 		this.fileWriter.openFile("Engine.java");
-		this.fileWriter.writeLine(0, '/*');
-        this.fileWriter.writeLine(0, ' * Copyright IBM Corp. 2017 All Rights Reserved.');
-        this.fileWriter.writeLine(0, ' *');
-        this.fileWriter.writeLine(0, ' * SPDX-License-Identifier: Apache-2.0');
-        this.fileWriter.writeLine(0, ' */');
-        this.fileWriter.writeLine(0, '');
-		this.fileWriter.writeLine(0, '// this code is generated and should not be modified');
+		this.writeHeader();
 		this.fileWriter.writeLine(0, 'package org.hyperledger.composer;');
 		this.fileWriter.writeLine(0, '');
 		this.fileWriter.writeLine(0, 'public interface Engine {');
 		this.fileWriter.writeLine(1, `String COMPOSER_VERSION = "${version.dependencies['composer-runtime']}";`);
 
-		Object.getOwnPropertyNames(engine.prototype).forEach((method) => {
-			const property = engine.prototype[method];
-			if (typeof property !== 'function') return;
-			this.writeMethod(property, method);
-		});
+		this.forEachMethod((property, method) => this.writeMethod(property, method));
 
 		this.fileWriter.writeLine(0, '}');
 		this.fileWriter.closeFile();
+
+		console.log("generating AsyncEngine.java");
+		this.fileWriter.openFile("AsyncEngine.java");
+		this.writeHeader();
+		this.fileWriter.writeLine(0, 'package org.hyperledger.composer;');
+		this.fileWriter.writeLine(0, '');
+		this.fileWriter.writeLine(0, 'import java.util.concurrent.CompletableFuture;');
+		this.fileWriter.writeLine(0, '');
+		this.fileWriter.writeLine(0, 'public interface AsyncEngine {');
+
+		this.forEachMethod((property, method) => this.writeAsyncMethod(property, method));
+
+		this.fileWriter.writeLine(0, '}');
+		this.fileWriter.closeFile();
+	}
+
+	writeAsyncMethod(func, method) {
+		switch (func.length) {
+			case 2:
+				this.fileWriter.writeLine(1, 'CompletableFuture<String> ' + method + '(' + this.parameters(func).map((p) => 'String ' + p).join(', ') + ');');
+				break;
+			case 4:
+				this.fileWriter.writeLine(1, 'CompletableFuture<String> ' + method + '(String func, String[] args);');
+		}
 	}
 
 	writeMethod(func, method) {
 		switch (func.length) {
 			case 2:
-				const body = func.toString();
-				const argsIndex = body.indexOf('[') + 1;
-				const args = body.substring(argsIndex, body.indexOf(']', argsIndex)).replace(/'([^']+)'/g, 'String $1');
-				this.fileWriter.writeLine(1, 'String ' + method + '(' + args + ') throws ComposerException;');
+				this.fileWriter.writeLine(1, 'String ' + method + '(' + this.parameters(func).map((p) => 'String ' + p).join(', ') + ') throws ComposerException;');
 				break;
 			case 4:
 				this.fileWriter.writeLine(1, 'String ' + method + '(String func, String[] args) throws ComposerException;');
 		}
 	}
+
+	/**
+	 * @param {function} func - engine function taking (context, args)
+	 * @return {string[]} names of the arguments checked by the function
+	 */
+	parameters(func) {
+		const body = func.toString();
+		const argsIndex = body.indexOf('[') + 1;
+		const names = body.substring(argsIndex, body.indexOf(']', argsIndex)).match(/'[^']+'/g);
+		return names ? names.map((name) => name.substring(1, name.length - 1)) : [];
+	}
+
+	/**
+	 * generate a concrete Engine and AsyncEngine sending each call straight to the chaincode, read only calls as queries
+	 */
+	generateAdapter() {
+		console.log("generating ChaincodeEngine.java");
+		this.fileWriter.openFile("ChaincodeEngine.java");
+		this.writeHeader();
+		this.fileWriter.writeLine(0, 'package org.hyperledger.composer.client;');
+		this.fileWriter.writeLine(0, '');
+		this.fileWriter.writeLine(0, 'import org.hyperledger.composer.ComposerException;');
+		this.fileWriter.writeLine(0, 'import org.hyperledger.composer.Engine;');
+		this.fileWriter.writeLine(0, '');
+		this.fileWriter.writeLine(0, 'final class ChaincodeEngine implements Engine {');
+		this.fileWriter.writeLine(1, 'private final ComposerChaincodeAPI chaincode;');
+		this.fileWriter.writeLine(0, '');
+		this.fileWriter.writeLine(1, 'ChaincodeEngine(ComposerChaincodeAPI chaincode) {');
+		this.fileWriter.writeLine(2, 'this.chaincode = chaincode;');
+		this.fileWriter.writeLine(1, '}');
+
+		this.forEachMethod((property, method) => this.writeAdapterMethod(property, method));
+
+		this.fileWriter.writeLine(0, '');
+		this.fileWriter.writeLine(1, '@Override');
+		this.fileWriter.writeLine(1, 'public String toString() {');
+		this.fileWriter.writeLine(2, 'return "ChaincodeEngine for connector:" + chaincode;');
+		this.fileWriter.writeLine(1, '}');
+		this.fileWriter.writeLine(0, '}');
+		this.fileWriter.closeFile();
+
+		console.log("generating AsyncChaincodeEngine.java");
+		this.fileWriter.openFile("AsyncChaincodeEngine.java");
+		this.writeHeader();
+		this.fileWriter.writeLine(0, 'package org.hyperledger.composer.client;');
+		this.fileWriter.writeLine(0, '');
+		this.fileWriter.writeLine(0, 'import org.hyperledger.composer.AsyncEngine;');
+		this.fileWriter.writeLine(0, '');
+		this.fileWriter.writeLine(0, 'import java.util.concurrent.CompletableFuture;');
+		this.fileWriter.writeLine(0, 'import java.util.concurrent.Executor;');
+		this.fileWriter.writeLine(0, '');
+		this.fileWriter.writeLine(0, 'final class AsyncChaincodeEngine implements AsyncEngine {');
+		this.fileWriter.writeLine(1, 'private final ComposerChaincodeAPI chaincode;');
+		this.fileWriter.writeLine(1, 'private final Executor executor;');
+		this.fileWriter.writeLine(0, '');
+		this.fileWriter.writeLine(1, 'AsyncChaincodeEngine(ComposerChaincodeAPI chaincode, Executor executor) {');
+		this.fileWriter.writeLine(2, 'this.chaincode = chaincode;');
+		this.fileWriter.writeLine(2, 'this.executor = executor;');
+		this.fileWriter.writeLine(1, '}');
+
+		this.forEachMethod((property, method) => this.writeAsyncAdapterMethod(property, method));
+
+		this.fileWriter.writeLine(0, '');
+		this.fileWriter.writeLine(1, '@Override');
+		this.fileWriter.writeLine(1, 'public String toString() {');
+		this.fileWriter.writeLine(2, 'return "AsyncChaincodeEngine for connector:" + chaincode;');
+		this.fileWriter.writeLine(1, '}');
+		this.fileWriter.writeLine(0, '}');
+		this.fileWriter.closeFile();
+	}
+
+	writeAsyncAdapterMethod(func, method) {
+		const call = READ_ONLY.test(method) ? 'chaincode.queryChaincodeAsync' : 'chaincode.invokeChaincodeAsync';
+		switch (func.length) {
+			case 2:
+				const params = this.parameters(func);
+				this.fileWriter.writeLine(0, '');
+				this.fileWriter.writeLine(1, '@Override');
+				this.fileWriter.writeLine(1, 'public CompletableFuture<String> ' + method + '(' + params.map((p) => 'String ' + p).join(', ') + ') {');
+				this.fileWriter.writeLine(2, 'return ' + call + '(' + ['executor', `"${method}"`].concat(params).join(', ') + ');');
+				this.fileWriter.writeLine(1, '}');
+				break;
+			case 4:
+				this.fileWriter.writeLine(0, '');
+				this.fileWriter.writeLine(1, '@Override');
+				this.fileWriter.writeLine(1, 'public CompletableFuture<String> ' + method + '(String func, String[] args) {');
+				this.fileWriter.writeLine(2, 'String[] chaincodeArgs = new String[args.length + 1];');
+				this.fileWriter.writeLine(2, 'chaincodeArgs[0] = func;');
+				this.fileWriter.writeLine(2, 'System.arraycopy(args, 0, chaincodeArgs, 1, args.length);');
+				this.fileWriter.writeLine(2, 'return ' + call + `(executor, "${method}", chaincodeArgs);`);
+				this.fileWriter.writeLine(1, '}');
+		}
+	}
+
+	writeAdapterMethod(func, method) {
+		const call = READ_ONLY.test(method) ? 'chaincode.queryChaincode' : 'chaincode.invokeChaincode';
+		switch (func.length) {
+			case 2:
+				const params = this.parameters(func);
+				this.fileWriter.writeLine(0, '');
+				this.fileWriter.writeLine(1, '@Override');
+				this.fileWriter.writeLine(1, 'public String ' + method + '(' + params.map((p) => 'String ' + p).join(', ') + ') throws ComposerException {');
+				this.fileWriter.writeLine(2, 'return ' + call + '(' + [`"${method}"`].concat(params).join(', ') + ');');
+				this.fileWriter.writeLine(1, '}');
+				break;
+			case 4:
+				this.fileWriter.writeLine(0, '');
+				this.fileWriter.writeLine(1, '@Override');
+				this.fileWriter.writeLine(1, 'public String ' + method + '(String func, String[] args) throws ComposerException {');
+				this.fileWriter.writeLine(2, 'String[] chaincodeArgs = new String[args.length + 1];');
+				this.fileWriter.writeLine(2, 'chaincodeArgs[0] = func;');
+				this.fileWriter.writeLine(2, 'System.arraycopy(args, 0, chaincodeArgs, 1, args.length);');
+				this.fileWriter.writeLine(2, 'return ' + call + `("${method}", chaincodeArgs);`);
+				this.fileWriter.writeLine(1, '}');
+		}
+	}
 }
 
-module.exports = EngineGenerator;
\ No newline at end of file
+module.exports = EngineGenerator;
@@ -0,0 +1,21 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.function.Supplier;
+
+/**
+ * Creates the field accessors and instance suppliers used by {@link ResourceSerializer}. The given field and
+ * constructor have already been made accessible. Both methods are called once per class and the results are cached.
+ */
+public interface AccessorFactory {
+	FieldAccessor field(Field field);
+
+	Supplier<Object> constructor(Constructor<?> constructor);
+}
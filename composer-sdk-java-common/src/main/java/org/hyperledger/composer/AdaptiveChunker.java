@@ -0,0 +1,254 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import static org.hyperledger.composer.ComposerException.INTERNAL_ERROR_CODE;
+import static org.hyperledger.composer.ComposerException.TIMEOUT_ERROR;
+
+/**
+ * Splits bulk operations into transactions of a budget of serialized chars and keeps up to {@link #maxInFlight()}
+ * of them in flight at once.
+ * <p>
+ * The budget adapts to what the network accepts: it grows while chunks commit faster than the target latency,
+ * shrinks when they are slower, and is cut in half when a chunk times out or is rejected as too large. Rejected
+ * chunks never reached the ledger, so they are split and sent again; a timed out chunk may still commit, so it
+ * fails the operation instead. One budget is shared by all the operations going through the same chunker.
+ */
+public class AdaptiveChunker {
+	public static final int DEFAULT_INITIAL_CHARS = 512 * 1024;
+	public static final int DEFAULT_MIN_CHARS = 16 * 1024;
+	public static final int DEFAULT_MAX_CHARS = 4 * 1024 * 1024;
+	public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+	public static final long DEFAULT_TARGET_LATENCY_MILLIS = 5000;
+
+	private final int minChars;
+	private final int maxChars;
+	private final int maxInFlight;
+	private final long targetLatencyMillis;
+	private volatile int budgetChars;
+
+	public AdaptiveChunker() {
+		this(DEFAULT_INITIAL_CHARS, DEFAULT_MIN_CHARS, DEFAULT_MAX_CHARS, DEFAULT_MAX_IN_FLIGHT, DEFAULT_TARGET_LATENCY_MILLIS);
+	}
+
+	public AdaptiveChunker(int initialChars, int minChars, int maxChars, int maxInFlight, long targetLatencyMillis) {
+		if (minChars <= 0 || minChars > maxChars || initialChars < minChars || initialChars > maxChars) {
+			throw new IllegalArgumentException("expect 0 < minChars <= initialChars <= maxChars");
+		}
+		if (maxInFlight <= 0 || targetLatencyMillis <= 0) {
+			throw new IllegalArgumentException("maxInFlight and targetLatencyMillis must be positive");
+		}
+		this.minChars = minChars;
+		this.maxChars = maxChars;
+		this.maxInFlight = maxInFlight;
+		this.targetLatencyMillis = targetLatencyMillis;
+		this.budgetChars = initialChars;
+	}
+
+	/**
+	 * @return the current number of serialized chars per chunk
+	 */
+	public int budgetChars() {
+		return budgetChars;
+	}
+
+	public int maxInFlight() {
+		return maxInFlight;
+	}
+
+	public long targetLatencyMillis() {
+		return targetLatencyMillis;
+	}
+
+	/**
+	 * @return the length of the JSON form of a resource, estimated without serializing it, for {@link #submit}
+	 */
+	public static int estimatedChars(Object resource) {
+		return ResourceJsonWriter.estimateChars(resource);
+	}
+
+	/**
+	 * Send the items in chunks and wait for all of them. Chunks already sent are not rolled back when another
+	 * one fails; no new chunk is sent after a failure.
+	 *
+	 * @param sizer  the number of serialized chars of an item
+	 * @param sender sends one chunk as one transaction
+	 * @throws ComposerException the first failure of a chunk
+	 */
+	public <T> void submit(List<T> items, ToIntFunction<? super T> sizer, Function<List<T>, CompletableFuture<?>> sender) throws ComposerException {
+		if (items == null || items.isEmpty()) return;
+		int[] sizes = new int[items.size()];
+		for (int i = 0; i < sizes.length; i++) {
+			sizes[i] = sizer.applyAsInt(items.get(i));
+		}
+		new Pipeline<>(items, sizes, sender).run();
+	}
+
+	private void succeeded(long latencyMillis) {
+		int budget = budgetChars;
+		if (latencyMillis < targetLatencyMillis) {
+			budgetChars = Math.min(maxChars, budget + Math.max(budget / 4, 1));
+		} else {
+			budgetChars = Math.max(minChars, budget - budget / 4);
+		}
+	}
+
+	private void failed(int chunkChars) {
+		budgetChars = Math.max(minChars, Math.min(budgetChars, chunkChars) / 2);
+	}
+
+	static boolean isOversized(Throwable e) {
+		for (; e != null; e = e.getCause()) {
+			String message = e.getMessage();
+			if (message != null && (message.contains("RESOURCE_EXHAUSTED") || message.contains("larger than max")
+					|| message.contains("exceeds maximum"))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static boolean isTimeout(Throwable e) {
+		for (; e != null; e = e.getCause()) {
+			if (e instanceof TimeoutException
+					|| e instanceof ComposerException && ((ComposerException) e).getErrorCode() == TIMEOUT_ERROR) {
+				return true;
+			}
+			String message = e.getMessage();
+			if (message != null && (message.contains("timeout") || message.contains("DEADLINE_EXCEEDED"))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * the state of one {@link #submit} call, guarded by its own monitor; waiting for chunks goes through
+	 * {@link ForkJoinPool#managedBlock} so that a pool running the caller can compensate for it while the chunks
+	 * complete on the same pool
+	 */
+	private final class Pipeline<T> implements ForkJoinPool.ManagedBlocker {
+		private final List<T> items;
+		private final int[] sizes;
+		private final Function<List<T>, CompletableFuture<?>> sender;
+		private final Deque<int[]> retries = new ArrayDeque<>();
+		private int next;
+		private int inFlight;
+		private Throwable failure;
+
+		private Pipeline(List<T> items, int[] sizes, Function<List<T>, CompletableFuture<?>> sender) {
+			this.items = items;
+			this.sizes = sizes;
+			this.sender = sender;
+		}
+
+		private synchronized void run() throws ComposerException {
+			// after a failure nothing new is sent, but the chunks in flight are still waited for
+			while (inFlight > 0 || failure == null && hasWork()) {
+				if (failure == null && inFlight < maxInFlight && hasWork()) {
+					send(retries.isEmpty() ? nextChunk() : retries.poll());
+					continue;
+				}
+				try {
+					ForkJoinPool.managedBlock(this);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new ComposerException(INTERNAL_ERROR_CODE, "interrupted while waiting for chunks to complete", e);
+				}
+			}
+			if (failure instanceof ComposerException) {
+				throw (ComposerException) failure;
+			}
+			if (failure != null) {
+				throw new ComposerException(INTERNAL_ERROR_CODE, "failed to submit chunk: " + failure.getMessage(), failure);
+			}
+		}
+
+		@Override
+		public synchronized boolean block() throws InterruptedException {
+			if (!isReleasable()) {
+				wait();
+			}
+			return true;
+		}
+
+		/**
+		 * @return whether {@link #run} can go on without waiting
+		 */
+		@Override
+		public synchronized boolean isReleasable() {
+			return inFlight == 0 || failure == null && inFlight < maxInFlight && hasWork();
+		}
+
+		private boolean hasWork() {
+			return next < items.size() || !retries.isEmpty();
+		}
+
+		/**
+		 * @return the range [from, to) of the next items fitting the budget, at least one item
+		 */
+		private int[] nextChunk() {
+			int budget = budgetChars, from = next, chars = sizes[next++];
+			while (next < items.size() && chars + sizes[next] <= budget) {
+				chars += sizes[next++];
+			}
+			return new int[]{from, next};
+		}
+
+		private void send(int[] range) {
+			inFlight++;
+			long start = System.currentTimeMillis();
+			CompletableFuture<?> result;
+			try {
+				result = sender.apply(items.subList(range[0], range[1]));
+			} catch (RuntimeException e) {
+				result = new CompletableFuture<>();
+				result.completeExceptionally(e);
+			}
+			result.whenComplete((ignored, e) -> completed(range, System.currentTimeMillis() - start, e));
+		}
+
+		private synchronized void completed(int[] range, long latencyMillis, Throwable e) {
+			inFlight--;
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			if (cause == null) {
+				succeeded(latencyMillis);
+			} else if (isOversized(cause) && range[1] - range[0] > 1) {
+				failed(chars(range));
+				int middle = (range[0] + range[1]) >>> 1;
+				retries.push(new int[]{middle, range[1]});
+				retries.push(new int[]{range[0], middle});
+			} else {
+				if (isOversized(cause) || isTimeout(cause)) {
+					failed(chars(range));
+				}
+				if (failure == null) {
+					failure = cause;
+				}
+			}
+			notifyAll();
+		}
+
+		private int chars(int[] range) {
+			int chars = 0;
+			for (int i = range[0]; i < range[1]; i++) {
+				chars += sizes[i];
+			}
+			return chars;
+		}
+	}
+}
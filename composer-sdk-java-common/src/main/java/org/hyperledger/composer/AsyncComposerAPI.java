@@ -0,0 +1,263 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.hyperledger.composer.system.*;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import static org.hyperledger.composer.ComposerException.INVALID_INPUT_ERROR;
+
+/**
+ * The non-blocking counterpart of {@link ComposerAPI}. Every call returns at once; its future completes when the
+ * engine answers, failing with a {@link ComposerException} where ComposerAPI would throw one.
+ * <p>
+ * Resources are serialized and results decoded on the executor given at construction, never on the threads
+ * completing the engine futures.
+ * <p>
+ * This view has no caches of its own. Once {@link #caches(ComposerAPI)} names the blocking API it belongs to, every
+ * write invalidates the caches of that API before its future completes; without it, writes through this view leave
+ * those caches stale until their entries expire.
+ */
+public class AsyncComposerAPI {
+	protected final AsyncEngine engine;
+	protected final Executor executor;
+	private volatile RetryPolicy retryPolicy = new RetryPolicy();
+	private volatile ComposerAPI caches;
+
+	public AsyncComposerAPI(AsyncEngine engine) {
+		this(engine, ForkJoinPool.commonPool());
+	}
+
+	public AsyncComposerAPI(AsyncEngine engine, Executor executor) {
+		this.engine = engine;
+		this.executor = executor;
+	}
+
+	public RetryPolicy retryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * @see ComposerAPI#retryPolicy(RetryPolicy)
+	 */
+	public AsyncComposerAPI retryPolicy(RetryPolicy retryPolicy) {
+		if (retryPolicy == null) {
+			throw new IllegalArgumentException("retryPolicy is null");
+		}
+		this.retryPolicy = retryPolicy;
+		return this;
+	}
+
+	/**
+	 * @return the API whose caches the writes of this view invalidate, or null
+	 */
+	public ComposerAPI caches() {
+		return caches;
+	}
+
+	/**
+	 * @param caches the API whose resource and query caches the writes of this view invalidate, or null
+	 */
+	public AsyncComposerAPI caches(ComposerAPI caches) {
+		this.caches = caches;
+		return this;
+	}
+
+	/**
+	 * Submit a transaction object into Composer
+	 *
+	 * @param transaction
+	 * @return the future result of the transaction
+	 */
+	public CompletableFuture<String> submitTransaction(Object transaction) {
+		RetryPolicy retryPolicy = this.retryPolicy;
+		return CompletableFuture.supplyAsync(() -> ResourceSerializer.toJSONString(transaction), executor)
+				.thenCompose(json -> retryPolicy.executeAsync(() -> engine.submitTransaction(json)));
+	}
+
+	public <T> CompletableFuture<Void> createParticipant(T participant) {
+		if (participant == null) return done();
+		return createParticipants(Collections.singleton(participant)).thenApply(result -> null);
+	}
+
+	/**
+	 * Participants of different classes go to their own registries, concurrently
+	 */
+	public <T> CompletableFuture<BulkResult> createParticipants(Collection<T> participants) {
+		return BulkResult.writeAsync(participants, partition -> {
+			AddParticipant transaction = new AddParticipant();
+			transaction.targetRegistry = ResourceSerializer.fromID(partition.get(0).getClass().getName(), ParticipantRegistry.class);
+			transaction.resources = partition.toArray();
+			return invalidating(submit(transaction), api -> api.invalidate(ComposerAPI.RegistryType.Participant, partition));
+		});
+	}
+
+	public <T> CompletableFuture<Void> removeParticipant(Class<T> participantClass, String participantId) {
+		if (participantId == null || participantId.isEmpty()) return done();
+		return removeParticipants(participantClass, Collections.singleton(participantId));
+	}
+
+	public <T> CompletableFuture<Void> removeParticipants(Class<T> participantClass, Collection<String> participantIds) {
+		if (participantIds == null || participantIds.isEmpty()) return done();
+		if (participantClass == null) {
+			return failed(new ComposerException(INVALID_INPUT_ERROR, "Cannot remove participants with null asset class"));
+		}
+		RemoveParticipant transaction = new RemoveParticipant();
+		transaction.targetRegistry = ResourceSerializer.fromID(participantClass.getName(), ParticipantRegistry.class);
+		transaction.resources = new Object[0];
+		transaction.resourceIds = participantIds.toArray(new String[participantIds.size()]);
+		return invalidating(submit(transaction), api -> api.invalidate(ComposerAPI.RegistryType.Participant, participantClass, participantIds));
+	}
+
+	public <T> CompletableFuture<Void> updateParticipant(T participant) {
+		if (participant == null) return done();
+		return updateParticipants(Collections.singleton(participant)).thenApply(result -> null);
+	}
+
+	/**
+	 * Participants of different classes go to their own registries, concurrently
+	 */
+	public <T> CompletableFuture<BulkResult> updateParticipants(Collection<T> participants) {
+		return BulkResult.writeAsync(participants, partition -> {
+			UpdateParticipant transaction = new UpdateParticipant();
+			transaction.targetRegistry = ResourceSerializer.fromID(partition.get(0).getClass().getName(), ParticipantRegistry.class);
+			transaction.resources = partition.toArray();
+			return invalidating(submit(transaction), api -> api.invalidate(ComposerAPI.RegistryType.Participant, partition));
+		});
+	}
+
+	public <T> CompletableFuture<T> getParticipant(Class<T> participantClass, String participantId) {
+		return getParticipant(participantClass, participantId, null);
+	}
+
+	/**
+	 * @param fields the names of the fields to decode, or null for all fields; the other fields are left unset
+	 */
+	public <T> CompletableFuture<T> getParticipant(Class<T> participantClass, String participantId, Set<String> fields) {
+		if (participantClass == null) {
+			return failed(new ComposerException(INVALID_INPUT_ERROR, "Cannot get participant of null class"));
+		}
+		return engine.getResourceInRegistry(ComposerAPI.RegistryType.Participant.name(), participantClass.getName(), participantId)
+				.thenApplyAsync(json -> ResourceSerializer.fromJSON(json, participantClass, fields), executor);
+	}
+
+	public <T> CompletableFuture<Void> createAsset(T asset) {
+		if (asset == null) return done();
+		return createAssets(Collections.singleton(asset)).thenApply(result -> null);
+	}
+
+	/**
+	 * Assets of different classes go to their own registries, concurrently
+	 */
+	public <T> CompletableFuture<BulkResult> createAssets(Collection<T> assets) {
+		return BulkResult.writeAsync(assets, partition -> {
+			AddAsset transaction = new AddAsset();
+			transaction.targetRegistry = ResourceSerializer.fromID(partition.get(0).getClass().getName(), AssetRegistry.class);
+			transaction.resources = partition.toArray();
+			return invalidating(submit(transaction), api -> api.invalidate(ComposerAPI.RegistryType.Asset, partition));
+		});
+	}
+
+	public <T> CompletableFuture<Void> removeAsset(Class<T> assetClass, String id) {
+		if (assetClass == null) {
+			return failed(new ComposerException(INVALID_INPUT_ERROR, "Cannot remove asset with null asset class"));
+		}
+		return removeAssets(assetClass, Collections.singleton(id));
+	}
+
+	public <T> CompletableFuture<Void> removeAssets(Class<T> assetClass, Collection<String> assetIds) {
+		if (assetIds == null || assetIds.isEmpty()) return done();
+		if (assetClass == null) {
+			return failed(new ComposerException(INVALID_INPUT_ERROR, "Cannot remove assets with null asset class"));
+		}
+		RemoveAsset transaction = new RemoveAsset();
+		transaction.targetRegistry = ResourceSerializer.fromID(assetClass.getName(), AssetRegistry.class);
+		transaction.resources = new Object[0];
+		transaction.resourceIds = assetIds.toArray(new String[assetIds.size()]);
+		return invalidating(submit(transaction), api -> api.invalidate(ComposerAPI.RegistryType.Asset, assetClass, assetIds));
+	}
+
+	public <T> CompletableFuture<Void> updateAsset(T asset) {
+		if (asset == null) return done();
+		return updateAssets(Collections.singleton(asset)).thenApply(result -> null);
+	}
+
+	/**
+	 * Assets of different classes go to their own registries, concurrently
+	 */
+	public <T> CompletableFuture<BulkResult> updateAssets(Collection<T> assets) {
+		return BulkResult.writeAsync(assets, partition -> {
+			UpdateAsset transaction = new UpdateAsset();
+			transaction.targetRegistry = ResourceSerializer.fromID(partition.get(0).getClass().getName(), AssetRegistry.class);
+			transaction.resources = partition.toArray();
+			return invalidating(submit(transaction), api -> api.invalidate(ComposerAPI.RegistryType.Asset, partition));
+		});
+	}
+
+	public <T> CompletableFuture<T> getAsset(Class<T> assetClass, String assetId) {
+		return getAsset(assetClass, assetId, null);
+	}
+
+	/**
+	 * @param fields the names of the fields to decode, or null for all fields; the other fields are left unset
+	 */
+	public <T> CompletableFuture<T> getAsset(Class<T> assetClass, String assetId, Set<String> fields) {
+		if (assetClass == null) {
+			return failed(new ComposerException(INVALID_INPUT_ERROR, "Cannot get asset of null class"));
+		}
+		return engine.getResourceInRegistry(ComposerAPI.RegistryType.Asset.name(), assetClass.getName(), assetId)
+				.thenApplyAsync(json -> ResourceSerializer.fromJSON(json, assetClass, fields), executor);
+	}
+
+	public <T> CompletableFuture<List<T>> executeQuery(Class<T> clazz, String type, String query, String parameters) {
+		return executeQuery(clazz, type, query, parameters, null);
+	}
+
+	/**
+	 * @param fields the names of the fields to decode, or null for all fields
+	 */
+	public <T> CompletableFuture<List<T>> executeQuery(Class<T> clazz, String type, String query, String parameters, Set<String> fields) {
+		return engine.executeQuery(type, query, parameters).thenApplyAsync(result -> {
+			try {
+				return ResourceSerializer.arrayFromJSON(result, clazz, fields);
+			} catch (IllegalArgumentException e) {
+				throw new CompletionException(new ComposerException(INVALID_INPUT_ERROR, "parse executeQuery result error", e));
+			}
+		}, executor);
+	}
+
+	private CompletableFuture<Void> submit(Object transaction) {
+		return submitTransaction(transaction).thenApply(result -> null);
+	}
+
+	/**
+	 * invalidates whether the write failed or not, as a failed commit may still have been applied
+	 */
+	private CompletableFuture<Void> invalidating(CompletableFuture<Void> write, Consumer<ComposerAPI> invalidation) {
+		ComposerAPI caches = this.caches;
+		return caches == null ? write : write.whenComplete((result, e) -> invalidation.accept(caches));
+	}
+
+	private static CompletableFuture<Void> done() {
+		return CompletableFuture.completedFuture(null);
+	}
+
+	private static <T> CompletableFuture<T> failed(Throwable e) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(e);
+		return future;
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * The outcome of a bulk write, per registry. Resources of different classes belong to different registries, so a
+ * bulk write sends one transaction (or one series of chunks) per class; those succeed or fail independently.
+ * <p>
+ * A write of a single class fails with the exception of its transaction, as it always did. When some registries of
+ * a mixed write fail, the write fails with a {@link BulkWriteException} holding this report.
+ */
+public final class BulkResult {
+	private static final BulkResult EMPTY = new BulkResult(Collections.emptySet(), Collections.emptyMap());
+
+	private final Set<String> succeeded;
+	private final Map<String, Exception> failures;
+
+	private BulkResult(Set<String> succeeded, Map<String, Exception> failures) {
+		this.succeeded = Collections.unmodifiableSet(succeeded);
+		this.failures = Collections.unmodifiableMap(failures);
+	}
+
+	public static BulkResult empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * @return the ids of the registries whose resources were written
+	 */
+	public Set<String> succeeded() {
+		return succeeded;
+	}
+
+	/**
+	 * @return the failure by registry id
+	 */
+	public Map<String, Exception> failures() {
+		return failures;
+	}
+
+	public boolean success() {
+		return failures.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "BulkResult{succeeded=" + succeeded + ", failures=" + failures + '}';
+	}
+
+	/**
+	 * @return the resources by concrete class, in the order the classes are first met; a registry is identified by
+	 * the name of its class
+	 */
+	public static <T> Map<Class<?>, List<T>> partition(Collection<T> resources) {
+		Map<Class<?>, List<T>> result = new LinkedHashMap<>();
+		for (T resource : resources) {
+			if (resource == null) {
+				throw new IllegalArgumentException("resource is null");
+			}
+			result.computeIfAbsent(resource.getClass(), type -> new ArrayList<>()).add(resource);
+		}
+		return result;
+	}
+
+	/**
+	 * Write every partition of the resources, the first on the calling thread and the others concurrently on the
+	 * executor, and wait for all of them
+	 *
+	 * @throws ComposerException the failure of a single partition, or a {@link BulkWriteException} when some of
+	 *                           several partitions failed
+	 */
+	public static <T> BulkResult write(Collection<T> resources, Executor executor, PartitionWriter<T> writer) throws ComposerException {
+		if (resources == null || resources.isEmpty()) return EMPTY;
+		Map<Class<?>, List<T>> partitions = partition(resources);
+		if (partitions.size() == 1) {
+			Map.Entry<Class<?>, List<T>> partition = partitions.entrySet().iterator().next();
+			writer.write(partition.getValue());
+			return new BulkResult(Collections.singleton(partition.getKey().getName()), Collections.emptyMap());
+		}
+
+		Map<String, CompletableFuture<Void>> pending = new LinkedHashMap<>();
+		Iterator<Map.Entry<Class<?>, List<T>>> iterator = partitions.entrySet().iterator();
+		Map.Entry<Class<?>, List<T>> first = iterator.next();
+		while (iterator.hasNext()) {
+			List<T> partition = iterator.next().getValue();
+			pending.put(partition.get(0).getClass().getName(), CompletableFuture.runAsync(() -> {
+				try {
+					writer.write(partition);
+				} catch (ComposerException e) {
+					throw new CompletionException(e);
+				}
+			}, executor));
+		}
+		CompletableFuture<Void> inline = new CompletableFuture<>();
+		try {
+			writer.write(first.getValue());
+			inline.complete(null);
+		} catch (ComposerException | RuntimeException e) {
+			inline.completeExceptionally(e);
+		}
+		Map<String, CompletableFuture<Void>> all = new LinkedHashMap<>();
+		all.put(first.getKey().getName(), inline);
+		all.putAll(pending);
+		return collect(all);
+	}
+
+	/**
+	 * Send every partition of the resources at once
+	 *
+	 * @return a future failing as {@link #write} throws
+	 */
+	public static <T> CompletableFuture<BulkResult> writeAsync(Collection<T> resources, Function<List<T>, CompletableFuture<?>> writer) {
+		if (resources == null || resources.isEmpty()) return CompletableFuture.completedFuture(EMPTY);
+		Map<String, CompletableFuture<?>> pending = new LinkedHashMap<>();
+		try {
+			for (Map.Entry<Class<?>, List<T>> partition : partition(resources).entrySet()) {
+				CompletableFuture<?> future;
+				try {
+					future = writer.apply(partition.getValue());
+				} catch (RuntimeException e) {
+					future = new CompletableFuture<>();
+					future.completeExceptionally(e);
+				}
+				pending.put(partition.getKey().getName(), future);
+			}
+		} catch (IllegalArgumentException e) {
+			CompletableFuture<BulkResult> result = new CompletableFuture<>();
+			result.completeExceptionally(e);
+			return result;
+		}
+		return CompletableFuture.allOf(pending.values().toArray(new CompletableFuture<?>[pending.size()]))
+				.handle((ignored, e) -> {
+					try {
+						return collect(pending);
+					} catch (ComposerException | RuntimeException failure) {
+						throw new CompletionException(failure);
+					}
+				});
+	}
+
+	/**
+	 * waits for the futures and turns them into a result
+	 */
+	private static BulkResult collect(Map<String, ? extends CompletableFuture<?>> futures) throws ComposerException {
+		Set<String> succeeded = new LinkedHashSet<>();
+		Map<String, Exception> failures = new LinkedHashMap<>();
+		for (Map.Entry<String, ? extends CompletableFuture<?>> entry : futures.entrySet()) {
+			try {
+				entry.getValue().join();
+				succeeded.add(entry.getKey());
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause() == null ? e : e.getCause();
+				failures.put(entry.getKey(), cause instanceof Exception ? (Exception) cause : e);
+			}
+		}
+		BulkResult result = new BulkResult(succeeded, failures);
+		if (failures.isEmpty()) {
+			return result;
+		}
+		if (futures.size() == 1) {
+			Exception failure = failures.values().iterator().next();
+			if (failure instanceof ComposerException) throw (ComposerException) failure;
+			if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+			throw new ComposerException(failure);
+		}
+		throw new BulkWriteException(result);
+	}
+
+	@FunctionalInterface
+	public interface PartitionWriter<T> {
+		/**
+		 * @param partition resources of one class, never empty
+		 */
+		void write(List<T> partition) throws ComposerException;
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.util.Map;
+
+/**
+ * Thrown when the transactions of some registries of a bulk write failed; the others were committed
+ */
+public class BulkWriteException extends ComposerException {
+	private static final long serialVersionUID = 4512366043711406237L;
+
+	private final transient BulkResult result;
+
+	public BulkWriteException(BulkResult result) {
+		super(errorCode(result), message(result), result.failures().values().iterator().next());
+		this.result = result;
+	}
+
+	public BulkResult result() {
+		return result;
+	}
+
+	private static int errorCode(BulkResult result) {
+		Exception failure = result.failures().values().iterator().next();
+		return failure instanceof ComposerException ? ((ComposerException) failure).getErrorCode() : INTERNAL_ERROR_CODE;
+	}
+
+	private static String message(BulkResult result) {
+		StringBuilder message = new StringBuilder("failed to write ").append(result.failures().size()).append(" of ")
+				.append(result.failures().size() + result.succeeded().size()).append(" registries:");
+		for (Map.Entry<String, Exception> failure : result.failures().entrySet()) {
+			message.append(' ').append(failure.getKey()).append(" (").append(failure.getValue().getMessage()).append(')');
+		}
+		return message.toString();
+	}
+}
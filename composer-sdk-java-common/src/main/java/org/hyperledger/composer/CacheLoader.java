@@ -0,0 +1,18 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+/**
+ * Loads the payload missing from a {@link ResourceCache} or a {@link QueryCache}
+ */
+@FunctionalInterface
+public interface CacheLoader {
+	/**
+	 * @return the payload, or null if there is none; null is returned to the caller but not cached
+	 */
+	String load() throws ComposerException;
+}
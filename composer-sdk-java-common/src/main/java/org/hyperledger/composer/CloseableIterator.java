@@ -0,0 +1,32 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An iterator over resources that are decoded one at a time as they are consumed.
+ * <p>
+ * Decoding errors surface from {@link #next()} as {@link IllegalArgumentException}.
+ */
+public interface CloseableIterator<T> extends Iterator<T>, AutoCloseable {
+
+	@Override
+	void close();
+
+	/**
+	 * @return a sequential stream over the remaining elements, closing this iterator when the stream is closed
+	 */
+	default Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+				.onClose(this::close);
+	}
+}
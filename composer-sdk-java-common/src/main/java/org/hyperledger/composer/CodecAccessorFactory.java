@@ -0,0 +1,115 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.hyperledger.composer.annotation.ResourceCodec;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.function.Supplier;
+
+/**
+ * Accessors backed by the {@link ResourceCodec} of the declaring class, for the members the codec handles; every
+ * other member is left to the fallback factory.
+ */
+class CodecAccessorFactory implements AccessorFactory {
+	private final AccessorFactory fallback;
+
+	CodecAccessorFactory(AccessorFactory fallback) {
+		this.fallback = fallback;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public FieldAccessor field(Field field) {
+		ResourceCodec<Object> codec = (ResourceCodec<Object>) CodecRegistry.codec(field.getDeclaringClass());
+		int index = codec == null ? -1 : codec.field(field.getName());
+		if (index < 0) {
+			return fallback.field(field);
+		}
+		return new CodecAccessor(codec, index, field.getDeclaringClass().getName() + "." + field.getName());
+	}
+
+	@Override
+	public Supplier<Object> constructor(Constructor<?> constructor) {
+		ResourceCodec<?> codec = CodecRegistry.codec(constructor.getDeclaringClass());
+		Supplier<Object> reflective = fallback.constructor(constructor);
+		if (codec == null) {
+			return reflective;
+		}
+		return () -> {
+			Object instance = codec.newInstance();
+			return instance != null ? instance : reflective.get();
+		};
+	}
+
+	private static final class CodecAccessor implements FieldAccessor {
+		private final ResourceCodec<Object> codec;
+		private final int index;
+		private final String fullName;
+
+		private CodecAccessor(ResourceCodec<Object> codec, int index, String fullName) {
+			this.codec = codec;
+			this.index = index;
+			this.fullName = fullName;
+		}
+
+		@Override
+		public Object get(Object target) {
+			return codec.get(target, index);
+		}
+
+		@Override
+		public void set(Object target, Object value) {
+			try {
+				codec.set(target, index, value);
+			} catch (ClassCastException e) {
+				throw new IllegalArgumentException("unable to set value for " + fullName, e);
+			}
+		}
+
+		@Override
+		public long getLong(Object target) {
+			return codec.getLong(target, index);
+		}
+
+		@Override
+		public void setLong(Object target, long value) {
+			codec.setLong(target, index, value);
+		}
+
+		@Override
+		public int getInt(Object target) {
+			return codec.getInt(target, index);
+		}
+
+		@Override
+		public void setInt(Object target, int value) {
+			codec.setInt(target, index, value);
+		}
+
+		@Override
+		public double getDouble(Object target) {
+			return codec.getDouble(target, index);
+		}
+
+		@Override
+		public void setDouble(Object target, double value) {
+			codec.setDouble(target, index, value);
+		}
+
+		@Override
+		public boolean getBoolean(Object target) {
+			return codec.getBoolean(target, index);
+		}
+
+		@Override
+		public void setBoolean(Object target, boolean value) {
+			codec.setBoolean(target, index, value);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.hyperledger.composer.annotation.ResourceCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the {@link ResourceCodec} of a model class: a codec registered by hand wins over the one generated at
+ * compile time, which is looked up once per class by its conventional name.
+ */
+final class CodecRegistry {
+	private static final Logger logger = LoggerFactory.getLogger(CodecRegistry.class);
+
+	private static final Map<Class<?>, ResourceCodec<?>> registered = new ConcurrentHashMap<>();
+	private static final ClassValue<ResourceCodec<?>> generated = new ClassValue<ResourceCodec<?>>() {
+		@Override
+		protected ResourceCodec<?> computeValue(Class<?> type) {
+			return load(type);
+		}
+	};
+
+	private CodecRegistry() {
+	}
+
+	/**
+	 * @return the codec of the given class, or null if it has none
+	 */
+	static ResourceCodec<?> codec(Class<?> type) {
+		ResourceCodec<?> codec = registered.get(type);
+		return codec != null ? codec : generated.get(type);
+	}
+
+	static void register(ResourceCodec<?> codec) {
+		registered.put(codec.type(), codec);
+	}
+
+	private static ResourceCodec<?> load(Class<?> type) {
+		ClassLoader loader = type.getClassLoader();
+		if (loader == null || type.isArray() || type.isPrimitive()) {
+			return null;
+		}
+		String codecName = ResourceCodec.codecName(type.getName());
+		try {
+			Class<?> codecClass = Class.forName(codecName, true, loader);
+			if (!ResourceCodec.class.isAssignableFrom(codecClass)) {
+				return null;
+			}
+			Constructor<?> constructor = codecClass.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			ResourceCodec<?> codec = (ResourceCodec<?>) constructor.newInstance();
+			return type.equals(codec.type()) ? codec : null;
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			logger.warn("ignore codec {}: {}", codecName, e.toString());
+			return null;
+		}
+	}
+}
@@ -8,24 +8,162 @@ package org.hyperledger.composer;
 
 
 import org.apache.commons.lang3.StringUtils;
+import org.hyperledger.composer.internal.Lanes;
+import org.hyperledger.composer.query.PreparedQuery;
 import org.hyperledger.composer.query.SelectQuery;
 import org.hyperledger.composer.system.*;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 import static org.hyperledger.composer.ComposerException.INVALID_INPUT_ERROR;
 import static org.hyperledger.composer.ComposerException.INVALID_REQUEST_CODE;
 
 
 public class ComposerAPI {
+	/**
+	 * the number of ids looked up by one query of {@link #getAssets} and {@link #getParticipants}
+	 */
+	static final int MULTI_GET_BATCH_SIZE = 256;
+	/**
+	 * the number of those queries in flight at once
+	 */
+	static final int MULTI_GET_PARALLELISM = 4;
+	/**
+	 * runs the bulk writes by default: they block until their transactions commit, so they must not take the
+	 * workers of the common pool their callers may be running on
+	 */
+	private static final Executor WRITES = Executors.newCachedThreadPool(task -> {
+		Thread thread = new Thread(task, "composer-bulk-write");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/**
+	 * runs the concurrent queries of a read by default, for the same reason
+	 */
+	private static final Executor READS = Executors.newCachedThreadPool(task -> {
+		Thread thread = new Thread(task, "composer-read");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	protected Engine engine;
+	private volatile ResourceCache cache;
+	private volatile QueryCache queryCache;
+	private volatile RetryPolicy retryPolicy = new RetryPolicy();
+	private volatile WriteScheduler writeScheduler;
+	private volatile Executor writeExecutor = WRITES;
+	private volatile Executor readExecutor = READS;
 
 	public ComposerAPI(Engine engine) {
 		this.engine = engine;
 	}
 
+	/**
+	 * @return the cache of getAsset and getParticipant, or null if they always ask the engine
+	 */
+	public ResourceCache cache() {
+		return cache;
+	}
+
+	/**
+	 * @param cache the cache of getAsset and getParticipant, or null to disable caching
+	 */
+	public ComposerAPI cache(ResourceCache cache) {
+		this.cache = cache;
+		return this;
+	}
+
+	/**
+	 * @return the cache of query results, or null if every query is sent to the engine
+	 */
+	public QueryCache queryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * @param queryCache the cache of query results, or null to disable caching
+	 */
+	public ComposerAPI queryCache(QueryCache queryCache) {
+		this.queryCache = queryCache;
+		return this;
+	}
+
+	public RetryPolicy retryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * @param retryPolicy decides which failed transactions are submitted again, {@link RetryPolicy#NONE} to never
+	 *                    retry
+	 */
+	public ComposerAPI retryPolicy(RetryPolicy retryPolicy) {
+		if (retryPolicy == null) {
+			throw new IllegalArgumentException("retryPolicy is null");
+		}
+		this.retryPolicy = retryPolicy;
+		return this;
+	}
+
+	/**
+	 * @return the scheduler serializing the writes to the same resources, or null if writes are not serialized
+	 */
+	public WriteScheduler writeScheduler() {
+		return writeScheduler;
+	}
+
+	/**
+	 * @param writeScheduler serializes the writes of this API to the same resources, or null to submit every write
+	 *                       at once; a bulk write holds the locks of all its resources for its whole partition, so
+	 *                       one touching about {@link WriteScheduler#stripes()} resources or more blocks every other
+	 *                       write until it is done
+	 */
+	public ComposerAPI writeScheduler(WriteScheduler writeScheduler) {
+		this.writeScheduler = writeScheduler;
+		return this;
+	}
+
+	/**
+	 * @return the executor running the registries of a bulk write concurrently
+	 */
+	public Executor writeExecutor() {
+		return writeExecutor;
+	}
+
+	/**
+	 * @param writeExecutor runs the registries of a bulk write concurrently; their writes block, so it should not be
+	 *                      a pool the callers of the bulk writes run on
+	 */
+	public ComposerAPI writeExecutor(Executor writeExecutor) {
+		if (writeExecutor == null) {
+			throw new IllegalArgumentException("writeExecutor is null");
+		}
+		this.writeExecutor = writeExecutor;
+		return this;
+	}
+
+	/**
+	 * @return the executor running the concurrent queries of {@link #getAssets}, {@link #getParticipants},
+	 * partitioned queries and the prefetch of paginated queries
+	 */
+	public Executor readExecutor() {
+		return readExecutor;
+	}
+
+	/**
+	 * @param readExecutor runs the concurrent queries of a read; they block, so it should not be a pool the callers
+	 *                     of the reads run on
+	 */
+	public ComposerAPI readExecutor(Executor readExecutor) {
+		if (readExecutor == null) {
+			throw new IllegalArgumentException("readExecutor is null");
+		}
+		this.readExecutor = readExecutor;
+		return this;
+	}
+
 	/**
 	 * Submit a transaction object into Composer
 	 *
@@ -34,14 +172,16 @@ public class ComposerAPI {
 	 */
 	public String submitTransaction(Object transaction) throws ComposerException {
 		String transactionJson = ResourceSerializer.toJSONString(transaction);
-		try {
-			return engine.submitTransaction(transactionJson);
-		} catch (Throwable e) {
-			if (e instanceof ComposerException) {
-				throw (ComposerException) e;
+		return retryPolicy.execute(() -> {
+			try {
+				return engine.submitTransaction(transactionJson);
+			} catch (Throwable e) {
+				if (e instanceof ComposerException) {
+					throw (ComposerException) e;
+				}
+				throw new ComposerException(INVALID_REQUEST_CODE, "failed to submit transaction: " + transactionJson, e);
 			}
-			throw new ComposerException(INVALID_REQUEST_CODE, "failed to submit transaction: " + transactionJson, e);
-		}
+		});
 	}
 
 	/**
@@ -57,18 +197,26 @@ public class ComposerAPI {
 	}
 
 	/**
-	 * Create multiple participants in Composer by batch
+	 * Create multiple participants in Composer by batch<br>
+	 * Participants of different classes are created in their own registries, concurrently
 	 *
 	 * @param participants
+	 * @return the registries written
 	 * @throws ComposerException
 	 */
 	@SuppressWarnings("unchecked")
-	public <T> void createParticipants(Collection<T> participants) throws ComposerException {
-		if (participants == null || participants.isEmpty()) return;
-		AddParticipant transaction = new AddParticipant();
-		transaction.targetRegistry = ResourceSerializer.fromID(participants.iterator().next().getClass().getName(), ParticipantRegistry.class);
-		transaction.resources = participants.toArray();
-		submitTransaction(transaction);
+	public <T> BulkResult createParticipants(Collection<T> participants) throws ComposerException {
+		return BulkResult.write(participants, writeExecutor,
+				partition -> scheduled(() -> resourceIds(partition), false, () -> {
+					AddParticipant transaction = new AddParticipant();
+					transaction.targetRegistry = ResourceSerializer.fromID(partition.get(0).getClass().getName(), ParticipantRegistry.class);
+					transaction.resources = partition.toArray();
+					try {
+						submitTransaction(transaction);
+					} finally {
+						invalidate(RegistryType.Participant, partition);
+					}
+				}));
 	}
 
 	/**
@@ -97,7 +245,13 @@ public class ComposerAPI {
 		transaction.targetRegistry = ResourceSerializer.fromID(participantClass.getName(), ParticipantRegistry.class);
 		transaction.resources = new Object[0];
 		transaction.resourceIds = participantIds.toArray(new String[participantIds.size()]);
-		submitTransaction(transaction);
+		scheduled(() -> resourceIds(participantClass, participantIds), false, () -> {
+			try {
+				submitTransaction(transaction);
+			} finally {
+				invalidate(RegistryType.Participant, participantClass, participantIds);
+			}
+		});
 	}
 
 	/**
@@ -113,18 +267,26 @@ public class ComposerAPI {
 	}
 
 	/**
-	 * Update multiple participants in Composer in batch
+	 * Update multiple participants in Composer in batch<br>
+	 * Participants of different classes are updated in their own registries, concurrently
 	 *
 	 * @param participants
+	 * @return the registries written
 	 * @throws ComposerException
 	 */
 	@SuppressWarnings("unchecked")
-	public <T> void updateParticipants(Collection<T> participants) throws ComposerException {
-		if (participants == null || participants.isEmpty()) return;
-		UpdateParticipant participant = new UpdateParticipant();
-		participant.targetRegistry = ResourceSerializer.fromID(participants.iterator().next().getClass().getName(), ParticipantRegistry.class);
-		participant.resources = participants.toArray();
-		submitTransaction(participant);
+	public <T> BulkResult updateParticipants(Collection<T> participants) throws ComposerException {
+		return BulkResult.write(participants, writeExecutor,
+				partition -> scheduled(() -> resourceIds(partition), true, () -> {
+					UpdateParticipant participant = new UpdateParticipant();
+					participant.targetRegistry = ResourceSerializer.fromID(partition.get(0).getClass().getName(), ParticipantRegistry.class);
+					participant.resources = partition.toArray();
+					try {
+						submitTransaction(participant);
+					} finally {
+						invalidate(RegistryType.Participant, partition);
+					}
+				}));
 	}
 
 	/**
@@ -135,11 +297,36 @@ public class ComposerAPI {
 	 * @throws ComposerException
 	 */
 	public <T> T getParticipant(Class<T> participantClass, String participantId) throws ComposerException {
+		return getParticipant(participantClass, participantId, null);
+	}
+
+	/**
+	 * Get one participant from Composer by ID, decoding only the given fields of it
+	 *
+	 * @param participantId
+	 * @param fields        the names of the fields to decode, or null for all fields; the other fields are left unset
+	 * @return
+	 * @throws ComposerException
+	 */
+	public <T> T getParticipant(Class<T> participantClass, String participantId, Set<String> fields) throws ComposerException {
 		if (participantClass == null) {
 			throw new ComposerException(INVALID_INPUT_ERROR, "Cannot get participant of null class");
 		}
-		return ResourceSerializer.fromJSON(engine.getResourceInRegistry(
-				RegistryType.Participant.name(), participantClass.getName(), participantId), participantClass);
+		return ResourceSerializer.fromJSON(getResource(RegistryType.Participant, participantClass, participantId), participantClass, fields);
+	}
+
+	/**
+	 * Get multiple participants from Composer by ID, with one query per {@link #MULTI_GET_BATCH_SIZE} IDs
+	 *
+	 * @param participantIds
+	 * @return the participants by ID, in the order of the given IDs; IDs without a participant map to null
+	 * @throws ComposerException
+	 */
+	public <T> Map<String, T> getParticipants(Class<T> participantClass, Collection<String> participantIds) throws ComposerException {
+		if (participantClass == null) {
+			throw new ComposerException(INVALID_INPUT_ERROR, "Cannot get participants of null class");
+		}
+		return getResources(participantClass, participantIds);
 	}
 
 	/**
@@ -157,18 +344,27 @@ public class ComposerAPI {
 
 	/**
 	 * Create assets in Composer in batch<br>
-	 * When any of the IDs of the given assets is occupied in Composer, the whole creation will fail, no asset would be created and a ComposerException will be thrown
+	 * When any of the IDs of the given assets is occupied in Composer, the whole creation will fail, no asset would be created and a ComposerException will be thrown<br>
+	 * Assets of different classes are created in their own registries, concurrently; each registry succeeds or fails on
+	 * its own and a {@link BulkWriteException} reports the registries that failed
 	 *
 	 * @param assets The collection that holds all the assets to be created
+	 * @return the registries written
 	 * @throws ComposerException
 	 */
 	@SuppressWarnings("unchecked")
-	public <T> void createAssets(Collection<T> assets) throws ComposerException {
-		if (assets == null || assets.isEmpty()) return;
-		AddAsset transaction = new AddAsset();
-		transaction.targetRegistry = ResourceSerializer.fromID(assets.iterator().next().getClass().getName(), AssetRegistry.class);
-		transaction.resources = assets.toArray();
-		submitTransaction(transaction);
+	public <T> BulkResult createAssets(Collection<T> assets) throws ComposerException {
+		return BulkResult.write(assets, writeExecutor,
+				partition -> scheduled(() -> resourceIds(partition), false, () -> {
+					AddAsset transaction = new AddAsset();
+					transaction.targetRegistry = ResourceSerializer.fromID(partition.get(0).getClass().getName(), AssetRegistry.class);
+					transaction.resources = partition.toArray();
+					try {
+						submitTransaction(transaction);
+					} finally {
+						invalidate(RegistryType.Asset, partition);
+					}
+				}));
 	}
 
 	/**
@@ -201,7 +397,13 @@ public class ComposerAPI {
 		transaction.targetRegistry = ResourceSerializer.fromID(assetClass.getName(), AssetRegistry.class);
 		transaction.resources = new Object[0];
 		transaction.resourceIds = assetIds.toArray(new String[assetIds.size()]);
-		submitTransaction(transaction);
+		scheduled(() -> resourceIds(assetClass, assetIds), false, () -> {
+			try {
+				submitTransaction(transaction);
+			} finally {
+				invalidate(RegistryType.Asset, assetClass, assetIds);
+			}
+		});
 	}
 
 	/**
@@ -218,18 +420,26 @@ public class ComposerAPI {
 	}
 
 	/**
-	 * Update multiple assets in Composer by batch
+	 * Update multiple assets in Composer by batch<br>
+	 * Assets of different classes are updated in their own registries, concurrently
 	 *
 	 * @param assets
+	 * @return the registries written
 	 * @throws ComposerException
 	 */
 	@SuppressWarnings("unchecked")
-	public <T> void updateAssets(Collection<T> assets) throws ComposerException {
-		if (assets == null || assets.isEmpty()) return;
-		UpdateAsset transaction = new UpdateAsset();
-		transaction.targetRegistry = ResourceSerializer.fromID(assets.iterator().next().getClass().getName(), AssetRegistry.class);
-		transaction.resources = assets.toArray();
-		submitTransaction(transaction);
+	public <T> BulkResult updateAssets(Collection<T> assets) throws ComposerException {
+		return BulkResult.write(assets, writeExecutor,
+				partition -> scheduled(() -> resourceIds(partition), true, () -> {
+					UpdateAsset transaction = new UpdateAsset();
+					transaction.targetRegistry = ResourceSerializer.fromID(partition.get(0).getClass().getName(), AssetRegistry.class);
+					transaction.resources = partition.toArray();
+					try {
+						submitTransaction(transaction);
+					} finally {
+						invalidate(RegistryType.Asset, partition);
+					}
+				}));
 	}
 
 	/**
@@ -242,11 +452,38 @@ public class ComposerAPI {
 	 */
 	@SuppressWarnings("unchecked")
 	public <T> T getAsset(Class<T> assetClass, String assetId) throws ComposerException {
+		return getAsset(assetClass, assetId, null);
+	}
+
+	/**
+	 * Find one asset from Composer by ID, decoding only the given fields of it
+	 *
+	 * @param assetClass
+	 * @param assetId
+	 * @param fields     the names of the fields to decode, or null for all fields; the other fields are left unset
+	 * @return
+	 * @throws ComposerException
+	 */
+	public <T> T getAsset(Class<T> assetClass, String assetId, Set<String> fields) throws ComposerException {
 		if (assetClass == null) {
 			throw new ComposerException(INVALID_INPUT_ERROR, "Cannot get asset of null class");
 		}
-		return ResourceSerializer.fromJSON(engine.getResourceInRegistry(
-				RegistryType.Asset.name(), assetClass.getName(), assetId), assetClass);
+		return ResourceSerializer.fromJSON(getResource(RegistryType.Asset, assetClass, assetId), assetClass, fields);
+	}
+
+	/**
+	 * Find multiple assets from Composer by ID, with one query per {@link #MULTI_GET_BATCH_SIZE} IDs
+	 *
+	 * @param assetClass
+	 * @param assetIds
+	 * @return the assets by ID, in the order of the given IDs; IDs without an asset map to null
+	 * @throws ComposerException
+	 */
+	public <T> Map<String, T> getAssets(Class<T> assetClass, Collection<String> assetIds) throws ComposerException {
+		if (assetClass == null) {
+			throw new ComposerException(INVALID_INPUT_ERROR, "Cannot get assets of null class");
+		}
+		return getResources(assetClass, assetIds);
 	}
 
 	public SelectQuery select() {
@@ -254,14 +491,198 @@ public class ComposerAPI {
 	}
 
 	public <T> List<T> executeQuery(Class<T> clazz, String type, String query, String parameters) throws ComposerException {
+		return executeQuery(clazz, type, query, parameters, null);
+	}
+
+	/**
+	 * Execute a query, decoding only the given fields of each result; the query sent to the chaincode is unchanged
+	 *
+	 * @param fields the names of the fields to decode, or null for all fields
+	 * @throws ComposerException
+	 */
+	public <T> List<T> executeQuery(Class<T> clazz, String type, String query, String parameters, Set<String> fields) throws ComposerException {
 		try {
-			String result = engine.executeQuery(type, query, parameters);
-			return ResourceSerializer.arrayFromJSON(result, clazz);
+			String result = query(clazz, type, query, parameters);
+			return ResourceSerializer.arrayFromJSON(result, clazz, fields);
 		} catch (IllegalArgumentException e) {
 			throw new ComposerException(INVALID_INPUT_ERROR, "parse executeQuery result error", e);
 		}
 	}
 
+	/**
+	 * Execute a query and decode its results one at a time as they are consumed
+	 *
+	 * @return an iterator over the results; close it when done. Decoding errors of single results are thrown by
+	 * {@link CloseableIterator#next()} as IllegalArgumentException
+	 * @throws ComposerException
+	 */
+	public <T> CloseableIterator<T> iterateQuery(Class<T> clazz, String type, String query, String parameters) throws ComposerException {
+		return iterateQuery(clazz, type, query, parameters, null);
+	}
+
+	/**
+	 * Execute a query lazily, decoding only the given fields of each result
+	 *
+	 * @param fields the names of the fields to decode, or null for all fields
+	 * @throws ComposerException
+	 */
+	public <T> CloseableIterator<T> iterateQuery(Class<T> clazz, String type, String query, String parameters, Set<String> fields) throws ComposerException {
+		try {
+			String result = query(clazz, type, query, parameters);
+			return ResourceSerializer.iterateFromJSON(result, clazz, fields);
+		} catch (IllegalArgumentException e) {
+			throw new ComposerException(INVALID_INPUT_ERROR, "parse executeQuery result error", e);
+		}
+	}
+
+	private String getResource(RegistryType type, Class<?> clazz, String id) throws ComposerException {
+		ResourceCache cache = this.cache;
+		if (cache == null) {
+			return engine.getResourceInRegistry(type.name(), clazz.getName(), id);
+		}
+		return cache.get(type.name(), clazz.getName(), id, () -> engine.getResourceInRegistry(type.name(), clazz.getName(), id));
+	}
+
+	/**
+	 * Run the write once the earlier writes of the same resources are done, if a write scheduler is set. A bulk
+	 * partition is scheduled as one write of all its keys.
+	 *
+	 * @param keys   the ids of the written resources, only computed when needed
+	 * @param update whether the write may be dropped for a newer update, see {@link WriteScheduler}
+	 */
+	protected void scheduled(Supplier<Collection<String>> keys, boolean update, WriteScheduler.Write write) throws ComposerException {
+		WriteScheduler writeScheduler = this.writeScheduler;
+		if (writeScheduler == null) {
+			write.run();
+		} else {
+			writeScheduler.write(keys.get(), update, write);
+		}
+	}
+
+	protected static List<String> resourceIds(Collection<?> resources) {
+		List<String> ids = new ArrayList<>(resources.size());
+		for (Object resource : resources) {
+			ids.add(ResourceSerializer.getResourceId(resource));
+		}
+		return ids;
+	}
+
+	protected static List<String> resourceIds(Class<?> clazz, Collection<String> ids) {
+		List<String> result = new ArrayList<>(ids.size());
+		for (String id : ids) {
+			result.add(ResourceSerializer.getResourceId(clazz, id));
+		}
+		return result;
+	}
+
+	private String query(Class<?> clazz, String type, String query, String parameters) throws ComposerException {
+		QueryCache queryCache = this.queryCache;
+		if (queryCache == null || clazz == null) {
+			return engine.executeQuery(type, query, parameters);
+		}
+		return queryCache.get(clazz, type, query, parameters, () -> engine.executeQuery(type, query, parameters));
+	}
+
+	/**
+	 * Drop the written resources, and the queries over their classes, from the caches
+	 */
+	protected void invalidate(RegistryType type, Collection<?> resources) {
+		ResourceCache cache = this.cache;
+		Set<Class<?>> classes = new HashSet<>();
+		for (Object resource : resources) {
+			classes.add(resource.getClass());
+			ResourceDescriptor.FieldDescriptor idField = cache == null ? null : ResourceDescriptor.of(resource.getClass()).idField();
+			Object id = idField == null ? null : idField.get(resource);
+			if (id != null) {
+				cache.invalidate(type.name(), resource.getClass().getName(), id.toString());
+			}
+		}
+		for (Class<?> clazz : classes) {
+			invalidateQueries(clazz);
+		}
+	}
+
+	/**
+	 * Drop the removed resources, and the queries over their class, from the caches
+	 */
+	protected void invalidate(RegistryType type, Class<?> clazz, Collection<String> ids) {
+		ResourceCache cache = this.cache;
+		if (cache != null) {
+			for (String id : ids) {
+				cache.invalidate(type.name(), clazz.getName(), id);
+			}
+		}
+		invalidateQueries(clazz);
+	}
+
+	/**
+	 * a query over a super class may return resources of the class, so its results are dropped as well
+	 */
+	private void invalidateQueries(Class<?> clazz) {
+		QueryCache queryCache = this.queryCache;
+		if (queryCache == null) return;
+		for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+			queryCache.invalidate(c);
+		}
+	}
+
+	/**
+	 * look the IDs up in batches, keeping up to {@link #MULTI_GET_PARALLELISM} of them in flight
+	 */
+	private <T> Map<String, T> getResources(Class<T> clazz, Collection<String> ids) throws ComposerException {
+		Map<String, T> result = new LinkedHashMap<>();
+		if (ids == null || ids.isEmpty()) return result;
+		ResourceDescriptor.FieldDescriptor idField = ResourceDescriptor.of(clazz).idField();
+		if (idField == null) {
+			throw new ComposerException(INVALID_INPUT_ERROR, "no id field specified:" + clazz.getName());
+		}
+		for (String id : ids) {
+			if (id != null) result.put(id, null);
+		}
+		List<String> distinct = new ArrayList<>(result.keySet());
+		int batches = (distinct.size() + MULTI_GET_BATCH_SIZE - 1) / MULTI_GET_BATCH_SIZE;
+		int lanes = Math.min(MULTI_GET_PARALLELISM, batches);
+		// compiled once and shared by the lanes, only a smaller last batch needs its own
+		PreparedQuery<T> fullBatch = idQuery(clazz, idField, Math.min(MULTI_GET_BATCH_SIZE, distinct.size()));
+
+		// lane i queries the batches i, i + lanes, ...
+		List<T> found = new ArrayList<>();
+		for (List<T> lane : Lanes.run(lanes, (first, ignored) -> queryLane(clazz, idField, fullBatch, distinct, first, lanes),
+				readExecutor, "get resources")) {
+			found.addAll(lane);
+		}
+		for (T resource : found) {
+			Object id = idField.get(resource);
+			if (id != null && result.containsKey(id.toString())) {
+				result.put(id.toString(), resource);
+			}
+		}
+		return result;
+	}
+
+	private <T> List<T> queryLane(Class<T> clazz, ResourceDescriptor.FieldDescriptor idField, PreparedQuery<T> fullBatch,
+	                              List<String> ids, int firstBatch, int lanes) throws ComposerException {
+		List<T> found = new ArrayList<>();
+		for (int batch = firstBatch; batch * MULTI_GET_BATCH_SIZE < ids.size(); batch += lanes) {
+			List<String> batchIds = ids.subList(batch * MULTI_GET_BATCH_SIZE, Math.min(ids.size(), (batch + 1) * MULTI_GET_BATCH_SIZE));
+			PreparedQuery<T> query = batchIds.size() == fullBatch.parameterCount() ? fullBatch : idQuery(clazz, idField, batchIds.size());
+			PreparedQuery.Bindings bindings = query.bindings();
+			for (int i = 0; i < batchIds.size(); i++) {
+				bindings.bind(i + 1, batchIds.get(i));
+			}
+			found.addAll(query.execute(bindings));
+		}
+		return found;
+	}
+
+	private <T> PreparedQuery<T> idQuery(Class<T> clazz, ResourceDescriptor.FieldDescriptor idField, int size) throws ComposerException {
+		StringBuilder condition = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			condition.append(i == 0 ? "" : " OR ").append(idField.name()).append(" == ?");
+		}
+		return select().from(clazz).where(condition.toString()).prepare();
+	}
+
 	public enum RegistryType {
 		Participant, Asset, Transaction
 	}
@@ -27,6 +27,8 @@ public class ComposerException extends Exception {
 	public static final int INVALID_INPUT_ERROR = 1014;
 	public static final int ERROR_FIELD_TYPE = 1016;
 	public static final int ERROR_MESSAGE_TYPE = 1019;
+	public static final int MVCC_READ_CONFLICT = 1020;
+	public static final int PHANTOM_READ_CONFLICT = 1021;
 
 	private int errorCode;
 
@@ -0,0 +1,49 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+/**
+ * Reads and writes one field of a model class. The primitive variants must only be called for fields of the
+ * matching primitive type; implementations may override them to avoid boxing.
+ */
+public interface FieldAccessor {
+	Object get(Object target);
+
+	void set(Object target, Object value);
+
+	default long getLong(Object target) {
+		return (Long) get(target);
+	}
+
+	default void setLong(Object target, long value) {
+		set(target, value);
+	}
+
+	default int getInt(Object target) {
+		return (Integer) get(target);
+	}
+
+	default void setInt(Object target, int value) {
+		set(target, value);
+	}
+
+	default double getDouble(Object target) {
+		return (Double) get(target);
+	}
+
+	default void setDouble(Object target, double value) {
+		set(target, value);
+	}
+
+	default boolean getBoolean(Object target) {
+		return (Boolean) get(target);
+	}
+
+	default void setBoolean(Object target, boolean value) {
+		set(target, value);
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.function.Supplier;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Accessors backed by method handles. The handles live in the fields of each accessor, so they are not constants to
+ * the JIT and cost a method handle invocation per access; what they save over reflection is the access check on every
+ * call. Fields of type long, int, double and boolean get handles of their own primitive type so the primitive
+ * accessor methods never box.
+ */
+class MethodHandleAccessorFactory implements AccessorFactory {
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final MethodType GETTER = methodType(Object.class, Object.class);
+	private static final MethodType SETTER = methodType(void.class, Object.class, Object.class);
+	private static final MethodType CONSTRUCTOR = methodType(Object.class);
+
+	private final AccessorFactory fallback = new ReflectionAccessorFactory();
+
+	@Override
+	public FieldAccessor field(Field field) {
+		MethodHandle getter, setter;
+		try {
+			getter = LOOKUP.unreflectGetter(field);
+			setter = LOOKUP.unreflectSetter(field);
+		} catch (IllegalAccessException e) {
+			return fallback.field(field);
+		}
+		String fullName = field.getDeclaringClass().getName() + "." + field.getName();
+		Class<?> type = field.getType();
+		if (type == long.class) {
+			return new LongAccessor(getter, setter, fullName);
+		} else if (type == int.class) {
+			return new IntAccessor(getter, setter, fullName);
+		} else if (type == double.class) {
+			return new DoubleAccessor(getter, setter, fullName);
+		} else if (type == boolean.class) {
+			return new BooleanAccessor(getter, setter, fullName);
+		}
+		return new HandleAccessor(getter, setter, fullName);
+	}
+
+	@Override
+	public Supplier<Object> constructor(Constructor<?> constructor) {
+		MethodHandle handle;
+		try {
+			handle = LOOKUP.unreflectConstructor(constructor).asType(CONSTRUCTOR);
+		} catch (IllegalAccessException e) {
+			return fallback.constructor(constructor);
+		}
+		String className = constructor.getDeclaringClass().getName();
+		return () -> {
+			try {
+				return (Object) handle.invokeExact();
+			} catch (Throwable t) {
+				throw failure("unable to create an instance for " + className, t);
+			}
+		};
+	}
+
+	private static IllegalArgumentException failure(String message, Throwable t) {
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		return new IllegalArgumentException(message, t);
+	}
+
+	static class HandleAccessor implements FieldAccessor {
+		final MethodHandle getter;
+		final MethodHandle setter;
+		final String fullName;
+
+		HandleAccessor(MethodHandle getter, MethodHandle setter, String fullName) {
+			this.getter = getter.asType(GETTER);
+			this.setter = setter.asType(SETTER);
+			this.fullName = fullName;
+		}
+
+		@Override
+		public Object get(Object target) {
+			try {
+				return (Object) getter.invokeExact(target);
+			} catch (Throwable t) {
+				throw failure("unable to access field:" + fullName, t);
+			}
+		}
+
+		@Override
+		public void set(Object target, Object value) {
+			try {
+				setter.invokeExact(target, value);
+			} catch (Throwable t) {
+				throw failure("unable to set value for " + fullName, t);
+			}
+		}
+	}
+
+	static class LongAccessor extends HandleAccessor {
+		private final MethodHandle longGetter;
+		private final MethodHandle longSetter;
+
+		LongAccessor(MethodHandle getter, MethodHandle setter, String fullName) {
+			super(getter, setter, fullName);
+			this.longGetter = getter.asType(methodType(long.class, Object.class));
+			this.longSetter = setter.asType(methodType(void.class, Object.class, long.class));
+		}
+
+		@Override
+		public long getLong(Object target) {
+			try {
+				return (long) longGetter.invokeExact(target);
+			} catch (Throwable t) {
+				throw failure("unable to access field:" + fullName, t);
+			}
+		}
+
+		@Override
+		public void setLong(Object target, long value) {
+			try {
+				longSetter.invokeExact(target, value);
+			} catch (Throwable t) {
+				throw failure("unable to set value for " + fullName, t);
+			}
+		}
+	}
+
+	static class IntAccessor extends HandleAccessor {
+		private final MethodHandle intGetter;
+		private final MethodHandle intSetter;
+
+		IntAccessor(MethodHandle getter, MethodHandle setter, String fullName) {
+			super(getter, setter, fullName);
+			this.intGetter = getter.asType(methodType(int.class, Object.class));
+			this.intSetter = setter.asType(methodType(void.class, Object.class, int.class));
+		}
+
+		@Override
+		public int getInt(Object target) {
+			try {
+				return (int) intGetter.invokeExact(target);
+			} catch (Throwable t) {
+				throw failure("unable to access field:" + fullName, t);
+			}
+		}
+
+		@Override
+		public void setInt(Object target, int value) {
+			try {
+				intSetter.invokeExact(target, value);
+			} catch (Throwable t) {
+				throw failure("unable to set value for " + fullName, t);
+			}
+		}
+	}
+
+	static class DoubleAccessor extends HandleAccessor {
+		private final MethodHandle doubleGetter;
+		private final MethodHandle doubleSetter;
+
+		DoubleAccessor(MethodHandle getter, MethodHandle setter, String fullName) {
+			super(getter, setter, fullName);
+			this.doubleGetter = getter.asType(methodType(double.class, Object.class));
+			this.doubleSetter = setter.asType(methodType(void.class, Object.class, double.class));
+		}
+
+		@Override
+		public double getDouble(Object target) {
+			try {
+				return (double) doubleGetter.invokeExact(target);
+			} catch (Throwable t) {
+				throw failure("unable to access field:" + fullName, t);
+			}
+		}
+
+		@Override
+		public void setDouble(Object target, double value) {
+			try {
+				doubleSetter.invokeExact(target, value);
+			} catch (Throwable t) {
+				throw failure("unable to set value for " + fullName, t);
+			}
+		}
+	}
+
+	static class BooleanAccessor extends HandleAccessor {
+		private final MethodHandle booleanGetter;
+		private final MethodHandle booleanSetter;
+
+		BooleanAccessor(MethodHandle getter, MethodHandle setter, String fullName) {
+			super(getter, setter, fullName);
+			this.booleanGetter = getter.asType(methodType(boolean.class, Object.class));
+			this.booleanSetter = setter.asType(methodType(void.class, Object.class, boolean.class));
+		}
+
+		@Override
+		public boolean getBoolean(Object target) {
+			try {
+				return (boolean) booleanGetter.invokeExact(target);
+			} catch (Throwable t) {
+				throw failure("unable to access field:" + fullName, t);
+			}
+		}
+
+		@Override
+		public void setBoolean(Object target, boolean value) {
+			try {
+				booleanSetter.invokeExact(target, value);
+			} catch (Throwable t) {
+				throw failure("unable to set value for " + fullName, t);
+			}
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Streams arrays of the primitive model types element by element, without a tree node or, for arrays of primitives,
+ * a wrapper object per element. Dates are written as epoch milliseconds, as Jackson does by default.
+ */
+final class PrimitiveArrayCodec {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private PrimitiveArrayCodec() {
+	}
+
+	static boolean handles(Class<?> type) {
+		return type == long[].class || type == int[].class || type == double[].class || type == boolean[].class
+				|| type == Long[].class || type == Integer[].class || type == Double[].class || type == Boolean[].class
+				|| type == String[].class || type == Date[].class;
+	}
+
+	static void write(Object array, JsonGenerator generator) throws IOException {
+		generator.writeStartArray();
+		if (array instanceof long[]) {
+			for (long value : (long[]) array) {
+				generator.writeNumber(value);
+			}
+		} else if (array instanceof int[]) {
+			for (int value : (int[]) array) {
+				generator.writeNumber(value);
+			}
+		} else if (array instanceof double[]) {
+			for (double value : (double[]) array) {
+				generator.writeNumber(value);
+			}
+		} else if (array instanceof boolean[]) {
+			for (boolean value : (boolean[]) array) {
+				generator.writeBoolean(value);
+			}
+		} else {
+			for (Object value : (Object[]) array) {
+				writeElement(value, generator);
+			}
+		}
+		generator.writeEndArray();
+	}
+
+	private static void writeElement(Object value, JsonGenerator generator) throws IOException {
+		if (value == null) {
+			generator.writeNull();
+		} else if (value instanceof Long) {
+			generator.writeNumber((Long) value);
+		} else if (value instanceof Integer) {
+			generator.writeNumber((Integer) value);
+		} else if (value instanceof Double) {
+			generator.writeNumber((Double) value);
+		} else if (value instanceof Boolean) {
+			generator.writeBoolean((Boolean) value);
+		} else if (value instanceof Date) {
+			generator.writeNumber(((Date) value).getTime());
+		} else {
+			generator.writeString(value.toString());
+		}
+	}
+
+	/**
+	 * Read the array starting at the current START_ARRAY token, leaving the parser on its END_ARRAY token
+	 */
+	static Object read(JsonParser parser, Class<?> type) throws IOException {
+		if (type == long[].class) {
+			return readLongs(parser);
+		} else if (type == int[].class) {
+			return readInts(parser);
+		} else if (type == double[].class) {
+			return readDoubles(parser);
+		} else if (type == boolean[].class) {
+			return readBooleans(parser);
+		}
+
+		Class<?> componentType = type.getComponentType();
+		List<Object> elements = new ArrayList<>();
+		while (nextElement(parser) != JsonToken.END_ARRAY) {
+			elements.add(parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : readElement(parser, componentType));
+		}
+		return elements.toArray((Object[]) Array.newInstance(componentType, elements.size()));
+	}
+
+	private static Object readElement(JsonParser parser, Class<?> componentType) throws IOException {
+		if (componentType == Long.class) {
+			return ResourceJsonReader.readLong(parser);
+		} else if (componentType == Integer.class) {
+			return ResourceJsonReader.readInt(parser);
+		} else if (componentType == Double.class) {
+			return ResourceJsonReader.readDouble(parser);
+		} else if (componentType == Boolean.class) {
+			return ResourceJsonReader.readBoolean(parser);
+		} else if (componentType == Date.class) {
+			if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+				// dates written by other clients as text
+				return ResourceSerializer.primitiveReader(Date.class).readValue(parser);
+			}
+			return new Date(ResourceJsonReader.readLong(parser));
+		}
+		return parser.getValueAsString();
+	}
+
+	private static long[] readLongs(JsonParser parser) throws IOException {
+		long[] result = new long[INITIAL_CAPACITY];
+		int size = 0;
+		while (nextElement(parser) != JsonToken.END_ARRAY) {
+			if (size == result.length) {
+				result = Arrays.copyOf(result, size * 2);
+			}
+			result[size++] = nullElement(parser) ? 0 : ResourceJsonReader.readLong(parser);
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	private static int[] readInts(JsonParser parser) throws IOException {
+		int[] result = new int[INITIAL_CAPACITY];
+		int size = 0;
+		while (nextElement(parser) != JsonToken.END_ARRAY) {
+			if (size == result.length) {
+				result = Arrays.copyOf(result, size * 2);
+			}
+			result[size++] = nullElement(parser) ? 0 : ResourceJsonReader.readInt(parser);
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	private static double[] readDoubles(JsonParser parser) throws IOException {
+		double[] result = new double[INITIAL_CAPACITY];
+		int size = 0;
+		while (nextElement(parser) != JsonToken.END_ARRAY) {
+			if (size == result.length) {
+				result = Arrays.copyOf(result, size * 2);
+			}
+			result[size++] = nullElement(parser) ? 0 : ResourceJsonReader.readDouble(parser);
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	private static boolean[] readBooleans(JsonParser parser) throws IOException {
+		boolean[] result = new boolean[INITIAL_CAPACITY];
+		int size = 0;
+		while (nextElement(parser) != JsonToken.END_ARRAY) {
+			if (size == result.length) {
+				result = Arrays.copyOf(result, size * 2);
+			}
+			result[size++] = !nullElement(parser) && ResourceJsonReader.readBoolean(parser);
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * A null element of an array of primitives reads as the default value, as it does with Jackson
+	 */
+	private static boolean nullElement(JsonParser parser) {
+		return parser.getCurrentToken() == JsonToken.VALUE_NULL;
+	}
+
+	/**
+	 * @return the token of the next element, or END_ARRAY; elements must be scalars
+	 */
+	private static JsonToken nextElement(JsonParser parser) throws IOException {
+		JsonToken token = parser.nextToken();
+		if (token == null) {
+			throw new IllegalArgumentException("unexpected end of json array");
+		}
+		if (token != JsonToken.END_ARRAY && !token.isScalarValue()) {
+			throw new IllegalArgumentException("expect a scalar array element, got " + token);
+		}
+		return token;
+	}
+}
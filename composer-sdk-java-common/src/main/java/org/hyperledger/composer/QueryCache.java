@@ -0,0 +1,235 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of the raw results of {@link Engine#executeQuery}, keyed by query type, query text and parameters. The
+ * parameters are compared as JSON, so the order in which they were bound does not matter.
+ * <p>
+ * Entries expire after a fixed time to live, and the least recently used ones are evicted to keep the cached
+ * results within a budget of bytes. Concurrent identical queries share a single execution. Every entry remembers
+ * the class it was queried for: writes through {@link ComposerAPI}, or through an {@link AsyncComposerAPI} whose
+ * {@link AsyncComposerAPI#caches(ComposerAPI) caches} are that API, invalidate the queries over the written classes
+ * and their super classes, and {@link #invalidate(Class)} does the same for changes seen otherwise, e.g. by an
+ * event listener.
+ */
+public class QueryCache {
+	private final long maxBytes;
+	private final long ttlMillis;
+	private final Object lock = new Object();
+	// guarded by lock, in access order
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	// guarded by lock, the keys of the entries by class name
+	private final Map<String, Set<Key>> keysByClass = new HashMap<>();
+	// an invalidation while executing drops the result, which may predate the write
+	private final SingleFlight<Key> loading = new SingleFlight<>();
+	// guarded by lock
+	private long bytes;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public QueryCache(long maxBytes, long ttlMillis) {
+		if (maxBytes <= 0 || ttlMillis <= 0) {
+			throw new IllegalArgumentException("maxBytes and ttlMillis must be positive");
+		}
+		this.maxBytes = maxBytes;
+		this.ttlMillis = ttlMillis;
+	}
+
+	public long maxBytes() {
+		return maxBytes;
+	}
+
+	public long ttlMillis() {
+		return ttlMillis;
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of entries dropped to stay within the budget or because they had expired
+	 */
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return the number of bytes of the cached results, counting two per character
+	 */
+	public long bytes() {
+		synchronized (lock) {
+			return bytes;
+		}
+	}
+
+	/**
+	 * @param resourceClass the class the results are decoded into
+	 * @return the cached result of the query, or the one returned by the loader
+	 */
+	public String get(Class<?> resourceClass, String type, String query, String parameters, CacheLoader loader) throws ComposerException {
+		Key key = new Key(resourceClass.getName(), type, query, canonical(parameters));
+		synchronized (lock) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				if (entry.expiresAt - System.currentTimeMillis() > 0) {
+					hits.increment();
+					return entry.value;
+				}
+				remove(key);
+				evictions.increment();
+			}
+		}
+		misses.increment();
+		return loading.load(key, lock, loader, value -> put(key, value));
+	}
+
+	/**
+	 * Drop the results of every query over the class
+	 */
+	public void invalidate(Class<?> resourceClass) {
+		String className = resourceClass.getName();
+		synchronized (lock) {
+			Set<Key> keys = keysByClass.remove(className);
+			if (keys != null) {
+				for (Key key : keys) {
+					bytes -= entries.remove(key).bytes;
+				}
+			}
+			loading.cancelIf(key -> key.className.equals(className));
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (lock) {
+			entries.clear();
+			keysByClass.clear();
+			loading.cancelAll();
+			bytes = 0;
+		}
+	}
+
+	// guarded by lock
+	private void put(Key key, String value) {
+		long size = 2L * value.length();
+		if (size > maxBytes) return;
+		remove(key);
+		for (Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator(); bytes + size > maxBytes && eldest.hasNext(); ) {
+			Map.Entry<Key, Entry> victim = eldest.next();
+			eldest.remove();
+			unindex(victim.getKey());
+			bytes -= victim.getValue().bytes;
+			evictions.increment();
+		}
+		entries.put(key, new Entry(value, size, System.currentTimeMillis() + ttlMillis));
+		keysByClass.computeIfAbsent(key.className, className -> new HashSet<>()).add(key);
+		bytes += size;
+	}
+
+	// guarded by lock
+	private void remove(Key key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			unindex(key);
+			bytes -= entry.bytes;
+		}
+	}
+
+	// guarded by lock
+	private void unindex(Key key) {
+		Set<Key> keys = keysByClass.get(key.className);
+		if (keys != null && keys.remove(key) && keys.isEmpty()) {
+			keysByClass.remove(key.className);
+		}
+	}
+
+	/**
+	 * @return the parameters as JSON with the fields of every object sorted by name
+	 */
+	static String canonical(String parameters) {
+		if (parameters == null) return null;
+		try {
+			return sorted(ResourceSerializer.toJsonNode(parameters)).toString();
+		} catch (IOException | RuntimeException e) {
+			return parameters;
+		}
+	}
+
+	private static JsonNode sorted(JsonNode node) {
+		if (node.isObject()) {
+			ObjectNode result = ResourceSerializer.createObjectNode();
+			List<String> names = new ArrayList<>();
+			node.fieldNames().forEachRemaining(names::add);
+			Collections.sort(names);
+			for (String name : names) {
+				result.set(name, sorted(node.get(name)));
+			}
+			return result;
+		}
+		if (node.isArray()) {
+			for (int i = 0; i < node.size(); i++) {
+				((ArrayNode) node).set(i, sorted(node.get(i)));
+			}
+		}
+		return node;
+	}
+
+	private static final class Key {
+		private final String className;
+		private final String type;
+		private final String query;
+		private final String parameters;
+
+		private Key(String className, String type, String query, String parameters) {
+			this.className = className;
+			this.type = type;
+			this.query = query;
+			this.parameters = parameters;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Key)) return false;
+			Key key = (Key) o;
+			return className.equals(key.className) && Objects.equals(type, key.type) && Objects.equals(query, key.query)
+					&& Objects.equals(parameters, key.parameters);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(className, type, query, parameters);
+		}
+	}
+
+	private static final class Entry {
+		private final String value;
+		private final long bytes;
+		private final long expiresAt;
+
+		private Entry(String value, long bytes, long expiresAt) {
+			this.value = value;
+			this.bytes = bytes;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.function.Supplier;
+
+/**
+ * Plain java.lang.reflect accessors, used when method handles cannot be created for a member.
+ */
+class ReflectionAccessorFactory implements AccessorFactory {
+
+	@Override
+	public FieldAccessor field(Field field) {
+		String fullName = field.getDeclaringClass().getName() + "." + field.getName();
+		return new FieldAccessor() {
+			@Override
+			public Object get(Object target) {
+				try {
+					return field.get(target);
+				} catch (IllegalAccessException e) {
+					throw new IllegalArgumentException("unable to access field:" + fullName, e);
+				}
+			}
+
+			@Override
+			public void set(Object target, Object value) {
+				try {
+					field.set(target, value);
+				} catch (IllegalAccessException e) {
+					throw new IllegalArgumentException("unable to set value for " + fullName, e);
+				}
+			}
+		};
+	}
+
+	@Override
+	public Supplier<Object> constructor(Constructor<?> constructor) {
+		return () -> {
+			try {
+				return constructor.newInstance();
+			} catch (Exception e) {
+				throw new IllegalArgumentException("unable to create an instance for "
+						+ constructor.getDeclaringClass().getName(), e);
+			}
+		};
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A read-through cache of the serialized resources returned by {@link Engine#getResourceInRegistry}, keyed by
+ * registry type, registry id and resource id.
+ * <p>
+ * Entries expire after a fixed time to live. When the cache is full, the least recently used entry is evicted only
+ * if the new one has been asked for more often (a TinyLFU admission), so a scan of cold ids does not flush the hot
+ * ones. Concurrent misses of one key share a single load. The payload is cached rather than the decoded resource
+ * because resources are mutable; every hit is decoded into a new instance.
+ * <p>
+ * The entries are split into up to {@link #MAX_SEGMENTS} segments by key hash, each with its own lock, recency
+ * order and frequency sketch, so hits on different keys rarely contend; recency and admission are therefore only
+ * exact within a segment. Small caches use a single segment.
+ * <p>
+ * Writes through {@link ComposerAPI}, and through the async views of the same connection, invalidate the resources
+ * they touch. Changes made by other clients are only seen once the entry expires or is invalidated, e.g. from an
+ * event listener.
+ */
+public class ResourceCache {
+	static final int MAX_SEGMENTS = 16;
+	/**
+	 * the smallest capacity worth a segment of its own
+	 */
+	static final int MIN_SEGMENT_SIZE = 64;
+
+	private final int maximumSize;
+	private final long ttlMillis;
+	private final Segment[] segments;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public ResourceCache(int maximumSize, long ttlMillis) {
+		if (maximumSize <= 0 || ttlMillis <= 0) {
+			throw new IllegalArgumentException("maximumSize and ttlMillis must be positive");
+		}
+		this.maximumSize = maximumSize;
+		this.ttlMillis = ttlMillis;
+		int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maximumSize / MIN_SEGMENT_SIZE)));
+		this.segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			// the first segments take the remainder, so the capacities add up to maximumSize
+			segments[i] = new Segment(maximumSize / count + (i < maximumSize % count ? 1 : 0));
+		}
+	}
+
+	public int maximumSize() {
+		return maximumSize;
+	}
+
+	public long ttlMillis() {
+		return ttlMillis;
+	}
+
+	/**
+	 * @return the number of lookups answered from the cache
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of lookups which had to load the resource or wait for another thread loading it
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of entries dropped because the cache was full or they had expired
+	 */
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.entries.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the cached payload of the resource, or the one returned by the loader
+	 */
+	public String get(String registryType, String registryId, String resourceId, CacheLoader loader) throws ComposerException {
+		Key key = new Key(registryType, registryId, resourceId);
+		Segment segment = segment(key);
+		synchronized (segment) {
+			segment.sketch.increment(key);
+			Entry entry = segment.entries.get(key);
+			if (entry != null) {
+				if (entry.expiresAt - System.currentTimeMillis() > 0) {
+					hits.increment();
+					return entry.value;
+				}
+				segment.entries.remove(key);
+				evictions.increment();
+			}
+		}
+		misses.increment();
+		return segment.loading.load(key, segment, loader, value -> segment.put(key, value));
+	}
+
+	public void invalidate(String registryType, String registryId, String resourceId) {
+		Key key = new Key(registryType, registryId, resourceId);
+		Segment segment = segment(key);
+		synchronized (segment) {
+			segment.entries.remove(key);
+			segment.loading.cancel(key);
+		}
+	}
+
+	public void invalidateAll() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.entries.clear();
+				segment.loading.cancelAll();
+			}
+		}
+	}
+
+	private Segment segment(Key key) {
+		int h = key.hashCode() * 0x9e3779b9;
+		return segments[(h ^ h >>> 16) & (segments.length - 1)];
+	}
+
+	/**
+	 * one stripe of the cache, guarded by its own monitor
+	 */
+	private final class Segment {
+		private final int capacity;
+		// in access order
+		private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+		// an invalidation while loading drops the load, which may have read the resource before the write
+		private final SingleFlight<Key> loading = new SingleFlight<>();
+		private final FrequencySketch sketch;
+
+		private Segment(int capacity) {
+			this.capacity = capacity;
+			this.sketch = new FrequencySketch(capacity);
+		}
+
+		private void put(Key key, String value) {
+			if (entries.size() >= capacity && !entries.containsKey(key)) {
+				Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+				Map.Entry<Key, Entry> victim = eldest.next();
+				if (victim.getValue().expiresAt - System.currentTimeMillis() > 0
+						&& sketch.frequency(key) <= sketch.frequency(victim.getKey())) {
+					return;
+				}
+				eldest.remove();
+				evictions.increment();
+			}
+			entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis));
+		}
+	}
+
+	private static final class Key {
+		private final String registryType;
+		private final String registryId;
+		private final String resourceId;
+
+		private Key(String registryType, String registryId, String resourceId) {
+			this.registryType = registryType;
+			this.registryId = registryId;
+			this.resourceId = resourceId;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Key)) return false;
+			Key key = (Key) o;
+			return Objects.equals(registryType, key.registryType) && Objects.equals(registryId, key.registryId)
+					&& Objects.equals(resourceId, key.resourceId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(registryType, registryId, resourceId);
+		}
+	}
+
+	private static final class Entry {
+		private final String value;
+		private final long expiresAt;
+
+		private Entry(String value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * a count-min sketch of 4 bit counters estimating how often each key has been asked for recently; all counters
+	 * are halved once the number of increments reaches ten times the width, so old popularity fades
+	 */
+	static final class FrequencySketch {
+		private static final int[] SEEDS = {0x97cb3127, 0x5f4a7c15, 0x3b9ac9ff, 0x7feb352d};
+		private final byte[][] counters;
+		private final int mask;
+		private final int sampleSize;
+		private int additions;
+
+		FrequencySketch(int maximumSize) {
+			int width = Integer.highestOneBit(Math.max(16, Math.min(maximumSize, 1 << 24)) - 1) << 1;
+			this.counters = new byte[SEEDS.length][width];
+			this.mask = width - 1;
+			this.sampleSize = width * 10;
+		}
+
+		void increment(Object key) {
+			int hash = key.hashCode();
+			for (int i = 0; i < SEEDS.length; i++) {
+				int index = index(hash, i);
+				if (counters[i][index] < 15) {
+					counters[i][index]++;
+				}
+			}
+			if (++additions >= sampleSize) {
+				for (byte[] row : counters) {
+					for (int i = 0; i < row.length; i++) {
+						row[i] >>= 1;
+					}
+				}
+				additions /= 2;
+			}
+		}
+
+		int frequency(Object key) {
+			int hash = key.hashCode(), frequency = 15;
+			for (int i = 0; i < SEEDS.length; i++) {
+				frequency = Math.min(frequency, counters[i][index(hash, i)]);
+			}
+			return frequency;
+		}
+
+		private int index(int hash, int row) {
+			int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+			return (h ^ h >>> 16) & mask;
+		}
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.hyperledger.composer.annotation.*;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Immutable serialization metadata of a class, computed once per class and shared by all threads.
+ */
+final class ResourceDescriptor {
+	private static final List<Class<? extends Annotation>> MODEL_ANNOTATIONS = Arrays.asList(Asset.class,
+			Participant.class, Transaction.class, Concept.class, Event.class);
+
+	private static volatile AccessorFactory accessorFactory = new CodecAccessorFactory(new MethodHandleAccessorFactory());
+	private static volatile ClassValue<ResourceDescriptor> descriptors = newDescriptors(accessorFactory);
+
+	private final Class<?> type;
+	private final Class<? extends Annotation> modelAnnotation;
+	private final boolean alwaysEmbedded;
+	private final List<FieldDescriptor> fields;
+	private final Map<String, FieldDescriptor> fieldsByName;
+	private final FieldDescriptor idField;
+	private final Supplier<Object> constructor;
+
+	private ResourceDescriptor(Class<?> type, AccessorFactory accessorFactory) {
+		this.type = type;
+
+		Class<? extends Annotation> annotation = null;
+		for (Class<? extends Annotation> modelAnnotation : MODEL_ANNOTATIONS) {
+			if (type.isAnnotationPresent(modelAnnotation)) {
+				annotation = modelAnnotation;
+				break;
+			}
+		}
+		this.modelAnnotation = annotation;
+		// concepts and events are always serialized inline, never as a relationship
+		this.alwaysEmbedded = Concept.class.equals(annotation) || Event.class.equals(annotation);
+
+		List<FieldDescriptor> fields = new ArrayList<>();
+		Map<String, FieldDescriptor> fieldsByName = new HashMap<>();
+		FieldDescriptor idField = null;
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				DataField dataField = field.getAnnotation(DataField.class);
+				boolean primary = dataField != null && dataField.primary();
+				if (dataField == null && !field.isAnnotationPresent(Pointer.class)) {
+					continue;
+				}
+				field.setAccessible(true);
+				FieldDescriptor descriptor = new FieldDescriptor(fields.size(), field, accessorFactory.field(field),
+						dataField != null && dataField.embedded(), dataField == null);
+				fields.add(descriptor);
+				fieldsByName.putIfAbsent(descriptor.name(), descriptor);
+				if (primary && idField == null) {
+					idField = descriptor;
+				}
+			}
+		}
+		this.fields = Collections.unmodifiableList(fields);
+		this.fieldsByName = fieldsByName;
+		this.idField = idField;
+
+		Supplier<Object> constructor;
+		try {
+			Constructor<?> declared = type.getDeclaredConstructor();
+			declared.setAccessible(true);
+			constructor = accessorFactory.constructor(declared);
+		} catch (Exception e) {
+			constructor = null;
+		}
+		this.constructor = Modifier.isAbstract(type.getModifiers()) ? null : constructor;
+	}
+
+	private static ClassValue<ResourceDescriptor> newDescriptors(AccessorFactory accessorFactory) {
+		return new ClassValue<ResourceDescriptor>() {
+			@Override
+			protected ResourceDescriptor computeValue(Class<?> type) {
+				return new ResourceDescriptor(type, accessorFactory);
+			}
+		};
+	}
+
+	static ResourceDescriptor of(Class<?> type) {
+		return descriptors.get(type);
+	}
+
+	/**
+	 * Replace the accessor factory, dropping every descriptor built so far
+	 */
+	static void accessorFactory(AccessorFactory accessorFactory) {
+		ResourceDescriptor.accessorFactory = accessorFactory;
+		descriptors = newDescriptors(accessorFactory);
+	}
+
+	/**
+	 * Drop every descriptor built so far, e.g. after a codec has been registered
+	 */
+	static void reset() {
+		descriptors = newDescriptors(accessorFactory);
+	}
+
+	Class<?> type() {
+		return type;
+	}
+
+	boolean isModel() {
+		return modelAnnotation != null;
+	}
+
+	Class<? extends Annotation> modelAnnotation() {
+		return modelAnnotation;
+	}
+
+	boolean alwaysEmbedded() {
+		return alwaysEmbedded;
+	}
+
+	List<FieldDescriptor> fields() {
+		return fields;
+	}
+
+	/**
+	 * @return the field serialized under the given name, or null if there is none
+	 */
+	FieldDescriptor field(String name) {
+		return fieldsByName.get(name);
+	}
+
+	FieldDescriptor idField() {
+		return idField;
+	}
+
+	boolean instantiable() {
+		return constructor != null;
+	}
+
+	Object newInstance() {
+		if (constructor == null) {
+			throw new IllegalArgumentException("unable to create an instance for " + type.getName());
+		}
+		return constructor.get();
+	}
+
+	static final class FieldDescriptor {
+		private final int index;
+		private final FieldAccessor accessor;
+		private final String name;
+		private final String fullName;
+		private final Class<?> type;
+		private final boolean embedded;
+		private final boolean pointer;
+
+		private FieldDescriptor(int index, Field field, FieldAccessor accessor, boolean embedded, boolean pointer) {
+			this.index = index;
+			this.accessor = accessor;
+			this.name = field.getName();
+			this.fullName = field.getDeclaringClass().getName() + "." + name;
+			this.type = field.getType();
+			this.embedded = embedded;
+			this.pointer = pointer;
+		}
+
+		/**
+		 * @return the position of this field in {@link ResourceDescriptor#fields()}
+		 */
+		int index() {
+			return index;
+		}
+
+		String name() {
+			return name;
+		}
+
+		String fullName() {
+			return fullName;
+		}
+
+		Class<?> type() {
+			return type;
+		}
+
+		boolean embedded() {
+			return embedded;
+		}
+
+		boolean pointer() {
+			return pointer;
+		}
+
+		FieldAccessor accessor() {
+			return accessor;
+		}
+
+		Object get(Object target) {
+			return accessor.get(target);
+		}
+
+		void set(Object target, Object value) {
+			accessor.set(target, value);
+		}
+	}
+}
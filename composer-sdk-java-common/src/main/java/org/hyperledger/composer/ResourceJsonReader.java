@@ -0,0 +1,483 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.*;
+
+/**
+ * Binds the tokens of a {@link JsonParser} straight into resources, without reading the whole payload into a tree.
+ * <p>
+ * The concrete class of an object is named by its {@code $class} property, which may come after the other
+ * properties. Until it is seen, properties are bound into an instance of the declared class when that is a
+ * concrete model class; properties the declared class does not know are buffered as tokens and bound once the
+ * concrete class is known.
+ * <p>
+ * A projection limits the properties bound into the top-level resources; the subtrees of all other properties are
+ * skipped without being read.
+ */
+final class ResourceJsonReader {
+	private final JsonParser parser;
+	private final ObjectReader reader;
+	private final Set<String> projection;
+
+	ResourceJsonReader(JsonParser parser, ObjectReader reader) {
+		this(parser, reader, null);
+	}
+
+	/**
+	 * @param projection the names of the fields to bind into top-level resources, or null to bind all of them
+	 */
+	ResourceJsonReader(JsonParser parser, ObjectReader reader, Set<String> projection) {
+		this.parser = parser;
+		this.reader = reader;
+		this.projection = projection;
+	}
+
+	/**
+	 * Read the value starting at the current token, leaving the parser on the last token of that value
+	 */
+	Object read(Class<?> resourceClass) throws IOException {
+		return read(resourceClass, projection);
+	}
+
+	private Object read(Class<?> resourceClass, Set<String> fields) throws IOException {
+		JsonToken token = parser.getCurrentToken();
+		if (token == null || token == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		if (ResourceSerializer.isPrimitiveType(resourceClass)) {
+			if (token == JsonToken.START_ARRAY && PrimitiveArrayCodec.handles(resourceClass)) {
+				return PrimitiveArrayCodec.read(parser, resourceClass);
+			}
+			return ResourceSerializer.primitiveReader(resourceClass).readValue(parser);
+		}
+		if (Collection.class.isAssignableFrom(resourceClass)) {
+			return readCollection(resourceClass, fields);
+		}
+		if (resourceClass.isArray()) {
+			return readArray(resourceClass, fields);
+		}
+		if (Map.class.equals(resourceClass)) {
+			return readMap();
+		}
+		if (token == JsonToken.VALUE_STRING) {
+			Object result = ResourceSerializer.parseResourceNode(parser.getText());
+			if (result != null) {
+				return result;
+			}
+		}
+		if (token == JsonToken.START_OBJECT) {
+			return readObject(resourceClass, false, fields);
+		}
+
+		// any other value bound to a model class gives an instance without data
+		parser.skipChildren();
+		ResourceDescriptor descriptor = ResourceDescriptor.of(resourceClass);
+		Object result = descriptor.newInstance();
+		clearMissingFields(result, descriptor, new boolean[descriptor.fields().size()]);
+		return result;
+	}
+
+	/**
+	 * Read a JSON array of resources into a list, element by element
+	 */
+	<T> List<T> readList(Class<T> resourceClass) throws IOException {
+		if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+			throw new IllegalArgumentException("resourceClass " + Array.newInstance(resourceClass, 0).getClass()
+					+ " is array-typed but json '" + currentValue() + "' is not");
+		}
+		List<T> result = new ArrayList<>();
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			@SuppressWarnings("unchecked")
+			T element = (T) read(resourceClass);
+			result.add(element);
+		}
+		return result;
+	}
+
+	/**
+	 * Iterate a JSON array of resources, reading each element only when it is asked for
+	 */
+	<T> CloseableIterator<T> iterate(Class<T> resourceClass) throws IOException {
+		if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+			throw new IllegalArgumentException("resourceClass " + Array.newInstance(resourceClass, 0).getClass()
+					+ " is array-typed but json '" + currentValue() + "' is not");
+		}
+		return new CloseableIterator<T>() {
+			private JsonToken next;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					try {
+						next = parser.isClosed() ? JsonToken.END_ARRAY : parser.nextToken();
+					} catch (IOException e) {
+						throw new IllegalArgumentException("unable to parse json element", e);
+					}
+				}
+				return next != JsonToken.END_ARRAY && next != null;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				next = null;
+				try {
+					return (T) read(resourceClass);
+				} catch (IOException e) {
+					throw new IllegalArgumentException("unable to parse json element", e);
+				}
+			}
+
+			@Override
+			public void close() {
+				try {
+					parser.close();
+				} catch (IOException e) {
+					throw new IllegalArgumentException("unable to close json parser", e);
+				}
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private Collection readCollection(Class<?> resourceClass, Set<String> fields) throws IOException {
+		if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+			throw new IllegalArgumentException(resourceClass + " is Collection but json '" + currentValue() + "' is not array-typed");
+		}
+		Collection result;
+		try {
+			result = (Collection) resourceClass.newInstance();
+		} catch (Exception e) {
+			if (Set.class.equals(resourceClass)) {
+				result = new HashSet();
+			} else if (List.class.equals(resourceClass)) {
+				result = new ArrayList();
+			} else {
+				throw new IllegalArgumentException(
+						"resourceClass must be one of specify Set, List, or concrete implementation for Collection, got: " + resourceClass);
+			}
+		}
+		JsonToken token;
+		while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+			switch (token) {
+				case VALUE_NUMBER_INT:
+				case VALUE_NUMBER_FLOAT:
+					result.add(parser.getNumberValue());
+					break;
+				case VALUE_STRING:
+					String text = parser.getText();
+					Object resource = ResourceSerializer.parseResourceNode(text);
+					result.add(resource == null ? text : resource);
+					break;
+				case VALUE_TRUE:
+				case VALUE_FALSE:
+					result.add(parser.getBooleanValue());
+					break;
+				case START_OBJECT:
+					result.add(readObject(Object.class, true, fields));
+					break;
+				default:
+					// nested arrays and nulls carry no resource
+					parser.skipChildren();
+			}
+		}
+		return result;
+	}
+
+	private Object readArray(Class<?> resourceClass, Set<String> fields) throws IOException {
+		if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+			throw new IllegalArgumentException("resourceClass " + resourceClass + " is array-typed but json '" + currentValue() + "' is not");
+		}
+		Class<?> componentType = resourceClass.getComponentType();
+		List<Object> elements = new ArrayList<>();
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			elements.add(read(componentType, fields));
+		}
+		Object result = Array.newInstance(componentType, elements.size());
+		for (int i = 0; i < elements.size(); i++) {
+			Array.set(result, i, elements.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * maps are transferred as an array of {@link org.hyperledger.composer.model.Entry} concepts
+	 */
+	private Map<String, String> readMap() throws IOException {
+		if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+			throw new IllegalArgumentException("error parsing type Map<String, String>: expect jsonArray, got " + currentValue());
+		}
+		Map<String, String> result = new HashMap<>();
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+				throw new IllegalArgumentException("error parsing type Map<String, String>: expect jsonObject, got " + currentValue());
+			}
+			String key = null, value = null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				parser.nextToken();
+				if ("key".equals(name)) {
+					key = scalarText();
+				} else if ("value".equals(name)) {
+					value = scalarText();
+				} else {
+					parser.skipChildren();
+				}
+			}
+			if (key == null || value == null) {
+				throw new IllegalArgumentException("error parsing type Map<String, String>: entry without key or value");
+			}
+			result.put(key, value);
+		}
+		return result;
+	}
+
+	private String scalarText() throws IOException {
+		if (parser.getCurrentToken().isScalarValue()) {
+			return parser.getText();
+		}
+		parser.skipChildren();
+		return "";
+	}
+
+	/**
+	 * @param strict whether the object must name a known class in its $class property
+	 * @param fields the names of the properties to bind, or null to bind all of them
+	 */
+	private Object readObject(Class<?> declaredClass, boolean strict, Set<String> fields) throws IOException {
+		ResourceDescriptor descriptor = ResourceDescriptor.of(declaredClass);
+		Object result = null;
+		boolean[] seen = null;
+		if (descriptor.isModel() && descriptor.instantiable()) {
+			result = descriptor.newInstance();
+			seen = new boolean[descriptor.fields().size()];
+		}
+
+		Map<String, TokenBuffer> pending = null;
+		String className = null;
+		boolean resolved = false;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			parser.nextToken();
+			if (className == null && "$class".equals(name)) {
+				className = scalarText();
+				Class<?> cls = ResourceSerializer.classForName(className);
+				if (cls == null && strict) {
+					pending = buffer(pending, name);
+					continue;
+				}
+				resolved = true;
+				if (cls != null && declaredClass.isAssignableFrom(cls) && !cls.equals(descriptor.type())) {
+					ResourceDescriptor actual = ResourceDescriptor.of(cls);
+					Object actualResult = actual.newInstance();
+					boolean[] actualSeen = new boolean[actual.fields().size()];
+					if (result != null) {
+						copySeenFields(result, descriptor, seen, actualResult, actual, actualSeen);
+					}
+					descriptor = actual;
+					result = actualResult;
+					seen = actualSeen;
+				} else if (result == null) {
+					result = descriptor.newInstance();
+					seen = new boolean[descriptor.fields().size()];
+				}
+				bindPending(pending, result, descriptor, seen);
+				pending = null;
+				continue;
+			}
+			if (fields != null && !fields.contains(name)) {
+				parser.skipChildren();
+				continue;
+			}
+
+			ResourceDescriptor.FieldDescriptor field = result == null ? null : descriptor.field(name);
+			if (field != null) {
+				bindField(result, field);
+				seen[field.index()] = true;
+			} else if (!resolved) {
+				pending = buffer(pending, name);
+			} else {
+				parser.skipChildren();
+			}
+		}
+
+		if (strict && !resolved) {
+			ObjectNode node = JsonNodeFactory.instance.objectNode();
+			if (pending != null) {
+				for (Map.Entry<String, TokenBuffer> entry : pending.entrySet()) {
+					JsonParser buffered = entry.getValue().asParser(reader);
+					buffered.nextToken();
+					node.set(entry.getKey(), reader.readTree(buffered));
+				}
+			}
+			if (className == null) {
+				throw new IllegalArgumentException("no $class found in node: " + node.toString());
+			}
+			throw new IllegalArgumentException("no such class:" + new TextNode(className).toString() + " for " + node.toString());
+		}
+
+		if (result == null) {
+			result = descriptor.newInstance();
+			seen = new boolean[descriptor.fields().size()];
+		}
+		bindPending(pending, result, descriptor, seen);
+		clearMissingFields(result, descriptor, seen);
+		return result;
+	}
+
+	private Map<String, TokenBuffer> buffer(Map<String, TokenBuffer> pending, String name) throws IOException {
+		if (pending == null) {
+			pending = new LinkedHashMap<>();
+		}
+		TokenBuffer buffer = new TokenBuffer(parser);
+		buffer.copyCurrentStructure(parser);
+		pending.put(name, buffer);
+		return pending;
+	}
+
+	private void bindPending(Map<String, TokenBuffer> pending, Object result, ResourceDescriptor descriptor,
+	                         boolean[] seen) throws IOException {
+		if (pending == null) {
+			return;
+		}
+		for (Map.Entry<String, TokenBuffer> entry : pending.entrySet()) {
+			ResourceDescriptor.FieldDescriptor field = descriptor.field(entry.getKey());
+			if (field == null) {
+				continue;
+			}
+			JsonParser buffered = entry.getValue().asParser(reader);
+			buffered.nextToken();
+			new ResourceJsonReader(buffered, reader).bindField(result, field);
+			seen[field.index()] = true;
+		}
+	}
+
+	private static void copySeenFields(Object from, ResourceDescriptor fromDescriptor, boolean[] fromSeen,
+	                                   Object to, ResourceDescriptor toDescriptor, boolean[] toSeen) {
+		for (ResourceDescriptor.FieldDescriptor field : fromDescriptor.fields()) {
+			if (!fromSeen[field.index()]) {
+				continue;
+			}
+			ResourceDescriptor.FieldDescriptor target = toDescriptor.field(field.name());
+			if (target != null) {
+				target.set(to, field.get(from));
+				toSeen[target.index()] = true;
+			}
+		}
+	}
+
+	/**
+	 * absent properties leave reference fields null and primitive fields at their default value
+	 */
+	private static void clearMissingFields(Object result, ResourceDescriptor descriptor, boolean[] seen) {
+		for (ResourceDescriptor.FieldDescriptor field : descriptor.fields()) {
+			if (!seen[field.index()] && !field.type().isPrimitive()) {
+				field.set(result, null);
+			}
+		}
+	}
+
+	private void bindField(Object result, ResourceDescriptor.FieldDescriptor field) throws IOException {
+		Class<?> type = field.type();
+		if (!type.isPrimitive() || !bindPrimitive(result, field)) {
+			field.set(result, read(type, null));
+		}
+	}
+
+	private boolean bindPrimitive(Object result, ResourceDescriptor.FieldDescriptor field) throws IOException {
+		Class<?> type = field.type();
+		if (type != long.class && type != int.class && type != double.class && type != boolean.class) {
+			return false;
+		}
+		JsonToken token = parser.getCurrentToken();
+		if (token == JsonToken.VALUE_NULL) {
+			throw new IllegalArgumentException("null for primitive field " + field.fullName());
+		}
+		FieldAccessor accessor = field.accessor();
+		if (type == long.class) {
+			accessor.setLong(result, readLong(parser));
+		} else if (type == int.class) {
+			accessor.setInt(result, readInt(parser));
+		} else if (type == double.class) {
+			accessor.setDouble(result, readDouble(parser));
+		} else {
+			accessor.setBoolean(result, readBoolean(parser));
+		}
+		return true;
+	}
+
+	/**
+	 * Read the current non-null token as a long. Numbers are read directly; anything else goes through the
+	 * databind reader, which accepts numeric text and rejects every other value.
+	 */
+	static long readLong(JsonParser parser) throws IOException {
+		switch (parser.getCurrentToken()) {
+			case VALUE_NUMBER_INT:
+				return parser.getLongValue();
+			case VALUE_NUMBER_FLOAT:
+				double value = parser.getDoubleValue();
+				if (value != Math.rint(value) || value < Long.MIN_VALUE || value >= 0x1p63) {
+					throw new IllegalArgumentException("expect an integral value, got " + parser.getText());
+				}
+				return (long) value;
+			default:
+				return (Long) ResourceSerializer.primitiveReader(Long.class).readValue(parser);
+		}
+	}
+
+	static int readInt(JsonParser parser) throws IOException {
+		switch (parser.getCurrentToken()) {
+			case VALUE_NUMBER_INT:
+				return parser.getIntValue();
+			case VALUE_NUMBER_FLOAT:
+				double value = parser.getDoubleValue();
+				if (value != Math.rint(value) || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+					throw new IllegalArgumentException("expect an integral value, got " + parser.getText());
+				}
+				return (int) value;
+			default:
+				return (Integer) ResourceSerializer.primitiveReader(Integer.class).readValue(parser);
+		}
+	}
+
+	static double readDouble(JsonParser parser) throws IOException {
+		JsonToken token = parser.getCurrentToken();
+		if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+			return parser.getDoubleValue();
+		}
+		return (Double) ResourceSerializer.primitiveReader(Double.class).readValue(parser);
+	}
+
+	static boolean readBoolean(JsonParser parser) throws IOException {
+		JsonToken token = parser.getCurrentToken();
+		if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+			return token == JsonToken.VALUE_TRUE;
+		}
+		return (Boolean) ResourceSerializer.primitiveReader(Boolean.class).readValue(parser);
+	}
+
+	/**
+	 * consume the current value for an error message; only used on failure paths
+	 */
+	private String currentValue() throws IOException {
+		return String.valueOf(reader.readTree(parser));
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.hyperledger.composer.model.Entry;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Writes resources straight into a {@link JsonGenerator}, producing the same JSON as
+ * {@link ResourceSerializer#toJSON(Object)} without building the intermediate tree.
+ */
+final class ResourceJsonWriter {
+	/**
+	 * the length of a map entry with an empty key and value
+	 */
+	private static final int ENTRY_CHARS = 33 + Entry.class.getName().length();
+	/**
+	 * the length of -2.2250738585072014E-308
+	 */
+	private static final int MAX_DOUBLE_CHARS = 24;
+
+	private ResourceJsonWriter() {
+	}
+
+	static void write(Object resource, JsonGenerator generator) throws IOException {
+		write(resource, true, generator);
+	}
+
+	private static void write(Object resource, boolean forceEmbedded, JsonGenerator generator)
+			throws IOException {
+		if (resource == null) {
+			generator.writeNull();
+			return;
+		}
+		Class<?> resourceClass = resource.getClass();
+		if (ResourceSerializer.isPrimitiveType(resourceClass)) {
+			writePrimitive(resource, generator);
+			return;
+		}
+
+		if (resource instanceof Collection) {
+			generator.writeStartArray();
+			for (Object o : (Collection) resource) {
+				write(o, forceEmbedded, generator);
+			}
+			generator.writeEndArray();
+			return;
+		}
+
+		if (resourceClass.isArray()) {
+			generator.writeStartArray();
+			int length = Array.getLength(resource);
+			for (int i = 0; i < length; i++) {
+				write(Array.get(resource, i), forceEmbedded, generator);
+			}
+			generator.writeEndArray();
+			return;
+		}
+
+		if (resource instanceof Map) {
+			writeMap((Map) resource, generator);
+			return;
+		}
+
+		ResourceDescriptor descriptor = ResourceDescriptor.of(resourceClass);
+		if (descriptor.isModel()) {
+			if (forceEmbedded || descriptor.alwaysEmbedded()) {
+				generator.writeStartObject();
+				for (ResourceDescriptor.FieldDescriptor field : descriptor.fields()) {
+					generator.writeFieldName(field.name());
+					if (!field.type().isPrimitive() || !writePrimitiveField(field, resource, generator)) {
+						write(field.get(resource), field.embedded(), generator);
+					}
+				}
+				generator.writeStringField("$class", resourceClass.getName());
+				generator.writeEndObject();
+			} else {
+				generator.writeString(ResourceSerializer.getResourceId(resource));
+			}
+			return;
+		}
+
+		throw new IllegalArgumentException(
+				"field is not a primitive or resource type:" + resource.getClass().getName());
+	}
+
+	private static void writePrimitive(Object value, JsonGenerator generator) throws IOException {
+		if (value instanceof String) {
+			generator.writeString((String) value);
+		} else if (value instanceof Long) {
+			generator.writeNumber((Long) value);
+		} else if (value instanceof Integer) {
+			generator.writeNumber((Integer) value);
+		} else if (value instanceof Double) {
+			generator.writeNumber((Double) value);
+		} else if (value instanceof Boolean) {
+			generator.writeBoolean((Boolean) value);
+		} else if (value instanceof Date) {
+			generator.writeNumber(((Date) value).getTime());
+		} else {
+			PrimitiveArrayCodec.write(value, generator);
+		}
+	}
+
+	private static boolean writePrimitiveField(ResourceDescriptor.FieldDescriptor field, Object resource,
+	                                           JsonGenerator generator) throws IOException {
+		Class<?> type = field.type();
+		FieldAccessor accessor = field.accessor();
+		if (type == long.class) {
+			generator.writeNumber(accessor.getLong(resource));
+		} else if (type == int.class) {
+			generator.writeNumber(accessor.getInt(resource));
+		} else if (type == double.class) {
+			generator.writeNumber(accessor.getDouble(resource));
+		} else if (type == boolean.class) {
+			generator.writeBoolean(accessor.getBoolean(resource));
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Estimate the length of the JSON written for a resource without writing it. Strings are counted without
+	 * their escapes and doubles at their widest, every other value is counted exactly.
+	 */
+	static int estimateChars(Object resource) {
+		return estimate(resource, true);
+	}
+
+	private static int estimate(Object resource, boolean forceEmbedded) {
+		if (resource == null) {
+			return 4;
+		}
+		Class<?> resourceClass = resource.getClass();
+		if (ResourceSerializer.isPrimitiveType(resourceClass)) {
+			return estimatePrimitive(resource);
+		}
+
+		// an opening bracket, then each element followed by a comma or the closing bracket
+		if (resource instanceof Collection) {
+			int chars = 1;
+			for (Object o : (Collection) resource) {
+				chars += estimate(o, forceEmbedded) + 1;
+			}
+			return Math.max(chars, 2);
+		}
+
+		if (resourceClass.isArray()) {
+			int chars = 1, length = Array.getLength(resource);
+			for (int i = 0; i < length; i++) {
+				chars += estimate(Array.get(resource, i), forceEmbedded) + 1;
+			}
+			return Math.max(chars, 2);
+		}
+
+		if (resource instanceof Map) {
+			int chars = 1;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) resource).entrySet()) {
+				chars += ENTRY_CHARS + entry.getKey().toString().length() + String.valueOf(entry.getValue()).length() + 1;
+			}
+			return Math.max(chars, 2);
+		}
+
+		ResourceDescriptor descriptor = ResourceDescriptor.of(resourceClass);
+		if (descriptor.isModel()) {
+			if (forceEmbedded || descriptor.alwaysEmbedded()) {
+				// "name":value, for each field, then "$class":"name"}
+				int chars = 1;
+				for (ResourceDescriptor.FieldDescriptor field : descriptor.fields()) {
+					chars += field.name().length() + 4;
+					chars += field.type().isPrimitive() ? estimatePrimitiveField(field, resource)
+							: estimate(field.get(resource), field.embedded());
+				}
+				return chars + resourceClass.getName().length() + 12;
+			}
+			return ResourceSerializer.getResourceId(resource).length() + 2;
+		}
+
+		throw new IllegalArgumentException(
+				"field is not a primitive or resource type:" + resource.getClass().getName());
+	}
+
+	private static int estimatePrimitive(Object value) {
+		if (value instanceof String) {
+			return ((String) value).length() + 2;
+		} else if (value instanceof Long || value instanceof Integer) {
+			return digits(((Number) value).longValue());
+		} else if (value instanceof Double) {
+			return MAX_DOUBLE_CHARS;
+		} else if (value instanceof Boolean) {
+			return (Boolean) value ? 4 : 5;
+		} else if (value instanceof Date) {
+			return digits(((Date) value).getTime());
+		}
+		int chars = 1;
+		if (value instanceof long[]) {
+			for (long element : (long[]) value) {
+				chars += digits(element) + 1;
+			}
+		} else if (value instanceof int[]) {
+			for (int element : (int[]) value) {
+				chars += digits(element) + 1;
+			}
+		} else if (value instanceof double[]) {
+			chars += ((double[]) value).length * (MAX_DOUBLE_CHARS + 1);
+		} else if (value instanceof boolean[]) {
+			for (boolean element : (boolean[]) value) {
+				chars += (element ? 4 : 5) + 1;
+			}
+		} else {
+			for (Object element : (Object[]) value) {
+				chars += (element == null ? 4 : estimatePrimitive(element)) + 1;
+			}
+		}
+		return Math.max(chars, 2);
+	}
+
+	private static int estimatePrimitiveField(ResourceDescriptor.FieldDescriptor field, Object resource) {
+		Class<?> type = field.type();
+		FieldAccessor accessor = field.accessor();
+		if (type == long.class) {
+			return digits(accessor.getLong(resource));
+		} else if (type == int.class) {
+			return digits(accessor.getInt(resource));
+		} else if (type == boolean.class) {
+			return accessor.getBoolean(resource) ? 4 : 5;
+		}
+		return MAX_DOUBLE_CHARS;
+	}
+
+	private static int digits(long value) {
+		int digits = value < 0 ? 2 : 1;
+		for (; value <= -10 || value >= 10; value /= 10) {
+			digits++;
+		}
+		return digits;
+	}
+
+	/**
+	 * maps are written as an array of {@link Entry} concepts
+	 */
+	private static void writeMap(Map<?, ?> resource, JsonGenerator generator) throws IOException {
+		generator.writeStartArray();
+		for (Map.Entry<?, ?> entry : resource.entrySet()) {
+			if (!(entry.getValue() instanceof String)) {
+				throw new IllegalArgumentException(String.format("only string-typed value in map is supported, got type '%s' for key %s",
+						entry.getValue().getClass().getName(), entry.getKey()));
+			}
+			generator.writeStartObject();
+			generator.writeStringField("key", entry.getKey().toString());
+			generator.writeStringField("value", entry.getValue().toString());
+			generator.writeStringField("$class", Entry.class.getName());
+			generator.writeEndObject();
+		}
+		generator.writeEndArray();
+	}
+}
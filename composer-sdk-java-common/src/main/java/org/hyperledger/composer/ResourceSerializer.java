@@ -7,36 +7,50 @@
 package org.hyperledger.composer;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.io.SegmentedStringWriter;
+import com.fasterxml.jackson.core.util.BufferRecycler;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.TextNode;
-import org.hyperledger.composer.annotation.*;
+import org.hyperledger.composer.annotation.ResourceCodec;
 import org.hyperledger.composer.model.Entry;
 
 import java.io.IOException;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class ResourceSerializer {
-	private static final List<Class<? extends Annotation>> MODEL_ANNOTATIONS = Arrays.asList(Asset.class,
-			Participant.class, Transaction.class, Concept.class, Event.class);
 	private static final Set<Class> PRIMITIVE_TYPE = new HashSet<>(Arrays.asList(String.class, String[].class,
 			long.class, Long.class, long[].class, Long[].class, int.class, Integer.class, int[].class, Integer[].class,
 			double.class, Double.class, double[].class, Double[].class, Date.class, Date[].class, boolean.class,
 			Boolean.class, boolean[].class, Boolean[].class));
-	private static final Pattern RESOURCE_PATTERN = Pattern.compile("resource:([^#]+)#(.+)");
+	private static final String RESOURCE_PREFIX = "resource:";
+
+	/**
+	 * configured once and never reconfigured afterwards, which makes it safe to share between all threads; reads
+	 * go through the immutable readers derived from it
+	 */
+	private static final ObjectMapper MAPPER = newMapper();
+	private static final JsonFactory FACTORY = MAPPER.getFactory();
+	private static final ObjectReader READER = MAPPER.reader();
+	private static final Map<Class<?>, ObjectReader> PRIMITIVE_READERS = new HashMap<>();
+
+	static {
+		for (Class<?> type : PRIMITIVE_TYPE) {
+			PRIMITIVE_READERS.put(type, MAPPER.reader(type));
+		}
+	}
 
-	private static final ThreadLocal<ObjectMapper> mapper = ThreadLocal.withInitial(() -> {
+	private static ObjectMapper newMapper() {
 		ObjectMapper mapper = new ObjectMapper();
 		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 		mapper.setVisibilityChecker(mapper.getSerializationConfig().getDefaultVisibilityChecker()
@@ -44,14 +58,30 @@ public class ResourceSerializer {
 				.withSetterVisibility(JsonAutoDetect.Visibility.NONE)
 				.withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
 		return mapper;
-	});
+	}
 
 	public static JsonNode toJSON(Object resource) {
 		return toJSON(resource, true, "<root>");
 	}
 
 	public static String toJSONString(Object resource) {
-		return toJSON(resource).toString();
+		SegmentedStringWriter writer = new SegmentedStringWriter(new BufferRecycler());
+		try (JsonGenerator generator = FACTORY.createGenerator(writer)) {
+			ResourceJsonWriter.write(resource, generator);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("unable to serialize resource", e);
+		}
+		return writer.getAndClear();
+	}
+
+	/**
+	 * Stream the JSON form of a resource into the given generator, without building a JsonNode tree
+	 *
+	 * @param resource  the resource, collection or primitive value to write
+	 * @param generator the generator to write to; it is neither flushed nor closed
+	 */
+	public static void writeJSON(Object resource, JsonGenerator generator) throws IOException {
+		ResourceJsonWriter.write(resource, generator);
 	}
 
 	private static JsonNode toJSON(Object resource, boolean forceEmbedded, String parent) {
@@ -65,7 +95,7 @@ public class ResourceSerializer {
 
 		if (resource instanceof Collection) {
 			Collection resources = (Collection) resource;
-			ArrayNode arrayNode = mapper.get().createArrayNode();
+			ArrayNode arrayNode = JsonNodeFactory.instance.arrayNode();
 			for (Object o : resources) {
 				arrayNode.add(toJSON(o, forceEmbedded, parent));
 			}
@@ -73,7 +103,7 @@ public class ResourceSerializer {
 		}
 
 		if (resourceClass.isArray()) {
-			ArrayNode arrayNode = mapper.get().createArrayNode();
+			ArrayNode arrayNode = JsonNodeFactory.instance.arrayNode();
 			int length = Array.getLength(resource);
 			for (int i = 0; i < length; i++) {
 				arrayNode.add(toJSON(Array.get(resource, i), forceEmbedded, parent));
@@ -85,41 +115,18 @@ public class ResourceSerializer {
 			return fromMap((Map) resource, parent);
 		}
 
-		for (Class<? extends Annotation> modelAnnotation : MODEL_ANNOTATIONS) {
-			if (modelAnnotation.equals(Concept.class)) {
-				forceEmbedded = true;
-			}
-			Class<?> fieldClass = resource.getClass();
-			if (fieldClass.isAnnotationPresent(modelAnnotation)) {
-				if (forceEmbedded) {
-					ObjectNode result = mapper.get().createObjectNode();
-					for (Field field : declaredFields(resourceClass)) {
-						DataField dataField = field.getAnnotation(DataField.class);
-						boolean embedded = false;
-						if (dataField != null) {
-							embedded = dataField.embedded();
-						} else if (!field.isAnnotationPresent(Pointer.class)) {
-							continue;
-						}
-						String key = field.getName();
-						field.setAccessible(true);
-
-						String fieldFullName = field.getDeclaringClass().getName() + "." + key;
-						Object fieldValue;
-						try {
-							field.setAccessible(true);
-							fieldValue = field.get(resource);
-						} catch (IllegalAccessException e) {
-							throw new IllegalArgumentException("unable to access field:" + fieldFullName, e);
-						}
-						result.set(key, toJSON(fieldValue, embedded, fieldFullName));
+		ResourceDescriptor descriptor = ResourceDescriptor.of(resourceClass);
+		if (descriptor.isModel()) {
+			if (forceEmbedded || descriptor.alwaysEmbedded()) {
+				ObjectNode result = JsonNodeFactory.instance.objectNode();
+				for (ResourceDescriptor.FieldDescriptor field : descriptor.fields()) {
+					if (!field.type().isPrimitive() || !putPrimitive(result, field, resource)) {
+						result.set(field.name(), toJSON(field.get(resource), field.embedded(), field.fullName()));
 					}
-					return result.put("$class", resource.getClass().getName());
-
-				} else {
-					return new TextNode(getResourceId(resource));
 				}
+				return result.put("$class", resourceClass.getName());
 			}
+			return new TextNode(getResourceId(resource));
 		}
 
 		throw new IllegalArgumentException(
@@ -142,187 +149,165 @@ public class ResourceSerializer {
 		return toJSON(result, true, parent);
 	}
 
-	private static Map toMap(JsonNode jsonNode) {
-		HashMap<String, String> result = new HashMap<>();
-		if (jsonNode.isArray()) {
-			for (JsonNode n : jsonNode) {
-				String value = n.get("value").asText();
-				String key = n.get("key").asText();
-				result.put(key, value);
-			}
-			return result;
+	private static boolean putPrimitive(ObjectNode node, ResourceDescriptor.FieldDescriptor field, Object resource) {
+		Class<?> type = field.type();
+		FieldAccessor accessor = field.accessor();
+		if (type == long.class) {
+			node.put(field.name(), accessor.getLong(resource));
+		} else if (type == int.class) {
+			node.put(field.name(), accessor.getInt(resource));
+		} else if (type == double.class) {
+			node.put(field.name(), accessor.getDouble(resource));
+		} else if (type == boolean.class) {
+			node.put(field.name(), accessor.getBoolean(resource));
+		} else {
+			return false;
 		}
-		throw new IllegalArgumentException("error parsing type Map<String, String>: expect jsonArray, got " + jsonNode.toString());
+		return true;
 	}
 
 	public static boolean isPrimitiveType(Class<?> resourceClass) {
 		return PRIMITIVE_TYPE.contains(resourceClass);
 	}
 
+	/**
+	 * @return the shared reader of a type for which {@link #isPrimitiveType(Class)} holds
+	 */
+	static ObjectReader primitiveReader(Class<?> resourceClass) {
+		return PRIMITIVE_READERS.get(resourceClass);
+	}
+
 	public static String getResourceId(Object resource) {
 		Class fieldClass = resource.getClass();
 
-		Field idField = getAccessibleIdField(fieldClass);
-		String idFieldFullName = fieldClass.getName() + "." + idField.getName();
-		idField.setAccessible(true);
-		try {
-			Object id = idField.get(resource);
-			if (id == null) {
-				throw new IllegalArgumentException("null id field:" + idFieldFullName);
-			}
-			return "resource:" + fieldClass.getName() + '#' + id.toString();
-		} catch (IllegalAccessException e) {
-			throw new IllegalArgumentException("unable to access id field:" + idFieldFullName);
+		ResourceDescriptor.FieldDescriptor idField = ResourceDescriptor.of(fieldClass).idField();
+		if (idField == null) {
+			throw new IllegalArgumentException("no id field specified:" + fieldClass.getName());
+		}
+		Object id = idField.get(resource);
+		if (id == null) {
+			throw new IllegalArgumentException("null id field:" + fieldClass.getName() + "." + idField.name());
 		}
+		return RESOURCE_PREFIX + fieldClass.getName() + '#' + id.toString();
 	}
 
-	private static Field getAccessibleIdField(Class fieldClass) {
-		for (Field field : declaredFields(fieldClass)) {
-			DataField annotation = field.getAnnotation(DataField.class);
-			if (annotation != null && annotation.primary()) {
-				field.setAccessible(true);
-				return field;
-			}
+	/**
+	 * @return the id {@link #getResourceId(Object)} returns for the resource of the class with the given id
+	 */
+	public static String getResourceId(Class<?> resourceClass, String id) {
+		return RESOURCE_PREFIX + resourceClass.getName() + '#' + id;
+	}
+
+	/**
+	 * @param field a dotted path
+	 * @return whether the JSON form of the resources of the class may have the field
+	 */
+	public static boolean hasField(Class<?> resourceClass, String field) {
+		Class<?> type = resourceClass;
+		for (String name : field.split("\\.")) {
+			ResourceDescriptor.FieldDescriptor descriptor = ResourceDescriptor.of(type).field(name);
+			if (descriptor == null) return false;
+			type = descriptor.type();
 		}
-		throw new IllegalArgumentException("no id field specified:" + fieldClass.getName());
+		return true;
 	}
 
 	public static <T> T fromJSON(String resource, Class<T> resourceClass) {
+		return fromJSON(resource, resourceClass, null);
+	}
+
+	/**
+	 * Decode a resource, binding only the given fields of it
+	 *
+	 * @param fields the names of the top-level fields to bind, or null to bind all fields; the JSON of all other
+	 *               fields is skipped and the fields are left null, or at their default value if primitive
+	 */
+	public static <T> T fromJSON(String resource, Class<T> resourceClass, Set<String> fields) {
 		if (resource == null) {
 			throw new IllegalArgumentException("resource is null");
 		}
 		if (resourceClass == null) {
 			throw new IllegalArgumentException("resourceClass is null");
 		}
-		try {
-			return fromJSON(mapper.get().readTree(resource), resourceClass);
+		try (JsonParser parser = FACTORY.createParser(resource)) {
+			parser.nextToken();
+			return resourceClass.cast(new ResourceJsonReader(parser, READER, fields).read(resourceClass));
 		} catch (IOException e) {
 			throw new IllegalArgumentException("unable to parse json:" + resource, e);
 		}
 	}
 
-	private static <T> T fromJSON(JsonNode node, Class<T> resourceClass) throws JsonProcessingException {
-		if (node == null || node instanceof NullNode) {
+	/**
+	 * @return the class of the given name, or null if there is no such class
+	 */
+	static Class<?> classForName(String className) {
+		return TypeResolver.resolve(className);
+	}
+
+	/**
+	 * @return the resource a relationship string of the form {@code resource:ns.Type#id} refers to, or null if the
+	 * string is not a relationship
+	 */
+	static Object parseResourceNode(String resourceString) {
+		if (!resourceString.startsWith(RESOURCE_PREFIX)) {
 			return null;
 		}
-		if (PRIMITIVE_TYPE.contains(resourceClass)) {
-			return mapper.get().treeToValue(node, resourceClass);
+		int separator = resourceString.indexOf('#', RESOURCE_PREFIX.length());
+		if (separator <= RESOURCE_PREFIX.length() || separator == resourceString.length() - 1) {
+			return null;
 		}
-
-		if (Collection.class.isAssignableFrom(resourceClass)) {
-			if (!node.isArray()) {
-				throw new IllegalArgumentException(resourceClass + " is Collection but json '" + node + "' is not array-typed");
-			}
-			Collection result;
-			try {
-				result = (Collection) resourceClass.newInstance();
-			} catch (Exception e) {
-				if (Set.class.equals(resourceClass)) {
-					result = new HashSet();
-				} else if (List.class.equals(resourceClass)) {
-					result = new ArrayList();
-				} else {
-					throw new IllegalArgumentException(
-							"resourceClass must be one of specify Set, List, or concrete implementation for Collection, got: " + resourceClass);
-				}
-			}
-			for (JsonNode n : node) {
-				if (n.isNumber()) {
-					result.add(n.numberValue());
-				} else if (n.isTextual()) {
-					String text = n.asText();
-					Object resource = parseResourceNode(text);
-					if (resource == null) {
-						result.add(text);
-					} else {
-						result.add(resource);
-					}
-				} else if (n.isBoolean()) {
-					result.add(n.asBoolean());
-				} else if (n.isObject()) {
-					JsonNode className = n.get("$class");
-					if (className == null) {
-						throw new IllegalArgumentException("no $class found in node: " + n.toString());
-					}
-					try {
-						result.add(fromJSON(n, Class.forName(className.asText())));
-					} catch (ClassNotFoundException e) {
-						throw new IllegalArgumentException("no such class:" + className.toString() + " for " + n.toString());
-					}
-				}
-			}
-			return resourceClass.cast(result);
+		String className = resourceString.substring(RESOURCE_PREFIX.length(), separator);
+		Class<?> resourceClass = classForName(className);
+		if (resourceClass == null) {
+			throw new IllegalArgumentException("unable to parse '" + resourceString + "': no such class " + className);
 		}
+		return fromID(resourceString.substring(separator + 1), resourceClass);
+	}
 
-		if (resourceClass.isArray()) {
-			if (!node.isArray()) {
-				throw new IllegalArgumentException("resourceClass " + resourceClass + " is array-typed but json '" + node.toString() + "' is not");
-			}
-			int length = node.size();
-			Class<?> componentType = resourceClass.getComponentType();
-			Object result = Array.newInstance(componentType, length);
-			for (int i = 0; i < length; i++) {
-				Array.set(result, i, fromJSON(node.get(i), componentType));
-			}
-			return (T) result;
-		}
+	public static <T> List<T> arrayFromJSON(String resourceArray, Class<T> resourceClass) {
+		return arrayFromJSON(resourceArray, resourceClass, null);
+	}
 
-		if (Map.class.equals(resourceClass)) {
-			return (T) toMap(node);
+	/**
+	 * Decode a JSON array of resources, binding only the given fields of each
+	 *
+	 * @param fields the names of the fields to bind, or null to bind all fields
+	 * @see #fromJSON(String, Class, Set)
+	 */
+	public static <T> List<T> arrayFromJSON(String resourceArray, Class<T> resourceClass, Set<String> fields) {
+		if (resourceArray == null) {
+			throw new IllegalArgumentException("resource is null");
 		}
-
-		if (node.isTextual()) {
-			Object result = parseResourceNode(node.asText());
-			if (result != null) {
-				return (T) result;
-			}
+		if (resourceClass == null) {
+			throw new IllegalArgumentException("resourceClass is null");
 		}
 
-		try {
-			Class cls = Class.forName(node.get("$class").asText());
-			if(resourceClass.isAssignableFrom(cls)) {
-				resourceClass = cls;
-			}
-		} catch (Exception ignored) {
-		}
-		T result;
-		try {
-			Constructor<T> constructor = resourceClass.getDeclaredConstructor();
-			constructor.setAccessible(true);
-			result = constructor.newInstance();
-		} catch (Exception e) {
-			throw new IllegalArgumentException("unable to create an instance for " + resourceClass.getName(), e);
-		}
-		for (Field field : declaredFields(resourceClass)) {
-			if (!field.isAnnotationPresent(DataField.class) && !field.isAnnotationPresent(Pointer.class)) {
-				continue;
-			}
-			field.setAccessible(true);
-			try {
-				field.set(result, fromJSON(node.get(field.getName()), field.getType()));
-			} catch (IllegalAccessException e) {
-				throw new IllegalArgumentException("unable to set value for " + field.getDeclaringClass().getName() + "." + field.getName(), e);
-			}
+		try (JsonParser parser = FACTORY.createParser(resourceArray)) {
+			parser.nextToken();
+			return new ResourceJsonReader(parser, READER, fields).readList(resourceClass);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("unable to parse json:" + resourceArray, e);
 		}
-		return result;
 	}
 
-	static Object parseResourceNode(String resourceString) {
-		Matcher matcher = RESOURCE_PATTERN.matcher(resourceString);
-		if (matcher.find()) {
-			String className = matcher.group(1);
-			String id = matcher.group(2);
-			try {
-				return fromID(id, Class.forName(className));
-			} catch (ClassNotFoundException e) {
-				throw new IllegalArgumentException("unable to parse '" + resourceString + "': no such class " + className, e);
-			}
-		}
-		return null;
+	/**
+	 * Decode a JSON array of resources lazily, one element per call to {@link CloseableIterator#next()}
+	 *
+	 * @param resourceArray the JSON array
+	 * @param resourceClass the class of the elements
+	 * @return an iterator that should be closed once the caller is done with it
+	 */
+	public static <T> CloseableIterator<T> iterateFromJSON(String resourceArray, Class<T> resourceClass) {
+		return iterateFromJSON(resourceArray, resourceClass, null);
 	}
 
-	@SuppressWarnings("unchecked")
-	public static <T> List<T> arrayFromJSON(String resourceArray, Class<T> resourceClass) {
+	/**
+	 * Decode a JSON array of resources lazily, binding only the given fields of each
+	 *
+	 * @param fields the names of the fields to bind, or null to bind all fields
+	 * @see #fromJSON(String, Class, Set)
+	 */
+	public static <T> CloseableIterator<T> iterateFromJSON(String resourceArray, Class<T> resourceClass, Set<String> fields) {
 		if (resourceArray == null) {
 			throw new IllegalArgumentException("resource is null");
 		}
@@ -330,13 +315,24 @@ public class ResourceSerializer {
 			throw new IllegalArgumentException("resourceClass is null");
 		}
 
-		Object arrayObj = fromJSON(resourceArray, Array.newInstance(resourceClass, 0).getClass());
-		List<T> result = new LinkedList<>();
-		int length = Array.getLength(arrayObj);
-		for (int i = 0; i < length; i++) {
-			result.add((T) Array.get(arrayObj, i));
+		JsonParser parser = null;
+		try {
+			parser = FACTORY.createParser(resourceArray);
+			parser.nextToken();
+			return new ResourceJsonReader(parser, READER, fields).iterate(resourceClass);
+		} catch (IOException | RuntimeException e) {
+			if (parser != null) {
+				try {
+					parser.close();
+				} catch (IOException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+			}
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException) e;
+			}
+			throw new IllegalArgumentException("unable to parse json:" + resourceArray, e);
 		}
-		return result;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -348,44 +344,53 @@ public class ResourceSerializer {
 			throw new IllegalArgumentException("resourceClass is null");
 		}
 
-		try {
-			Object result = resourceClass.newInstance();
-			for (Field field : declaredFields(resourceClass)) {
-				DataField annotation = field.getAnnotation(DataField.class);
-				if (annotation != null && annotation.primary()) {
-					field.setAccessible(true);
-					field.set(result, id);
-					return (T) result;
-				}
-			}
+		ResourceDescriptor descriptor = ResourceDescriptor.of(resourceClass);
+		Object result = descriptor.newInstance();
+		ResourceDescriptor.FieldDescriptor idField = descriptor.idField();
+		if (idField == null) {
 			throw new IllegalArgumentException("No id field declared in " + resourceClass.getName());
-		} catch (InstantiationException e) {
-			throw new IllegalArgumentException("unable to create an instance for " + resourceClass.getName(), e);
-		} catch (IllegalAccessException e) {
-			throw new IllegalArgumentException(e);
 		}
+		idField.set(result, id);
+		return (T) result;
+	}
+
+	/**
+	 * Replace the way model fields are read and written and model instances are created
+	 *
+	 * @param accessorFactory the factory used for every model class inspected from now on
+	 */
+	public static void accessorFactory(AccessorFactory accessorFactory) {
+		if (accessorFactory == null) {
+			throw new IllegalArgumentException("accessorFactory is null");
+		}
+		ResourceDescriptor.accessorFactory(accessorFactory);
 	}
 
-	private static List<Field> declaredFields(Class c) {
-		List<Field> result = new LinkedList<>();
-		for (; c != Object.class; c = c.getSuperclass()) {
-			result.addAll(Arrays.asList(c.getDeclaredFields()));
+	/**
+	 * Register a codec for its model class, taking precedence over the codec generated at compile time
+	 *
+	 * @param codec the codec; only effective while the default accessor factory is in use
+	 */
+	public static void registerCodec(ResourceCodec<?> codec) {
+		if (codec == null) {
+			throw new IllegalArgumentException("codec is null");
 		}
-		return result;
+		CodecRegistry.register(codec);
+		ResourceDescriptor.reset();
 	}
 
 	public static JsonNode toJsonNode(String json) throws IOException {
-		return mapper.get().readTree(json);
+		return READER.readTree(json);
 	}
 
 	public static ObjectNode createObjectNode() {
-		return mapper.get().createObjectNode();
+		return JsonNodeFactory.instance.objectNode();
 	}
 
 	public static JsonNode mapperToJSON(Object o) {
 		if (o == null) {
 			throw new NullPointerException("mapperToJSON gets null");
 		}
-		return mapper.get().valueToTree(o);
+		return MAPPER.valueToTree(o);
 	}
 }
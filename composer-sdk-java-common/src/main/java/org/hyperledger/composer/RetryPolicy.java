@@ -0,0 +1,222 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static org.hyperledger.composer.ComposerException.*;
+
+/**
+ * Submits a transaction again when it was invalidated at commit because another transaction changed the state it
+ * read ({@link ComposerException#MVCC_READ_CONFLICT}, {@link ComposerException#PHANTOM_READ_CONFLICT}). Such a
+ * transaction changed nothing, so it is endorsed again against the new state after an exponential backoff with full
+ * jitter. Any other failure is returned at once.
+ * <p>
+ * Retries are limited per transaction by {@link #maxAttempts()} and overall by a budget: every transaction earns
+ * {@link #budgetRatio()} retries, up to a reserve of {@link #BUDGET_RESERVE}, so a hot key cannot multiply the load
+ * of the network. The counters of retries and of given up transactions are kept per reason.
+ */
+public class RetryPolicy {
+	public static final int DEFAULT_MAX_ATTEMPTS = 5;
+	public static final long DEFAULT_BASE_DELAY_MILLIS = 20;
+	public static final long DEFAULT_MAX_DELAY_MILLIS = 2000;
+	public static final double DEFAULT_BUDGET_RATIO = 0.5;
+	public static final double BUDGET_RESERVE = 10;
+
+	/**
+	 * never retries
+	 */
+	public static final RetryPolicy NONE = new RetryPolicy(1, 1, 1, 0);
+
+	private static final ScheduledExecutorService DELAYS = Executors.newSingleThreadScheduledExecutor(task -> {
+		Thread thread = new Thread(task, "composer-retry");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public enum Reason {
+		MVCC_READ_CONFLICT, PHANTOM_READ_CONFLICT
+	}
+
+	private final int maxAttempts;
+	private final long baseDelayMillis;
+	private final long maxDelayMillis;
+	private final double budgetRatio;
+	// guarded by this
+	private double budget = BUDGET_RESERVE;
+
+	private final Map<Reason, LongAdder> retries = new EnumMap<>(Reason.class);
+	private final Map<Reason, LongAdder> exhausted = new EnumMap<>(Reason.class);
+	private final LongAdder budgetDenied = new LongAdder();
+
+	public RetryPolicy() {
+		this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, DEFAULT_BUDGET_RATIO);
+	}
+
+	public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, double budgetRatio) {
+		if (maxAttempts <= 0 || baseDelayMillis <= 0 || maxDelayMillis < baseDelayMillis || budgetRatio < 0) {
+			throw new IllegalArgumentException("expect maxAttempts > 0, 0 < baseDelayMillis <= maxDelayMillis and budgetRatio >= 0");
+		}
+		this.maxAttempts = maxAttempts;
+		this.baseDelayMillis = baseDelayMillis;
+		this.maxDelayMillis = maxDelayMillis;
+		this.budgetRatio = budgetRatio;
+		for (Reason reason : Reason.values()) {
+			retries.put(reason, new LongAdder());
+			exhausted.put(reason, new LongAdder());
+		}
+	}
+
+	public int maxAttempts() {
+		return maxAttempts;
+	}
+
+	public long baseDelayMillis() {
+		return baseDelayMillis;
+	}
+
+	public long maxDelayMillis() {
+		return maxDelayMillis;
+	}
+
+	public double budgetRatio() {
+		return budgetRatio;
+	}
+
+	/**
+	 * @return the number of times a transaction was submitted again for the reason
+	 */
+	public long retries(Reason reason) {
+		return retries.get(reason).sum();
+	}
+
+	/**
+	 * @return the number of transactions which failed for the reason after all their attempts or out of budget
+	 */
+	public long exhausted(Reason reason) {
+		return exhausted.get(reason).sum();
+	}
+
+	/**
+	 * @return the number of retries refused because the budget was spent
+	 */
+	public long budgetDenied() {
+		return budgetDenied.sum();
+	}
+
+	/**
+	 * @return the reason to retry the failure, or null if it must not be retried
+	 */
+	public static Reason classify(Throwable e) {
+		for (; e != null; e = e.getCause() == e ? null : e.getCause()) {
+			if (e instanceof ComposerException) {
+				int errorCode = ((ComposerException) e).getErrorCode();
+				if (errorCode == MVCC_READ_CONFLICT) return Reason.MVCC_READ_CONFLICT;
+				if (errorCode == PHANTOM_READ_CONFLICT) return Reason.PHANTOM_READ_CONFLICT;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Run the attempt until it succeeds, fails for a reason not to retry, or runs out of attempts or budget
+	 */
+	public <T> T execute(Attempt<T> attempt) throws ComposerException {
+		deposit();
+		for (int attempts = 1; ; attempts++) {
+			try {
+				return attempt.run();
+			} catch (ComposerException e) {
+				Reason reason = classify(e);
+				if (reason == null || !retry(reason, attempts)) {
+					throw e;
+				}
+			}
+			try {
+				Thread.sleep(delayMillis(attempts));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ComposerException(INTERNAL_ERROR_CODE, "interrupted while waiting to retry", e);
+			}
+		}
+	}
+
+	/**
+	 * Start the attempt until its future succeeds, fails for a reason not to retry, or runs out of attempts or
+	 * budget; the attempts after the first are started from a timer thread
+	 */
+	public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> attempt) {
+		deposit();
+		CompletableFuture<T> result = new CompletableFuture<>();
+		attemptAsync(attempt, 1, result);
+		return result;
+	}
+
+	private <T> void attemptAsync(Supplier<CompletableFuture<T>> attempt, int attempts, CompletableFuture<T> result) {
+		CompletableFuture<T> future;
+		try {
+			future = attempt.get();
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+			return;
+		}
+		future.whenComplete((value, e) -> {
+			if (e == null) {
+				result.complete(value);
+				return;
+			}
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			Reason reason = classify(cause);
+			if (reason == null || !retry(reason, attempts)) {
+				result.completeExceptionally(cause);
+				return;
+			}
+			DELAYS.schedule(() -> attemptAsync(attempt, attempts + 1, result), delayMillis(attempts), TimeUnit.MILLISECONDS);
+		});
+	}
+
+	/**
+	 * @return the delay before the attempt after the given one, picked at random below the exponential bound
+	 */
+	long delayMillis(int attempts) {
+		long bound = attempts >= 31 ? maxDelayMillis : Math.min(maxDelayMillis, baseDelayMillis << (attempts - 1));
+		return ThreadLocalRandom.current().nextLong(bound + 1);
+	}
+
+	private synchronized void deposit() {
+		budget = Math.min(BUDGET_RESERVE, budget + budgetRatio);
+	}
+
+	/**
+	 * @return whether the failed attempt may be retried, spending one unit of the budget if so
+	 */
+	private boolean retry(Reason reason, int attempts) {
+		if (attempts >= maxAttempts) {
+			exhausted.get(reason).increment();
+			return false;
+		}
+		synchronized (this) {
+			if (budget < 1) {
+				budgetDenied.increment();
+				exhausted.get(reason).increment();
+				return false;
+			}
+			budget--;
+		}
+		retries.get(reason).increment();
+		return true;
+	}
+
+	@FunctionalInterface
+	public interface Attempt<T> {
+		T run() throws ComposerException;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The loads in flight of a cache, so that concurrent misses of one key share a single load.
+ * <p>
+ * A load is only stored if it has not been cancelled meanwhile: the cache cancels the loads of the keys it
+ * invalidates, since they may have read the data before the write. Storing and cancelling must therefore hold the
+ * same lock, the one given to {@link #load}.
+ */
+final class SingleFlight<K> {
+	private final ConcurrentHashMap<K, CompletableFuture<String>> loading = new ConcurrentHashMap<>();
+
+	/**
+	 * Load the key, or wait for the thread already loading it
+	 *
+	 * @param lock  held while storing, and by the cache when it cancels loads
+	 * @param store keeps a non-null value loaded by this thread, unless the load was cancelled
+	 * @return the loaded value
+	 */
+	String load(K key, Object lock, CacheLoader loader, Consumer<String> store) throws ComposerException {
+		CompletableFuture<String> mine = new CompletableFuture<>();
+		CompletableFuture<String> running = loading.putIfAbsent(key, mine);
+		if (running != null) {
+			return join(running);
+		}
+
+		String value;
+		try {
+			value = loader.load();
+		} catch (Throwable e) {
+			// errors too, or the waiters of the key would wait forever
+			loading.remove(key, mine);
+			mine.completeExceptionally(e);
+			throw e;
+		}
+		synchronized (lock) {
+			if (loading.remove(key, mine) && value != null) {
+				store.accept(value);
+			}
+		}
+		mine.complete(value);
+		return value;
+	}
+
+	/**
+	 * Keep the running load of the key, if any, from being stored; its waiters still get its value
+	 */
+	void cancel(K key) {
+		loading.remove(key);
+	}
+
+	void cancelIf(Predicate<? super K> filter) {
+		loading.keySet().removeIf(filter);
+	}
+
+	void cancelAll() {
+		loading.clear();
+	}
+
+	private static String join(CompletableFuture<String> future) throws ComposerException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof ComposerException) throw (ComposerException) e.getCause();
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw e;
+		}
+	}
+}
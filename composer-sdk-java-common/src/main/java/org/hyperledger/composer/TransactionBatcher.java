@@ -0,0 +1,295 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges single resource adds, updates and removes coming from any number of threads into one transaction per
+ * registry and kind of operation, so that each batch costs one round trip instead of one per resource.
+ * <p>
+ * A batch is submitted once it holds {@link #maxBatchSize()} resources, once the estimated JSON length of its
+ * resources reaches {@link #maxPayloadChars()}, or {@link #lingerMillis()} after its first resource arrived, whichever comes first. The
+ * future returned for every resource completes with the outcome of its whole batch: a transaction is applied
+ * atomically, so one rejected resource fails all the others of its batch.
+ * <p>
+ * The same resource is never put twice into one batch, the pending batch is submitted first instead. Batches are
+ * submitted without waiting for each other, so callers that need an operation to follow another one on the same
+ * resource should wait for the future of the first.
+ * <p>
+ * Batches are written through the given {@link AsyncComposerAPI}, so they invalidate the caches named by
+ * {@link AsyncComposerAPI#caches(ComposerAPI)}; the batchers of a connection invalidate its caches.
+ */
+public class TransactionBatcher implements AutoCloseable {
+	private final AsyncComposerAPI api;
+	private final int maxBatchSize;
+	private final int maxPayloadChars;
+	private final long lingerMillis;
+	private final ScheduledExecutorService timer;
+	private final Map<BatchKey, Batch> pending = new HashMap<>();
+	private boolean closed;
+
+	/**
+	 * @param maxBatchSize    the most resources per transaction
+	 * @param maxPayloadChars the most chars of serialized resources per transaction, as estimated by
+	 *                        {@link AdaptiveChunker#estimatedChars}; a single larger resource is sent alone
+	 * @param lingerMillis    how long the first resource of a batch waits for others
+	 */
+	public TransactionBatcher(AsyncComposerAPI api, int maxBatchSize, int maxPayloadChars, long lingerMillis) {
+		if (api == null) {
+			throw new IllegalArgumentException("api is null");
+		}
+		if (maxBatchSize <= 0 || maxPayloadChars <= 0 || lingerMillis < 0) {
+			throw new IllegalArgumentException("batch limits must be positive");
+		}
+		this.api = api;
+		this.maxBatchSize = maxBatchSize;
+		this.maxPayloadChars = maxPayloadChars;
+		this.lingerMillis = lingerMillis;
+		this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "composer-transaction-batcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public int maxBatchSize() {
+		return maxBatchSize;
+	}
+
+	public int maxPayloadChars() {
+		return maxPayloadChars;
+	}
+
+	public long lingerMillis() {
+		return lingerMillis;
+	}
+
+	public <T> CompletableFuture<Void> createAsset(T asset) {
+		return add(Operation.ADD_ASSET, asset);
+	}
+
+	public <T> CompletableFuture<Void> updateAsset(T asset) {
+		return add(Operation.UPDATE_ASSET, asset);
+	}
+
+	public <T> CompletableFuture<Void> removeAsset(Class<T> assetClass, String assetId) {
+		return remove(Operation.REMOVE_ASSET, assetClass, assetId);
+	}
+
+	public <T> CompletableFuture<Void> createParticipant(T participant) {
+		return add(Operation.ADD_PARTICIPANT, participant);
+	}
+
+	public <T> CompletableFuture<Void> updateParticipant(T participant) {
+		return add(Operation.UPDATE_PARTICIPANT, participant);
+	}
+
+	public <T> CompletableFuture<Void> removeParticipant(Class<T> participantClass, String participantId) {
+		return remove(Operation.REMOVE_PARTICIPANT, participantClass, participantId);
+	}
+
+	/**
+	 * Submit all pending batches now
+	 */
+	public void flush() {
+		List<Map.Entry<BatchKey, Batch>> ready;
+		synchronized (this) {
+			ready = new ArrayList<>(pending.entrySet());
+			pending.clear();
+		}
+		for (Map.Entry<BatchKey, Batch> entry : ready) {
+			submit(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Submit all pending batches and stop accepting resources
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		flush();
+		timer.shutdown();
+	}
+
+	private CompletableFuture<Void> add(Operation operation, Object resource) {
+		if (resource == null) {
+			throw new IllegalArgumentException("resource is null");
+		}
+		// measured here to reject a broken resource before it can fail a whole batch
+		int size = AdaptiveChunker.estimatedChars(resource);
+		return enqueue(new BatchKey(operation, resource.getClass()), ResourceSerializer.getResourceId(resource), resource, size);
+	}
+
+	private CompletableFuture<Void> remove(Operation operation, Class<?> type, String id) {
+		if (type == null) {
+			throw new IllegalArgumentException("resourceClass is null");
+		}
+		if (id == null || id.isEmpty()) {
+			throw new IllegalArgumentException("resource id is empty");
+		}
+		return enqueue(new BatchKey(operation, type), id, id, id.length());
+	}
+
+	private CompletableFuture<Void> enqueue(BatchKey key, String id, Object item, int size) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		Batch full = null, submitNow = null;
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("batcher is closed");
+			}
+			Batch batch = pending.get(key);
+			if (batch != null && (batch.ids.contains(id) || batch.chars + size > maxPayloadChars)) {
+				full = batch;
+				batch = null;
+				pending.remove(key);
+			}
+			if (batch == null) {
+				batch = new Batch();
+				pending.put(key, batch);
+				Batch scheduled = batch;
+				timer.schedule(() -> expire(key, scheduled), lingerMillis, TimeUnit.MILLISECONDS);
+			}
+			batch.add(id, item, size, future);
+			if (batch.items.size() >= maxBatchSize || batch.chars >= maxPayloadChars) {
+				submitNow = batch;
+				pending.remove(key);
+			}
+		}
+		if (full != null) {
+			submit(key, full);
+		}
+		if (submitNow != null) {
+			submit(key, submitNow);
+		}
+		return future;
+	}
+
+	private void expire(BatchKey key, Batch batch) {
+		synchronized (this) {
+			if (pending.get(key) != batch) {
+				return;
+			}
+			pending.remove(key);
+		}
+		submit(key, batch);
+	}
+
+	private void submit(BatchKey key, Batch batch) {
+		CompletableFuture<?> result;
+		try {
+			result = key.operation.submit(api, key.type, batch.items);
+		} catch (RuntimeException e) {
+			result = new CompletableFuture<>();
+			result.completeExceptionally(e);
+		}
+		result.whenComplete((ignored, e) -> {
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			for (CompletableFuture<Void> future : batch.futures) {
+				if (cause == null) {
+					future.complete(null);
+				} else {
+					future.completeExceptionally(cause);
+				}
+			}
+		});
+	}
+
+	private enum Operation {
+		ADD_ASSET {
+			@Override
+			CompletableFuture<?> submit(AsyncComposerAPI api, Class<?> type, List<Object> items) {
+				return api.createAssets(items);
+			}
+		},
+		UPDATE_ASSET {
+			@Override
+			CompletableFuture<?> submit(AsyncComposerAPI api, Class<?> type, List<Object> items) {
+				return api.updateAssets(items);
+			}
+		},
+		REMOVE_ASSET {
+			@Override
+			CompletableFuture<?> submit(AsyncComposerAPI api, Class<?> type, List<Object> items) {
+				return api.removeAssets(type, ids(items));
+			}
+		},
+		ADD_PARTICIPANT {
+			@Override
+			CompletableFuture<?> submit(AsyncComposerAPI api, Class<?> type, List<Object> items) {
+				return api.createParticipants(items);
+			}
+		},
+		UPDATE_PARTICIPANT {
+			@Override
+			CompletableFuture<?> submit(AsyncComposerAPI api, Class<?> type, List<Object> items) {
+				return api.updateParticipants(items);
+			}
+		},
+		REMOVE_PARTICIPANT {
+			@Override
+			CompletableFuture<?> submit(AsyncComposerAPI api, Class<?> type, List<Object> items) {
+				return api.removeParticipants(type, ids(items));
+			}
+		};
+
+		abstract CompletableFuture<?> submit(AsyncComposerAPI api, Class<?> type, List<Object> items);
+
+		private static List<String> ids(List<Object> items) {
+			List<String> ids = new ArrayList<>(items.size());
+			for (Object item : items) {
+				ids.add((String) item);
+			}
+			return ids;
+		}
+	}
+
+	private static final class BatchKey {
+		private final Operation operation;
+		private final Class<?> type;
+
+		private BatchKey(Operation operation, Class<?> type) {
+			this.operation = operation;
+			this.type = type;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof BatchKey)) return false;
+			BatchKey that = (BatchKey) o;
+			return operation == that.operation && type == that.type;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * operation.hashCode() + type.hashCode();
+		}
+	}
+
+	private static final class Batch {
+		private final Set<String> ids = new HashSet<>();
+		private final List<Object> items = new ArrayList<>();
+		private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+		private int chars;
+
+		private void add(String id, Object item, int size, CompletableFuture<Void> future) {
+			ids.add(id);
+			items.add(item);
+			futures.add(future);
+			chars += size;
+		}
+	}
+}
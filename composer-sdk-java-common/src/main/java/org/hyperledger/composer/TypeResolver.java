@@ -0,0 +1,111 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the fully qualified type names found in {@code $class} properties and relationship strings, caching
+ * hits and misses so repeated names cost a map lookup instead of a {@link Class#forName} call. A miss is only kept
+ * for {@link #MISS_TTL_MILLIS}, as a class may become loadable later, for instance once deployed to the loader.
+ * <p>
+ * Names are resolved with the context class loader of the calling thread, falling back to the loader of the SDK.
+ * Every loader has a cache of its own, held weakly along with the classes in it, so threads with different context
+ * loaders do not evict each other and redeployed applications neither see stale classes nor are kept from being
+ * unloaded. Once a cache holds {@link #MAX_ENTRIES} names, each new name evicts one old name, so a stream of bogus
+ * names cannot exhaust memory.
+ */
+final class TypeResolver {
+	static final int MAX_ENTRIES = 4096;
+	static final long MISS_TTL_MILLIS = 1000;
+
+	private static final ClassLoader DEFAULT_LOADER = TypeResolver.class.getClassLoader();
+	private static final Map<ClassLoader, Map<String, WeakReference<Class<?>>>> caches =
+			Collections.synchronizedMap(new WeakHashMap<>());
+
+	private TypeResolver() {
+	}
+
+	/**
+	 * @return the class of the given name, or null if there is no such class
+	 */
+	static Class<?> resolve(String className) {
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		if (loader == null) {
+			loader = DEFAULT_LOADER;
+		}
+		Map<String, WeakReference<Class<?>>> cache = caches.computeIfAbsent(loader, key -> new ConcurrentHashMap<>());
+		WeakReference<Class<?>> resolution = cache.get(className);
+		Class<?> type = resolution == null ? null : resolution.get();
+		if (type == null && !(resolution instanceof Miss && ((Miss) resolution).fresh())) {
+			type = load(className, loader);
+			if (resolution == null) {
+				evict(cache);
+			}
+			cache.put(className, type == null ? new Miss() : new WeakReference<>(type));
+		}
+		return type;
+	}
+
+	/**
+	 * make room for one more name in a full cache
+	 */
+	private static void evict(Map<String, WeakReference<Class<?>>> cache) {
+		if (cache.size() < MAX_ENTRIES) {
+			return;
+		}
+		Iterator<String> names = cache.keySet().iterator();
+		if (names.hasNext()) {
+			names.next();
+			names.remove();
+		}
+	}
+
+	/**
+	 * @return the number of names cached for the given loader
+	 */
+	static int size(ClassLoader loader) {
+		Map<String, WeakReference<Class<?>>> cache = caches.get(loader);
+		return cache == null ? 0 : cache.size();
+	}
+
+	/**
+	 * a name no loader had a class for
+	 */
+	private static final class Miss extends WeakReference<Class<?>> {
+		private final long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MISS_TTL_MILLIS);
+
+		private Miss() {
+			super(null);
+		}
+
+		boolean fresh() {
+			return System.nanoTime() - expiresAt < 0;
+		}
+	}
+
+	private static Class<?> load(String className, ClassLoader loader) {
+		try {
+			return Class.forName(className, true, loader);
+		} catch (ClassNotFoundException | LinkageError e) {
+			if (loader == DEFAULT_LOADER) {
+				return null;
+			}
+		}
+		try {
+			return Class.forName(className, true, DEFAULT_LOADER);
+		} catch (ClassNotFoundException | LinkageError e) {
+			return null;
+		}
+	}
+}
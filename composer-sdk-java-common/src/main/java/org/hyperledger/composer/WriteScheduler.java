@@ -0,0 +1,178 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.hyperledger.composer.ComposerException.INTERNAL_ERROR_CODE;
+
+/**
+ * Serializes the writes of this process to the same resource. Two transactions of one client writing the same key
+ * at once would both be endorsed and ordered, and then all but one invalidated by a read conflict; queued instead,
+ * each is endorsed after the previous one committed.
+ * <p>
+ * Keys are mapped to a fixed number of fair locks, so writes to different keys mostly proceed in parallel and
+ * writes to one key run in arrival order. A write of several keys takes all their locks in a fixed order.
+ * <p>
+ * With coalescing, an update of a single resource still waiting when a newer update of the same resource arrives is
+ * dropped, as the newer one replaces the whole resource anyway: the last write wins, and the dropped call waits for
+ * the newer update and returns or throws as it does.
+ * <p>
+ * A write of many keys holds the locks of all their stripes, so a bulk write touching about as many resources as
+ * there are stripes waits for, and blocks, every other write of the scheduler while it runs.
+ */
+public class WriteScheduler {
+	public static final int DEFAULT_STRIPES = 64;
+
+	private final ReentrantLock[] locks;
+	private final boolean coalesce;
+	// the latest update of every key with an update waiting or running
+	private final Map<String, Update> latestUpdates = new ConcurrentHashMap<>();
+	private final LongAdder coalesced = new LongAdder();
+
+	public WriteScheduler() {
+		this(DEFAULT_STRIPES, false);
+	}
+
+	public WriteScheduler(int stripes, boolean coalesce) {
+		if (stripes <= 0) {
+			throw new IllegalArgumentException("stripes must be positive");
+		}
+		this.locks = new ReentrantLock[stripes];
+		for (int i = 0; i < stripes; i++) {
+			locks[i] = new ReentrantLock(true);
+		}
+		this.coalesce = coalesce;
+	}
+
+	public int stripes() {
+		return locks.length;
+	}
+
+	public boolean coalesce() {
+		return coalesce;
+	}
+
+	/**
+	 * @return the number of updates dropped for a newer one
+	 */
+	public long coalesced() {
+		return coalesced.sum();
+	}
+
+	/**
+	 * Run the write once every earlier write of its keys is done
+	 *
+	 * @param keys   the ids of the resources written, see {@link ResourceSerializer#getResourceId}
+	 * @param update whether the write replaces a single resource, and may be dropped for a newer one
+	 */
+	public void write(Collection<String> keys, boolean update, Write write) throws ComposerException {
+		if (keys.isEmpty()) {
+			write.run();
+			return;
+		}
+		String key = coalesce && update && keys.size() == 1 ? keys.iterator().next() : null;
+		if (key == null) {
+			runLocked(keys, null, write);
+			return;
+		}
+
+		Update mine = new Update();
+		Update previous = latestUpdates.put(key, mine);
+		if (previous != null) {
+			previous.newer = mine;
+		}
+		Update newer;
+		try {
+			newer = runLocked(keys, mine, write);
+		} catch (ComposerException | RuntimeException e) {
+			mine.outcome.completeExceptionally(e);
+			throw e;
+		} finally {
+			latestUpdates.remove(key, mine);
+		}
+		if (newer == null) {
+			mine.outcome.complete(null);
+			return;
+		}
+
+		// waited for with the locks released, the newer update needs them
+		coalesced.increment();
+		newer.outcome.whenComplete((result, e) -> {
+			if (e == null) {
+				mine.outcome.complete(null);
+			} else {
+				mine.outcome.completeExceptionally(e);
+			}
+		});
+		try {
+			mine.outcome.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ComposerException(INTERNAL_ERROR_CODE, "interrupted while waiting for a newer update", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ComposerException) throw (ComposerException) e.getCause();
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new ComposerException(INTERNAL_ERROR_CODE, "newer update failed: " + e.getCause(), e.getCause());
+		}
+	}
+
+	/**
+	 * @return the newer update the write was dropped for, or null if the write ran
+	 */
+	private Update runLocked(Collection<String> keys, Update update, Write write) throws ComposerException {
+		TreeSet<Integer> stripes = new TreeSet<>();
+		for (String k : keys) {
+			stripes.add(stripe(k));
+		}
+		int locked = 0;
+		try {
+			for (int stripe : stripes) {
+				locks[stripe].lockInterruptibly();
+				locked++;
+			}
+			if (update != null && update.newer != null) {
+				return update.newer;
+			}
+			write.run();
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ComposerException(INTERNAL_ERROR_CODE, "interrupted while waiting for earlier writes", e);
+		} finally {
+			for (int stripe : stripes) {
+				if (locked-- == 0) break;
+				locks[stripe].unlock();
+			}
+		}
+	}
+
+	private int stripe(String key) {
+		int h = key.hashCode() * 0x9e3779b9;
+		return ((h ^ h >>> 16) & Integer.MAX_VALUE) % locks.length;
+	}
+
+	@FunctionalInterface
+	public interface Write {
+		void run() throws ComposerException;
+	}
+
+	/**
+	 * one coalescible update, completed with the outcome of its write or of the newer update it was dropped for
+	 */
+	private static final class Update {
+		private final CompletableFuture<Void> outcome = new CompletableFuture<>();
+		private volatile Update newer;
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.internal;
+
+import org.hyperledger.composer.ComposerException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static org.hyperledger.composer.ComposerException.INVALID_REQUEST_CODE;
+
+/**
+ * Work split into lanes run concurrently, lane i taking the items i, i + lanes, ... of the work. Internal to the
+ * SDK, not part of its API.
+ */
+public final class Lanes {
+	private Lanes() {
+	}
+
+	/**
+	 * Run the lanes concurrently, the first one on the calling thread
+	 *
+	 * @param executor runs the other lanes; the lanes block on queries, so it should not be a pool the callers run on
+	 * @param action   what the lanes do, to describe a failure
+	 * @return the results of the lanes, in order
+	 */
+	public static <R> List<R> run(int lanes, Lane<R> lane, Executor executor, String action) throws ComposerException {
+		List<CompletableFuture<R>> others = new ArrayList<>();
+		for (int i = 1; i < lanes; i++) {
+			int index = i;
+			others.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return lane.run(index, lanes);
+				} catch (ComposerException e) {
+					throw new CompletionException(e);
+				}
+			}, executor));
+		}
+		List<R> results = new ArrayList<>(lanes);
+		results.add(lane.run(0, lanes));
+		for (CompletableFuture<R> other : others) {
+			try {
+				results.add(other.join());
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof ComposerException) throw (ComposerException) e.getCause();
+				throw new ComposerException(INVALID_REQUEST_CODE, "failed to " + action + ": " + e.getCause(), e.getCause());
+			}
+		}
+		return results;
+	}
+
+	@FunctionalInterface
+	public interface Lane<R> {
+		R run(int lane, int lanes) throws ComposerException;
+	}
+}
@@ -6,24 +6,28 @@
 
 package org.hyperledger.composer.query;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hyperledger.composer.CloseableIterator;
 import org.hyperledger.composer.ComposerAPI;
 import org.hyperledger.composer.ComposerException;
+import org.hyperledger.composer.ResourceSerializer;
 
 import java.text.MessageFormat;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public abstract class AbstractQuery<T> {
 
 	private ComposerAPI api;
 	private Class<T> clazz;
 	private ObjectNode params;
+	private Set<String> projection;
 
 	public AbstractQuery(ComposerAPI api, Class<T> clazz) {
 		this.api = api;
 		this.clazz = clazz;
-		this.params = new ObjectMapper().createObjectNode();
+		this.params = ResourceSerializer.createObjectNode();
 	}
 	
 	public void bind(int index, int value) throws ComposerException {
@@ -46,13 +50,51 @@ public abstract class AbstractQuery<T> {
 		params.put(MessageFormat.format("v{0}", index - 1), value);
 	}
 	
+	/**
+	 * @param projection the names of the fields to decode from each result, or null for all fields
+	 */
+	void projection(Set<String> projection) {
+		this.projection = projection;
+	}
+
+	ComposerAPI api() {
+		return api;
+	}
+
+	ObjectNode params() {
+		return params;
+	}
+
 	abstract protected void validate(ObjectNode params) throws ComposerException ;
 
 	abstract public List<T> execute() throws ComposerException ;
 
+	/**
+	 * Execute the query, decoding each result only when the iterator reaches it
+	 */
+	abstract public CloseableIterator<T> iterate() throws ComposerException ;
+
+	/**
+	 * Execute the query as a lazily decoded stream; close the stream when done
+	 */
+	public Stream<T> stream() throws ComposerException {
+		return iterate().stream();
+	}
+
 	List<T> execute(String type, String query) throws ComposerException {
 		this.validate(params);
-		return api.executeQuery(clazz, type, query, params.toString());
+		if (projection == null) {
+			return api.executeQuery(clazz, type, query, params.toString());
+		}
+		return api.executeQuery(clazz, type, query, params.toString(), projection);
+	}
+
+	CloseableIterator<T> iterate(String type, String query) throws ComposerException {
+		this.validate(params);
+		if (projection == null) {
+			return api.iterateQuery(clazz, type, query, params.toString());
+		}
+		return api.iterateQuery(clazz, type, query, params.toString(), projection);
 	}
 	
 }
@@ -8,8 +8,7 @@ package org.hyperledger.composer.query;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
+import org.hyperledger.composer.CloseableIterator;
 import org.hyperledger.composer.ComposerAPI;
 import org.hyperledger.composer.ComposerException;
 
@@ -17,74 +16,52 @@ import java.text.MessageFormat;
 import java.util.*;
 import java.util.Map.Entry;
 
+/**
+ * A query with its own parameters, bound in place; see {@link PreparedQuery} to run one query with different
+ * parameters from several threads.
+ */
 public class CompiledQuery<T> extends AbstractQuery<T> {
 
-	private String sql;
-	private int numOfParams;
-
-	CompiledQuery(ComposerAPI api, Class<T> clazz, String condition, int conditionOrder, String[] orderFields,
-	              int orderOrder, String limit, int limitOrder, String skip, int skipOrder) {
-		super(api, clazz);
-		int currentVarId = 0, numOfConditionVars = 0;
-		List<Pair<Integer, Integer>> varIdPairs = new ArrayList<>();
-
-		if (conditionOrder >= 0) {
-			numOfConditionVars = StringUtils.countMatches(condition, '?');
-			for (int i = 0; i < numOfConditionVars; i++) {
-				varIdPairs.add(Pair.of(conditionOrder, currentVarId++));
-			}
-		}
-
-		if (limitOrder >= 0 && "?".equals(limit)) {
-			varIdPairs.add(Pair.of(limitOrder, currentVarId++));
-		}
-
-		if (skipOrder >= 0 && "?".equals(skip)) {
-			varIdPairs.add(Pair.of(skipOrder, currentVarId++));
-		}
-
-		Collections.sort(varIdPairs);
-		int[] varIdReverseMap = new int[varIdPairs.size()];
-		for (int i = 0; i < varIdPairs.size(); i++) {
-			varIdReverseMap[varIdPairs.get(i).getRight()] = i;
-		}
-
-		currentVarId = 0;
-		this.sql = MessageFormat.format("SELECT {0}", clazz.getName());
-		if (conditionOrder >= 0) {
-			while (currentVarId < numOfConditionVars) {
-				condition = condition.replaceFirst("\\?",
-						MessageFormat.format("_\\$v{0}", varIdReverseMap[currentVarId++]));
-			}
-			this.sql = MessageFormat.format("{0} WHERE ({1})", this.sql, condition);
-		}
+	private final PreparedQuery<T> prepared;
+	private final String sql;
+	private final int numOfParams;
 
-		if (orderOrder >= 0) {
-			this.sql = MessageFormat.format("{0} ORDER BY {1}", this.sql, Arrays.toString(orderFields));
-		}
+	CompiledQuery(ComposerAPI api, PreparedQuery<T> prepared) {
+		super(api, prepared.resourceClass());
+		this.prepared = prepared;
+		this.sql = prepared.getSQL();
+		this.numOfParams = prepared.parameterCount();
+	}
 
-		if (limitOrder >= 0) {
-			if ("?".equals(limit)) {
-				this.sql = MessageFormat.format("{0} LIMIT _$v{1}", this.sql, varIdReverseMap[currentVarId++]);
-			} else {
-				this.sql = MessageFormat.format("{0} LIMIT {1}", this.sql, limit);
-			}
+	/**
+	 * Execute the query, by name if the bna deployed it, see {@link NamedQueries}
+	 */
+	public List<T> execute() throws ComposerException {
+		if (prepared.pageSize() > 0) {
+			return prepared.execute(bindings());
 		}
+		return NamedQueries.deployed().execute(this.sql, this::execute);
+	}
 
-		if (skipOrder >= 0) {
-			if ("?".equals(skip)) {
-				this.sql = MessageFormat.format("{0} SKIP _$v{1}", this.sql, varIdReverseMap[currentVarId++]);
-			} else {
-				this.sql = MessageFormat.format("{0} SKIP {1}", this.sql, skip);
-			}
+	/**
+	 * Execute the query, decoding each result only when the iterator reaches it; see
+	 * {@link QueryBuilder#pageSize(int)} to fetch the results page by page
+	 */
+	public CloseableIterator<T> iterate() throws ComposerException {
+		if (prepared.pageSize() > 0) {
+			return prepared.iterate(bindings());
 		}
-
-		this.numOfParams = varIdPairs.size();
-
+		return NamedQueries.deployed().execute(this.sql, this::iterate);
 	}
 
-	public List<T> execute() throws ComposerException {
-		return this.execute("build", this.sql);
+	private PreparedQuery.Bindings bindings() throws ComposerException {
+		ObjectNode params = params();
+		this.validate(params);
+		PreparedQuery.Bindings bindings = prepared.bindings();
+		for (int i = 0; i < numOfParams; i++) {
+			bindings.bindJSON(i + 1, params.get("v" + i).toString());
+		}
+		return bindings;
 	}
 
 	public String getSQL() {
@@ -0,0 +1,426 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.query;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.hyperledger.composer.ComposerException;
+import org.hyperledger.composer.ResourceSerializer;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.hyperledger.composer.ComposerException.INVALID_INPUT_ERROR;
+
+/**
+ * An in-memory collection of resources answering the queries of {@link QueryBuilder} locally, without a round trip
+ * to a peer. Every resource is kept with its JSON form, and the queries are evaluated over the JSON as the runtime
+ * does: a missing field matches no comparison, values of different types are ordered booleans, numbers, strings,
+ * and results without an ORDER BY come in the order they were added.
+ * <p>
+ * Fields may be indexed: a hash index answers ==, a sorted index answers == and ranges. For every query the planner
+ * picks the index on a comparison of the top level AND that selects the fewest resources, or else scans them all;
+ * the whole condition is then checked on the selected resources, so the plan only affects the cost.
+ */
+public class LocalRegistry<T> {
+	public enum IndexKind {
+		HASH, SORTED
+	}
+
+	private final Class<T> clazz;
+	private final Object lock = new Object();
+	// guarded by lock
+	// by the id of the resources, see ResourceSerializer#getResourceId(Object)
+	private final Map<String, Entry<T>> entries = new HashMap<>();
+	private final Map<String, Index<T>> indexes = new HashMap<>();
+	private long sequence;
+
+	public LocalRegistry(Class<T> clazz) {
+		if (clazz == null) {
+			throw new IllegalArgumentException("resource class is null");
+		}
+		this.clazz = clazz;
+	}
+
+	/**
+	 * Index the field, a dotted path of the JSON form of the resources, for the queries to come
+	 */
+	public LocalRegistry<T> index(String field, IndexKind kind) {
+		if (field == null || kind == null) {
+			throw new IllegalArgumentException("field and kind must be specified");
+		}
+		synchronized (lock) {
+			Index<T> index = kind == IndexKind.HASH ? new HashIndex<>(field) : new SortedIndex<>(field);
+			for (Entry<T> entry : entries.values()) {
+				index.add(entry);
+			}
+			indexes.put(field + "#" + kind, index);
+		}
+		return this;
+	}
+
+	/**
+	 * Add the resource, or replace the one with the same id, keeping its place in the results without ORDER BY
+	 *
+	 * @throws IllegalArgumentException if the resource has no id
+	 */
+	public void add(T resource) {
+		if (resource == null) {
+			throw new IllegalArgumentException("resource is null");
+		}
+		String id = ResourceSerializer.getResourceId(resource);
+		JsonNode json = ResourceSerializer.toJSON(resource);
+		synchronized (lock) {
+			Entry<T> old = entries.get(id);
+			long order = old == null ? sequence++ : old.sequence;
+			if (old != null) {
+				for (Index<T> index : indexes.values()) {
+					index.remove(old);
+				}
+			}
+			Entry<T> entry = new Entry<>(resource, json, order);
+			entries.put(id, entry);
+			for (Index<T> index : indexes.values()) {
+				index.add(entry);
+			}
+		}
+	}
+
+	public void addAll(Collection<? extends T> resources) {
+		for (T resource : resources) {
+			add(resource);
+		}
+	}
+
+	/**
+	 * Remove the resource with the id of the given one
+	 */
+	public boolean remove(T resource) {
+		String id = ResourceSerializer.getResourceId(resource);
+		synchronized (lock) {
+			Entry<T> entry = entries.remove(id);
+			if (entry == null) return false;
+			for (Index<T> index : indexes.values()) {
+				index.remove(entry);
+			}
+			return true;
+		}
+	}
+
+	public void clear() {
+		synchronized (lock) {
+			entries.clear();
+			for (Index<T> index : indexes.values()) {
+				index.clear();
+			}
+		}
+	}
+
+	public int size() {
+		synchronized (lock) {
+			return entries.size();
+		}
+	}
+
+	public List<T> execute(CompiledQuery<T> query) throws ComposerException {
+		query.validate(query.params());
+		return execute(query.getSQL(), query.params().toString());
+	}
+
+	public List<T> execute(PreparedQuery<T> query, PreparedQuery.Bindings bindings) throws ComposerException {
+		if (query.pageSize() > 0) {
+			throw new ComposerException(INVALID_INPUT_ERROR, "paginated queries are not executed locally");
+		}
+		return execute(query.getSQL(), query.parameters(bindings));
+	}
+
+	/**
+	 * @param sql        a query as returned by {@link CompiledQuery#getSQL()}
+	 * @param parameters the parameters as a JSON object
+	 */
+	public List<T> execute(String sql, String parameters) throws ComposerException {
+		ParsedQuery query = ParsedQuery.parse(sql);
+		JsonNode params = parameters(parameters);
+		checkType(query);
+		List<Entry<T>> results = new ArrayList<>();
+		synchronized (lock) {
+			Plan<T> plan = plan(query, params);
+			for (Entry<T> entry : plan.candidates()) {
+				if (query.where == null || query.where.matches(entry.json, params)) {
+					results.add(entry);
+				}
+			}
+		}
+		Comparator<Entry<T>> order = Comparator.comparingLong(entry -> entry.sequence);
+		if (!query.orderBy.isEmpty()) {
+			order = Comparator.comparing((Entry<T> entry) -> entry.json, ParsedQuery.comparator(query.orderBy)).thenComparing(order);
+		}
+		results.sort(order);
+
+		long skip = query.skip == null ? 0 : count(query.skip.value(params), "SKIP");
+		long limit = query.limit == null ? Long.MAX_VALUE : count(query.limit.value(params), "LIMIT");
+		List<T> page = new ArrayList<>();
+		for (long i = skip; i < results.size() && page.size() < limit; i++) {
+			page.add(results.get((int) i).resource);
+		}
+		return page;
+	}
+
+	/**
+	 * @return how the query would select the resources to check: the index used and its bounds, or a full scan
+	 */
+	public String explain(String sql, String parameters) throws ComposerException {
+		ParsedQuery query = ParsedQuery.parse(sql);
+		JsonNode params = parameters(parameters);
+		synchronized (lock) {
+			return plan(query, params).description;
+		}
+	}
+
+	// guarded by lock
+	private Plan<T> plan(ParsedQuery query, JsonNode params) throws ComposerException {
+		List<ParsedQuery.Condition> conjuncts = query.where == null ? Collections.emptyList()
+				: query.where instanceof ParsedQuery.Junction && ((ParsedQuery.Junction) query.where).and
+				? ((ParsedQuery.Junction) query.where).operands : Collections.singletonList(query.where);
+
+		Plan<T> best = new Plan<>("FULL SCAN", entries.values(), entries.size());
+		// the bounds of each sorted field, so a >= x AND a < y makes a single range
+		Map<String, Range> ranges = new LinkedHashMap<>();
+		for (ParsedQuery.Condition conjunct : conjuncts) {
+			if (!(conjunct instanceof ParsedQuery.Comparison)) continue;
+			ParsedQuery.Comparison comparison = (ParsedQuery.Comparison) conjunct;
+			JsonNode value = comparison.operand.value(params);
+			if (comparison.operator == ParsedQuery.Operator.EQ) {
+				Index<T> hash = indexes.get(comparison.field + "#" + IndexKind.HASH);
+				if (hash != null) {
+					Collection<Entry<T>> candidates = ((HashIndex<T>) hash).get(value);
+					best = cheaper(best, new Plan<>("HASH INDEX " + comparison.field + " == " + value, candidates, candidates.size()));
+				}
+			}
+			if (indexes.containsKey(comparison.field + "#" + IndexKind.SORTED)) {
+				Range range = ranges.computeIfAbsent(comparison.field, field -> new Range());
+				range.restrict(comparison.operator, value);
+			}
+		}
+		for (Map.Entry<String, Range> range : ranges.entrySet()) {
+			if (range.getValue().unbounded()) continue;
+			SortedIndex<T> sorted = (SortedIndex<T>) indexes.get(range.getKey() + "#" + IndexKind.SORTED);
+			Collection<Entry<T>> candidates = sorted.range(range.getValue());
+			best = cheaper(best, new Plan<>("SORTED INDEX " + range.getKey() + " " + range.getValue(), candidates, candidates.size()));
+		}
+		return best;
+	}
+
+	private static <T> Plan<T> cheaper(Plan<T> a, Plan<T> b) {
+		return b.cost < a.cost ? b : a;
+	}
+
+	private void checkType(ParsedQuery query) throws ComposerException {
+		for (Class<?> type = clazz; type != null; type = type.getSuperclass()) {
+			if (type.getName().equals(query.resourceType)) return;
+		}
+		throw new ComposerException(INVALID_INPUT_ERROR, "query over " + query.resourceType + " on a registry of " + clazz.getName());
+	}
+
+	private static JsonNode parameters(String parameters) throws ComposerException {
+		if (parameters == null || parameters.isEmpty()) return null;
+		try {
+			return ResourceSerializer.toJsonNode(parameters);
+		} catch (IOException e) {
+			throw new ComposerException(INVALID_INPUT_ERROR, "invalid parameters " + parameters, e);
+		}
+	}
+
+	private static long count(JsonNode value, String clause) throws ComposerException {
+		if (!value.isIntegralNumber() || value.longValue() < 0) {
+			throw new ComposerException(INVALID_INPUT_ERROR, clause + " must be a non-negative integer");
+		}
+		return value.longValue();
+	}
+
+	private static final class Entry<T> {
+		private final T resource;
+		private final JsonNode json;
+		private final long sequence;
+
+		private Entry(T resource, JsonNode json, long sequence) {
+			this.resource = resource;
+			this.json = json;
+			this.sequence = sequence;
+		}
+	}
+
+	private static final class Plan<T> {
+		private final String description;
+		private final Collection<Entry<T>> candidates;
+		private final int cost;
+
+		private Plan(String description, Collection<Entry<T>> candidates, int cost) {
+			this.description = description;
+			this.candidates = candidates;
+			this.cost = cost;
+		}
+
+		private Collection<Entry<T>> candidates() {
+			return candidates;
+		}
+	}
+
+	/**
+	 * The bounds on a field, each null if open
+	 */
+	private static final class Range {
+		private JsonNode lower, upper;
+		private boolean lowerInclusive, upperInclusive;
+		private boolean empty;
+
+		private void restrict(ParsedQuery.Operator operator, JsonNode value) {
+			switch (operator) {
+				case EQ:
+					restrictLower(value, true);
+					restrictUpper(value, true);
+					break;
+				case GT:
+					restrictLower(value, false);
+					break;
+				case GE:
+					restrictLower(value, true);
+					break;
+				case LT:
+					restrictUpper(value, false);
+					break;
+				case LE:
+					restrictUpper(value, true);
+					break;
+				default:
+					// != and CONTAINS do not narrow the range
+			}
+			if (lower != null && upper != null) {
+				int c = ParsedQuery.compare(lower, upper);
+				empty |= c > 0 || c == 0 && !(lowerInclusive && upperInclusive);
+			}
+		}
+
+		private void restrictLower(JsonNode value, boolean inclusive) {
+			int c = lower == null ? 1 : ParsedQuery.compare(value, lower);
+			if (c > 0 || c == 0 && !inclusive) {
+				lower = value;
+				lowerInclusive = inclusive;
+			}
+		}
+
+		private void restrictUpper(JsonNode value, boolean inclusive) {
+			int c = upper == null ? -1 : ParsedQuery.compare(value, upper);
+			if (c < 0 || c == 0 && !inclusive) {
+				upper = value;
+				upperInclusive = inclusive;
+			}
+		}
+
+		private boolean unbounded() {
+			return lower == null && upper == null;
+		}
+
+		@Override
+		public String toString() {
+			return (lowerInclusive ? "[" : "(") + (lower == null ? "" : lower) + ", " + (upper == null ? "" : upper)
+					+ (upperInclusive ? "]" : ")");
+		}
+	}
+
+	private abstract static class Index<T> {
+		final String[] path;
+
+		Index(String field) {
+			this.path = field.split("\\.");
+		}
+
+		abstract void add(Entry<T> entry);
+
+		abstract void remove(Entry<T> entry);
+
+		abstract void clear();
+	}
+
+	private static final class HashIndex<T> extends Index<T> {
+		private final Map<Object, Set<Entry<T>>> buckets = new HashMap<>();
+
+		HashIndex(String field) {
+			super(field);
+		}
+
+		@Override
+		void add(Entry<T> entry) {
+			JsonNode value = ParsedQuery.resolve(entry.json, path);
+			if (value != null) {
+				buckets.computeIfAbsent(ParsedQuery.key(value), key -> new HashSet<>()).add(entry);
+			}
+		}
+
+		@Override
+		void remove(Entry<T> entry) {
+			JsonNode value = ParsedQuery.resolve(entry.json, path);
+			if (value == null) return;
+			Set<Entry<T>> bucket = buckets.get(ParsedQuery.key(value));
+			if (bucket != null && bucket.remove(entry) && bucket.isEmpty()) {
+				buckets.remove(ParsedQuery.key(value));
+			}
+		}
+
+		@Override
+		void clear() {
+			buckets.clear();
+		}
+
+		Collection<Entry<T>> get(JsonNode value) {
+			Set<Entry<T>> bucket = buckets.get(ParsedQuery.key(value));
+			return bucket == null ? Collections.emptySet() : bucket;
+		}
+	}
+
+	private static final class SortedIndex<T> extends Index<T> {
+		private final TreeMap<JsonNode, Set<Entry<T>>> values = new TreeMap<>(ParsedQuery::compare);
+
+		SortedIndex(String field) {
+			super(field);
+		}
+
+		@Override
+		void add(Entry<T> entry) {
+			JsonNode value = ParsedQuery.resolve(entry.json, path);
+			if (value != null) {
+				values.computeIfAbsent(value, key -> new HashSet<>()).add(entry);
+			}
+		}
+
+		@Override
+		void remove(Entry<T> entry) {
+			JsonNode value = ParsedQuery.resolve(entry.json, path);
+			if (value == null) return;
+			Set<Entry<T>> bucket = values.get(value);
+			if (bucket != null && bucket.remove(entry) && bucket.isEmpty()) {
+				values.remove(value);
+			}
+		}
+
+		@Override
+		void clear() {
+			values.clear();
+		}
+
+		Collection<Entry<T>> range(Range range) {
+			if (range.empty) return Collections.emptyList();
+			NavigableMap<JsonNode, Set<Entry<T>>> selected = values;
+			if (range.lower != null) selected = selected.tailMap(range.lower, range.lowerInclusive);
+			if (range.upper != null) selected = selected.headMap(range.upper, range.upperInclusive);
+			List<Entry<T>> result = new ArrayList<>();
+			for (Set<Entry<T>> bucket : selected.values()) {
+				result.addAll(bucket);
+			}
+			return result;
+		}
+	}
+}
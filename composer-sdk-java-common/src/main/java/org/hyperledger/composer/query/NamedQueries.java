@@ -0,0 +1,177 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.query;
+
+import org.hyperledger.composer.ComposerException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The queries deployed in queries.qry by the bna generator, by their text. A {@link CompiledQuery} or
+ * {@link PreparedQuery} whose text is deployed is executed by name, so the runtime does not parse it again.
+ * <p>
+ * The name of a query is derived from its text, not from its position, so it does not change when the queries are
+ * reordered. The generator writes the names to {@link #RESOURCE}; {@link #deployed()} reads every such resource of
+ * the class path.
+ * <p>
+ * The class path may hold the queries of another bna than the one deployed on the network of a connection, so a
+ * name the runtime rejects is not used again and its query is sent as text.
+ */
+public final class NamedQueries {
+	public static final String RESOURCE = "META-INF/composer/queries.properties";
+
+	public static final NamedQueries NONE = new NamedQueries(Collections.emptyMap());
+
+	// the queries of every class loader, read once
+	private static final Map<ClassLoader, NamedQueries> DEPLOYED = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private static volatile NamedQueries override;
+
+	// the name of every query by its text
+	private final Map<String, String> names;
+	// the names the runtime does not know
+	private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param names the name of every query by its text
+	 */
+	public NamedQueries(Map<String, String> names) {
+		this.names = Collections.unmodifiableMap(new HashMap<>(names));
+	}
+
+	/**
+	 * @return the name of the deployed query with the text, or null if it is not deployed
+	 */
+	public String name(String sql) {
+		return names.get(sql);
+	}
+
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * Execute the query by name if it is deployed, else by text; if the runtime rejects the name, the query is
+	 * executed by text, now and from then on
+	 */
+	<R> R execute(String sql, Execution<R> execution) throws ComposerException {
+		String name = names.get(sql);
+		if (name != null && !rejected.contains(name)) {
+			try {
+				return execution.run("named", name);
+			} catch (ComposerException e) {
+				// an error naming the query is about the name, not the query, as names are not otherwise reported
+				if (e.getMessage() == null || !e.getMessage().contains(name)) throw e;
+				rejected.add(name);
+			}
+		}
+		return execution.run("build", sql);
+	}
+
+	/**
+	 * @return the name given to the query with the text, the same wherever it is declared
+	 */
+	public static String stableName(String sql) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(sql.getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder("Q");
+			for (int i = 0; i < 8; i++) {
+				name.append(Character.forDigit(digest[i] >> 4 & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+			}
+			return name.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the queries of the class path of the context class loader, loaded on first use by each loader
+	 */
+	public static NamedQueries deployed() {
+		NamedQueries result = override;
+		if (result != null) return result;
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return DEPLOYED.computeIfAbsent(classLoader != null ? classLoader : NamedQueries.class.getClassLoader(),
+				NamedQueries::load);
+	}
+
+	/**
+	 * @param queries the queries to execute by name instead of those of the class path, {@link #NONE} to always
+	 *                send the text, or null to read the class path again
+	 */
+	public static void deployed(NamedQueries queries) {
+		override = queries;
+		if (queries == null) DEPLOYED.clear();
+	}
+
+	/**
+	 * @return the queries of every {@link #RESOURCE} of the class loader; unreadable resources are skipped
+	 */
+	public static NamedQueries load(ClassLoader classLoader) {
+		Map<String, String> names = new HashMap<>();
+		try {
+			for (Enumeration<URL> resources = classLoader.getResources(RESOURCE); resources.hasMoreElements(); ) {
+				try (InputStream in = resources.nextElement().openStream()) {
+					Properties properties = new Properties();
+					properties.load(in);
+					for (String name : properties.stringPropertyNames()) {
+						names.put(properties.getProperty(name), name);
+					}
+				} catch (IOException e) {
+					// not deployed, the queries are sent as text
+				}
+			}
+		} catch (IOException e) {
+			return NONE;
+		}
+		return new NamedQueries(names);
+	}
+
+	/**
+	 * @return the queries in the format of {@link #RESOURCE}, sorted by name
+	 */
+	public String toProperties() {
+		TreeMap<String, String> sorted = new TreeMap<>();
+		names.forEach((sql, name) -> sorted.put(name, sql));
+		StringBuilder result = new StringBuilder();
+		sorted.forEach((name, sql) -> {
+			result.append(name).append('=');
+			for (int i = 0; i < sql.length(); i++) {
+				char c = sql.charAt(i);
+				if (c == '\\') {
+					result.append("\\\\");
+				} else if (c == '\n') {
+					result.append("\\n");
+				} else if (c == '\r') {
+					result.append("\\r");
+				} else if (c == '\t') {
+					result.append("\\t");
+				} else if (c == ' ' && i == 0) {
+					result.append("\\ ");
+				} else if (c < 0x20 || c > 0x7e) {
+					result.append(String.format("\\u%04x", (int) c));
+				} else {
+					result.append(c);
+				}
+			}
+			result.append('\n');
+		});
+		return result.toString();
+	}
+
+	@FunctionalInterface
+	interface Execution<R> {
+		R run(String type, String query) throws ComposerException;
+	}
+}
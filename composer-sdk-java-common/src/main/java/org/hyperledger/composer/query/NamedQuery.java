@@ -8,6 +8,7 @@ package org.hyperledger.composer.query;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hyperledger.composer.CloseableIterator;
 import org.hyperledger.composer.ComposerAPI;
 import org.hyperledger.composer.ComposerException;
 
@@ -30,6 +31,10 @@ public abstract class NamedQuery<T> extends AbstractQuery<T> {
 	public List<T> execute() throws ComposerException {
 		return this.execute("named", name);
 	}
+
+	public CloseableIterator<T> iterate() throws ComposerException {
+		return this.iterate("named", name);
+	}
 	
 	@Override
 	protected void validate(ObjectNode params) throws ComposerException {
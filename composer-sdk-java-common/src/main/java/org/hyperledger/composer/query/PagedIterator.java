@@ -0,0 +1,114 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.query;
+
+import org.hyperledger.composer.CloseableIterator;
+import org.hyperledger.composer.ComposerException;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Iterates the results of a query page by page. The next page is only requested once the current one proves full,
+ * when its last result is handed out, and is then fetched in the background while the caller works on that result.
+ * At most two pages are held at a time; the iteration ends at the first page shorter than the page size, so a query
+ * whose last page is full costs one extra, empty page, and a shorter one none.
+ * <p>
+ * A page failing to load surfaces from {@link #hasNext()} or {@link #next()} as {@link IllegalStateException} with
+ * the {@link ComposerException} as its cause.
+ */
+class PagedIterator<T> implements CloseableIterator<T> {
+	private final int pageSize;
+	private final Pages<T> pages;
+	private final Executor executor;
+
+	private CloseableIterator<T> current;
+	// null until the current page proves full
+	private CompletableFuture<CloseableIterator<T>> next;
+	// the offset of the current page and the number of its results consumed
+	private long offset;
+	private int consumed;
+	private boolean done;
+
+	PagedIterator(int pageSize, Pages<T> pages, Executor executor) throws ComposerException {
+		this.pageSize = pageSize;
+		this.pages = pages;
+		this.executor = executor;
+		this.current = pages.fetch(0);
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!done) {
+			if (current.hasNext()) {
+				return true;
+			}
+			current.close();
+			if (next == null) {
+				close();
+				return false;
+			}
+			offset += pageSize;
+			consumed = 0;
+			current = join(next, offset);
+			next = null;
+		}
+		return false;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		T result = current.next();
+		if (++consumed == pageSize) {
+			next = prefetch(offset + pageSize);
+		}
+		return result;
+	}
+
+	@Override
+	public void close() {
+		if (done) return;
+		done = true;
+		current.close();
+		// not cancelled: a page still being fetched is closed once it arrives
+		if (next != null) {
+			next.thenAccept(CloseableIterator::close);
+		}
+	}
+
+	private CompletableFuture<CloseableIterator<T>> prefetch(long offset) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return pages.fetch(offset);
+			} catch (ComposerException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	private CloseableIterator<T> join(CompletableFuture<CloseableIterator<T>> page, long offset) {
+		try {
+			return page.join();
+		} catch (CompletionException e) {
+			done = true;
+			throw new IllegalStateException("failed to fetch the results from " + offset, e.getCause());
+		}
+	}
+
+	@FunctionalInterface
+	interface Pages<T> {
+		/**
+		 * @return the results of the page starting at the offset
+		 */
+		CloseableIterator<T> fetch(long offset) throws ComposerException;
+	}
+}
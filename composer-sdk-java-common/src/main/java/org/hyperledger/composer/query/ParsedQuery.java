@@ -0,0 +1,422 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.query;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.hyperledger.composer.ComposerException;
+import org.hyperledger.composer.ResourceSerializer;
+
+import java.math.BigDecimal;
+import java.text.Collator;
+import java.util.*;
+
+import static org.hyperledger.composer.ComposerException.INVALID_INPUT_ERROR;
+
+/**
+ * A query in the language emitted by {@link CompiledQuery}:
+ * <pre>
+ * SELECT type [WHERE (condition)] [ORDER BY [field ASC|DESC, ...]] [LIMIT n] [SKIP n]
+ * </pre>
+ * where a condition combines comparisons {@code field op operand} with AND, OR and parentheses, op is one of
+ * {@code == != < <= > >= CONTAINS}, and an operand is a parameter {@code _$vN}, a number, a quoted string, true or
+ * false. Values are compared as JSON, in the order of {@link #compare(JsonNode, JsonNode)}.
+ */
+final class ParsedQuery {
+	enum Operator {
+		EQ("=="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">="), CONTAINS("CONTAINS");
+
+		private final String symbol;
+
+		Operator(String symbol) {
+			this.symbol = symbol;
+		}
+	}
+
+	private static final Collator COLLATOR = Collator.getInstance(Locale.ROOT);
+
+	final String resourceType;
+	final Condition where;
+	final List<Order> orderBy;
+	final Operand limit;
+	final Operand skip;
+
+	private ParsedQuery(String resourceType, Condition where, List<Order> orderBy, Operand limit, Operand skip) {
+		this.resourceType = resourceType;
+		this.where = where;
+		this.orderBy = orderBy;
+		this.limit = limit;
+		this.skip = skip;
+	}
+
+	static ParsedQuery parse(String sql) throws ComposerException {
+		return new Parser(sql).query();
+	}
+
+	/**
+	 * The order of the state database for the values of a field: booleans, then numbers, then strings, then arrays
+	 * and objects; numbers by value and strings by the root collation, then by code points
+	 */
+	static int compare(JsonNode a, JsonNode b) {
+		int rank = Integer.compare(rank(a), rank(b));
+		if (rank != 0) return rank;
+		if (a.isBoolean()) return Boolean.compare(a.booleanValue(), b.booleanValue());
+		if (a.isNumber()) return a.decimalValue().compareTo(b.decimalValue());
+		if (a.isTextual()) {
+			int c = COLLATOR.compare(a.textValue(), b.textValue());
+			return c != 0 ? c : a.textValue().compareTo(b.textValue());
+		}
+		return a.toString().compareTo(b.toString());
+	}
+
+	private static int rank(JsonNode node) {
+		if (node.isBoolean()) return 1;
+		if (node.isNumber()) return 2;
+		if (node.isTextual()) return 3;
+		if (node.isArray()) return 4;
+		return 5;
+	}
+
+	/**
+	 * @return a key equal for values equal by {@link #compare}
+	 */
+	static Object key(JsonNode value) {
+		if (value.isNumber()) {
+			BigDecimal decimal = value.decimalValue();
+			return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+		}
+		if (value.isTextual()) return value.textValue();
+		if (value.isBoolean()) return value.booleanValue();
+		return value.toString();
+	}
+
+	/**
+	 * @return the value at the dotted path, or null if missing or null
+	 */
+	static JsonNode resolve(JsonNode resource, String[] path) {
+		JsonNode node = resource;
+		for (String name : path) {
+			node = node == null ? null : node.get(name);
+		}
+		return node == null || node.isNull() ? null : node;
+	}
+
+	/**
+	 * @return the order of an ORDER BY over the JSON form of resources, missing values first
+	 */
+	static Comparator<JsonNode> comparator(List<Order> orderBy) {
+		Comparator<JsonNode> result = null;
+		for (Order order : orderBy) {
+			Comparator<JsonNode> comparator = (a, b) -> {
+				JsonNode x = resolve(a, order.path), y = resolve(b, order.path);
+				if (x == null || y == null) return x == null ? (y == null ? 0 : -1) : 1;
+				return compare(x, y);
+			};
+			if (order.descending) comparator = comparator.reversed();
+			result = result == null ? comparator : result.thenComparing(comparator);
+		}
+		return result;
+	}
+
+	abstract static class Condition {
+		abstract boolean matches(JsonNode resource, JsonNode parameters) throws ComposerException;
+	}
+
+	static final class Junction extends Condition {
+		final boolean and;
+		final List<Condition> operands;
+
+		Junction(boolean and, List<Condition> operands) {
+			this.and = and;
+			this.operands = operands;
+		}
+
+		@Override
+		boolean matches(JsonNode resource, JsonNode parameters) throws ComposerException {
+			for (Condition operand : operands) {
+				if (operand.matches(resource, parameters) != and) return !and;
+			}
+			return and;
+		}
+	}
+
+	static final class Comparison extends Condition {
+		final String field;
+		final String[] path;
+		final Operator operator;
+		final Operand operand;
+
+		Comparison(String field, Operator operator, Operand operand) {
+			this.field = field;
+			this.path = field.split("\\.");
+			this.operator = operator;
+			this.operand = operand;
+		}
+
+		@Override
+		boolean matches(JsonNode resource, JsonNode parameters) throws ComposerException {
+			return test(resolve(resource, path), operand.value(parameters));
+		}
+
+		/**
+		 * A missing field matches no comparison
+		 */
+		boolean test(JsonNode value, JsonNode expected) {
+			if (value == null) return false;
+			switch (operator) {
+				case EQ:
+					return compare(value, expected) == 0;
+				case NE:
+					return compare(value, expected) != 0;
+				case LT:
+					return compare(value, expected) < 0;
+				case LE:
+					return compare(value, expected) <= 0;
+				case GT:
+					return compare(value, expected) > 0;
+				case GE:
+					return compare(value, expected) >= 0;
+				default:
+					if (!value.isArray()) return false;
+					for (JsonNode element : value) {
+						if (expected.isArray()) {
+							for (JsonNode candidate : expected) {
+								if (compare(element, candidate) == 0) return true;
+							}
+						} else if (compare(element, expected) == 0) {
+							return true;
+						}
+					}
+					return false;
+			}
+		}
+	}
+
+	static final class Order {
+		final String field;
+		final String[] path;
+		final boolean descending;
+
+		Order(String field, boolean descending) {
+			this.field = field;
+			this.path = field.split("\\.");
+			this.descending = descending;
+		}
+	}
+
+	/**
+	 * A literal, or a parameter if the literal is null
+	 */
+	static final class Operand {
+		final JsonNode literal;
+		final String parameter;
+
+		Operand(JsonNode literal, String parameter) {
+			this.literal = literal;
+			this.parameter = parameter;
+		}
+
+		JsonNode value(JsonNode parameters) throws ComposerException {
+			if (literal != null) return literal;
+			JsonNode value = parameters == null ? null : parameters.get(parameter);
+			if (value == null) {
+				throw new ComposerException(INVALID_INPUT_ERROR, "Missing parameter " + parameter);
+			}
+			return value;
+		}
+	}
+
+	private static final class Parser {
+		private final String sql;
+		private int position;
+
+		private Parser(String sql) {
+			this.sql = sql;
+		}
+
+		private ParsedQuery query() throws ComposerException {
+			keyword("SELECT");
+			String resourceType = identifier();
+			Condition where = null;
+			List<Order> orderBy = Collections.emptyList();
+			Operand limit = null, skip = null;
+			if (acceptKeyword("WHERE")) {
+				where = or();
+			}
+			if (acceptKeyword("ORDER")) {
+				keyword("BY");
+				orderBy = new ArrayList<>();
+				expect("[");
+				do {
+					String field = identifier();
+					boolean descending = acceptKeyword("DESC");
+					if (!descending) keyword("ASC");
+					orderBy.add(new Order(field, descending));
+				} while (accept(","));
+				expect("]");
+			}
+			if (acceptKeyword("LIMIT")) {
+				limit = operand();
+			}
+			if (acceptKeyword("SKIP")) {
+				skip = operand();
+			}
+			skipSpaces();
+			if (position < sql.length()) {
+				throw error("unexpected " + sql.substring(position));
+			}
+			return new ParsedQuery(resourceType, where, orderBy, limit, skip);
+		}
+
+		private Condition or() throws ComposerException {
+			List<Condition> operands = new ArrayList<>();
+			do {
+				operands.add(and());
+			} while (acceptKeyword("OR"));
+			return operands.size() == 1 ? operands.get(0) : new Junction(false, operands);
+		}
+
+		private Condition and() throws ComposerException {
+			List<Condition> operands = new ArrayList<>();
+			do {
+				operands.add(primary());
+			} while (acceptKeyword("AND"));
+			return operands.size() == 1 ? operands.get(0) : new Junction(true, operands);
+		}
+
+		private Condition primary() throws ComposerException {
+			if (accept("(")) {
+				Condition condition = or();
+				expect(")");
+				return condition;
+			}
+			String field = identifier();
+			Operator operator = null;
+			for (Operator candidate : new Operator[]{Operator.EQ, Operator.NE, Operator.LE, Operator.GE, Operator.LT, Operator.GT}) {
+				if (accept(candidate.symbol)) {
+					operator = candidate;
+					break;
+				}
+			}
+			if (operator == null) {
+				if (!acceptKeyword("CONTAINS")) throw error("expect an operator after " + field);
+				operator = Operator.CONTAINS;
+			}
+			return new Comparison(field, operator, operator == Operator.CONTAINS && peek('(') ? list() : operand());
+		}
+
+		private Operand list() throws ComposerException {
+			expect("(");
+			expect("[");
+			ArrayNode values = ResourceSerializer.createObjectNode().arrayNode();
+			do {
+				Operand value = operand();
+				if (value.literal == null) throw error("expect literals in a list");
+				values.add(value.literal);
+			} while (accept(","));
+			expect("]");
+			expect(")");
+			return new Operand(values, null);
+		}
+
+		private Operand operand() throws ComposerException {
+			skipSpaces();
+			if (sql.startsWith("_$", position)) {
+				position += 2;
+				return new Operand(null, identifier());
+			}
+			if (position < sql.length() && (sql.charAt(position) == '\'' || sql.charAt(position) == '"')) {
+				return new Operand(TextNode.valueOf(string()), null);
+			}
+			if (acceptKeyword("true")) return new Operand(BooleanNode.TRUE, null);
+			if (acceptKeyword("false")) return new Operand(BooleanNode.FALSE, null);
+			int start = position;
+			if (position < sql.length() && (sql.charAt(position) == '-' || sql.charAt(position) == '+')) position++;
+			while (position < sql.length() && (Character.isDigit(sql.charAt(position)) || ".eE+-".indexOf(sql.charAt(position)) >= 0)) {
+				position++;
+			}
+			String number = sql.substring(start, position);
+			BigDecimal value;
+			try {
+				value = new BigDecimal(number);
+			} catch (NumberFormatException e) {
+				position = start;
+				throw error("expect a value");
+			}
+			try {
+				return new Operand(value.scale() <= 0 ? LongNode.valueOf(value.longValueExact()) : DecimalNode.valueOf(value), null);
+			} catch (ArithmeticException e) {
+				return new Operand(DecimalNode.valueOf(value), null);
+			}
+		}
+
+		private String string() throws ComposerException {
+			char quote = sql.charAt(position++);
+			StringBuilder value = new StringBuilder();
+			while (position < sql.length()) {
+				char c = sql.charAt(position++);
+				if (c == quote) return value.toString();
+				if (c == '\\' && position < sql.length()) c = sql.charAt(position++);
+				value.append(c);
+			}
+			throw error("unterminated string");
+		}
+
+		private String identifier() throws ComposerException {
+			skipSpaces();
+			int start = position;
+			while (position < sql.length() && (Character.isLetterOrDigit(sql.charAt(position)) || "_$.".indexOf(sql.charAt(position)) >= 0)) {
+				position++;
+			}
+			if (start == position) throw error("expect a name");
+			return sql.substring(start, position);
+		}
+
+		private void keyword(String keyword) throws ComposerException {
+			if (!acceptKeyword(keyword)) throw error("expect " + keyword);
+		}
+
+		private boolean acceptKeyword(String keyword) {
+			skipSpaces();
+			int end = position + keyword.length();
+			if (!sql.regionMatches(true, position, keyword, 0, keyword.length())) return false;
+			if (end < sql.length() && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_')) return false;
+			position = end;
+			return true;
+		}
+
+		private void expect(String symbol) throws ComposerException {
+			if (!accept(symbol)) throw error("expect " + symbol);
+		}
+
+		private boolean accept(String symbol) {
+			skipSpaces();
+			if (!sql.startsWith(symbol, position)) return false;
+			position += symbol.length();
+			return true;
+		}
+
+		private boolean peek(char c) {
+			skipSpaces();
+			return position < sql.length() && sql.charAt(position) == c;
+		}
+
+		private void skipSpaces() {
+			while (position < sql.length() && Character.isWhitespace(sql.charAt(position))) {
+				position++;
+			}
+		}
+
+		private ComposerException error(String message) {
+			return new ComposerException(INVALID_INPUT_ERROR, message + " at " + position + " of " + sql);
+		}
+	}
+}
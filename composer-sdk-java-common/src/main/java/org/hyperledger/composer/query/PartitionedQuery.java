@@ -0,0 +1,369 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.query;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hyperledger.composer.CloseableIterator;
+import org.hyperledger.composer.ComposerAPI;
+import org.hyperledger.composer.ComposerException;
+import org.hyperledger.composer.ResourceSerializer;
+import org.hyperledger.composer.internal.Lanes;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hyperledger.composer.ComposerException.INVALID_INPUT_ERROR;
+
+/**
+ * A query split into disjoint partitions executed concurrently, each as its own proposal, so a large select is
+ * spread over the peers instead of loading a single one. Built by {@link QueryBuilder#partitionByRange} or
+ * {@link QueryBuilder#partitionByWindow}.
+ * <p>
+ * Range partitions are merged by the ORDER BY of the query, in the order of the state database, or concatenated in
+ * the order of their ranges without one. The ranges only match values of the field, so the resources whose field is
+ * null or missing are not returned. Windows are consecutive LIMIT/SKIP slices of the result, concatenated in order and ended by the first short
+ * window; without an ORDER BY the slices rely on the state database returning the results in a stable order.
+ */
+public class PartitionedQuery<T> extends AbstractQuery<T> {
+	public static final int DEFAULT_CONCURRENCY = 4;
+
+	// either the ranges with their bounds, or the windows
+	private final List<PreparedQuery<T>> ranges;
+	private final List<Object[]> bounds;
+	private final String field;
+	private final PreparedQuery<T> windows;
+	private final Comparator<JsonNode> order;
+	private final int numOfParams;
+
+	private volatile int concurrency = DEFAULT_CONCURRENCY;
+	private volatile List<Timing> timings = Collections.emptyList();
+
+	private PartitionedQuery(ComposerAPI api, Class<T> clazz, List<PreparedQuery<T>> ranges, List<Object[]> bounds,
+	                         String field, PreparedQuery<T> windows, String[] orderFields, int numOfParams) throws ComposerException {
+		super(api, clazz);
+		this.ranges = ranges;
+		this.bounds = bounds;
+		this.field = field;
+		this.windows = windows;
+		this.order = orderFields == null ? null : order(clazz, orderFields);
+		this.numOfParams = numOfParams;
+	}
+
+	/**
+	 * @param bounds the split points in ascending order; n points make n + 1 ranges, from below the first to from
+	 *               the last on
+	 */
+	static <T> PartitionedQuery<T> ranges(ComposerAPI api, Class<T> clazz, String condition, String[] orderFields,
+	                                      Set<String> projection, String field, Object[] bounds) throws ComposerException {
+		if (field == null || field.isEmpty() || bounds == null || bounds.length == 0) {
+			throw new ComposerException(INVALID_INPUT_ERROR, "a field and at least one bound must be specified");
+		}
+		for (int i = 0; i < bounds.length; i++) {
+			if (!(bounds[i] instanceof String || bounds[i] instanceof Number)) {
+				throw new ComposerException(INVALID_INPUT_ERROR, "bounds must be strings or numbers");
+			}
+			if (i > 0 && ParsedQuery.compare(ResourceSerializer.mapperToJSON(bounds[i - 1]), ResourceSerializer.mapperToJSON(bounds[i])) >= 0) {
+				throw new ComposerException(INVALID_INPUT_ERROR, "bounds must be in strictly ascending order");
+			}
+		}
+		int numOfParams = condition == null ? 0 : PreparedQuery.countParameters(condition);
+		Set<String> decoded = projection == null || orderFields == null ? projection : withOrderFields(projection, orderFields);
+		String prefix = condition == null ? "" : "(" + condition + ") AND ";
+		List<PreparedQuery<T>> ranges = new ArrayList<>();
+		List<Object[]> rangeBounds = new ArrayList<>();
+		for (int i = 0; i <= bounds.length; i++) {
+			String range;
+			if (i == 0) {
+				range = field + " < ?";
+				rangeBounds.add(new Object[]{bounds[0]});
+			} else if (i == bounds.length) {
+				range = field + " >= ?";
+				rangeBounds.add(new Object[]{bounds[i - 1]});
+			} else {
+				range = field + " >= ? AND " + field + " < ?";
+				rangeBounds.add(new Object[]{bounds[i - 1], bounds[i]});
+			}
+			ranges.add(new PreparedQuery<>(api, clazz, prefix + range, 0, orderFields, orderFields == null ? -1 : 1,
+					null, -1, null, -1, decoded, 0));
+		}
+		return new PartitionedQuery<>(api, clazz, ranges, rangeBounds, field, null, orderFields, numOfParams);
+	}
+
+	static <T> PartitionedQuery<T> windows(ComposerAPI api, Class<T> clazz, String condition, String[] orderFields,
+	                                       Set<String> projection, int windowSize) throws ComposerException {
+		if (windowSize <= 0) {
+			throw new ComposerException(INVALID_INPUT_ERROR, "windowSize must be positive");
+		}
+		PreparedQuery<T> windows = new PreparedQuery<>(api, clazz, condition, condition == null ? -1 : 0, orderFields,
+				orderFields == null ? -1 : 1, null, -1, null, -1, projection, windowSize);
+		return new PartitionedQuery<>(api, clazz, null, null, null, windows, null, windows.parameterCount());
+	}
+
+	/**
+	 * @param concurrency the number of partitions executed at a time
+	 */
+	public PartitionedQuery<T> concurrency(int concurrency) {
+		if (concurrency <= 0) {
+			throw new IllegalArgumentException("concurrency must be positive");
+		}
+		this.concurrency = concurrency;
+		return this;
+	}
+
+	public int concurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * @return the partitions of the last execution, in order
+	 */
+	public List<Timing> timings() {
+		return timings;
+	}
+
+	public List<T> execute() throws ComposerException {
+		this.validate(params());
+		return windows == null ? executeRanges() : executeWindows();
+	}
+
+	/**
+	 * Execute all the partitions, then iterate their merged results
+	 */
+	public CloseableIterator<T> iterate() throws ComposerException {
+		Iterator<T> results = execute().iterator();
+		return new CloseableIterator<T>() {
+			@Override
+			public boolean hasNext() {
+				return results.hasNext();
+			}
+
+			@Override
+			public T next() {
+				return results.next();
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	private List<T> executeRanges() throws ComposerException {
+		int partitions = ranges.size();
+		List<List<T>> results = new ArrayList<>(Collections.nCopies(partitions, null));
+		Timing[] timings = new Timing[partitions];
+		Lanes.run(Math.min(concurrency, partitions), (lane, lanes) -> {
+			for (int i = lane; i < partitions; i += lanes) {
+				PreparedQuery<T> range = ranges.get(i);
+				PreparedQuery.Bindings bindings = bindings(range);
+				Object[] rangeBounds = bounds.get(i);
+				for (int b = 0; b < rangeBounds.length; b++) {
+					bind(bindings, numOfParams + b + 1, rangeBounds[b]);
+				}
+				long start = System.nanoTime();
+				List<T> partition = range.execute(bindings);
+				timings[i] = new Timing(describe(i), partition.size(), (System.nanoTime() - start) / 1000000);
+				results.set(i, partition);
+			}
+			return null;
+		}, api().readExecutor(), "execute partition");
+		this.timings = Collections.unmodifiableList(Arrays.asList(timings));
+		return order == null ? concat(results) : mergeInOrder(results);
+	}
+
+	private List<T> executeWindows() throws ComposerException {
+		int windowSize = windows.pageSize();
+		// the index of the first short window, the windows after it are not executed
+		AtomicInteger end = new AtomicInteger(Integer.MAX_VALUE);
+		Map<Integer, List<T>> results = new ConcurrentHashMap<>();
+		Map<Integer, Timing> timings = new ConcurrentHashMap<>();
+		int lanes = concurrency;
+		Lanes.run(lanes, (lane, ignored) -> {
+			for (int i = lane; i <= end.get(); i += lanes) {
+				long start = System.nanoTime();
+				List<T> window = windows.executePage(bindings(windows), (long) i * windowSize);
+				timings.put(i, new Timing("SKIP " + (long) i * windowSize + " LIMIT " + windowSize, window.size(),
+						(System.nanoTime() - start) / 1000000));
+				results.put(i, window);
+				if (window.size() < windowSize) {
+					end.accumulateAndGet(i, Math::min);
+				}
+			}
+			return null;
+		}, api().readExecutor(), "execute partition");
+		List<List<T>> ordered = new ArrayList<>();
+		List<Timing> orderedTimings = new ArrayList<>();
+		for (int i = 0; i <= end.get(); i++) {
+			ordered.add(results.get(i));
+			orderedTimings.add(timings.get(i));
+		}
+		this.timings = Collections.unmodifiableList(orderedTimings);
+		return concat(ordered);
+	}
+
+	private PreparedQuery.Bindings bindings(PreparedQuery<T> query) throws ComposerException {
+		ObjectNode params = params();
+		PreparedQuery.Bindings bindings = query.bindings();
+		for (int i = 0; i < numOfParams; i++) {
+			bindings.bindJSON(i + 1, params.get("v" + i).toString());
+		}
+		return bindings;
+	}
+
+	private static void bind(PreparedQuery.Bindings bindings, int index, Object value) throws ComposerException {
+		if (value instanceof String) {
+			bindings.bind(index, (String) value);
+		} else if (value instanceof Float || value instanceof Double) {
+			bindings.bind(index, ((Number) value).doubleValue());
+		} else {
+			bindings.bind(index, ((Number) value).longValue());
+		}
+	}
+
+	private String describe(int partition) {
+		Object[] rangeBounds = bounds.get(partition);
+		if (partition == 0) return field + " < " + rangeBounds[0];
+		if (partition == ranges.size() - 1) return field + " >= " + rangeBounds[0];
+		return field + " >= " + rangeBounds[0] + " AND " + field + " < " + rangeBounds[1];
+	}
+
+	@Override
+	protected void validate(ObjectNode params) throws ComposerException {
+		if (params.has("v-1")) {
+			throw new ComposerException(INVALID_INPUT_ERROR, "Finding index 0, must start from 1");
+		}
+		for (int i = 0; i < numOfParams; i++) {
+			if (!params.has("v" + i)) {
+				throw new ComposerException(INVALID_INPUT_ERROR, "Missing parameter " + (i + 1));
+			}
+		}
+		if (params.size() != numOfParams) {
+			throw new ComposerException(INVALID_INPUT_ERROR, "Too many parameters");
+		}
+	}
+
+	private static <T> List<T> concat(List<List<T>> partitions) {
+		int size = 0;
+		for (List<T> partition : partitions) {
+			size += partition.size();
+		}
+		List<T> result = new ArrayList<>(size);
+		for (List<T> partition : partitions) {
+			result.addAll(partition);
+		}
+		return result;
+	}
+
+	/**
+	 * Merge partitions each sorted by the order; equal results keep the order of their partitions
+	 */
+	static <T> List<T> merge(List<List<T>> partitions, Comparator<T> order) {
+		int size = 0;
+		for (List<T> partition : partitions) {
+			size += partition.size();
+		}
+		int[] positions = new int[partitions.size()];
+		PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, partitions.size()), (a, b) -> {
+			int c = order.compare(partitions.get(a).get(positions[a]), partitions.get(b).get(positions[b]));
+			return c != 0 ? c : Integer.compare(a, b);
+		});
+		for (int i = 0; i < partitions.size(); i++) {
+			if (!partitions.get(i).isEmpty()) heads.add(i);
+		}
+		List<T> result = new ArrayList<>(size);
+		while (!heads.isEmpty()) {
+			int partition = heads.poll();
+			result.add(partitions.get(partition).get(positions[partition]++));
+			if (positions[partition] < partitions.get(partition).size()) {
+				heads.add(partition);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Merge the partitions by the JSON form of their results, computed once per result
+	 */
+	private List<T> mergeInOrder(List<List<T>> partitions) {
+		List<List<Map.Entry<JsonNode, T>>> keyed = new ArrayList<>(partitions.size());
+		for (List<T> partition : partitions) {
+			List<Map.Entry<JsonNode, T>> keys = new ArrayList<>(partition.size());
+			for (T resource : partition) {
+				keys.add(new AbstractMap.SimpleImmutableEntry<>(ResourceSerializer.toJSON(resource), resource));
+			}
+			keyed.add(keys);
+		}
+		List<T> result = new ArrayList<>();
+		for (Map.Entry<JsonNode, T> entry : merge(keyed, Map.Entry.comparingByKey(order))) {
+			result.add(entry.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * The partitions are merged by the decoded results, so they also decode the top-level fields of the ORDER BY
+	 */
+	private static Set<String> withOrderFields(Set<String> projection, String[] orderFields) {
+		Set<String> result = new HashSet<>(projection);
+		for (String orderField : orderFields) {
+			result.add(orderField.trim().split("[\\s.]")[0]);
+		}
+		return Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * @param orderFields the fields of an ORDER BY, each a dotted path followed by ASC or DESC
+	 */
+	private static Comparator<JsonNode> order(Class<?> clazz, String[] orderFields) throws ComposerException {
+		List<ParsedQuery.Order> orderBy = new ArrayList<>();
+		for (String orderField : orderFields) {
+			String[] parts = orderField.trim().split("\\s+");
+			if (!ResourceSerializer.hasField(clazz, parts[0])) {
+				throw new ComposerException(INVALID_INPUT_ERROR, "no field " + parts[0] + " to order " + clazz.getName());
+			}
+			orderBy.add(new ParsedQuery.Order(parts[0], "DESC".equals(parts[parts.length - 1])));
+		}
+		return ParsedQuery.comparator(orderBy);
+	}
+
+	/**
+	 * The execution of one partition
+	 */
+	public static final class Timing {
+		private final String partition;
+		private final int results;
+		private final long millis;
+
+		Timing(String partition, int results, long millis) {
+			this.partition = partition;
+			this.results = results;
+			this.millis = millis;
+		}
+
+		/**
+		 * @return the range or window of the partition
+		 */
+		public String partition() {
+			return partition;
+		}
+
+		public int results() {
+			return results;
+		}
+
+		public long millis() {
+			return millis;
+		}
+
+		@Override
+		public String toString() {
+			return partition + ": " + results + " results in " + millis + "ms";
+		}
+	}
+}
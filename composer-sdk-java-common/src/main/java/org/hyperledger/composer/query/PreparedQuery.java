@@ -0,0 +1,289 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.query;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.hyperledger.composer.CloseableIterator;
+import org.hyperledger.composer.ComposerAPI;
+import org.hyperledger.composer.ComposerException;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * A query compiled once by {@link QueryBuilder#prepare()}. It is immutable and may be shared by any number of
+ * threads: the parameters of each execution are bound on their own {@link Bindings}. Like {@link CompiledQuery}, it
+ * is executed by name if the bna deployed it.
+ */
+public final class PreparedQuery<T> {
+
+	private final ComposerAPI api;
+	private final Class<T> clazz;
+	private final Set<String> projection;
+	private final int pageSize;
+	private final String sql;
+	// the text before the value of every slot in the parameters JSON, from {"v0": to ,"vN":, ending with the limit
+	// and skip of the pages if paginated
+	private final String[] slotPrefixes;
+	private final int numOfParams;
+
+	PreparedQuery(ComposerAPI api, Class<T> clazz, String condition, int conditionOrder, String[] orderFields,
+	              int orderOrder, String limit, int limitOrder, String skip, int skipOrder, Set<String> projection,
+	              int pageSize) {
+		this.api = api;
+		this.clazz = clazz;
+		this.projection = projection;
+		this.pageSize = pageSize;
+
+		// the parameters are numbered in the order of their clauses in the builder, the text lists them in order
+		// WHERE, LIMIT, SKIP
+		int numOfConditionVars = conditionOrder >= 0 ? countParameters(condition) : 0;
+		boolean limitVar = limitOrder >= 0 && "?".equals(limit);
+		boolean skipVar = skipOrder >= 0 && "?".equals(skip);
+		int[] firstVar = new int[3];
+		int[] numOfVars = {numOfConditionVars, limitVar ? 1 : 0, skipVar ? 1 : 0};
+		int[] order = {conditionOrder, limitOrder, skipOrder};
+		for (int clause = 0; clause < 3; clause++) {
+			for (int other = 0; other < 3; other++) {
+				if (order[other] < order[clause]) firstVar[clause] += numOfVars[other];
+			}
+		}
+
+		StringBuilder sql = new StringBuilder("SELECT ").append(clazz.getName());
+		if (conditionOrder >= 0) {
+			sql.append(" WHERE (");
+			for (int i = 0, var = firstVar[0]; i < condition.length(); i++) {
+				char c = condition.charAt(i);
+				if (c == '?') {
+					sql.append("_$v").append(var++);
+				} else {
+					sql.append(c);
+				}
+			}
+			sql.append(')');
+		}
+		if (orderOrder >= 0) {
+			sql.append(" ORDER BY ").append(Arrays.toString(orderFields));
+		}
+		if (limitOrder >= 0) {
+			sql.append(" LIMIT ").append(limitVar ? "_$v" + firstVar[1] : limit);
+		}
+		if (skipOrder >= 0) {
+			sql.append(" SKIP ").append(skipVar ? "_$v" + firstVar[2] : skip);
+		}
+		this.numOfParams = numOfConditionVars + numOfVars[1] + numOfVars[2];
+		if (pageSize > 0) {
+			sql.append(" LIMIT _$v").append(numOfParams).append(" SKIP _$v").append(numOfParams + 1);
+		}
+		this.sql = sql.toString();
+
+		this.slotPrefixes = new String[pageSize > 0 ? numOfParams + 2 : numOfParams];
+		for (int i = 0; i < slotPrefixes.length; i++) {
+			slotPrefixes[i] = (i == 0 ? "{\"v" : ",\"v") + i + "\":";
+		}
+	}
+
+	static int countParameters(String condition) {
+		int count = 0;
+		for (int i = 0; i < condition.length(); i++) {
+			if (condition.charAt(i) == '?') count++;
+		}
+		return count;
+	}
+
+	public String getSQL() {
+		return sql;
+	}
+
+	/**
+	 * @return the number of parameters to bind, not counting the limit and skip of the pages
+	 */
+	public int parameterCount() {
+		return numOfParams;
+	}
+
+	/**
+	 * @return the number of results fetched at a time, or 0 if all the results are fetched at once
+	 */
+	public int pageSize() {
+		return pageSize;
+	}
+
+	public Class<T> resourceClass() {
+		return clazz;
+	}
+
+	/**
+	 * @return empty bindings for one execution of this query
+	 */
+	public Bindings bindings() {
+		return new Bindings(this);
+	}
+
+	/**
+	 * Execute the query; a paginated query fetches all its pages
+	 */
+	public List<T> execute(Bindings bindings) throws ComposerException {
+		if (pageSize > 0) {
+			List<T> results = new ArrayList<>();
+			try (CloseableIterator<T> iterator = iterate(bindings)) {
+				iterator.forEachRemaining(results::add);
+			} catch (IllegalStateException e) {
+				if (e.getCause() instanceof ComposerException) throw (ComposerException) e.getCause();
+				throw e;
+			}
+			return results;
+		}
+		return execute(parameters(head(bindings), 0));
+	}
+
+	/**
+	 * Execute only the page of a paginated query starting at the offset
+	 */
+	List<T> executePage(Bindings bindings, long offset) throws ComposerException {
+		return execute(parameters(head(bindings), offset));
+	}
+
+	private List<T> execute(String parameters) throws ComposerException {
+		return NamedQueries.deployed().execute(sql, (type, query) -> projection == null
+				? api.executeQuery(clazz, type, query, parameters)
+				: api.executeQuery(clazz, type, query, parameters, projection));
+	}
+
+	/**
+	 * Execute the query, decoding each result only when the iterator reaches it. A paginated query fetches its
+	 * first page now and each next page on {@link ComposerAPI#readExecutor()} while the previous one is consumed.
+	 */
+	public CloseableIterator<T> iterate(Bindings bindings) throws ComposerException {
+		if (pageSize > 0) {
+			String head = head(bindings);
+			return new PagedIterator<>(pageSize, offset -> iterate(parameters(head, offset)), api.readExecutor());
+		}
+		return iterate(parameters(head(bindings), 0));
+	}
+
+	private CloseableIterator<T> iterate(String parameters) throws ComposerException {
+		return NamedQueries.deployed().execute(sql, (type, query) -> projection == null
+				? api.iterateQuery(clazz, type, query, parameters)
+				: api.iterateQuery(clazz, type, query, parameters, projection));
+	}
+
+	/**
+	 * Execute the query as a lazily decoded stream; close the stream when done
+	 */
+	public Stream<T> stream(Bindings bindings) throws ComposerException {
+		return iterate(bindings).stream();
+	}
+
+	/**
+	 * @return the parameters JSON of an execution, of the first page if paginated
+	 */
+	String parameters(Bindings bindings) throws ComposerException {
+		return parameters(head(bindings), 0);
+	}
+
+	/**
+	 * @return the bound slots of the parameters JSON, without the closing brace
+	 */
+	private String head(Bindings bindings) throws ComposerException {
+		if (bindings.query != this) {
+			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR, "bindings of another query");
+		}
+		return bindings.head();
+	}
+
+	/**
+	 * @return the parameters JSON, with the limit and skip of the page at the offset if paginated
+	 */
+	private String parameters(String head, long offset) {
+		if (pageSize == 0) {
+			return head.isEmpty() ? "{}" : head + '}';
+		}
+		return new StringBuilder(head.length() + 32).append(head)
+				.append(slotPrefixes[numOfParams]).append(pageSize)
+				.append(slotPrefixes[numOfParams + 1]).append(offset).append('}').toString();
+	}
+
+	/**
+	 * The parameters of one execution of a {@link PreparedQuery}, numbered from 1 like the ? in the query. Not
+	 * thread safe; create one per execution, or rebind all the parameters before reusing it.
+	 */
+	public static final class Bindings {
+		private final PreparedQuery<?> query;
+		// each value is kept as its JSON text
+		private final String[] values;
+		private int bound;
+
+		private Bindings(PreparedQuery<?> query) {
+			this.query = query;
+			this.values = new String[query.numOfParams];
+		}
+
+		public Bindings bind(int index, int value) throws ComposerException {
+			return set(index, Integer.toString(value));
+		}
+
+		public Bindings bind(int index, long value) throws ComposerException {
+			return set(index, Long.toString(value));
+		}
+
+		public Bindings bind(int index, float value) throws ComposerException {
+			return set(index, Float.isNaN(value) || Float.isInfinite(value) ? quote(Float.toString(value)) : Float.toString(value));
+		}
+
+		public Bindings bind(int index, double value) throws ComposerException {
+			return set(index, Double.isNaN(value) || Double.isInfinite(value) ? quote(Double.toString(value)) : Double.toString(value));
+		}
+
+		public Bindings bind(int index, String value) throws ComposerException {
+			return set(index, value == null ? "null" : quote(value));
+		}
+
+		private Bindings set(int index, String json) throws ComposerException {
+			if (index <= 0) {
+				throw new ComposerException(ComposerException.INVALID_INPUT_ERROR, "Finding index 0, must start from 1");
+			}
+			if (index > values.length) {
+				throw new ComposerException(ComposerException.INVALID_INPUT_ERROR, "Too many parameters");
+			}
+			if (values[index - 1] == null) bound++;
+			values[index - 1] = json;
+			return this;
+		}
+
+		private static String quote(String value) {
+			return new StringBuilder(value.length() + 2).append('"')
+					.append(JsonStringEncoder.getInstance().quoteAsString(value)).append('"').toString();
+		}
+
+		private String head() throws ComposerException {
+			if (bound != values.length) {
+				for (int i = 0; ; i++) {
+					if (values[i] == null) {
+						throw new ComposerException(ComposerException.INVALID_INPUT_ERROR, "Missing parameter " + (i + 1));
+					}
+				}
+			}
+			int length = 0;
+			for (int i = 0; i < values.length; i++) {
+				length += query.slotPrefixes[i].length() + values[i].length();
+			}
+			StringBuilder json = new StringBuilder(length + 1);
+			for (int i = 0; i < values.length; i++) {
+				json.append(query.slotPrefixes[i]).append(values[i]);
+			}
+			return json.toString();
+		}
+
+		/**
+		 * Set the parameter to a value already written as JSON
+		 */
+		Bindings bindJSON(int index, String json) throws ComposerException {
+			return set(index, json);
+		}
+	}
+}
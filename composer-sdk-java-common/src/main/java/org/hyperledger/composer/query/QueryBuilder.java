@@ -9,11 +9,18 @@ package org.hyperledger.composer.query;
 import org.hyperledger.composer.ComposerAPI;
 import org.hyperledger.composer.ComposerException;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 public class QueryBuilder<T> {
 	private String condition;
 	private String limit;
 	private String skip;
 	private String[] orderFields;
+	private Set<String> projection;
+	private int pageSize;
 
 	private int conditionOrder;
 	private int orderOrder;
@@ -78,6 +85,10 @@ public class QueryBuilder<T> {
 			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR,
 					"where clause can only be specified for once");
 		}
+		if (this.pageSize > 0) {
+			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR,
+					"limit cannot be combined with pageSize");
+		}
 		this.limitOrder = this.currentOrder++;
 		if (!"?".equals(limit)) {
 			try {
@@ -100,6 +111,10 @@ public class QueryBuilder<T> {
 			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR,
 					"skip clause can only be specified for once");
 		}
+		if (this.pageSize > 0) {
+			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR,
+					"skip cannot be combined with pageSize");
+		}
 		this.skipOrder = this.currentOrder++;
 		if (!"?".equals(skip)) {
 			try {
@@ -113,10 +128,90 @@ public class QueryBuilder<T> {
 		return this;
 	}
 
+	/**
+	 * Only decode the given fields of each result; the other fields of the results are left unset. The query sent
+	 * to the chaincode is not affected.
+	 *
+	 * @param fields names of the fields declared by the queried class or its super classes
+	 */
+	public QueryBuilder<T> fields(String... fields) throws ComposerException {
+		if (this.projection != null) {
+			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR,
+					"fields can only be specified for once");
+		}
+		if (fields == null || fields.length == 0) {
+			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR,
+					"at least one field must be specified");
+		}
+		this.projection = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(fields)));
+		return this;
+	}
+
+	/**
+	 * Fetch the results page by page with LIMIT and SKIP, the next page in the background while the previous one is
+	 * consumed, instead of all at once. The iteration stops at the first page shorter than the page size.
+	 *
+	 * @param pageSize the number of results of a page
+	 */
+	public QueryBuilder<T> pageSize(int pageSize) throws ComposerException {
+		if (this.pageSize > 0) {
+			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR,
+					"pageSize can only be specified for once");
+		}
+		if (pageSize <= 0) {
+			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR, "pageSize must be positive");
+		}
+		if (this.limitOrder >= 0 || this.skipOrder >= 0) {
+			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR,
+					"pageSize cannot be combined with limit or skip");
+		}
+		this.pageSize = pageSize;
+		return this;
+	}
+
+	/**
+	 * Split the query into ranges of a field, executed concurrently and merged by the orderBy clause if any. The
+	 * resources whose field is null or missing fall in no range and are not returned. The results are merged by their
+	 * decoded fields, so with {@link #fields} they also have the fields of the orderBy clause.
+	 *
+	 * @param field  the field to split on, preferably indexed
+	 * @param bounds strings or numbers in strictly ascending order; n bounds make n + 1 ranges
+	 */
+	public PartitionedQuery<T> partitionByRange(String field, Object... bounds) throws ComposerException {
+		checkPartitionable();
+		return PartitionedQuery.ranges(this.api, clazz, this.condition, this.orderFields, this.projection, field, bounds);
+	}
+
+	/**
+	 * Split the query into LIMIT/SKIP windows of the given size, executed concurrently and concatenated in order
+	 * until the first short window
+	 */
+	public PartitionedQuery<T> partitionByWindow(int windowSize) throws ComposerException {
+		checkPartitionable();
+		return PartitionedQuery.windows(this.api, clazz, this.condition, this.orderFields, this.projection, windowSize);
+	}
+
+	private void checkPartitionable() throws ComposerException {
+		if (this.limitOrder >= 0 || this.skipOrder >= 0 || this.pageSize > 0) {
+			throw new ComposerException(ComposerException.INVALID_INPUT_ERROR,
+					"partitions cannot be combined with limit, skip or pageSize");
+		}
+	}
+
 	public CompiledQuery<T> build() {
 		// return the query for execution
-		return new CompiledQuery<>(this.api, clazz, this.condition, this.conditionOrder, this.orderFields, this.orderOrder,
-                this.limit, this.limitOrder, this.skip, this.skipOrder);
+		CompiledQuery<T> query = new CompiledQuery<>(this.api, prepare());
+		query.projection(this.projection);
+		return query;
+	}
+
+	/**
+	 * Compile the query once for any number of executions, possibly concurrent, each with its own
+	 * {@link PreparedQuery#bindings()}
+	 */
+	public PreparedQuery<T> prepare() {
+		return new PreparedQuery<>(this.api, clazz, this.condition, this.conditionOrder, this.orderFields, this.orderOrder,
+				this.limit, this.limitOrder, this.skip, this.skipOrder, this.projection, this.pageSize);
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,163 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class AdaptiveChunkerTest {
+
+	private static List<Integer> items(int count) {
+		List<Integer> items = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			items.add(i);
+		}
+		return items;
+	}
+
+	private static CompletableFuture<Void> failed(Throwable e) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		future.completeExceptionally(e);
+		return future;
+	}
+
+	@Test
+	public void testChunksByChars() throws Exception {
+		AdaptiveChunker chunker = new AdaptiveChunker(30, 10, 30, 1, Long.MAX_VALUE);
+		List<List<Integer>> chunks = new ArrayList<>();
+		chunker.submit(Arrays.asList(1, 2, 3, 4, 5), i -> 10, chunk -> {
+			chunks.add(new ArrayList<>(chunk));
+			return CompletableFuture.completedFuture(null);
+		});
+		assertEquals(chunks, Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5)));
+	}
+
+	@Test
+	public void testLargeItemIsSentAlone() throws Exception {
+		AdaptiveChunker chunker = new AdaptiveChunker(10, 10, 10, 1, Long.MAX_VALUE);
+		List<Integer> sizes = new ArrayList<>();
+		chunker.submit(Arrays.asList(1, 100, 1), i -> i, chunk -> {
+			sizes.add(chunk.size());
+			return CompletableFuture.completedFuture(null);
+		});
+		assertEquals(sizes, Arrays.asList(1, 1, 1));
+	}
+
+	@Test
+	public void testBudgetFollowsLatency() throws Exception {
+		AdaptiveChunker chunker = new AdaptiveChunker(100, 10, 1000, 1, 60000);
+		chunker.submit(items(10), i -> 1, chunk -> CompletableFuture.completedFuture(null));
+		assertTrue(chunker.budgetChars() > 100);
+
+		chunker = new AdaptiveChunker(100, 10, 1000, 1, 1);
+		chunker.submit(items(3), i -> 100, chunk -> CompletableFuture.runAsync(() -> {
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		assertTrue(chunker.budgetChars() < 100);
+	}
+
+	@Test
+	public void testOversizedChunksAreSplit() throws Exception {
+		AdaptiveChunker chunker = new AdaptiveChunker(1000, 10, 1000, 1, Long.MAX_VALUE);
+		List<Integer> sent = new ArrayList<>();
+		chunker.submit(items(8), i -> 10, chunk -> {
+			if (chunk.size() > 2) {
+				return failed(new ComposerException(new RuntimeException("RESOURCE_EXHAUSTED: gRPC message exceeds maximum size")));
+			}
+			sent.addAll(chunk);
+			return CompletableFuture.completedFuture(null);
+		});
+		assertEquals(sent, items(8));
+		assertTrue(chunker.budgetChars() <= 40);
+	}
+
+	@Test
+	public void testTimeoutIsNotRetried() throws Exception {
+		AdaptiveChunker chunker = new AdaptiveChunker(1000, 10, 1000, 1, Long.MAX_VALUE);
+		AtomicInteger calls = new AtomicInteger();
+		try {
+			chunker.submit(items(10), i -> 10, chunk -> {
+				calls.incrementAndGet();
+				return failed(new TimeoutException("commit"));
+			});
+			fail("the timeout should be reported");
+		} catch (ComposerException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		assertEquals(calls.get(), 1);
+		assertEquals(chunker.budgetChars(), 50);
+	}
+
+	@Test
+	public void testBoundedConcurrency() throws Exception {
+		AdaptiveChunker chunker = new AdaptiveChunker(10, 10, 10, 3, Long.MAX_VALUE);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		AtomicInteger inFlight = new AtomicInteger(), maxInFlight = new AtomicInteger();
+		Set<Integer> sent = Collections.synchronizedSet(new HashSet<>());
+		try {
+			chunker.submit(items(50), i -> 10, chunk -> {
+				maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+				sent.addAll(chunk);
+				return CompletableFuture.runAsync(() -> {
+					try {
+						Thread.sleep(2);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					inFlight.decrementAndGet();
+				}, executor);
+			});
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(sent.size(), 50);
+		assertTrue(maxInFlight.get() <= 3);
+		assertTrue(maxInFlight.get() > 1);
+	}
+
+	@Test
+	public void testFailureStopsSending() throws Exception {
+		AdaptiveChunker chunker = new AdaptiveChunker(10, 10, 10, 1, Long.MAX_VALUE);
+		AtomicInteger calls = new AtomicInteger();
+		try {
+			chunker.submit(items(5), i -> 10, chunk -> calls.incrementAndGet() == 2
+					? failed(new ComposerException("rejected")) : CompletableFuture.completedFuture(null));
+			fail("the failure should be reported");
+		} catch (ComposerException e) {
+			assertEquals(e.getMessage(), "rejected");
+		}
+		assertEquals(calls.get(), 2);
+	}
+
+	@Test(timeOut = 10000)
+	public void testChunksCompletingOnTheCallersPool() throws Exception {
+		AdaptiveChunker chunker = new AdaptiveChunker(10, 10, 10, 2, Long.MAX_VALUE);
+		ForkJoinPool pool = new ForkJoinPool(1);
+		try {
+			pool.submit(() -> {
+				chunker.submit(items(5), i -> 10, chunk -> CompletableFuture.runAsync(() -> {
+				}, pool));
+				return null;
+			}).get();
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
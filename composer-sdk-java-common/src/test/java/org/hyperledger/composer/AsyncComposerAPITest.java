@@ -0,0 +1,147 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.hyperledger.composer.system.AddAsset;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hyperledger.composer.ComposerException.INVALID_INPUT_ERROR;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+public class AsyncComposerAPITest {
+
+	private final User SAMPLE_PARTICIPANT = new User("234");
+	private final SampleAsset SAMPLE_ASSET = new SampleAsset().id("123").value(123).user(SAMPLE_PARTICIPANT);
+
+	@Mock
+	AsyncEngine engine;
+
+	private AsyncComposerAPI composerAPI;
+
+	@BeforeMethod(alwaysRun = true)
+	public void init() {
+		MockitoAnnotations.initMocks(this);
+		composerAPI = new AsyncComposerAPI(engine, Runnable::run);
+	}
+
+	@Test
+	public void testCreateAssets() throws Exception {
+		CompletableFuture<String> submitted = new CompletableFuture<>();
+		when(engine.submitTransaction(any())).thenReturn(submitted);
+		CompletableFuture<BulkResult> result = composerAPI.createAssets(Collections.singletonList(SAMPLE_ASSET));
+		assertFalse(result.isDone());
+
+		submitted.complete("result");
+		assertEquals(result.get().succeeded(), Collections.singleton(SampleAsset.class.getName()));
+		ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+		verify(engine).submitTransaction(json.capture());
+		AddAsset transaction = ResourceSerializer.fromJSON(json.getValue(), AddAsset.class);
+		assertEquals(transaction.targetRegistry.registryId, SampleAsset.class.getName());
+		assertEquals(transaction.resources, new Object[]{SAMPLE_ASSET});
+	}
+
+	@Test
+	public void testWritesInvalidateTheCaches() throws Exception {
+		ComposerAPI blocking = new ComposerAPI(mock(Engine.class)).cache(new ResourceCache(10, 60000));
+		ResourceCache cache = blocking.cache();
+		cache.get(ComposerAPI.RegistryType.Asset.name(), SampleAsset.class.getName(), "123", () -> "cached");
+		cache.get(ComposerAPI.RegistryType.Participant.name(), User.class.getName(), "234", () -> "cached");
+		when(engine.submitTransaction(any())).thenReturn(CompletableFuture.completedFuture("result"));
+
+		composerAPI.updateAssets(Collections.singletonList(SAMPLE_ASSET)).get();
+		assertEquals(cache.size(), 2);
+		composerAPI.caches(blocking);
+		composerAPI.updateAssets(Collections.singletonList(SAMPLE_ASSET)).get();
+		assertEquals(cache.size(), 1);
+		composerAPI.removeParticipant(User.class, "234").get();
+		assertEquals(cache.size(), 0);
+	}
+
+	@Test
+	public void testEmptyCollections() throws Exception {
+		assertTrue(composerAPI.createAssets(Collections.emptyList()).get().succeeded().isEmpty());
+		assertNull(composerAPI.removeParticipants(User.class, null).get());
+		verifyZeroInteractions(engine);
+	}
+
+	@Test
+	public void testGetAsset() throws Exception {
+		when(engine.getResourceInRegistry(ComposerAPI.RegistryType.Asset.name(), SampleAsset.class.getName(), "123"))
+				.thenReturn(CompletableFuture.completedFuture(ResourceSerializer.toJSONString(SAMPLE_ASSET)));
+		assertEquals(composerAPI.getAsset(SampleAsset.class, "123").get(), SAMPLE_ASSET);
+	}
+
+	@Test
+	public void testGetParticipantFields() throws Exception {
+		Admin admin = new Admin();
+		admin.id = "1";
+		admin.role = "auditor";
+		when(engine.getResourceInRegistry(ComposerAPI.RegistryType.Participant.name(), Admin.class.getName(), "1"))
+				.thenReturn(CompletableFuture.completedFuture(ResourceSerializer.toJSONString(admin)));
+		Admin result = composerAPI.getParticipant(Admin.class, "1", Collections.singleton("id")).get();
+		assertEquals(result.id, "1");
+		assertNull(result.role);
+	}
+
+	@Test
+	public void testQuery() throws Exception {
+		when(engine.executeQuery("build", "SELECT org.hyperledger.composer.SampleAsset", "{}"))
+				.thenReturn(CompletableFuture.completedFuture(ResourceSerializer.toJSONString(new SampleAsset[]{SAMPLE_ASSET})));
+		List<SampleAsset> result = composerAPI.executeQuery(SampleAsset.class, "build", "SELECT org.hyperledger.composer.SampleAsset", "{}").get();
+		assertEquals(result, Collections.singletonList(SAMPLE_ASSET));
+	}
+
+	@Test
+	public void testQueryException() throws Exception {
+		when(engine.executeQuery(any(), any(), any())).thenReturn(CompletableFuture.completedFuture("illegal json"));
+		assertComposerException(composerAPI.executeQuery(SampleAsset.class, "build", "SELECT org.hyperledger.composer.SampleAsset", "{}"),
+				"parse executeQuery result error");
+	}
+
+	@Test
+	public void testEngineException() throws Exception {
+		CompletableFuture<String> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new ComposerException("exception"));
+		when(engine.submitTransaction(any())).thenReturn(failed);
+		try {
+			composerAPI.updateAsset(SAMPLE_ASSET).get();
+			fail("the failure of the engine should be passed on");
+		} catch (ExecutionException e) {
+			assertEquals(e.getCause().getMessage(), "exception");
+		}
+	}
+
+	@Test
+	public void testException() throws Exception {
+		assertComposerException(composerAPI.getAsset(null, null), "Cannot get asset of null class");
+		assertComposerException(composerAPI.getParticipant(null, null), "Cannot get participant of null class");
+		assertComposerException(composerAPI.removeAsset(null, null), "Cannot remove asset with null asset class");
+		assertComposerException(composerAPI.removeParticipants(null, Collections.singleton("213")), "Cannot remove participants with null asset class");
+	}
+
+	private static void assertComposerException(CompletableFuture<?> future, String message) throws InterruptedException {
+		try {
+			future.get();
+			fail("expect " + message);
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof ComposerException);
+			assertEquals(((ComposerException) e.getCause()).getErrorCode(), INVALID_INPUT_ERROR);
+			assertEquals(e.getCause().getMessage(), message);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class BulkResultTest {
+
+	@Test
+	public void testPartitionKeepsOrder() {
+		Map<Class<?>, List<Object>> partitions = BulkResult.partition(Arrays.asList(1, "a", 2, 3L, "b"));
+		assertEquals(new ArrayList<>(partitions.keySet()), Arrays.asList(Integer.class, String.class, Long.class));
+		assertEquals(partitions.get(Integer.class), Arrays.asList(1, 2));
+		assertEquals(partitions.get(String.class), Arrays.asList("a", "b"));
+	}
+
+	@Test
+	public void testPartitionsRunConcurrently() throws Exception {
+		CountDownLatch latch = new CountDownLatch(2);
+		BulkResult result = BulkResult.write(Arrays.asList(1, "a"), ForkJoinPool.commonPool(), partition -> {
+			latch.countDown();
+			try {
+				assertTrue(latch.await(10, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				throw new ComposerException(e);
+			}
+		});
+		assertTrue(result.success());
+		assertEquals(result.succeeded(), new HashSet<>(Arrays.asList(Integer.class.getName(), String.class.getName())));
+	}
+
+	@Test
+	public void testSingleFailureIsRethrown() {
+		ComposerException failure = new ComposerException("rejected");
+		try {
+			BulkResult.write(Arrays.asList(1, 2), Runnable::run, partition -> {
+				throw failure;
+			});
+			fail("the failure should be thrown");
+		} catch (ComposerException e) {
+			assertSame(e, failure);
+		}
+	}
+
+	@Test
+	public void testFailuresAreReportedByRegistry() {
+		try {
+			BulkResult.write(Arrays.asList(1, "a", 2L), Runnable::run, partition -> {
+				if (!(partition.get(0) instanceof String)) {
+					throw new ComposerException(ComposerException.INVALID_INPUT_ERROR, "rejected " + partition.size());
+				}
+			});
+			fail("the failures should be reported");
+		} catch (BulkWriteException e) {
+			assertEquals(e.getErrorCode(), ComposerException.INVALID_INPUT_ERROR);
+			assertEquals(e.getMessage(), "failed to write 2 of 3 registries: java.lang.Integer (rejected 1) java.lang.Long (rejected 1)");
+			assertEquals(e.result().succeeded(), Collections.singleton(String.class.getName()));
+			assertEquals(e.result().failures().keySet(), new LinkedHashSet<>(Arrays.asList(Integer.class.getName(), Long.class.getName())));
+		} catch (ComposerException e) {
+			fail("expect a BulkWriteException", e);
+		}
+	}
+
+	@Test
+	public void testWriteAsync() throws Exception {
+		CompletableFuture<Void> pending = new CompletableFuture<>();
+		CompletableFuture<BulkResult> result = BulkResult.writeAsync(Arrays.asList(1, "a"),
+				partition -> partition.get(0) instanceof String ? pending : CompletableFuture.completedFuture(null));
+		assertFalse(result.isDone());
+
+		pending.completeExceptionally(new ComposerException("rejected"));
+		try {
+			result.get();
+			fail("the failure should be reported");
+		} catch (ExecutionException e) {
+			BulkWriteException failure = (BulkWriteException) e.getCause();
+			assertEquals(failure.result().succeeded(), Collections.singleton(Integer.class.getName()));
+			assertEquals(failure.result().failures().get(String.class.getName()).getMessage(), "rejected");
+		}
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		assertSame(BulkResult.write(Collections.emptyList(), Runnable::run, partition -> fail("nothing to write")), BulkResult.empty());
+		assertSame(BulkResult.writeAsync(null, partition -> null).get(), BulkResult.empty());
+	}
+}
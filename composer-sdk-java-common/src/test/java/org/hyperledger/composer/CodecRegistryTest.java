@@ -0,0 +1,151 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.hyperledger.composer.annotation.Asset;
+import org.hyperledger.composer.annotation.Concept;
+import org.hyperledger.composer.annotation.DataField;
+import org.hyperledger.composer.annotation.ResourceCodec;
+import org.hyperledger.composer.model.Entry;
+import org.hyperledger.composer.system.AddAsset;
+import org.hyperledger.composer.system.AssetRegistry;
+import org.hyperledger.composer.system.AssetTransaction;
+import org.hyperledger.composer.system.Registry;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class CodecRegistryTest {
+
+	@Test
+	public void testCodecName() {
+		assertEquals(ResourceCodec.codecName("org.acme.Car"), "org.acme.Car_ComposerCodec");
+		assertEquals(ResourceCodec.codecName("org.acme.Garage$Car"), "org.acme.Garage_Car_ComposerCodec");
+		assertEquals(ResourceCodec.codecName("Car"), "Car_ComposerCodec");
+	}
+
+	@Test
+	public void testGeneratedCodecs() {
+		ResourceCodec<?> registry = CodecRegistry.codec(Registry.class);
+		assertNotNull(registry);
+		assertTrue(registry.field("registryId") >= 0);
+		assertEquals(registry.field("$class"), -1);
+
+		// fields are covered by the codec of the class declaring them
+		assertTrue(CodecRegistry.codec(AssetRegistry.class).newInstance() instanceof AssetRegistry);
+		assertEquals(CodecRegistry.codec(AssetRegistry.class).field("registryId"), -1);
+		ResourceCodec<?> transaction = CodecRegistry.codec(AssetTransaction.class);
+		assertNotNull(transaction);
+		assertNull(transaction.newInstance());
+		assertTrue(transaction.field("resources") >= 0);
+		assertTrue(CodecRegistry.codec(AddAsset.class).newInstance() instanceof AddAsset);
+
+		// private fields are left to reflection
+		ResourceCodec<?> entry = CodecRegistry.codec(Entry.class);
+		assertTrue(entry.newInstance() instanceof Entry);
+		assertEquals(entry.field("key"), -1);
+		assertNull(CodecRegistry.codec(String.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testGeneratedPrimitiveAccessors() throws Exception {
+		ResourceCodec<Gauge> codec = (ResourceCodec<Gauge>) CodecRegistry.codec(Gauge.class);
+		Gauge gauge = codec.newInstance();
+		codec.setLong(gauge, codec.field("count"), 5L);
+		codec.setInt(gauge, codec.field("size"), 2);
+		codec.setDouble(gauge, codec.field("average"), 0.5);
+		codec.setBoolean(gauge, codec.field("valid"), true);
+		assertEquals(codec.getLong(gauge, codec.field("count")), 5L);
+		assertEquals(codec.getInt(gauge, codec.field("size")), 2);
+		assertEquals(codec.getDouble(gauge, codec.field("average")), 0.5);
+		assertTrue(codec.getBoolean(gauge, codec.field("valid")));
+
+		// generated, not the boxing defaults of the interface; auxiliary classes such as Readings get no codec
+		assertNull(CodecRegistry.codec(Readings.class));
+		for (Class<?> primitive : new Class<?>[]{long.class, int.class, double.class, boolean.class}) {
+			String suffix = Character.toUpperCase(primitive.getName().charAt(0)) + primitive.getName().substring(1);
+			codec.getClass().getDeclaredMethod("get" + suffix, Gauge.class, int.class);
+			codec.getClass().getDeclaredMethod("set" + suffix, Gauge.class, int.class, primitive);
+		}
+	}
+
+	@Test
+	public void testRegisteredCodec() {
+		CountingCodec codec = new CountingCodec();
+		ResourceSerializer.registerCodec(codec);
+		Counted counted = new Counted();
+		counted.id = "1";
+		String json = ResourceSerializer.toJSONString(counted);
+		assertEquals(ResourceSerializer.fromJSON(json, Counted.class).id, "1");
+		assertEquals(codec.created.get(), 1);
+		assertEquals(codec.read.get(), 1);
+		assertEquals(codec.written.get(), 1);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "codec is null")
+	public void testRegisterNull() {
+		ResourceSerializer.registerCodec(null);
+	}
+
+	@Concept
+	static class Gauge {
+		@DataField
+		long count;
+
+		@DataField
+		int size;
+
+		@DataField
+		double average;
+
+		@DataField
+		boolean valid;
+	}
+
+	private static class CountingCodec implements ResourceCodec<Counted> {
+		final AtomicInteger created = new AtomicInteger();
+		final AtomicInteger read = new AtomicInteger();
+		final AtomicInteger written = new AtomicInteger();
+
+		@Override
+		public Class<Counted> type() {
+			return Counted.class;
+		}
+
+		@Override
+		public Counted newInstance() {
+			created.incrementAndGet();
+			return new Counted();
+		}
+
+		@Override
+		public int field(String name) {
+			return "id".equals(name) ? 0 : -1;
+		}
+
+		@Override
+		public Object get(Counted resource, int field) {
+			read.incrementAndGet();
+			return resource.id;
+		}
+
+		@Override
+		public void set(Counted resource, int field, Object value) {
+			written.incrementAndGet();
+			resource.id = (String) value;
+		}
+	}
+}
+
+@Asset
+class Counted {
+	@DataField(primary = true)
+	String id;
+}
@@ -9,6 +9,7 @@ package org.hyperledger.composer;
 import org.hyperledger.composer.annotation.Asset;
 import org.hyperledger.composer.annotation.DataField;
 import org.hyperledger.composer.annotation.Pointer;
+import org.hyperledger.composer.query.CompiledQuery;
 import org.hyperledger.composer.query.SelectQuery;
 import org.hyperledger.composer.system.*;
 import org.mockito.*;
@@ -16,13 +17,20 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hyperledger.composer.ComposerException.INVALID_INPUT_ERROR;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
 import static org.testng.AssertJUnit.assertNotNull;
 
 public class ComposerAPITest {
@@ -35,6 +43,8 @@ public class ComposerAPITest {
 		return new Object[][]{
 				{(ComposerApiFunction) api -> api.getAsset(null, null), "Cannot get asset of null class"},
 				{(ComposerApiFunction) api -> api.getParticipant(null, null), "Cannot get participant of null class"},
+				{(ComposerApiFunction) api -> api.getAssets(null, Collections.singleton("1")), "Cannot get assets of null class"},
+				{(ComposerApiFunction) api -> api.getParticipants(null, Collections.singleton("1")), "Cannot get participants of null class"},
 				{(ComposerApiFunction) api -> api.removeAssets(null, Collections.singleton("213")), "Cannot remove assets with null asset class"},
 				{(ComposerApiFunction) api -> api.removeAsset(null, null), "Cannot remove asset with null asset class"},
 				{(ComposerApiFunction) api -> api.removeParticipants(null, Collections.singleton("213")), "Cannot remove participants with null asset class"},
@@ -55,6 +65,8 @@ public class ComposerAPITest {
 	@BeforeMethod(alwaysRun = true)
 	public void init() {
 		MockitoAnnotations.initMocks(this);
+		// the spy is kept between the tests
+		composerAPI.cache(null).queryCache(null).writeScheduler(null);
 	}
 
 	@Test
@@ -87,6 +99,25 @@ public class ComposerAPITest {
 		testParticipantOperation(ComposerAPI::createParticipant, AddParticipant.class, this::addUpdateParticipantCheck);
 	}
 
+	@Test
+	public void testGetAssetFields() throws Exception {
+		when(engine.getResourceInRegistry(ComposerAPI.RegistryType.Asset.name(), SampleAsset.class.getName(), "123"))
+				.thenReturn(ResourceSerializer.toJSONString(SAMPLE_ASSET));
+		assertEquals(composerAPI.getAsset(SampleAsset.class, "123", Collections.singleton("value")), new SampleAsset().value(123));
+	}
+
+	@Test
+	public void testGetParticipantFields() throws Exception {
+		Admin admin = new Admin();
+		admin.id = "1";
+		admin.role = "auditor";
+		when(engine.getResourceInRegistry(ComposerAPI.RegistryType.Participant.name(), Admin.class.getName(), "1"))
+				.thenReturn(ResourceSerializer.toJSONString(admin));
+		Admin result = composerAPI.getParticipant(Admin.class, "1", Collections.singleton("id"));
+		assertEquals(result.id, "1");
+		assertNull(result.role);
+	}
+
 	@Test
 	public void testUpdateParticipant() throws Exception {
 		testParticipantOperation(ComposerAPI::updateParticipant, UpdateParticipant.class, this::addUpdateParticipantCheck);
@@ -97,6 +128,57 @@ public class ComposerAPITest {
 		testParticipantOperation((api, o) -> api.removeParticipant(User.class, "123"), RemoveParticipant.class, this::removeParticipantCheck);
 	}
 
+	@Test
+	public void testCreateMixedParticipants() throws Exception {
+		Admin admin = new Admin();
+		admin.id = "2";
+		BulkResult result = composerAPI.createParticipants(Arrays.asList(new User("1"), admin, new User("3")));
+		assertEquals(result.succeeded(), new HashSet<>(Arrays.asList(User.class.getName(), Admin.class.getName())));
+		verify(engine, times(2)).submitTransaction(jsonCaptor.capture());
+		Map<String, Integer> sizes = new HashMap<>();
+		for (String json : jsonCaptor.getAllValues()) {
+			AddParticipant transaction = ResourceSerializer.fromJSON(json, AddParticipant.class);
+			sizes.put(transaction.targetRegistry.registryId, transaction.resources.length);
+		}
+		assertEquals(sizes.get(User.class.getName()), Integer.valueOf(2));
+		assertEquals(sizes.get(Admin.class.getName()), Integer.valueOf(1));
+	}
+
+	@Test
+	public void testMixedWriteRunsOnWriteExecutor() throws Exception {
+		Executor previous = composerAPI.writeExecutor();
+		AtomicInteger tasks = new AtomicInteger();
+		composerAPI.writeExecutor(task -> {
+			tasks.incrementAndGet();
+			task.run();
+		});
+		try {
+			Admin admin = new Admin();
+			admin.id = "2";
+			composerAPI.createParticipants(Arrays.asList(new User("1"), admin));
+		} finally {
+			composerAPI.writeExecutor(previous);
+		}
+		verify(engine, times(2)).submitTransaction(any());
+		assertEquals(tasks.get(), 1);
+	}
+
+	@Test
+	public void testMixedWriteFailure() throws Exception {
+		when(engine.submitTransaction(argThat(json -> json.contains(Admin.class.getName()))))
+				.thenThrow(new ComposerException(INVALID_INPUT_ERROR, "rejected"));
+		Admin admin = new Admin();
+		admin.id = "2";
+		try {
+			composerAPI.updateParticipants(Arrays.asList(new User("1"), admin));
+			fail("the failed registry should be reported");
+		} catch (BulkWriteException e) {
+			assertEquals(e.getErrorCode(), INVALID_INPUT_ERROR);
+			assertEquals(e.result().succeeded(), Collections.singleton(User.class.getName()));
+			assertEquals(e.result().failures().get(Admin.class.getName()).getMessage(), "rejected");
+		}
+	}
+
 	@Test
 	public void testGetParticipant() throws Exception {
 		when(engine.getResourceInRegistry(ComposerAPI.RegistryType.Participant.name(), User.class.getName(), "123"))
@@ -128,6 +210,80 @@ public class ComposerAPITest {
 		verify(engine).getResourceInRegistry(ComposerAPI.RegistryType.Asset.name(), SampleAsset.class.getName(), "123");
 	}
 
+	@Test
+	public void testCachedGetAsset() throws Exception {
+		when(engine.getResourceInRegistry(ComposerAPI.RegistryType.Asset.name(), SampleAsset.class.getName(), "123"))
+				.thenReturn(ResourceSerializer.toJSONString(SAMPLE_ASSET));
+		composerAPI.cache(new ResourceCache(10, 60000));
+		assertEquals(composerAPI.getAsset(SampleAsset.class, "123"), SAMPLE_ASSET);
+		assertEquals(composerAPI.getAsset(SampleAsset.class, "123"), SAMPLE_ASSET);
+		verify(engine, times(1)).getResourceInRegistry(ComposerAPI.RegistryType.Asset.name(), SampleAsset.class.getName(), "123");
+
+		composerAPI.updateAsset(SAMPLE_ASSET);
+		assertEquals(composerAPI.getAsset(SampleAsset.class, "123"), SAMPLE_ASSET);
+		verify(engine, times(2)).getResourceInRegistry(ComposerAPI.RegistryType.Asset.name(), SampleAsset.class.getName(), "123");
+		assertEquals(composerAPI.cache().hits(), 1);
+	}
+
+	@Test
+	public void testScheduledUpdateAsset() throws Exception {
+		WriteScheduler scheduler = new WriteScheduler(4, true);
+		composerAPI.writeScheduler(scheduler);
+		composerAPI.updateAsset(SAMPLE_ASSET);
+		assertEquals(composerAPI.writeScheduler(), scheduler);
+		verify(engine, times(1)).submitTransaction(anyString());
+		assertEquals(scheduler.coalesced(), 0);
+	}
+
+	@Test
+	public void testGetAssets() throws Exception {
+		when(engine.executeQuery(eq("build"), anyString(), anyString()))
+				.thenReturn(ResourceSerializer.toJSONString(new SampleAsset[]{SAMPLE_ASSET}));
+		Map<String, SampleAsset> assets = composerAPI.getAssets(SampleAsset.class, Arrays.asList("456", "123", "456"));
+		assertEquals(new ArrayList<>(assets.keySet()), Arrays.asList("456", "123"));
+		assertEquals(assets.get("123"), SAMPLE_ASSET);
+		assertNull(assets.get("456"));
+
+		ArgumentCaptor<String> parameters = ArgumentCaptor.forClass(String.class);
+		verify(engine).executeQuery(eq("build"), jsonCaptor.capture(), parameters.capture());
+		assertEquals(jsonCaptor.getValue(), "SELECT org.hyperledger.composer.SampleAsset WHERE (id == _$v0 OR id == _$v1)");
+		assertEquals(parameters.getValue(), "{\"v0\":\"456\",\"v1\":\"123\"}");
+	}
+
+	@Test
+	public void testGetParticipantsInBatches() throws Exception {
+		when(engine.executeQuery(eq("build"), anyString(), anyString())).thenReturn("[]");
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < ComposerAPI.MULTI_GET_BATCH_SIZE * 2 + 1; i++) {
+			ids.add(String.valueOf(i));
+		}
+		Map<String, User> participants = composerAPI.getParticipants(User.class, ids);
+		assertEquals(participants.size(), ids.size());
+		verify(engine, times(3)).executeQuery(eq("build"), anyString(), anyString());
+	}
+
+	@Test
+	public void testGetParticipantsRunOnReadExecutor() throws Exception {
+		when(engine.executeQuery(eq("build"), anyString(), anyString())).thenReturn("[]");
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < ComposerAPI.MULTI_GET_BATCH_SIZE * 2 + 1; i++) {
+			ids.add(String.valueOf(i));
+		}
+		Executor previous = composerAPI.readExecutor();
+		AtomicInteger tasks = new AtomicInteger();
+		composerAPI.readExecutor(task -> {
+			tasks.incrementAndGet();
+			task.run();
+		});
+		try {
+			composerAPI.getParticipants(User.class, ids);
+		} finally {
+			composerAPI.readExecutor(previous);
+		}
+		// the first of the three batches runs on the calling thread
+		assertEquals(tasks.get(), 2);
+	}
+
 	@Test
 	public void testQuery() throws Exception {
 		when(engine.executeQuery("build", "SELECT org.hyperledger.composer.SampleAsset WHERE (id='123')", "{}"))
@@ -137,6 +293,49 @@ public class ComposerAPITest {
 		assertEquals(result, Collections.singletonList(SAMPLE_ASSET));
 	}
 
+	@Test
+	public void testCachedQuery() throws Exception {
+		when(engine.executeQuery("build", "SELECT org.hyperledger.composer.SampleAsset WHERE (id=_$v0)", "{\"v0\":\"123\"}"))
+				.thenReturn(ResourceSerializer.toJSONString(new SampleAsset[]{SAMPLE_ASSET}));
+		composerAPI.queryCache(new QueryCache(1024 * 1024, 60000));
+		for (int i = 0; i < 2; i++) {
+			CompiledQuery<SampleAsset> query = composerAPI.select().from(SampleAsset.class).where("id=?").build();
+			query.bind(1, "123");
+			assertEquals(query.execute(), Collections.singletonList(SAMPLE_ASSET));
+		}
+		verify(engine, times(1)).executeQuery(anyString(), anyString(), anyString());
+
+		composerAPI.removeAsset(SampleAsset.class, "123");
+		CompiledQuery<SampleAsset> query = composerAPI.select().from(SampleAsset.class).where("id=?").build();
+		query.bind(1, "123");
+		query.execute();
+		verify(engine, times(2)).executeQuery(anyString(), anyString(), anyString());
+	}
+
+	@Test
+	public void testStreamQuery() throws Exception {
+		when(engine.executeQuery("build", "SELECT org.hyperledger.composer.SampleAsset WHERE (id='123')", "{}"))
+				.thenReturn(ResourceSerializer.toJSONString(new SampleAsset[]{SAMPLE_ASSET, SAMPLE_ASSET}));
+		SelectQuery select = composerAPI.select();
+		try (Stream<SampleAsset> result = select.from(SampleAsset.class).where("id='123'").build().stream()) {
+			assertEquals(result.collect(Collectors.toList()), Arrays.asList(SAMPLE_ASSET, SAMPLE_ASSET));
+		}
+	}
+
+	@Test
+	public void testIterateQueryException() throws Exception {
+		when(engine.executeQuery("build", "SELECT org.hyperledger.composer.SampleAsset WHERE (id='123')", "{}"))
+				.thenReturn("illegal json");
+		SelectQuery select = composerAPI.select();
+		try {
+			select.from(SampleAsset.class).where("id='123'").build().iterate();
+			fail("illegal json should be rejected");
+		} catch (ComposerException e) {
+			assertEquals(e.getErrorCode(), INVALID_INPUT_ERROR);
+			assertEquals(e.getMessage(), "parse executeQuery result error");
+		}
+	}
+
 	@Test
 	public void testQueryException() throws Exception {
 		when(engine.executeQuery("build", "SELECT org.hyperledger.composer.SampleAsset WHERE (id='123')", "{}"))
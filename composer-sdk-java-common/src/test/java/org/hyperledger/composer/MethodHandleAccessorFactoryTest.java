@@ -0,0 +1,153 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.hyperledger.composer.annotation.Concept;
+import org.hyperledger.composer.annotation.DataField;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+import static org.testng.Assert.*;
+
+public class MethodHandleAccessorFactoryTest {
+
+	private static FieldAccessor accessor(AccessorFactory factory, String name) throws Exception {
+		Field field = Readings.class.getDeclaredField(name);
+		field.setAccessible(true);
+		return factory.field(field);
+	}
+
+	@DataProvider
+	public static Object[][] factories() {
+		return new Object[][]{{new MethodHandleAccessorFactory()}, {new ReflectionAccessorFactory()},
+				{new CodecAccessorFactory(new ReflectionAccessorFactory())}};
+	}
+
+	@AfterMethod(alwaysRun = true)
+	public void restoreFactory() {
+		ResourceSerializer.accessorFactory(new CodecAccessorFactory(new MethodHandleAccessorFactory()));
+	}
+
+	@Test(dataProvider = "factories")
+	public void testPrimitiveAccessors(AccessorFactory factory) throws Exception {
+		Readings readings = new Readings();
+		accessor(factory, "count").setLong(readings, 12L);
+		accessor(factory, "size").setInt(readings, 3);
+		accessor(factory, "average").setDouble(readings, 1.5);
+		accessor(factory, "valid").setBoolean(readings, true);
+		assertEquals(accessor(factory, "count").getLong(readings), 12L);
+		assertEquals(accessor(factory, "size").getInt(readings), 3);
+		assertEquals(accessor(factory, "average").getDouble(readings), 1.5);
+		assertTrue(accessor(factory, "valid").getBoolean(readings));
+		assertEquals(accessor(factory, "count").get(readings), 12L);
+	}
+
+	@Test(dataProvider = "factories")
+	public void testObjectAccessor(AccessorFactory factory) throws Exception {
+		Readings readings = new Readings();
+		FieldAccessor name = accessor(factory, "name");
+		name.set(readings, "sensor");
+		assertEquals(name.get(readings), "sensor");
+	}
+
+	@Test(dataProvider = "factories", expectedExceptions = IllegalArgumentException.class)
+	public void testSetWrongType(AccessorFactory factory) throws Exception {
+		accessor(factory, "name").set(new Readings(), 123);
+	}
+
+	@Test(dataProvider = "factories")
+	public void testConstructor(AccessorFactory factory) throws Exception {
+		Constructor<?> constructor = Readings.class.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		assertTrue(factory.constructor(constructor).get() instanceof Readings);
+	}
+
+	@Test(dataProvider = "factories")
+	public void testSerializerRoundTrip(AccessorFactory factory) {
+		ResourceSerializer.accessorFactory(factory);
+		Readings readings = new Readings();
+		readings.count = Long.MAX_VALUE;
+		readings.size = 7;
+		readings.average = 2.25;
+		readings.valid = true;
+		readings.name = "sensor";
+		String json = ResourceSerializer.toJSONString(readings);
+		assertEquals(json, "{\"count\":9223372036854775807,\"size\":7,\"average\":2.25,\"valid\":true,"
+				+ "\"name\":\"sensor\",\"$class\":\"org.hyperledger.composer.Readings\"}");
+		assertEquals(ResourceSerializer.fromJSON(json, Readings.class), readings);
+	}
+
+	@Test
+	public void testMissingPrimitiveKeepsDefault() {
+		Readings readings = ResourceSerializer.fromJSON("{\"name\":\"sensor\"}", Readings.class);
+		assertEquals(readings.count, 0L);
+		assertFalse(readings.valid);
+		assertEquals(readings.name, "sensor");
+	}
+
+	@Test(dataProvider = "factories", expectedExceptions = IllegalArgumentException.class,
+			expectedExceptionsMessageRegExp = "null for primitive field org.hyperledger.composer.Readings.count")
+	public void testNullPrimitiveRejected(AccessorFactory factory) {
+		ResourceSerializer.accessorFactory(factory);
+		ResourceSerializer.fromJSON("{\"count\":null,\"name\":\"sensor\"}", Readings.class);
+	}
+
+	@Test(dataProvider = "factories")
+	public void testNullReferenceAccepted(AccessorFactory factory) {
+		ResourceSerializer.accessorFactory(factory);
+		Readings readings = ResourceSerializer.fromJSON("{\"count\":3,\"name\":null}", Readings.class);
+		assertEquals(readings.count, 3L);
+		assertNull(readings.name);
+	}
+}
+
+@Concept
+class Readings {
+	@DataField
+	long count;
+
+	@DataField
+	int size;
+
+	@DataField
+	double average;
+
+	@DataField
+	boolean valid;
+
+	@DataField
+	String name;
+
+	Readings() {
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+
+		Readings that = (Readings) o;
+
+		return count == that.count && size == that.size && Double.compare(that.average, average) == 0
+				&& valid == that.valid && (name != null ? name.equals(that.name) : that.name == null);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = (int) (count ^ (count >>> 32));
+		result = 31 * result + size;
+		long temp = Double.doubleToLongBits(average);
+		result = 31 * result + (int) (temp ^ (temp >>> 32));
+		result = 31 * result + (valid ? 1 : 0);
+		result = 31 * result + (name != null ? name.hashCode() : 0);
+		return result;
+	}
+}
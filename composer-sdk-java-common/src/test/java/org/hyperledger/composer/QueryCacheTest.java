@@ -0,0 +1,115 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class QueryCacheTest {
+	private static final String QUERY = "SELECT org.hyperledger.composer.SampleAsset WHERE (value > _$v0)";
+
+	@Test
+	public void testParametersAreCanonical() throws Exception {
+		QueryCache cache = new QueryCache(1024, 60000);
+		AtomicInteger loads = new AtomicInteger();
+		cache.get(SampleAsset.class, "build", QUERY, "{\"v0\":1,\"v1\":{\"b\":2,\"a\":1}}", () -> "[" + loads.incrementAndGet() + "]");
+		assertEquals(cache.get(SampleAsset.class, "build", QUERY, "{\"v1\":{\"a\":1,\"b\":2},\"v0\":1}", () -> "[" + loads.incrementAndGet() + "]"), "[1]");
+		assertEquals(cache.get(SampleAsset.class, "build", QUERY, "{\"v0\":2}", () -> "[" + loads.incrementAndGet() + "]"), "[2]");
+		assertEquals(cache.hits(), 1);
+		assertEquals(cache.misses(), 2);
+	}
+
+	@Test
+	public void testCanonical() {
+		assertEquals(QueryCache.canonical("{\"b\":[{\"d\":1,\"c\":2}],\"a\":\"x\"}"), "{\"a\":\"x\",\"b\":[{\"c\":2,\"d\":1}]}");
+		assertEquals(QueryCache.canonical("not json {"), "not json {");
+	}
+
+	@Test
+	public void testByteBudget() throws Exception {
+		QueryCache cache = new QueryCache(40, 60000);
+		cache.get(SampleAsset.class, "build", QUERY, "{\"v0\":1}", () -> "0123456789");
+		cache.get(SampleAsset.class, "build", QUERY, "{\"v0\":2}", () -> "0123456789");
+		assertEquals(cache.bytes(), 40);
+		cache.get(SampleAsset.class, "build", QUERY, "{\"v0\":3}", () -> "01234");
+		assertEquals(cache.bytes(), 30);
+		assertEquals(cache.evictions(), 1);
+		assertEquals(cache.get(SampleAsset.class, "build", QUERY, "{\"v0\":1}", () -> "reloaded"), "reloaded");
+
+		cache.get(SampleAsset.class, "build", QUERY, "{\"v0\":4}", () -> "this result is larger than the whole budget");
+		assertTrue(cache.bytes() <= 40);
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		QueryCache cache = new QueryCache(1024, 1);
+		cache.get(SampleAsset.class, "build", QUERY, "{}", () -> "[]");
+		Thread.sleep(5);
+		assertEquals(cache.get(SampleAsset.class, "build", QUERY, "{}", () -> "[1]"), "[1]");
+	}
+
+	@Test
+	public void testInvalidateByClass() throws Exception {
+		QueryCache cache = new QueryCache(1024, 60000);
+		cache.get(SampleAsset.class, "build", QUERY, "{}", () -> "[asset]");
+		cache.get(User.class, "build", "SELECT org.hyperledger.composer.User", "{}", () -> "[user]");
+		cache.invalidate(SampleAsset.class);
+		assertEquals(cache.get(SampleAsset.class, "build", QUERY, "{}", () -> "[new]"), "[new]");
+		assertEquals(cache.get(User.class, "build", "SELECT org.hyperledger.composer.User", "{}", () -> "[new]"), "[user]");
+	}
+
+	@Test
+	public void testInvalidateAfterEviction() throws Exception {
+		QueryCache cache = new QueryCache(40, 60000);
+		cache.get(SampleAsset.class, "build", QUERY, "{\"v0\":1}", () -> "0123456789");
+		cache.get(User.class, "build", QUERY, "{}", () -> "0123456789");
+		cache.get(SampleAsset.class, "build", QUERY, "{\"v0\":2}", () -> "0123456789");
+		assertEquals(cache.evictions(), 1);
+		cache.invalidate(SampleAsset.class);
+		assertEquals(cache.bytes(), 20);
+		cache.invalidate(SampleAsset.class);
+		assertEquals(cache.bytes(), 20);
+		cache.invalidate(User.class);
+		assertEquals(cache.bytes(), 0);
+	}
+
+	@Test
+	public void testSingleFlight() throws Exception {
+		QueryCache cache = new QueryCache(1024, 60000);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			Future<String> first = executor.submit(() -> cache.get(SampleAsset.class, "build", QUERY, "{}", () -> {
+				loads.incrementAndGet();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new ComposerException(e);
+				}
+				return "[]";
+			}));
+			while (loads.get() == 0) {
+				Thread.sleep(1);
+			}
+			Future<String> second = executor.submit(() -> cache.get(SampleAsset.class, "build", QUERY, "{}", () -> "[" + loads.incrementAndGet() + "]"));
+			while (cache.misses() < 2) {
+				Thread.sleep(1);
+			}
+			release.countDown();
+			assertEquals(first.get(10, TimeUnit.SECONDS), "[]");
+			assertEquals(second.get(10, TimeUnit.SECONDS), "[]");
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(loads.get(), 1);
+	}
+}
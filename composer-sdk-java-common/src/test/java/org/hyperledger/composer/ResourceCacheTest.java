@@ -0,0 +1,152 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class ResourceCacheTest {
+
+	@Test
+	public void testReadThrough() throws Exception {
+		ResourceCache cache = new ResourceCache(10, 60000);
+		AtomicInteger loads = new AtomicInteger();
+		for (int i = 0; i < 3; i++) {
+			assertEquals(cache.get("Asset", "a.A", "1", () -> "v" + loads.incrementAndGet()), "v1");
+		}
+		assertEquals(loads.get(), 1);
+		assertEquals(cache.hits(), 2);
+		assertEquals(cache.misses(), 1);
+		assertEquals(cache.get("Participant", "a.A", "1", () -> "other"), "other");
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		ResourceCache cache = new ResourceCache(10, 1);
+		cache.get("Asset", "a.A", "1", () -> "old");
+		Thread.sleep(5);
+		assertEquals(cache.get("Asset", "a.A", "1", () -> "new"), "new");
+		assertEquals(cache.evictions(), 1);
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		ResourceCache cache = new ResourceCache(10, 60000);
+		cache.get("Asset", "a.A", "1", () -> "old");
+		cache.invalidate("Asset", "a.A", "1");
+		assertEquals(cache.get("Asset", "a.A", "1", () -> "new"), "new");
+	}
+
+	@Test
+	public void testInvalidateWhileLoadingDropsTheLoad() throws Exception {
+		ResourceCache cache = new ResourceCache(10, 60000);
+		assertEquals(cache.get("Asset", "a.A", "1", () -> {
+			cache.invalidate("Asset", "a.A", "1");
+			return "stale";
+		}), "stale");
+		assertEquals(cache.size(), 0);
+	}
+
+	@Test
+	public void testFailuresAreNotCached() throws Exception {
+		ResourceCache cache = new ResourceCache(10, 60000);
+		try {
+			cache.get("Asset", "a.A", "1", () -> {
+				throw new ComposerException("not found");
+			});
+			fail("the failure should be thrown");
+		} catch (ComposerException e) {
+			assertEquals(e.getMessage(), "not found");
+		}
+		assertEquals(cache.get("Asset", "a.A", "1", () -> "v"), "v");
+	}
+
+	@Test(timeOut = 10000)
+	public void testErrorsReleaseTheKey() throws Exception {
+		ResourceCache cache = new ResourceCache(10, 60000);
+		try {
+			cache.get("Asset", "a.A", "1", () -> {
+				throw new AssertionError("broken loader");
+			});
+			fail("the error should be thrown");
+		} catch (AssertionError e) {
+			assertEquals(e.getMessage(), "broken loader");
+		}
+		assertEquals(cache.get("Asset", "a.A", "1", () -> "v"), "v");
+	}
+
+	@Test
+	public void testSingleFlight() throws Exception {
+		ResourceCache cache = new ResourceCache(10, 60000);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch loading = new CountDownLatch(1), release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			results.add(executor.submit(() -> cache.get("Asset", "a.A", "1", () -> {
+				loads.incrementAndGet();
+				loading.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new ComposerException(e);
+				}
+				return "v";
+			})));
+			assertTrue(loading.await(10, TimeUnit.SECONDS));
+			for (int i = 0; i < 3; i++) {
+				results.add(executor.submit(() -> cache.get("Asset", "a.A", "1", () -> "v" + loads.incrementAndGet())));
+			}
+			while (cache.misses() < 4) {
+				Thread.sleep(1);
+			}
+			release.countDown();
+			for (Future<String> result : results) {
+				assertEquals(result.get(10, TimeUnit.SECONDS), "v");
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(loads.get(), 1);
+	}
+
+	@Test
+	public void testHotEntriesSurviveAScan() throws Exception {
+		ResourceCache cache = new ResourceCache(2, 60000);
+		for (int i = 0; i < 15; i++) {
+			cache.get("Asset", "a.A", "hot", () -> "hot");
+		}
+		for (int i = 0; i < 50; i++) {
+			String id = String.valueOf(i);
+			cache.get("Asset", "a.A", id, () -> id);
+		}
+		assertEquals(cache.size(), 2);
+		assertEquals(cache.get("Asset", "a.A", "hot", () -> "reloaded"), "hot");
+	}
+
+	@Test
+	public void testSegmentsShareTheCapacity() throws Exception {
+		int maximumSize = ResourceCache.MAX_SEGMENTS * ResourceCache.MIN_SEGMENT_SIZE + 5;
+		ResourceCache cache = new ResourceCache(maximumSize, 60000);
+		for (int i = 0; i < maximumSize * 4; i++) {
+			String id = String.valueOf(i);
+			cache.get("Asset", "a.A", id, () -> id);
+		}
+		assertTrue(cache.size() <= maximumSize);
+		assertTrue(cache.size() > maximumSize / 2);
+		cache.invalidateAll();
+		assertEquals(cache.size(), 0);
+		assertEquals(cache.get("Asset", "a.A", "hot", () -> "hot"), "hot");
+		assertEquals(cache.get("Asset", "a.A", "hot", () -> "reloaded"), "hot");
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.hyperledger.composer.annotation.Asset;
+import org.hyperledger.composer.annotation.Concept;
+import org.hyperledger.composer.model.Entry;
+import org.hyperledger.composer.system.AddAsset;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class ResourceDescriptorTest {
+
+	@Test
+	public void testCached() {
+		assertSame(ResourceDescriptor.of(SampleAsset.class), ResourceDescriptor.of(SampleAsset.class));
+	}
+
+	@Test
+	public void testModelDescriptor() {
+		ResourceDescriptor descriptor = ResourceDescriptor.of(SampleAsset.class);
+		assertTrue(descriptor.isModel());
+		assertEquals(descriptor.modelAnnotation(), Asset.class);
+		assertFalse(descriptor.alwaysEmbedded());
+		assertEquals(descriptor.idField().name(), "id");
+
+		List<ResourceDescriptor.FieldDescriptor> fields = descriptor.fields();
+		assertEquals(fields.size(), 3);
+		assertEquals(fields.get(0).name(), "id");
+		assertEquals(fields.get(1).fullName(), SampleAsset.class.getName() + ".value");
+		assertTrue(fields.get(1).embedded());
+		assertTrue(fields.get(2).pointer());
+		assertFalse(fields.get(2).embedded());
+	}
+
+	@Test
+	public void testInheritedFields() {
+		ResourceDescriptor descriptor = ResourceDescriptor.of(AddAsset.class);
+		assertEquals(descriptor.fields().get(0).name(), "resources");
+		assertEquals(descriptor.fields().get(1).name(), "targetRegistry");
+		assertNull(descriptor.idField());
+	}
+
+	@Test
+	public void testConceptDescriptor() {
+		ResourceDescriptor descriptor = ResourceDescriptor.of(Entry.class);
+		assertEquals(descriptor.modelAnnotation(), Concept.class);
+		assertTrue(descriptor.alwaysEmbedded());
+		assertEquals(descriptor.newInstance(), new Entry());
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class,
+			expectedExceptionsMessageRegExp = "unable to create an instance for java.math.BigDecimal")
+	public void testNoDefaultConstructor() {
+		ResourceDescriptor descriptor = ResourceDescriptor.of(BigDecimal.class);
+		assertFalse(descriptor.isModel());
+		descriptor.newInstance();
+	}
+}
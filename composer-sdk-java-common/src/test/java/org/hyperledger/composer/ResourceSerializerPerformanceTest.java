@@ -0,0 +1,181 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hyperledger.composer.annotation.DataField;
+import org.hyperledger.composer.annotation.Pointer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+
+@Test(groups = "performance")
+public class ResourceSerializerPerformanceTest {
+	private static final Logger logger = LoggerFactory.getLogger(ResourceSerializerPerformanceTest.class);
+
+	private static final int BATCH_SIZE = 10000;
+	private static final int ROUNDS = 20;
+	private static final int THREADS = 1000;
+	private static final String JSON = "{\"id\":\"1\",\"values\":[1,2,3],\"$class\":\"org.acme.Sample\"}";
+
+	/**
+	 * the mapper-per-thread design the serializer used before it shared one mapper
+	 */
+	private static final ThreadLocal<ObjectMapper> threadLocalMapper = ThreadLocal.withInitial(() -> {
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		mapper.setVisibilityChecker(mapper.getSerializationConfig().getDefaultVisibilityChecker()
+				.withFieldVisibility(JsonAutoDetect.Visibility.ANY).withGetterVisibility(JsonAutoDetect.Visibility.NONE)
+				.withSetterVisibility(JsonAutoDetect.Visibility.NONE)
+				.withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
+		return mapper;
+	});
+
+	private static List<SampleAsset> batch() {
+		List<SampleAsset> result = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			result.add(new SampleAsset().id(String.valueOf(i)).value(i).user(new User("u" + i)));
+		}
+		return result;
+	}
+
+	/**
+	 * the per-object reflection walk the serializer used before descriptors were cached
+	 */
+	private static int reflectiveFieldWalk(Object resource) throws IllegalAccessException {
+		int count = 0;
+		List<Field> fields = new LinkedList<>();
+		for (Class c = resource.getClass(); c != Object.class; c = c.getSuperclass()) {
+			fields.addAll(Arrays.asList(c.getDeclaredFields()));
+		}
+		for (Field field : fields) {
+			if (field.getAnnotation(DataField.class) == null && !field.isAnnotationPresent(Pointer.class)) {
+				continue;
+			}
+			field.setAccessible(true);
+			if (field.get(resource) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static int descriptorFieldWalk(Object resource) {
+		int count = 0;
+		for (ResourceDescriptor.FieldDescriptor field : ResourceDescriptor.of(resource.getClass()).fields()) {
+			if (field.get(resource) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void compareFieldWalk() throws Exception {
+		List<SampleAsset> assets = batch();
+		long reflective = Long.MAX_VALUE, cached = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			int reflectiveCount = 0;
+			for (SampleAsset asset : assets) {
+				reflectiveCount += reflectiveFieldWalk(asset);
+			}
+			reflective = Math.min(reflective, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			int cachedCount = 0;
+			for (SampleAsset asset : assets) {
+				cachedCount += descriptorFieldWalk(asset);
+			}
+			cached = Math.min(cached, System.nanoTime() - start);
+			assertEquals(cachedCount, reflectiveCount);
+		}
+		logger.info("field walk over {} assets: reflective {}us, cached descriptor {}us",
+				BATCH_SIZE, reflective / 1000, cached / 1000);
+	}
+
+	@Test
+	public void roundTrip() {
+		List<SampleAsset> assets = batch();
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			String json = ResourceSerializer.toJSONString(assets);
+			List<SampleAsset> result = ResourceSerializer.arrayFromJSON(json, SampleAsset.class);
+			best = Math.min(best, System.nanoTime() - start);
+			assertEquals(result.size(), BATCH_SIZE);
+		}
+		logger.info("round trip of {} assets: {}us", BATCH_SIZE, best / 1000);
+	}
+
+	private static long shortLivedThreads(Callable<?> task) throws InterruptedException {
+		AtomicInteger failures = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>(THREADS);
+		long start = System.nanoTime();
+		for (int i = 0; i < THREADS; i++) {
+			Thread thread = new Thread(() -> {
+				try {
+					task.call();
+				} catch (Exception e) {
+					failures.incrementAndGet();
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(failures.get(), 0);
+		return System.nanoTime() - start;
+	}
+
+	@Test
+	public void compareMapperPerThread() throws Exception {
+		long threadLocal = Long.MAX_VALUE, shared = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS / 4; round++) {
+			threadLocal = Math.min(threadLocal, shortLivedThreads(() -> {
+				ObjectMapper mapper = threadLocalMapper.get();
+				return mapper.valueToTree(mapper.readTree(JSON).get("values"));
+			}));
+			shared = Math.min(shared, shortLivedThreads(() ->
+					ResourceSerializer.mapperToJSON(ResourceSerializer.toJsonNode(JSON).get("values"))));
+		}
+		logger.info("{} short-lived threads: mapper per thread {}us, shared mapper {}us",
+				THREADS, threadLocal / 1000, shared / 1000);
+	}
+
+	@Test
+	public void compareLongArrays() throws Exception {
+		long[] readings = new long[BATCH_SIZE];
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			readings[i] = i * 31L;
+		}
+		ObjectMapper mapper = threadLocalMapper.get();
+		long tree = Long.MAX_VALUE, streamed = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			long[] viaTree = mapper.treeToValue(mapper.readTree(mapper.valueToTree(readings).toString()), long[].class);
+			tree = Math.min(tree, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			long[] viaCodec = ResourceSerializer.fromJSON(ResourceSerializer.toJSONString(readings), long[].class);
+			streamed = Math.min(streamed, System.nanoTime() - start);
+			assertEquals(viaCodec, viaTree);
+		}
+		logger.info("round trip of {} longs: via tree {}us, streamed {}us", BATCH_SIZE, tree / 1000, streamed / 1000);
+	}
+}
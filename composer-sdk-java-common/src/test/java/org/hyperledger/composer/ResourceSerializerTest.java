@@ -6,15 +6,20 @@
 
 package org.hyperledger.composer;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.hyperledger.composer.annotation.Asset;
 import org.hyperledger.composer.annotation.DataField;
 import org.hyperledger.composer.annotation.Participant;
 import org.hyperledger.composer.annotation.Pointer;
 import org.hyperledger.composer.model.Entry;
+import org.hyperledger.composer.system.AddAsset;
+import org.hyperledger.composer.system.AssetRegistry;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -38,6 +43,196 @@ public class ResourceSerializerTest {
 		assertEquals(ResourceSerializer.toJSONString(null), "null");
 	}
 
+	@DataProvider
+	public static Object[][] streamingResources() {
+		HashMap<String, String> mapField = new HashMap<>();
+		mapField.put("key\n1", "value \"1\"");
+		mapField.put("key2", "\u00e9\t");
+		AddAsset addAsset = new AddAsset();
+		addAsset.targetRegistry = ResourceSerializer.fromID(TestAsset.class.getName(), AssetRegistry.class);
+		addAsset.resources = new Object[]{new TestAsset().id("1").mapField(mapField)
+				.listField(Arrays.asList(new User("33"), null)).arrayField(new User[]{new User("55")})
+				.embeddedArrayField(new User[]{new User("77")}), new TestAsset().id("2")};
+		return new Object[][]{
+				{addAsset},
+				{Arrays.asList(new User("1"), new User("2"))},
+				{new Object[]{"text", 1L, 2, 3.5, true, new Date(1234567L)}},
+				{new long[]{1L, Long.MIN_VALUE}},
+				{new Double[]{1.5, null}},
+				{new String[]{"a", null}},
+				{new Date[]{new Date(42L)}},
+				{"plain string"},
+				{mapField},
+		};
+	}
+
+	@Test(dataProvider = "streamingResources")
+	public void testStreamingMatchesTree(Object resource) {
+		assertEquals(ResourceSerializer.toJSONString(resource), ResourceSerializer.toJSON(resource).toString());
+	}
+
+	@Test
+	public void testEstimatedChars() {
+		HashMap<String, String> mapField = new HashMap<>();
+		mapField.put("key", "value");
+		Object[] resources = {new TestAsset().id("1").mapField(mapField).listField(Arrays.asList(new User("33"), null))
+				.arrayField(new User[]{new User("55")}).embeddedArrayField(new User[]{new User("77")}),
+				new Object[]{"text", -10L, 2, false, new Date(1234567L), new long[0], new int[]{Integer.MIN_VALUE}},
+				new ArrayList<>()};
+		for (Object resource : resources) {
+			assertEquals(AdaptiveChunker.estimatedChars(resource), ResourceSerializer.toJSONString(resource).length());
+		}
+	}
+
+	@Test
+	public void testEstimatedCharsOfDoubles() {
+		double[] doubles = {-Double.MIN_NORMAL, 0.5};
+		assertEquals(AdaptiveChunker.estimatedChars(doubles), ResourceSerializer.toJSONString(doubles).length() + 21);
+	}
+
+	@Test
+	public void testWriteJSON() throws Exception {
+		StringWriter writer = new StringWriter();
+		try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+			generator.writeStartArray();
+			ResourceSerializer.writeJSON(new User("1"), generator);
+			ResourceSerializer.writeJSON(null, generator);
+			generator.writeEndArray();
+		}
+		assertEquals(writer.toString(), "[{\"id\":\"1\",\"$class\":\"org.hyperledger.composer.User\"},null]");
+	}
+
+	@DataProvider
+	public static Object[][] relationships() {
+		return new Object[][]{
+				{"resource:org.hyperledger.composer.User#1", new User("1")},
+				{"resource:org.hyperledger.composer.User#a#b", new User("a#b")},
+				{"resource:#1", null},
+				{"resource:org.hyperledger.composer.User#", null},
+				{"resource:org.hyperledger.composer.User", null},
+				{"see resource:org.hyperledger.composer.User#1", null},
+				{"", null},
+		};
+	}
+
+	@Test(dataProvider = "relationships")
+	public void testParseResourceNode(String relationship, Object expected) {
+		assertEquals(ResourceSerializer.parseResourceNode(relationship), expected);
+	}
+
+	@DataProvider
+	public static Object[][] primitiveArrays() {
+		long[] longs = new long[40];
+		for (int i = 0; i < longs.length; i++) {
+			longs[i] = Long.MAX_VALUE - i;
+		}
+		return new Object[][]{
+				{longs},
+				{new long[0]},
+				{new int[]{1, Integer.MIN_VALUE}},
+				{new double[]{1.5, -0.25, 1e300}},
+				{new boolean[]{true, false, true}},
+				{new Long[]{1L, null}},
+				{new Integer[]{null, 2}},
+				{new Double[]{2.5, null}},
+				{new Boolean[]{false, null}},
+				{new String[]{"a", null, "\"quoted\""}},
+				{new Date[]{new Date(42L), null}},
+		};
+	}
+
+	@Test(dataProvider = "primitiveArrays")
+	public void testPrimitiveArrays(Object array) {
+		String json = ResourceSerializer.toJSONString(array);
+		assertEquals(json, ResourceSerializer.toJSON(array).toString());
+		assertEquals(ResourceSerializer.fromJSON(json, array.getClass()), array);
+	}
+
+	@Test
+	public void testPrimitiveArrayCoercion() {
+		assertEquals(ResourceSerializer.fromJSON("[1, \"2\", 3.0, null]", long[].class), new long[]{1, 2, 3, 0});
+		assertEquals(ResourceSerializer.fromJSON("[\"1970-01-01T00:00:00.042+0000\", 43]", Date[].class),
+				new Date[]{new Date(42L), new Date(43L)});
+	}
+
+	@DataProvider
+	public static Object[][] malformedPrimitiveFields() {
+		return new Object[][]{
+				{"{\"count\":\"abc\"}"},
+				{"{\"count\":{\"a\":1}}"},
+				{"{\"count\":1.5}"},
+				{"{\"size\":[1]}"},
+				{"{\"size\":3000000000}"},
+				{"{\"average\":\"abc\"}"},
+				{"{\"valid\":{}}"},
+				{"{\"valid\":\"maybe\"}"},
+		};
+	}
+
+	@Test(dataProvider = "malformedPrimitiveFields", expectedExceptions = IllegalArgumentException.class)
+	public void testMalformedPrimitiveField(String json) {
+		ResourceSerializer.fromJSON(json, Readings.class);
+	}
+
+	@Test
+	public void testPrimitiveFieldCoercion() {
+		Readings readings = ResourceSerializer.fromJSON("{\"count\":\"12\",\"size\":3.0,\"average\":2,\"valid\":\"true\"}",
+				Readings.class);
+		assertEquals(readings.count, 12L);
+		assertEquals(readings.size, 3);
+		assertEquals(readings.average, 2.0);
+		assertTrue(readings.valid);
+	}
+
+	@DataProvider
+	public static Object[][] malformedPrimitiveArrays() {
+		return new Object[][]{
+				{"[1, \"abc\"]", long[].class},
+				{"[1.5]", int[].class},
+				{"[true]", double[].class},
+				{"[\"maybe\"]", boolean[].class},
+				{"[1, \"abc\"]", Long[].class},
+				{"[2.5]", Integer[].class},
+				{"[\"abc\"]", Double[].class},
+		};
+	}
+
+	@Test(dataProvider = "malformedPrimitiveArrays", expectedExceptions = IllegalArgumentException.class)
+	public void testMalformedPrimitiveArray(String json, Class<?> type) {
+		ResourceSerializer.fromJSON(json, type);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class,
+			expectedExceptionsMessageRegExp = "expect a scalar array element, got START_ARRAY")
+	public void testNestedPrimitiveArray() {
+		ResourceSerializer.fromJSON("[[1]]", long[].class);
+	}
+
+	@Test
+	public void testClassFirst() {
+		User user = ResourceSerializer.fromJSON("{\"$class\":\"org.hyperledger.composer.User\",\"id\":\"1\"}", User.class);
+		assertEquals(user, new User("1"));
+	}
+
+	@Test
+	public void testSubclassNamedLast() {
+		Object result = ResourceSerializer.fromJSON("{\"id\":\"1\",\"role\":\"admin\",\"unknown\":[1,{}]," +
+				"\"$class\":\"org.hyperledger.composer.Admin\"}", User.class);
+		assertEquals(result.getClass(), Admin.class);
+		assertEquals(((Admin) result).id, "1");
+		assertEquals(((Admin) result).role, "admin");
+	}
+
+	@Test
+	public void testResourcesOfTransaction() {
+		AddAsset addAsset = new AddAsset();
+		addAsset.targetRegistry = ResourceSerializer.fromID(TestAsset.class.getName(), AssetRegistry.class);
+		addAsset.resources = new Object[]{new TestAsset().id("1"), new User("2")};
+		AddAsset result = ResourceSerializer.fromJSON(ResourceSerializer.toJSONString(addAsset), AddAsset.class);
+		assertEquals(result.targetRegistry.registryId, TestAsset.class.getName());
+		assertEquals(result.resources, addAsset.resources);
+	}
+
 	@Test(expectedExceptions = NullPointerException.class,
 			expectedExceptionsMessageRegExp = "mapperToJSON gets null")
 	public void testJsonNode() throws Exception {
@@ -102,6 +297,12 @@ public class ResourceSerializerTest {
 			assertNotNull(e);
 			assertEquals(e.getMessage(), errorMessage);
 		}
+		try {
+			ResourceSerializer.toJSONString(o);
+		} catch (IllegalArgumentException e) {
+			assertNotNull(e);
+			assertEquals(e.getMessage(), errorMessage);
+		}
 	}
 
 	@DataProvider
@@ -143,6 +344,65 @@ public class ResourceSerializerTest {
 		assertEquals(entries.get(1), new Entry().key("key2").value("value2"));
 	}
 
+	@Test
+	public void testIterateFromJSON() {
+		String json = "[{\"id\":\"1\",\"$class\":\"org.hyperledger.composer.User\"}, {\"id\":2}]";
+		try (CloseableIterator<User> iterator = ResourceSerializer.iterateFromJSON(json, User.class)) {
+			assertTrue(iterator.hasNext());
+			assertTrue(iterator.hasNext());
+			assertEquals(iterator.next(), new User("1"));
+			assertEquals(iterator.next(), new User("2"));
+			assertFalse(iterator.hasNext());
+		}
+		try (CloseableIterator<User> iterator = ResourceSerializer.iterateFromJSON("[]", User.class)) {
+			assertFalse(iterator.hasNext());
+		}
+	}
+
+	@Test
+	public void testIterateFromJSONIsLazy() {
+		// the broken second element is only noticed once the stream gets there
+		String json = "[{\"id\":\"1\",\"$class\":\"org.hyperledger.composer.User\"}, {\"id\":}]";
+		try (CloseableIterator<User> iterator = ResourceSerializer.iterateFromJSON(json, User.class)) {
+			assertEquals(iterator.stream().findFirst().orElse(null), new User("1"));
+		}
+		try (CloseableIterator<User> iterator = ResourceSerializer.iterateFromJSON(json, User.class)) {
+			iterator.next();
+			iterator.next();
+			fail("the second element should not be parsed");
+		} catch (IllegalArgumentException e) {
+			assertEquals(e.getMessage(), "unable to parse json element");
+		}
+	}
+
+	@Test
+	public void testProjection() {
+		Map<String, String> map = new HashMap<>();
+		map.put("key", "value");
+		TestAsset asset = new TestAsset().id("1").mapField(map).listField(Collections.singletonList(new User("2")))
+				.arrayField(new User[]{new User("3")});
+		String json = ResourceSerializer.toJSONString(asset);
+		assertEquals(ResourceSerializer.fromJSON(json, TestAsset.class, Collections.singleton("id")), new TestAsset().id("1"));
+		assertEquals(ResourceSerializer.fromJSON(json, TestAsset.class, new HashSet<>(Arrays.asList("id", "mapField", "unknown"))),
+				new TestAsset().id("1").mapField(map));
+		assertEquals(ResourceSerializer.fromJSON(json, TestAsset.class, null), asset);
+
+		// skipped subtrees are not bound, so their content does not matter
+		List<User> users = ResourceSerializer.arrayFromJSON("[{\"id\":\"1\",\"extra\":{\"$class\":\"no.such.Type\",\"list\":[1,{}]}}]",
+				User.class, Collections.singleton("id"));
+		assertEquals(users, Collections.singletonList(new User("1")));
+		try (CloseableIterator<User> iterator = ResourceSerializer.iterateFromJSON(
+				"[{\"id\":\"1\",\"$class\":\"org.hyperledger.composer.User\"}]", User.class, Collections.emptySet())) {
+			assertEquals(iterator.next(), new User());
+		}
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class,
+			expectedExceptionsMessageRegExp = "resourceClass class \\[Lorg.hyperledger.composer.User; is array-typed but json '\\{\"id\":\"1\"}' is not")
+	public void testIterateFromJSONWithObject() {
+		ResourceSerializer.iterateFromJSON("{\"id\":\"1\"}", User.class);
+	}
+
 	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "resource is null")
 	public void testArrayFromJSONWithNullResource() {
 		ResourceSerializer.arrayFromJSON(null, Entry.class);
@@ -268,6 +528,12 @@ class User {
 	}
 }
 
+@Participant
+class Admin extends User {
+	@DataField
+	String role;
+}
+
 @Asset
 class NoIdField {
 	@DataField
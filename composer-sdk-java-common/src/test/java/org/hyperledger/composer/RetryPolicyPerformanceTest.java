@@ -0,0 +1,80 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hyperledger.composer.ComposerException.MVCC_READ_CONFLICT;
+
+/**
+ * Simulates clients updating one hot key: a transaction reads the version at endorsement and is invalidated at
+ * commit if another transaction committed in between, as Fabric does.
+ */
+@Test(groups = "performance")
+public class RetryPolicyPerformanceTest {
+	private static final Logger logger = LoggerFactory.getLogger(RetryPolicyPerformanceTest.class);
+	private static final int CLIENTS = 8;
+	private static final int TRANSACTIONS = 100;
+
+	public void testGoodputUnderContention() throws Exception {
+		for (RetryPolicy policy : new RetryPolicy[]{RetryPolicy.NONE, new RetryPolicy(), new RetryPolicy(10, 5, 500, 1)}) {
+			AtomicLong version = new AtomicLong();
+			AtomicInteger committed = new AtomicInteger();
+			ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+			long start = System.nanoTime();
+			try {
+				List<Future<?>> clients = new ArrayList<>();
+				for (int c = 0; c < CLIENTS; c++) {
+					clients.add(executor.submit(() -> {
+						for (int i = 0; i < TRANSACTIONS / CLIENTS; i++) {
+							try {
+								policy.execute(() -> {
+									long read = version.get();
+									sleep(2);
+									if (!version.compareAndSet(read, read + 1)) {
+										throw new ComposerException(MVCC_READ_CONFLICT, "MVCC_READ_CONFLICT", null);
+									}
+									return null;
+								});
+								committed.incrementAndGet();
+							} catch (ComposerException ignored) {
+							}
+						}
+						return null;
+					}));
+				}
+				for (Future<?> client : clients) {
+					client.get();
+				}
+			} finally {
+				executor.shutdown();
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			logger.info("maxAttempts={}: {} of {} committed, {} tx/s, {} retries, {} denied", policy.maxAttempts(),
+					committed.get(), CLIENTS * (TRANSACTIONS / CLIENTS), String.format("%.1f", committed.get() / seconds),
+					policy.retries(RetryPolicy.Reason.MVCC_READ_CONFLICT), policy.budgetDenied());
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hyperledger.composer.ComposerException.*;
+import static org.testng.Assert.*;
+
+public class RetryPolicyTest {
+
+	private static ComposerException conflict() {
+		return new ComposerException(MVCC_READ_CONFLICT, "Transaction(tx) failed: MVCC_READ_CONFLICT", new RuntimeException());
+	}
+
+	@Test
+	public void testClassify() {
+		assertEquals(RetryPolicy.classify(conflict()), RetryPolicy.Reason.MVCC_READ_CONFLICT);
+		assertEquals(RetryPolicy.classify(new RuntimeException(new ComposerException(PHANTOM_READ_CONFLICT, "phantom"))),
+				RetryPolicy.Reason.PHANTOM_READ_CONFLICT);
+		assertNull(RetryPolicy.classify(new ComposerException(TIMEOUT_ERROR, "timeout")));
+		assertNull(RetryPolicy.classify(null));
+	}
+
+	@Test
+	public void testRetriesConflicts() throws Exception {
+		RetryPolicy policy = new RetryPolicy(5, 1, 2, 1);
+		AtomicInteger attempts = new AtomicInteger();
+		assertEquals(policy.execute(() -> {
+			if (attempts.incrementAndGet() < 3) throw conflict();
+			return "ok";
+		}), "ok");
+		assertEquals(attempts.get(), 3);
+		assertEquals(policy.retries(RetryPolicy.Reason.MVCC_READ_CONFLICT), 2);
+		assertEquals(policy.exhausted(RetryPolicy.Reason.MVCC_READ_CONFLICT), 0);
+	}
+
+	@Test
+	public void testOtherFailuresAreNotRetried() {
+		RetryPolicy policy = new RetryPolicy(5, 1, 2, 1);
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			policy.execute(() -> {
+				attempts.incrementAndGet();
+				throw new ComposerException("rejected");
+			});
+			fail("the failure should be thrown");
+		} catch (ComposerException e) {
+			assertEquals(e.getMessage(), "rejected");
+		}
+		assertEquals(attempts.get(), 1);
+	}
+
+	@Test
+	public void testMaxAttempts() {
+		RetryPolicy policy = new RetryPolicy(3, 1, 2, 1);
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			policy.execute(() -> {
+				attempts.incrementAndGet();
+				throw conflict();
+			});
+			fail("the conflict should be thrown");
+		} catch (ComposerException e) {
+			assertEquals(e.getErrorCode(), MVCC_READ_CONFLICT);
+		}
+		assertEquals(attempts.get(), 3);
+		assertEquals(policy.exhausted(RetryPolicy.Reason.MVCC_READ_CONFLICT), 1);
+	}
+
+	@Test
+	public void testBudget() {
+		RetryPolicy policy = new RetryPolicy(100, 1, 1, 0);
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			policy.execute(() -> {
+				attempts.incrementAndGet();
+				throw conflict();
+			});
+			fail("the conflict should be thrown");
+		} catch (ComposerException e) {
+			assertEquals(e.getErrorCode(), MVCC_READ_CONFLICT);
+		}
+		assertEquals(attempts.get(), (int) RetryPolicy.BUDGET_RESERVE + 1);
+		assertEquals(policy.budgetDenied(), 1);
+	}
+
+	@Test
+	public void testDelay() {
+		RetryPolicy policy = new RetryPolicy(40, 10, 100, 1);
+		for (int attempt = 1; attempt < 40; attempt++) {
+			long delay = policy.delayMillis(attempt);
+			assertTrue(delay >= 0 && delay <= Math.min(100, 10L << Math.min(attempt - 1, 10)));
+		}
+	}
+
+	@Test
+	public void testRetriesAsync() throws Exception {
+		RetryPolicy policy = new RetryPolicy(5, 1, 2, 1);
+		AtomicInteger attempts = new AtomicInteger();
+		CompletableFuture<String> result = policy.executeAsync(() -> {
+			CompletableFuture<String> future = new CompletableFuture<>();
+			if (attempts.incrementAndGet() < 3) {
+				future.completeExceptionally(conflict());
+			} else {
+				future.complete("ok");
+			}
+			return future;
+		});
+		assertEquals(result.get(), "ok");
+		assertEquals(attempts.get(), 3);
+
+		CompletableFuture<String> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new ComposerException("rejected"));
+		try {
+			policy.executeAsync(() -> failed).get();
+			fail("the failure should be reported");
+		} catch (ExecutionException e) {
+			assertEquals(e.getCause().getMessage(), "rejected");
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.hyperledger.composer.system.AddAsset;
+import org.hyperledger.composer.system.RemoveParticipant;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+public class TransactionBatcherTest {
+
+	@Mock
+	AsyncEngine engine;
+
+	private AsyncComposerAPI api;
+
+	@BeforeMethod(alwaysRun = true)
+	public void init() {
+		MockitoAnnotations.initMocks(this);
+		api = new AsyncComposerAPI(engine, Runnable::run);
+		when(engine.submitTransaction(any())).thenReturn(CompletableFuture.completedFuture("result"));
+	}
+
+	private List<String> submitted(int times) {
+		ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+		verify(engine, times(times)).submitTransaction(json.capture());
+		return json.getAllValues();
+	}
+
+	@Test
+	public void testBatchSize() throws Exception {
+		CompletableFuture<String> result = new CompletableFuture<>();
+		when(engine.submitTransaction(any())).thenReturn(result);
+		TransactionBatcher batcher = new TransactionBatcher(api, 3, Integer.MAX_VALUE, TimeUnit.HOURS.toMillis(1));
+		CountDownLatch start = new CountDownLatch(1);
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			SampleAsset asset = new SampleAsset().id(String.valueOf(i));
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				synchronized (futures) {
+					futures.add(batcher.createAsset(asset));
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		AddAsset transaction = ResourceSerializer.fromJSON(submitted(1).get(0), AddAsset.class);
+		assertEquals(transaction.targetRegistry.registryId, SampleAsset.class.getName());
+		assertEquals(transaction.resources.length, 3);
+		assertEquals(futures.size(), 3);
+		assertFalse(futures.get(0).isDone());
+		result.complete("result");
+		for (CompletableFuture<Void> future : futures) {
+			assertNull(future.get());
+		}
+		batcher.close();
+	}
+
+	@Test
+	public void testLinger() throws Exception {
+		TransactionBatcher batcher = new TransactionBatcher(api, 100, Integer.MAX_VALUE, 10);
+		CompletableFuture<Void> first = batcher.createAsset(new SampleAsset().id("1"));
+		CompletableFuture<Void> second = batcher.createAsset(new SampleAsset().id("2"));
+		assertNull(first.get(10, TimeUnit.SECONDS));
+		assertNull(second.get(10, TimeUnit.SECONDS));
+		assertEquals(ResourceSerializer.fromJSON(submitted(1).get(0), AddAsset.class).resources.length, 2);
+		batcher.close();
+	}
+
+	@Test
+	public void testPayloadChars() throws Exception {
+		int size = AdaptiveChunker.estimatedChars(new SampleAsset().id("1"));
+		TransactionBatcher batcher = new TransactionBatcher(api, 100, size * 2, TimeUnit.HOURS.toMillis(1));
+		batcher.createAsset(new SampleAsset().id("1"));
+		batcher.createAsset(new SampleAsset().id("2"));
+		batcher.createAsset(new SampleAsset().id("3"));
+		submitted(1);
+		batcher.close();
+		submitted(2);
+	}
+
+	@Test
+	public void testSameResourceIsNotMerged() throws Exception {
+		TransactionBatcher batcher = new TransactionBatcher(api, 100, Integer.MAX_VALUE, TimeUnit.HOURS.toMillis(1));
+		batcher.updateAsset(new SampleAsset().id("1").value(1));
+		batcher.updateAsset(new SampleAsset().id("2").value(1));
+		batcher.updateAsset(new SampleAsset().id("1").value(2));
+		submitted(1);
+		batcher.flush();
+		submitted(2);
+		batcher.close();
+	}
+
+	@Test
+	public void testOperationsAreSeparated() throws Exception {
+		TransactionBatcher batcher = new TransactionBatcher(api, 100, Integer.MAX_VALUE, TimeUnit.HOURS.toMillis(1));
+		batcher.createAsset(new SampleAsset().id("1"));
+		batcher.removeParticipant(User.class, "1");
+		batcher.removeParticipant(User.class, "2");
+		batcher.close();
+		List<String> transactions = submitted(2);
+		RemoveParticipant remove = ResourceSerializer.fromJSON(transactions.get(0).contains("RemoveParticipant")
+				? transactions.get(0) : transactions.get(1), RemoveParticipant.class);
+		assertEquals(remove.targetRegistry.registryId, User.class.getName());
+		assertEquals(remove.resourceIds, new String[]{"1", "2"});
+	}
+
+	@Test
+	public void testFailureFailsBatch() throws Exception {
+		CompletableFuture<String> result = new CompletableFuture<>();
+		result.completeExceptionally(new ComposerException("rejected"));
+		when(engine.submitTransaction(any())).thenReturn(result);
+		TransactionBatcher batcher = new TransactionBatcher(api, 2, Integer.MAX_VALUE, TimeUnit.HOURS.toMillis(1));
+		CompletableFuture<Void> first = batcher.createParticipant(new User("1"));
+		CompletableFuture<Void> second = batcher.createParticipant(new User("2"));
+		for (CompletableFuture<Void> future : new CompletableFuture[]{first, second}) {
+			try {
+				future.get();
+				fail("the batch should fail");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof ComposerException);
+				assertEquals(e.getCause().getMessage(), "rejected");
+			}
+		}
+		batcher.close();
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "batcher is closed")
+	public void testClosed() {
+		TransactionBatcher batcher = new TransactionBatcher(api, 2, Integer.MAX_VALUE, 1);
+		batcher.close();
+		batcher.createAsset(new SampleAsset().id("1"));
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class TypeResolverTest {
+
+	@Test
+	public void testResolve() {
+		assertSame(TypeResolver.resolve(User.class.getName()), User.class);
+		assertSame(TypeResolver.resolve(User.class.getName()), User.class);
+		assertNull(TypeResolver.resolve("not.exist.Class"));
+		assertNull(TypeResolver.resolve("not.exist.Class"));
+	}
+
+	@Test
+	public void testContextClassLoader() {
+		Thread thread = Thread.currentThread();
+		ClassLoader original = thread.getContextClassLoader();
+		ClassLoader isolated = new URLClassLoader(new URL[0], null);
+		try {
+			thread.setContextClassLoader(isolated);
+			// classes unknown to the context loader come from the loader of the SDK
+			assertSame(TypeResolver.resolve(User.class.getName()), User.class);
+			thread.setContextClassLoader(null);
+			assertSame(TypeResolver.resolve(User.class.getName()), User.class);
+		} finally {
+			thread.setContextClassLoader(original);
+		}
+	}
+
+	@Test
+	public void testAlternatingContextClassLoaders() {
+		Thread thread = Thread.currentThread();
+		ClassLoader original = thread.getContextClassLoader();
+		CountingLoader first = new CountingLoader(), second = new CountingLoader();
+		try {
+			for (int i = 0; i < 10; i++) {
+				thread.setContextClassLoader(i % 2 == 0 ? first : second);
+				assertSame(TypeResolver.resolve(User.class.getName()), User.class);
+			}
+		} finally {
+			thread.setContextClassLoader(original);
+		}
+		assertEquals(first.loaded.get(), 1);
+		assertEquals(second.loaded.get(), 1);
+	}
+
+	@Test
+	public void testBounded() {
+		Thread thread = Thread.currentThread();
+		ClassLoader original = thread.getContextClassLoader();
+		CountingLoader loader = new CountingLoader();
+		try {
+			thread.setContextClassLoader(loader);
+			assertSame(TypeResolver.resolve(User.class.getName()), User.class);
+			for (int i = 0; i <= TypeResolver.MAX_ENTRIES; i++) {
+				assertNull(TypeResolver.resolve("not.exist.Class" + i));
+			}
+			// names are evicted one at a time, not all at once
+			assertEquals(TypeResolver.size(loader), TypeResolver.MAX_ENTRIES);
+			assertSame(TypeResolver.resolve(User.class.getName()), User.class);
+		} finally {
+			thread.setContextClassLoader(original);
+		}
+	}
+
+	@Test
+	public void testMissesExpire() throws Exception {
+		Thread thread = Thread.currentThread();
+		ClassLoader original = thread.getContextClassLoader();
+		CountingLoader loader = new CountingLoader();
+		try {
+			thread.setContextClassLoader(loader);
+			assertNull(TypeResolver.resolve(CountingLoader.LATE));
+			assertNull(TypeResolver.resolve(CountingLoader.LATE));
+			assertEquals(loader.missed.get(), 1);
+			Thread.sleep(TypeResolver.MISS_TTL_MILLIS + 50);
+			assertNull(TypeResolver.resolve(CountingLoader.LATE));
+			assertEquals(loader.missed.get(), 2);
+		} finally {
+			thread.setContextClassLoader(original);
+		}
+	}
+
+	private static final class CountingLoader extends ClassLoader {
+		private static final String LATE = "not.deployed.Yet";
+		private final AtomicInteger loaded = new AtomicInteger();
+		private final AtomicInteger missed = new AtomicInteger();
+
+		private CountingLoader() {
+			super(TypeResolverTest.class.getClassLoader());
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (name.equals(User.class.getName())) {
+				loaded.incrementAndGet();
+			} else if (name.equals(LATE)) {
+				missed.incrementAndGet();
+			}
+			return super.loadClass(name, resolve);
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer;
+
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class WriteSchedulerTest {
+
+	@Test
+	public void testSameKeyIsSerialized() throws Exception {
+		WriteScheduler scheduler = new WriteScheduler();
+		AtomicInteger running = new AtomicInteger(), overlaps = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int i = 0; i < 32; i++) {
+				results.add(executor.submit(() -> {
+					scheduler.write(Collections.singletonList("a.A#1"), false, () -> {
+						if (running.incrementAndGet() > 1) overlaps.incrementAndGet();
+						sleep(1);
+						running.decrementAndGet();
+					});
+					return null;
+				}));
+			}
+			for (Future<?> result : results) {
+				result.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(overlaps.get(), 0);
+	}
+
+	@Test
+	public void testDifferentKeysRunInParallel() throws Exception {
+		WriteScheduler scheduler = new WriteScheduler(2, false);
+		String first = "a.A#1", second = null;
+		for (int i = 2; second == null; i++) {
+			// find a key on the other stripe
+			String key = "a.A#" + i;
+			CountDownLatch entered = new CountDownLatch(1), release = new CountDownLatch(1);
+			Thread holder = new Thread(() -> {
+				try {
+					scheduler.write(Collections.singletonList(first), false, () -> {
+						entered.countDown();
+						await(release);
+					});
+				} catch (ComposerException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			holder.start();
+			assertTrue(entered.await(10, TimeUnit.SECONDS));
+			CompletableFuture<Void> other = CompletableFuture.runAsync(() -> {
+				try {
+					scheduler.write(Collections.singletonList(key), false, () -> {
+					});
+				} catch (ComposerException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			try {
+				other.get(100, TimeUnit.MILLISECONDS);
+				second = key;
+			} catch (TimeoutException e) {
+				// same stripe, waits for the first write
+			}
+			release.countDown();
+			holder.join(10000);
+			other.get(10, TimeUnit.SECONDS);
+		}
+		assertNotNull(second);
+	}
+
+	@Test
+	public void testQueuedUpdatesAreCoalesced() throws Exception {
+		WriteScheduler scheduler = new WriteScheduler(4, true);
+		List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch entered = new CountDownLatch(1), release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<?> first = executor.submit(() -> {
+				scheduler.write(Collections.singletonList("a.A#1"), true, () -> {
+					written.add(0);
+					entered.countDown();
+					await(release);
+				});
+				return null;
+			});
+			assertTrue(entered.await(10, TimeUnit.SECONDS));
+			List<Future<?>> queued = new ArrayList<>();
+			for (int i = 1; i <= 3; i++) {
+				int value = i;
+				queued.add(executor.submit(() -> {
+					scheduler.write(Collections.singletonList("a.A#1"), true, () -> written.add(value));
+					return null;
+				}));
+				// keep the arrival order
+				Thread.sleep(20);
+			}
+			release.countDown();
+			first.get(10, TimeUnit.SECONDS);
+			for (Future<?> result : queued) {
+				result.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(written, Arrays.asList(0, 3));
+		assertEquals(scheduler.coalesced(), 2);
+	}
+
+	@Test
+	public void testCoalescedUpdatesShareTheOutcome() throws Exception {
+		WriteScheduler scheduler = new WriteScheduler(4, true);
+		CountDownLatch entered = new CountDownLatch(1), release = new CountDownLatch(1), newest = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<?> first = executor.submit(() -> {
+				scheduler.write(Collections.singletonList("a.A#1"), true, () -> {
+					entered.countDown();
+					await(release);
+				});
+				return null;
+			});
+			assertTrue(entered.await(10, TimeUnit.SECONDS));
+			Future<?> dropped = executor.submit(() -> {
+				scheduler.write(Collections.singletonList("a.A#1"), true, () -> fail("the older update should be dropped"));
+				return null;
+			});
+			Thread.sleep(20);
+			Future<?> survivor = executor.submit(() -> {
+				scheduler.write(Collections.singletonList("a.A#1"), true, () -> {
+					await(newest);
+					throw new ComposerException("rejected");
+				});
+				return null;
+			});
+			Thread.sleep(20);
+			release.countDown();
+			first.get(10, TimeUnit.SECONDS);
+			while (scheduler.coalesced() == 0) {
+				Thread.sleep(1);
+			}
+			Thread.sleep(20);
+			assertFalse(dropped.isDone());
+			newest.countDown();
+			for (Future<?> result : Arrays.asList(dropped, survivor)) {
+				try {
+					result.get(10, TimeUnit.SECONDS);
+					fail("the failure of the surviving update should be thrown");
+				} catch (ExecutionException e) {
+					assertEquals(e.getCause().getMessage(), "rejected");
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(scheduler.coalesced(), 1);
+	}
+
+	@Test
+	public void testCreatesAreNotCoalesced() throws Exception {
+		WriteScheduler scheduler = new WriteScheduler(4, true);
+		AtomicInteger writes = new AtomicInteger();
+		for (int i = 0; i < 3; i++) {
+			scheduler.write(Collections.singletonList("a.A#1"), false, writes::incrementAndGet);
+			scheduler.write(Collections.singletonList("a.A#1"), true, writes::incrementAndGet);
+		}
+		assertEquals(writes.get(), 6);
+		assertEquals(scheduler.coalesced(), 0);
+	}
+
+	@Test
+	public void testOverlappingKeySetsDoNotDeadlock() throws Exception {
+		WriteScheduler scheduler = new WriteScheduler(8, false);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		AtomicInteger writes = new AtomicInteger();
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				List<String> keys = i % 2 == 0 ? Arrays.asList("a.A#1", "a.A#2", "a.A#3") : Arrays.asList("a.A#3", "a.A#2", "a.A#1");
+				results.add(executor.submit(() -> {
+					scheduler.write(keys, false, writes::incrementAndGet);
+					return null;
+				}));
+			}
+			for (Future<?> result : results) {
+				result.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(writes.get(), 200);
+	}
+
+	@Test
+	public void testFailureReleasesTheKey() throws Exception {
+		WriteScheduler scheduler = new WriteScheduler(1, true);
+		try {
+			scheduler.write(Collections.singletonList("a.A#1"), true, () -> {
+				throw new ComposerException("rejected");
+			});
+			fail("the failure should be thrown");
+		} catch (ComposerException e) {
+			assertEquals(e.getMessage(), "rejected");
+		}
+		AtomicInteger writes = new AtomicInteger();
+		scheduler.write(Collections.singletonList("a.A#1"), true, writes::incrementAndGet);
+		assertEquals(writes.get(), 1);
+	}
+
+	private static void sleep(long millis) throws ComposerException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new ComposerException(e);
+		}
+	}
+
+	private static void await(CountDownLatch latch) throws ComposerException {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new ComposerException(e);
+		}
+	}
+}
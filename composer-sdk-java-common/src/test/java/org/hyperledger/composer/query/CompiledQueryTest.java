@@ -15,6 +15,8 @@ import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Collections;
+
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertEquals;
@@ -43,6 +45,35 @@ public class CompiledQueryTest {
 				eq("{\"v0\":\"123\",\"v1\":123}"));
 	}
 
+	@Test
+	public void iterate() throws ComposerException {
+		QueryBuilder<TestAsset> builder = new QueryBuilder<>(TestAsset.class, api);
+		CompiledQuery<TestAsset> query = builder.where("strValue == ?").build();
+		query.bind(1, "123");
+		query.iterate();
+		verify(api).iterateQuery(eq(TestAsset.class), eq("build"),
+				eq("SELECT org.hyperledger.composer.query.TestAsset WHERE (strValue == _$v0)"), eq("{\"v0\":\"123\"}"));
+	}
+
+	@Test
+	public void fields() throws ComposerException {
+		QueryBuilder<TestAsset> builder = new QueryBuilder<>(TestAsset.class, api);
+		CompiledQuery<TestAsset> query = builder.where("strValue == ?").fields("strValue").build();
+		query.bind(1, "123");
+		query.execute();
+		query.iterate();
+		String sql = "SELECT org.hyperledger.composer.query.TestAsset WHERE (strValue == _$v0)";
+		verify(api).executeQuery(eq(TestAsset.class), eq("build"), eq(sql), eq("{\"v0\":\"123\"}"),
+				eq(Collections.singleton("strValue")));
+		verify(api).iterateQuery(eq(TestAsset.class), eq("build"), eq(sql), eq("{\"v0\":\"123\"}"),
+				eq(Collections.singleton("strValue")));
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "fields can only be specified for once")
+	public void fieldsTwice() throws ComposerException {
+		new QueryBuilder<>(TestAsset.class, api).fields("strValue").fields("longValue");
+	}
+
 	@Test
 	public void getSQL() throws ComposerException {
 		QueryBuilder<TestAsset> builder = new QueryBuilder<>(TestAsset.class, api);
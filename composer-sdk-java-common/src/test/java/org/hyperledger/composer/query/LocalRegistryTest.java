@@ -0,0 +1,420 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.query;
+
+import org.hyperledger.composer.ComposerException;
+import org.hyperledger.composer.annotation.Asset;
+import org.hyperledger.composer.annotation.DataField;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+public class LocalRegistryTest {
+	private static final String SELECT = "SELECT org.hyperledger.composer.query.IndexedAsset";
+	private static final String[] OPERATORS = {"==", "!=", "<", "<=", ">", ">="};
+
+	/**
+	 * Random queries executed by a registry without index, one with hash indexes, one with sorted indexes, and
+	 * checked against the same query written in Java
+	 */
+	@Test
+	public void differential() throws ComposerException {
+		Random random = new Random(20171017);
+		List<IndexedAsset> expected = new ArrayList<>();
+		LocalRegistry<IndexedAsset> scan = new LocalRegistry<>(IndexedAsset.class);
+		LocalRegistry<IndexedAsset> hash = new LocalRegistry<>(IndexedAsset.class)
+				.index("name", LocalRegistry.IndexKind.HASH).index("size", LocalRegistry.IndexKind.HASH)
+				.index("weight", LocalRegistry.IndexKind.HASH);
+		LocalRegistry<IndexedAsset> sorted = new LocalRegistry<>(IndexedAsset.class)
+				.index("name", LocalRegistry.IndexKind.SORTED).index("size", LocalRegistry.IndexKind.SORTED)
+				.index("weight", LocalRegistry.IndexKind.SORTED).index("active", LocalRegistry.IndexKind.SORTED);
+		List<LocalRegistry<IndexedAsset>> registries = Arrays.asList(scan, hash, sorted);
+
+		for (int i = 0; i < 200; i++) {
+			IndexedAsset asset = randomAsset(random, "a" + i);
+			expected.add(asset);
+			registries.forEach(registry -> registry.add(asset));
+		}
+		// index declared after the resources are added
+		hash.index("active", LocalRegistry.IndexKind.HASH);
+
+		int indexed = 0;
+		for (int round = 0; round < 600; round++) {
+			mutate(random, expected, registries, round);
+
+			RandomQuery query = new RandomQuery(random);
+			List<IndexedAsset> oracle = query.oracle(expected);
+			for (LocalRegistry<IndexedAsset> registry : registries) {
+				assertEquals(ids(query.execute(registry)), ids(oracle), query.sql + " " + query.params);
+			}
+			if (!sorted.explain(query.sql, query.params).equals("FULL SCAN")) indexed++;
+			if (!hash.explain(query.sql, query.params).equals("FULL SCAN")) indexed++;
+		}
+		assertTrue(indexed > 300, "indexed queries: " + indexed);
+		assertEquals(scan.size(), expected.size());
+	}
+
+	@Test
+	public void explain() throws ComposerException {
+		LocalRegistry<IndexedAsset> registry = new LocalRegistry<>(IndexedAsset.class)
+				.index("name", LocalRegistry.IndexKind.HASH).index("size", LocalRegistry.IndexKind.SORTED);
+		for (int i = 0; i < 10; i++) {
+			IndexedAsset asset = new IndexedAsset();
+			asset.id = "a" + i;
+			asset.name = i % 2 == 0 ? "even" : "odd" + i;
+			asset.size = (long) i;
+			registry.add(asset);
+		}
+		assertEquals(registry.explain(SELECT + " WHERE (name == _$v0 AND size > _$v1)", "{\"v0\":\"odd3\",\"v1\":0}"),
+				"HASH INDEX name == \"odd3\"");
+		assertEquals(registry.explain(SELECT + " WHERE (name == _$v0 AND size >= _$v1 AND size < 4)", "{\"v0\":\"even\",\"v1\":2}"),
+				"SORTED INDEX size [2, 4)");
+		assertEquals(registry.explain(SELECT + " WHERE (size > 2 AND size > 5 AND size <= 9)", null),
+				"SORTED INDEX size (5, 9]");
+		assertEquals(registry.explain(SELECT + " WHERE (name == 'even' OR size < 2)", null), "FULL SCAN");
+		assertEquals(registry.explain(SELECT + " WHERE (name != 'even')", null), "FULL SCAN");
+		assertEquals(registry.execute(SELECT + " WHERE (size > 5 AND size < 5)", null), Collections.emptyList());
+	}
+
+	@Test
+	public void updateAndRemove() throws ComposerException {
+		LocalRegistry<IndexedAsset> registry = new LocalRegistry<>(IndexedAsset.class)
+				.index("name", LocalRegistry.IndexKind.HASH).index("size", LocalRegistry.IndexKind.SORTED);
+		IndexedAsset first = new IndexedAsset(), second = new IndexedAsset();
+		first.id = "first";
+		first.name = "x";
+		first.size = 1L;
+		second.id = "second";
+		second.name = "x";
+		second.size = 2L;
+		registry.addAll(Arrays.asList(first, second));
+
+		first.name = "y";
+		first.size = 3L;
+		registry.add(first);
+		assertEquals(registry.size(), 2);
+		assertEquals(registry.execute(SELECT + " WHERE (name == 'x')", null), Collections.singletonList(second));
+		assertEquals(registry.execute(SELECT + " WHERE (size >= 2)", null), Arrays.asList(first, second));
+
+		IndexedAsset copy = new IndexedAsset();
+		copy.id = "second";
+		copy.name = "z";
+		copy.size = 4L;
+		registry.add(copy);
+		assertEquals(registry.size(), 2);
+		assertEquals(registry.execute(SELECT + " WHERE (name == 'x')", null), Collections.emptyList());
+		assertEquals(registry.execute(SELECT + " WHERE (size >= 2)", null), Arrays.asList(first, copy));
+
+		assertTrue(registry.remove(second));
+		assertFalse(registry.remove(copy));
+		assertEquals(registry.execute(SELECT + " WHERE (size >= 2)", null), Collections.singletonList(first));
+		registry.clear();
+		assertEquals(registry.size(), 0);
+		assertEquals(registry.execute(SELECT + " WHERE (name == 'y')", null), Collections.emptyList());
+	}
+
+	@Test
+	public void executeQueries() throws ComposerException {
+		LocalRegistry<IndexedAsset> registry = new LocalRegistry<>(IndexedAsset.class);
+		for (int i = 0; i < 5; i++) {
+			IndexedAsset asset = new IndexedAsset();
+			asset.id = "a" + i;
+			asset.size = (long) i;
+			registry.add(asset);
+		}
+		CompiledQuery<IndexedAsset> compiled = new QueryBuilder<>(IndexedAsset.class, null).where("size > ?")
+				.orderBy("size DESC").limit(2).build();
+		compiled.bind(1, 1);
+		assertEquals(ids(registry.execute(compiled)), Arrays.asList("a4", "a3"));
+
+		PreparedQuery<IndexedAsset> prepared = new QueryBuilder<>(IndexedAsset.class, null).where("size <= ?").skip(1).prepare();
+		assertEquals(ids(registry.execute(prepared, prepared.bindings().bind(1, 2))), Arrays.asList("a1", "a2"));
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "Missing parameter 1")
+	public void unboundParameter() throws ComposerException {
+		new LocalRegistry<>(IndexedAsset.class).execute(new QueryBuilder<>(IndexedAsset.class, null).where("size > ?").build());
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "paginated queries are not executed locally")
+	public void paginated() throws ComposerException {
+		PreparedQuery<IndexedAsset> query = new QueryBuilder<>(IndexedAsset.class, null).pageSize(10).prepare();
+		new LocalRegistry<>(IndexedAsset.class).execute(query, query.bindings());
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "query over org.acme.Other on a registry of .*IndexedAsset")
+	public void otherType() throws ComposerException {
+		new LocalRegistry<>(IndexedAsset.class).execute("SELECT org.acme.Other", null);
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "LIMIT must be a non-negative integer")
+	public void invalidLimit() throws ComposerException {
+		new LocalRegistry<>(IndexedAsset.class).execute(SELECT + " LIMIT _$v0", "{\"v0\":\"ten\"}");
+	}
+
+	private static void mutate(Random random, List<IndexedAsset> expected, List<LocalRegistry<IndexedAsset>> registries, int round) {
+		int index = random.nextInt(expected.size());
+		switch (random.nextInt(4)) {
+			case 0:
+				IndexedAsset removed = expected.remove(index);
+				registries.forEach(registry -> assertTrue(registry.remove(removed)));
+				break;
+			case 1:
+				IndexedAsset added = randomAsset(random, "b" + round);
+				expected.add(added);
+				registries.forEach(registry -> registry.add(added));
+				break;
+			case 2:
+				// updated in place, keeping its position
+				IndexedAsset updated = expected.get(index);
+				IndexedAsset values = randomAsset(random, updated.id);
+				updated.name = values.name;
+				updated.size = values.size;
+				updated.weight = values.weight;
+				registries.forEach(registry -> registry.add(updated));
+				break;
+			default:
+		}
+	}
+
+	private static IndexedAsset randomAsset(Random random, String id) {
+		IndexedAsset asset = new IndexedAsset();
+		asset.id = id;
+		asset.name = random.nextInt(10) == 0 ? null : randomName(random);
+		asset.size = random.nextInt(10) == 0 ? null : (long) random.nextInt(26) - 5;
+		asset.weight = random.nextInt(10) == 0 ? null : (random.nextInt(13) - 2) / 2.0;
+		asset.active = random.nextInt(10) == 0 ? null : random.nextBoolean();
+		if (random.nextInt(5) > 0) {
+			asset.tags = new String[random.nextInt(3)];
+			for (int i = 0; i < asset.tags.length; i++) {
+				asset.tags[i] = "t" + random.nextInt(4);
+			}
+		}
+		return asset;
+	}
+
+	private static String randomName(Random random) {
+		StringBuilder name = new StringBuilder();
+		for (int i = random.nextInt(2); i >= 0; i--) {
+			name.append((char) ('a' + random.nextInt(3)));
+		}
+		return name.toString();
+	}
+
+	private static List<String> ids(List<IndexedAsset> assets) {
+		return assets.stream().map(asset -> asset.id).collect(Collectors.toList());
+	}
+
+	/**
+	 * A random query, with the Java predicate and order it should be equivalent to
+	 */
+	private static final class RandomQuery {
+		private final Random random;
+		private final List<Object> bound = new ArrayList<>();
+		private final Predicate<IndexedAsset> predicate;
+		private final Comparator<IndexedAsset> order;
+		private final int limit;
+		private final int skip;
+		private final boolean prepared;
+		private final String sql;
+		private final String params;
+		private final PreparedQuery<IndexedAsset> preparedQuery;
+		private final CompiledQuery<IndexedAsset> compiledQuery;
+
+		private RandomQuery(Random random) throws ComposerException {
+			this.random = random;
+			QueryBuilder<IndexedAsset> builder = new QueryBuilder<>(IndexedAsset.class, null);
+			if (random.nextInt(8) > 0) {
+				StringBuilder where = new StringBuilder();
+				predicate = condition(where, 2);
+				builder.where(where.toString());
+			} else {
+				predicate = asset -> true;
+			}
+			List<String> orderFields = new ArrayList<>();
+			Comparator<IndexedAsset> order = null;
+			List<String> fields = new ArrayList<>(Arrays.asList("name", "size", "weight"));
+			Collections.shuffle(fields, random);
+			for (String field : fields.subList(0, random.nextInt(3))) {
+				boolean descending = random.nextBoolean();
+				orderFields.add(field + (descending ? " DESC" : " ASC"));
+				Comparator<IndexedAsset> comparator = Comparator.comparing(getter(field), Comparator.nullsFirst(Comparator.naturalOrder()));
+				comparator = descending ? comparator.reversed() : comparator;
+				order = order == null ? comparator : order.thenComparing(comparator);
+			}
+			this.order = order;
+			if (!orderFields.isEmpty()) {
+				builder.orderBy(orderFields.toArray(new String[0]));
+			}
+			limit = random.nextInt(3) == 0 ? random.nextInt(20) : -1;
+			if (limit >= 0) builder.limit(limit);
+			skip = random.nextInt(3) == 0 ? random.nextInt(20) : 0;
+			if (skip > 0) builder.skip(skip);
+
+			prepared = random.nextBoolean();
+			if (prepared) {
+				preparedQuery = builder.prepare();
+				compiledQuery = null;
+				PreparedQuery.Bindings bindings = preparedQuery.bindings();
+				for (int i = 0; i < bound.size(); i++) {
+					bind(bindings, i + 1, bound.get(i));
+				}
+				sql = preparedQuery.getSQL();
+				params = preparedQuery.parameters(bindings);
+			} else {
+				compiledQuery = builder.build();
+				preparedQuery = null;
+				for (int i = 0; i < bound.size(); i++) {
+					bind(compiledQuery, i + 1, bound.get(i));
+				}
+				sql = compiledQuery.getSQL();
+				params = compiledQuery.params().toString();
+			}
+		}
+
+		private List<IndexedAsset> execute(LocalRegistry<IndexedAsset> registry) throws ComposerException {
+			if (prepared) {
+				PreparedQuery.Bindings bindings = preparedQuery.bindings();
+				for (int i = 0; i < bound.size(); i++) {
+					bind(bindings, i + 1, bound.get(i));
+				}
+				return registry.execute(preparedQuery, bindings);
+			}
+			return registry.execute(compiledQuery);
+		}
+
+		private List<IndexedAsset> oracle(List<IndexedAsset> assets) {
+			List<IndexedAsset> results = assets.stream().filter(predicate).collect(Collectors.toList());
+			if (order != null) results.sort(order);
+			results = results.subList(Math.min(skip, results.size()), results.size());
+			return limit >= 0 && limit < results.size() ? results.subList(0, limit) : results;
+		}
+
+		private Predicate<IndexedAsset> condition(StringBuilder where, int depth) {
+			if (depth == 0 || random.nextBoolean()) {
+				return comparison(where);
+			}
+			boolean and = random.nextBoolean();
+			where.append('(');
+			Predicate<IndexedAsset> result = condition(where, depth - 1);
+			for (int i = random.nextInt(2); i >= 0; i--) {
+				where.append(and ? " AND " : " OR ");
+				Predicate<IndexedAsset> next = condition(where, depth - 1);
+				result = and ? result.and(next) : result.or(next);
+			}
+			where.append(')');
+			return result;
+		}
+
+		private Predicate<IndexedAsset> comparison(StringBuilder where) {
+			String operator = OPERATORS[random.nextInt(OPERATORS.length)];
+			switch (random.nextInt(5)) {
+				case 0: {
+					String value = randomName(random);
+					where.append("name ").append(operator).append(" ?");
+					bound.add(value);
+					return asset -> asset.name != null && matches(operator, asset.name.compareTo(value));
+				}
+				case 1: {
+					long value = random.nextInt(26) - 5;
+					where.append("size ").append(operator).append(" ?");
+					bound.add(value);
+					return asset -> asset.size != null && matches(operator, Long.compare(asset.size, value));
+				}
+				case 2: {
+					// an int equal to a double matches it
+					Object value = random.nextBoolean() ? (Object) (random.nextInt(7) - 1) : (Object) ((random.nextInt(13) - 2) / 2.0);
+					double number = ((Number) value).doubleValue();
+					where.append("weight ").append(operator).append(" ?");
+					bound.add(value);
+					return asset -> asset.weight != null && matches(operator, Double.compare(asset.weight, number));
+				}
+				case 3: {
+					boolean value = random.nextBoolean();
+					String op = random.nextBoolean() ? "==" : "!=";
+					where.append("active ").append(op).append(' ').append(value);
+					return asset -> asset.active != null && matches(op, Boolean.compare(asset.active, value));
+				}
+				default: {
+					String value = "t" + random.nextInt(4);
+					where.append("tags CONTAINS ?");
+					bound.add(value);
+					return asset -> asset.tags != null && Arrays.asList(asset.tags).contains(value);
+				}
+			}
+		}
+
+		private static boolean matches(String operator, int c) {
+			switch (operator) {
+				case "==":
+					return c == 0;
+				case "!=":
+					return c != 0;
+				case "<":
+					return c < 0;
+				case "<=":
+					return c <= 0;
+				case ">":
+					return c > 0;
+				default:
+					return c >= 0;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private static Function<IndexedAsset, Comparable<Object>> getter(String field) {
+			switch (field) {
+				case "name":
+					return asset -> (Comparable) asset.name;
+				case "size":
+					return asset -> (Comparable) asset.size;
+				default:
+					return asset -> (Comparable) asset.weight;
+			}
+		}
+
+		private static void bind(PreparedQuery.Bindings bindings, int index, Object value) throws ComposerException {
+			if (value instanceof String) bindings.bind(index, (String) value);
+			else if (value instanceof Long) bindings.bind(index, (long) value);
+			else if (value instanceof Integer) bindings.bind(index, (int) value);
+			else bindings.bind(index, (double) value);
+		}
+
+		private static void bind(CompiledQuery<IndexedAsset> query, int index, Object value) throws ComposerException {
+			if (value instanceof String) query.bind(index, (String) value);
+			else if (value instanceof Long) query.bind(index, (long) value);
+			else if (value instanceof Integer) query.bind(index, (int) value);
+			else query.bind(index, (double) value);
+		}
+	}
+}
+
+@Asset
+class IndexedAsset {
+	@DataField(primary = true)
+	public String id;
+
+	@DataField
+	public String name;
+
+	@DataField
+	public Long size;
+
+	@DataField
+	public Double weight;
+
+	@DataField
+	public Boolean active;
+
+	@DataField
+	public String[] tags;
+}
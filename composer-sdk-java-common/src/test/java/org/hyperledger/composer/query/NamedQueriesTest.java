@@ -0,0 +1,127 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.query;
+
+import org.hyperledger.composer.ComposerAPI;
+import org.hyperledger.composer.ComposerException;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+public class NamedQueriesTest {
+	private static final String SQL = "SELECT org.hyperledger.composer.query.TestAsset WHERE (strValue == _$v0)";
+
+	@Mock
+	ComposerAPI api;
+
+	@BeforeMethod(alwaysRun = true)
+	public void init() {
+		MockitoAnnotations.initMocks(this);
+	}
+
+	@AfterMethod(alwaysRun = true)
+	public void reset() {
+		NamedQueries.deployed(null);
+	}
+
+	@Test
+	public void stableName() {
+		assertEquals(NamedQueries.stableName(SQL), NamedQueries.stableName(new String(SQL)));
+		assertNotEquals(NamedQueries.stableName(SQL), NamedQueries.stableName(SQL + " LIMIT 1"));
+		assertTrue(NamedQueries.stableName(SQL).matches("Q[0-9a-f]{16}"));
+	}
+
+	@Test
+	public void propertiesRoundTrip() throws Exception {
+		String sql = " SELECT a.B WHERE (name == 'café\\\\\t')";
+		NamedQueries queries = new NamedQueries(Collections.singletonMap(sql, "Q1"));
+		Properties properties = new Properties();
+		properties.load(new ByteArrayInputStream(queries.toProperties().getBytes(StandardCharsets.ISO_8859_1)));
+		assertEquals(properties.getProperty("Q1"), sql);
+	}
+
+	@Test
+	public void deployedQueryIsExecutedByName() throws ComposerException {
+		NamedQueries.deployed(new NamedQueries(Collections.singletonMap(SQL, "Q1")));
+		CompiledQuery<TestAsset> query = new QueryBuilder<>(TestAsset.class, api).where("strValue == ?").build();
+		query.bind(1, "a");
+		query.execute();
+		verify(api).executeQuery(eq(TestAsset.class), eq("named"), eq("Q1"), eq("{\"v0\":\"a\"}"));
+
+		PreparedQuery<TestAsset> prepared = new QueryBuilder<>(TestAsset.class, api).where("strValue == ?").prepare();
+		prepared.iterate(prepared.bindings().bind(1, "b"));
+		verify(api).iterateQuery(eq(TestAsset.class), eq("named"), eq("Q1"), eq("{\"v0\":\"b\"}"));
+	}
+
+	@Test
+	public void otherQueriesAreBuilt() throws ComposerException {
+		NamedQueries.deployed(new NamedQueries(Collections.singletonMap(SQL, "Q1")));
+		CompiledQuery<TestAsset> query = new QueryBuilder<>(TestAsset.class, api).where("longValue > ?").build();
+		query.bind(1, 1);
+		query.execute();
+		verify(api).executeQuery(eq(TestAsset.class), eq("build"),
+				eq("SELECT org.hyperledger.composer.query.TestAsset WHERE (longValue > _$v0)"), eq("{\"v0\":1}"));
+	}
+
+	@Test
+	public void rejectedNameFallsBackToText() throws ComposerException {
+		NamedQueries.deployed(new NamedQueries(Collections.singletonMap(SQL, "Q1")));
+		when(api.executeQuery(eq(TestAsset.class), eq("named"), eq("Q1"), anyString()))
+				.thenThrow(new ComposerException("Named query Q1 does not exist in the business network."));
+		CompiledQuery<TestAsset> query = new QueryBuilder<>(TestAsset.class, api).where("strValue == ?").build();
+		query.bind(1, "a");
+		query.execute();
+		query.execute();
+		verify(api, times(1)).executeQuery(eq(TestAsset.class), eq("named"), eq("Q1"), anyString());
+		verify(api, times(2)).executeQuery(eq(TestAsset.class), eq("build"), eq(SQL), eq("{\"v0\":\"a\"}"));
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "invalid parameters")
+	public void otherErrorsOfNamedQueriesAreThrown() throws ComposerException {
+		NamedQueries.deployed(new NamedQueries(Collections.singletonMap(SQL, "Q1")));
+		when(api.executeQuery(eq(TestAsset.class), eq("named"), eq("Q1"), anyString()))
+				.thenThrow(new ComposerException("invalid parameters"));
+		CompiledQuery<TestAsset> query = new QueryBuilder<>(TestAsset.class, api).where("strValue == ?").build();
+		query.bind(1, "a");
+		query.execute();
+	}
+
+	@Test
+	public void deployedByClassLoader() throws Exception {
+		File dir = Files.createTempDirectory("queries").toFile();
+		File resource = new File(dir, NamedQueries.RESOURCE);
+		assertTrue(resource.getParentFile().mkdirs());
+		Files.write(resource.toPath(), new NamedQueries(Collections.singletonMap(SQL, "Q1")).toProperties()
+				.getBytes(StandardCharsets.ISO_8859_1));
+		Thread thread = Thread.currentThread();
+		ClassLoader original = thread.getContextClassLoader();
+		try {
+			thread.setContextClassLoader(new URLClassLoader(new URL[]{dir.toURI().toURL()}, null));
+			assertEquals(NamedQueries.deployed().name(SQL), "Q1");
+			thread.setContextClassLoader(new URLClassLoader(new URL[0], null));
+			assertNull(NamedQueries.deployed().name(SQL));
+		} finally {
+			thread.setContextClassLoader(original);
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.query;
+
+import org.hyperledger.composer.CloseableIterator;
+import org.hyperledger.composer.ComposerAPI;
+import org.hyperledger.composer.ComposerException;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+public class PagedIteratorTest {
+
+	@Mock
+	ComposerAPI api;
+
+	@BeforeMethod(alwaysRun = true)
+	public void init() {
+		MockitoAnnotations.initMocks(this);
+	}
+
+	@Test
+	public void stopsAtShortPage() throws Exception {
+		List<Long> offsets = Collections.synchronizedList(new ArrayList<>());
+		List<Integer> results = new ArrayList<>();
+		try (PagedIterator<Integer> iterator = new PagedIterator<>(10, offset -> {
+			offsets.add(offset);
+			return page(offset, (int) Math.max(0, Math.min(10, 25 - offset)));
+		}, ForkJoinPool.commonPool())) {
+			iterator.forEachRemaining(results::add);
+		}
+		assertEquals(results, IntStream.range(0, 25).boxed().collect(Collectors.toList()));
+		// nothing is requested after the short page
+		assertEquals(offsets, Arrays.asList(0L, 10L, 20L));
+	}
+
+	@Test
+	public void emptyResult() throws Exception {
+		PagedIterator<Integer> iterator = new PagedIterator<>(10, offset -> page(offset, 0), ForkJoinPool.commonPool());
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void shortFirstPageIsTheOnlyRequest() throws Exception {
+		AtomicInteger requests = new AtomicInteger();
+		PagedIterator<Integer> iterator = new PagedIterator<>(10, offset -> {
+			requests.incrementAndGet();
+			return page(offset, offset == 0 ? 3 : 10);
+		}, ForkJoinPool.commonPool());
+		assertEquals(iterator.next(), Integer.valueOf(0));
+		assertEquals(requests.get(), 1);
+		iterator.forEachRemaining(value -> {
+		});
+		assertEquals(requests.get(), 1);
+	}
+
+	@Test
+	public void prefetchesWhileConsuming() throws Exception {
+		CountDownLatch secondRequested = new CountDownLatch(1);
+		PagedIterator<Integer> iterator = new PagedIterator<>(2, offset -> {
+			if (offset == 2) secondRequested.countDown();
+			return page(offset, offset < 4 ? 2 : 0);
+		}, ForkJoinPool.commonPool());
+		assertEquals(iterator.next(), Integer.valueOf(0));
+		assertEquals(secondRequested.getCount(), 1);
+		assertEquals(iterator.next(), Integer.valueOf(1));
+		// the full first page is handed out, the second one is requested before the caller asks for it
+		assertTrue(secondRequested.await(10, TimeUnit.SECONDS));
+		iterator.close();
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void closeReleasesPages() throws Exception {
+		AtomicInteger open = new AtomicInteger();
+		PagedIterator<Integer> iterator = new PagedIterator<>(5, offset -> {
+			open.incrementAndGet();
+			CloseableIterator<Integer> page = page(offset, 5);
+			return new CloseableIterator<Integer>() {
+				public boolean hasNext() {
+					return page.hasNext();
+				}
+
+				public Integer next() {
+					return page.next();
+				}
+
+				public void close() {
+					open.decrementAndGet();
+				}
+			};
+		}, ForkJoinPool.commonPool());
+		iterator.next();
+		iterator.close();
+		long deadline = System.currentTimeMillis() + 10000;
+		while (open.get() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		assertEquals(open.get(), 0);
+	}
+
+	@Test
+	public void pageFailure() throws Exception {
+		PagedIterator<Integer> iterator = new PagedIterator<>(2, offset -> {
+			if (offset > 0) throw new ComposerException("unavailable");
+			return page(offset, 2);
+		}, ForkJoinPool.commonPool());
+		iterator.next();
+		iterator.next();
+		try {
+			iterator.hasNext();
+			fail("the failure should be thrown");
+		} catch (IllegalStateException e) {
+			assertEquals(e.getCause().getMessage(), "unavailable");
+		}
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void paginatedQuery() throws Exception {
+		String sql = "SELECT org.hyperledger.composer.query.TestAsset WHERE (strValue == _$v0) LIMIT _$v1 SKIP _$v2";
+		when(api.iterateQuery(eq(TestAsset.class), eq("build"), eq(sql), eq("{\"v0\":\"a\",\"v1\":2,\"v2\":0}")))
+				.thenReturn(assets(2));
+		when(api.iterateQuery(eq(TestAsset.class), eq("build"), eq(sql), eq("{\"v0\":\"a\",\"v1\":2,\"v2\":2}")))
+				.thenReturn(assets(1));
+		AtomicInteger prefetches = new AtomicInteger();
+		when(api.readExecutor()).thenReturn(task -> {
+			prefetches.incrementAndGet();
+			task.run();
+		});
+		CompiledQuery<TestAsset> query = new QueryBuilder<>(TestAsset.class, api).where("strValue == ?").pageSize(2).build();
+		query.bind(1, "a");
+		assertEquals(query.getSQL(), sql);
+		assertEquals(query.execute().size(), 3);
+		verify(api).iterateQuery(eq(TestAsset.class), eq("build"), eq(sql), eq("{\"v0\":\"a\",\"v1\":2,\"v2\":2}"));
+		assertEquals(prefetches.get(), 1);
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "pageSize cannot be combined with limit or skip")
+	public void pageSizeWithLimit() throws ComposerException {
+		new QueryBuilder<>(TestAsset.class, api).limit(5).pageSize(2);
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "skip cannot be combined with pageSize")
+	public void skipWithPageSize() throws ComposerException {
+		new QueryBuilder<>(TestAsset.class, api).pageSize(2).skip(1);
+	}
+
+	private static CloseableIterator<Integer> page(long offset, int size) {
+		Iterator<Integer> values = IntStream.range((int) offset, (int) offset + size).iterator();
+		return new CloseableIterator<Integer>() {
+			public boolean hasNext() {
+				return values.hasNext();
+			}
+
+			public Integer next() {
+				return values.next();
+			}
+
+			public void close() {
+			}
+		};
+	}
+
+	private static CloseableIterator<TestAsset> assets(int size) {
+		Iterator<TestAsset> values = Collections.nCopies(size, new TestAsset()).iterator();
+		return new CloseableIterator<TestAsset>() {
+			public boolean hasNext() {
+				return values.hasNext();
+			}
+
+			public TestAsset next() {
+				return values.next();
+			}
+
+			public void close() {
+			}
+		};
+	}
+}
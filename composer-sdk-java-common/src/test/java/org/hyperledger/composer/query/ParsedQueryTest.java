@@ -0,0 +1,121 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.query;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.hyperledger.composer.ComposerException;
+import org.hyperledger.composer.ResourceSerializer;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import static org.testng.Assert.*;
+
+public class ParsedQueryTest {
+
+	@Test
+	public void parse() throws ComposerException {
+		ParsedQuery query = ParsedQuery.parse("SELECT org.acme.Asset WHERE (strValue == _$v0 and (longValue > 10 OR flag == true))"
+				+ " ORDER BY [strValue ASC, nested.value DESC] LIMIT _$v1 SKIP 2");
+		assertEquals(query.resourceType, "org.acme.Asset");
+
+		ParsedQuery.Junction and = (ParsedQuery.Junction) query.where;
+		assertTrue(and.and);
+		assertEquals(and.operands.size(), 2);
+		ParsedQuery.Comparison first = (ParsedQuery.Comparison) and.operands.get(0);
+		assertEquals(first.field, "strValue");
+		assertEquals(first.operator, ParsedQuery.Operator.EQ);
+		assertEquals(first.operand.parameter, "v0");
+		ParsedQuery.Junction or = (ParsedQuery.Junction) and.operands.get(1);
+		assertFalse(or.and);
+		assertEquals(((ParsedQuery.Comparison) or.operands.get(0)).operand.literal, LongNode.valueOf(10));
+		assertEquals(((ParsedQuery.Comparison) or.operands.get(1)).operand.literal, BooleanNode.TRUE);
+
+		assertEquals(query.orderBy.size(), 2);
+		assertFalse(query.orderBy.get(0).descending);
+		assertEquals(query.orderBy.get(1).path, new String[]{"nested", "value"});
+		assertTrue(query.orderBy.get(1).descending);
+		assertEquals(query.limit.parameter, "v1");
+		assertEquals(query.skip.literal, LongNode.valueOf(2));
+	}
+
+	@Test
+	public void parseLiterals() throws ComposerException {
+		ParsedQuery query = ParsedQuery.parse("SELECT a.B WHERE (s == 'it\\'s' AND d <= -1.5e2 AND t CONTAINS (['x', \"y\"]))");
+		ParsedQuery.Junction and = (ParsedQuery.Junction) query.where;
+		assertEquals(((ParsedQuery.Comparison) and.operands.get(0)).operand.literal, TextNode.valueOf("it's"));
+		ParsedQuery.Comparison decimal = (ParsedQuery.Comparison) and.operands.get(1);
+		assertEquals(decimal.operator, ParsedQuery.Operator.LE);
+		assertEquals(decimal.operand.literal.decimalValue().compareTo(new BigDecimal("-150")), 0);
+		ParsedQuery.Comparison contains = (ParsedQuery.Comparison) and.operands.get(2);
+		assertEquals(contains.operator, ParsedQuery.Operator.CONTAINS);
+		assertEquals(contains.operand.literal.toString(), "[\"x\",\"y\"]");
+		assertNull(query.limit);
+		assertTrue(query.orderBy.isEmpty());
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "expect an operator after strValue at .*")
+	public void missingOperator() throws ComposerException {
+		ParsedQuery.parse("SELECT a.B WHERE (strValue _$v0)");
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "expect \\) at .*")
+	public void unbalanced() throws ComposerException {
+		ParsedQuery.parse("SELECT a.B WHERE (strValue == 'x'");
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "expect ASC at .*")
+	public void orderWithoutDirection() throws ComposerException {
+		ParsedQuery.parse("SELECT a.B ORDER BY [strValue]");
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "unexpected LIMIT 1 at .*")
+	public void clausesOutOfOrder() throws ComposerException {
+		ParsedQuery.parse("SELECT a.B SKIP 1 LIMIT 1");
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "Missing parameter v1")
+	public void missingParameter() throws ComposerException, IOException {
+		ParsedQuery query = ParsedQuery.parse("SELECT a.B WHERE (x == _$v1)");
+		query.where.matches(ResourceSerializer.toJsonNode("{\"x\":1}"), ResourceSerializer.toJsonNode("{\"v0\":1}"));
+	}
+
+	@Test
+	public void compare() {
+		JsonNode[] ascending = {BooleanNode.FALSE, BooleanNode.TRUE, LongNode.valueOf(-3), DoubleNode.valueOf(1.5),
+				LongNode.valueOf(2), TextNode.valueOf("a"), TextNode.valueOf("A"), TextNode.valueOf("ab"),
+				TextNode.valueOf("b"), ResourceSerializer.createObjectNode().arrayNode()};
+		for (int i = 0; i < ascending.length; i++) {
+			for (int j = 0; j < ascending.length; j++) {
+				assertEquals(Integer.signum(ParsedQuery.compare(ascending[i], ascending[j])), Integer.compare(i, j),
+						ascending[i] + " vs " + ascending[j]);
+			}
+		}
+	}
+
+	@Test
+	public void keysOfEqualNumbers() {
+		assertEquals(ParsedQuery.compare(LongNode.valueOf(2), DecimalNode.valueOf(new BigDecimal("2.00"))), 0);
+		assertEquals(ParsedQuery.key(LongNode.valueOf(2)), ParsedQuery.key(DoubleNode.valueOf(2.0)));
+		assertEquals(ParsedQuery.key(LongNode.valueOf(0)), ParsedQuery.key(DecimalNode.valueOf(new BigDecimal("0.00"))));
+		assertNotEquals(ParsedQuery.key(LongNode.valueOf(1)), ParsedQuery.key(TextNode.valueOf("1")));
+	}
+
+	@Test
+	public void missingFieldNeverMatches() throws ComposerException, IOException {
+		ParsedQuery query = ParsedQuery.parse("SELECT a.B WHERE (x != 1)");
+		assertFalse(query.where.matches(ResourceSerializer.toJsonNode("{\"x\":null}"), null));
+		assertFalse(query.where.matches(ResourceSerializer.toJsonNode("{}"), null));
+		assertTrue(query.where.matches(ResourceSerializer.toJsonNode("{\"x\":2}"), null));
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.query;
+
+import org.hyperledger.composer.ComposerAPI;
+import org.hyperledger.composer.ComposerException;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+public class PartitionedQueryTest {
+	private static final String SELECT = "SELECT org.hyperledger.composer.query.TestAsset";
+
+	@Mock
+	ComposerAPI api;
+
+	@BeforeMethod(alwaysRun = true)
+	public void init() {
+		MockitoAnnotations.initMocks(this);
+		when(api.readExecutor()).thenReturn(Runnable::run);
+	}
+
+	@Test
+	public void rangesAreMergedByOrder() throws ComposerException {
+		when(api.executeQuery(eq(TestAsset.class), eq("build"),
+				eq(SELECT + " WHERE ((longValue > _$v0) AND strValue < _$v1) ORDER BY [longValue DESC]"),
+				eq("{\"v0\":0,\"v1\":\"m\"}"))).thenReturn(assets("a", 9L, "c", 5L, "b", 1L));
+		when(api.executeQuery(eq(TestAsset.class), eq("build"),
+				eq(SELECT + " WHERE ((longValue > _$v0) AND strValue >= _$v1 AND strValue < _$v2) ORDER BY [longValue DESC]"),
+				eq("{\"v0\":0,\"v1\":\"m\",\"v2\":\"t\"}"))).thenReturn(assets("n", 7L, "o", 5L));
+		when(api.executeQuery(eq(TestAsset.class), eq("build"),
+				eq(SELECT + " WHERE ((longValue > _$v0) AND strValue >= _$v1) ORDER BY [longValue DESC]"),
+				eq("{\"v0\":0,\"v1\":\"t\"}"))).thenReturn(assets("z", 8L));
+
+		PartitionedQuery<TestAsset> query = new QueryBuilder<>(TestAsset.class, api).where("longValue > ?")
+				.orderBy("longValue DESC").partitionByRange("strValue", "m", "t").concurrency(2);
+		query.bind(1, 0);
+		List<TestAsset> results = query.execute();
+
+		assertEquals(results.stream().map(asset -> asset.strValue).collect(Collectors.toList()),
+				Arrays.asList("a", "z", "n", "c", "o", "b"));
+		assertEquals(query.timings().stream().map(PartitionedQuery.Timing::partition).collect(Collectors.toList()),
+				Arrays.asList("strValue < m", "strValue >= m AND strValue < t", "strValue >= t"));
+		assertEquals(query.timings().stream().map(PartitionedQuery.Timing::results).collect(Collectors.toList()),
+				Arrays.asList(3, 2, 1));
+	}
+
+	@Test
+	public void rangesAreMergedInStateDatabaseOrder() throws ComposerException {
+		when(api.executeQuery(eq(TestAsset.class), eq("build"), eq(SELECT + " WHERE (longValue < _$v0) ORDER BY [strValue ASC]"),
+				anyString())).thenReturn(assets("a", 1L, "C", 2L));
+		when(api.executeQuery(eq(TestAsset.class), eq("build"), eq(SELECT + " WHERE (longValue >= _$v0) ORDER BY [strValue ASC]"),
+				anyString())).thenReturn(assets("B", 20L, "d", 30L));
+		List<TestAsset> results = new QueryBuilder<>(TestAsset.class, api).orderBy("strValue ASC")
+				.partitionByRange("longValue", 10).execute();
+		assertEquals(results.stream().map(asset -> asset.strValue).collect(Collectors.toList()),
+				Arrays.asList("a", "B", "C", "d"));
+	}
+
+	@Test
+	public void rangesDecodeTheOrderFields() throws ComposerException {
+		Set<String> decoded = new HashSet<>(Arrays.asList("strValue", "longValue"));
+		when(api.executeQuery(eq(TestAsset.class), eq("build"), eq(SELECT + " WHERE (strValue < _$v0) ORDER BY [longValue DESC]"),
+				anyString(), eq(decoded))).thenReturn(assets("a", 9L, "b", 1L));
+		when(api.executeQuery(eq(TestAsset.class), eq("build"), eq(SELECT + " WHERE (strValue >= _$v0) ORDER BY [longValue DESC]"),
+				anyString(), eq(decoded))).thenReturn(assets("n", 5L));
+		List<TestAsset> results = new QueryBuilder<>(TestAsset.class, api).fields("strValue").orderBy("longValue DESC")
+				.partitionByRange("strValue", "m").execute();
+		assertEquals(results.stream().map(asset -> asset.strValue).collect(Collectors.toList()), Arrays.asList("a", "n", "b"));
+	}
+
+	@Test
+	public void partitionsRunOnTheReadExecutor() throws ComposerException {
+		when(api.executeQuery(eq(TestAsset.class), eq("build"), anyString(), anyString())).thenReturn(Collections.emptyList());
+		AtomicInteger tasks = new AtomicInteger();
+		when(api.readExecutor()).thenReturn(task -> {
+			tasks.incrementAndGet();
+			task.run();
+		});
+		new QueryBuilder<>(TestAsset.class, api).partitionByRange("longValue", 10, 20).concurrency(3).execute();
+		verify(api, times(3)).executeQuery(eq(TestAsset.class), eq("build"), anyString(), anyString());
+		assertEquals(tasks.get(), 2);
+	}
+
+	@Test
+	public void rangesWithoutOrderAreConcatenated() throws ComposerException {
+		when(api.executeQuery(eq(TestAsset.class), eq("build"), eq(SELECT + " WHERE (longValue < _$v0)"), anyString()))
+				.thenReturn(assets("b", 1L));
+		when(api.executeQuery(eq(TestAsset.class), eq("build"), eq(SELECT + " WHERE (longValue >= _$v0)"), anyString()))
+				.thenReturn(assets("a", 20L));
+		List<TestAsset> results = new QueryBuilder<>(TestAsset.class, api).partitionByRange("longValue", 10).execute();
+		assertEquals(results.stream().map(asset -> asset.strValue).collect(Collectors.toList()), Arrays.asList("b", "a"));
+		verify(api).executeQuery(eq(TestAsset.class), eq("build"), eq(SELECT + " WHERE (longValue < _$v0)"), eq("{\"v0\":10}"));
+	}
+
+	@Test
+	public void windowsStopAtShortWindow() throws ComposerException {
+		String sql = SELECT + " WHERE (strValue == _$v0) LIMIT _$v1 SKIP _$v2";
+		for (int window = 0; window < 20; window++) {
+			int size = window < 3 ? 2 : window == 3 ? 1 : 0;
+			List<TestAsset> results = new ArrayList<>();
+			for (int i = 0; i < size; i++) {
+				results.addAll(assets("w" + (window * 2 + i), 0L));
+			}
+			when(api.executeQuery(eq(TestAsset.class), eq("build"), eq(sql),
+					eq("{\"v0\":\"x\",\"v1\":2,\"v2\":" + window * 2 + "}"))).thenReturn(results);
+		}
+		PartitionedQuery<TestAsset> query = new QueryBuilder<>(TestAsset.class, api).where("strValue == ?")
+				.partitionByWindow(2).concurrency(3);
+		query.bind(1, "x");
+		List<TestAsset> results = query.execute();
+		assertEquals(results.stream().map(asset -> asset.strValue).collect(Collectors.toList()),
+				Arrays.asList("w0", "w1", "w2", "w3", "w4", "w5", "w6"));
+		assertEquals(query.timings().size(), 4);
+		assertEquals(query.timings().get(3).partition(), "SKIP 6 LIMIT 2");
+	}
+
+	@Test
+	public void merge() {
+		List<List<Integer>> partitions = Arrays.asList(Arrays.asList(1, 4, 9), Collections.emptyList(), Arrays.asList(2, 3, 10), Arrays.asList(4));
+		assertEquals(PartitionedQuery.merge(partitions, Comparator.naturalOrder()), Arrays.asList(1, 2, 3, 4, 4, 9, 10));
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "Missing parameter 1")
+	public void missingParameter() throws ComposerException {
+		new QueryBuilder<>(TestAsset.class, api).where("longValue > ?").partitionByRange("strValue", "m").execute();
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "bounds must be in strictly ascending order")
+	public void unorderedBounds() throws ComposerException {
+		new QueryBuilder<>(TestAsset.class, api).partitionByRange("strValue", "t", "m");
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "partitions cannot be combined with limit, skip or pageSize")
+	public void partitionsWithLimit() throws ComposerException {
+		new QueryBuilder<>(TestAsset.class, api).limit(10).partitionByWindow(2);
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "no field missing to order .*")
+	public void orderByUnknownField() throws ComposerException {
+		new QueryBuilder<>(TestAsset.class, api).orderBy("missing ASC").partitionByRange("strValue", "m");
+	}
+
+	private static List<TestAsset> assets(Object... values) {
+		List<TestAsset> assets = new ArrayList<>();
+		for (int i = 0; i < values.length; i += 2) {
+			TestAsset asset = new TestAsset();
+			asset.strValue = (String) values[i];
+			asset.longValue = (Long) values[i + 1];
+			assets.add(asset);
+		}
+		return assets;
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright IBM Corp. 2017 All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.composer.query;
+
+import org.hyperledger.composer.ComposerAPI;
+import org.hyperledger.composer.ComposerException;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+
+public class PreparedQueryTest {
+	private static final String SQL = "SELECT org.hyperledger.composer.query.TestAsset WHERE (strValue == _$v0 and longValue > _$v1)";
+
+	@Mock
+	ComposerAPI api;
+
+	@BeforeMethod(alwaysRun = true)
+	public void init() {
+		MockitoAnnotations.initMocks(this);
+	}
+
+	@Test
+	public void sameSQLAsCompiledQuery() throws ComposerException {
+		assertEquals(new QueryBuilder<>(TestAsset.class, api).limit("?").where("strValue == ? and longValue > ?")
+						.orderBy("strValue ASC").skip("?").prepare().getSQL(),
+				"SELECT org.hyperledger.composer.query.TestAsset WHERE (strValue == _$v1 and longValue > _$v2) ORDER BY [strValue ASC] LIMIT _$v0 SKIP _$v3");
+		assertEquals(new QueryBuilder<>(TestAsset.class, api).skip("?").limit(5).where("strValue == ?").prepare().getSQL(),
+				"SELECT org.hyperledger.composer.query.TestAsset WHERE (strValue == _$v1) LIMIT 5 SKIP _$v0");
+		assertEquals(new QueryBuilder<>(TestAsset.class, api).prepare().getSQL(), "SELECT org.hyperledger.composer.query.TestAsset");
+	}
+
+	@Test
+	public void execute() throws ComposerException {
+		PreparedQuery<TestAsset> query = new QueryBuilder<>(TestAsset.class, api).where("strValue == ? and longValue > ?").prepare();
+		assertEquals(query.parameterCount(), 2);
+		query.execute(query.bindings().bind(2, 123L).bind(1, "a\"b"));
+		query.iterate(query.bindings().bind(1, "x").bind(2, 1.5));
+		verify(api).executeQuery(eq(TestAsset.class), eq("build"), eq(SQL), eq("{\"v0\":\"a\\\"b\",\"v1\":123}"));
+		verify(api).iterateQuery(eq(TestAsset.class), eq("build"), eq(SQL), eq("{\"v0\":\"x\",\"v1\":1.5}"));
+	}
+
+	@Test
+	public void fields() throws ComposerException {
+		PreparedQuery<TestAsset> query = new QueryBuilder<>(TestAsset.class, api).fields("strValue").prepare();
+		query.execute(query.bindings());
+		verify(api).executeQuery(eq(TestAsset.class), eq("build"), eq("SELECT org.hyperledger.composer.query.TestAsset"),
+				eq("{}"), eq(Collections.singleton("strValue")));
+	}
+
+	@Test
+	public void concurrentExecutions() throws Exception {
+		PreparedQuery<TestAsset> query = new QueryBuilder<>(TestAsset.class, api).where("strValue == ? and longValue > ?").prepare();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				int value = i;
+				results.add(executor.submit(() -> query.execute(query.bindings().bind(1, "s" + value).bind(2, value))));
+			}
+			for (Future<?> result : results) {
+				result.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		for (int i = 0; i < 16; i++) {
+			verify(api).executeQuery(eq(TestAsset.class), eq("build"), eq(SQL), eq("{\"v0\":\"s" + i + "\",\"v1\":" + i + "}"));
+		}
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "Missing parameter 1")
+	public void missingParameter() throws ComposerException {
+		PreparedQuery<TestAsset> query = new QueryBuilder<>(TestAsset.class, api).where("strValue == ? and longValue > ?").prepare();
+		query.execute(query.bindings().bind(2, 1));
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "Too many parameters")
+	public void tooManyParameters() throws ComposerException {
+		new QueryBuilder<>(TestAsset.class, api).where("strValue == ?").prepare().bindings().bind(2, 1);
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "Finding index 0, must start from 1")
+	public void indexZero() throws ComposerException {
+		new QueryBuilder<>(TestAsset.class, api).where("strValue == ?").prepare().bindings().bind(0, 1);
+	}
+
+	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "bindings of another query")
+	public void bindingsOfAnotherQuery() throws ComposerException {
+		PreparedQuery<TestAsset> query = new QueryBuilder<>(TestAsset.class, api).prepare();
+		query.execute(new QueryBuilder<>(TestAsset.class, api).prepare().bindings());
+	}
+}
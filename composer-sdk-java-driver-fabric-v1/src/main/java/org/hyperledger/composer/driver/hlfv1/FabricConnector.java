@@ -7,9 +7,16 @@
 package org.hyperledger.composer.driver.hlfv1;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
@@ -19,6 +26,7 @@ import org.hyperledger.composer.ResourceSerializer;
 import org.hyperledger.composer.client.*;
 import org.hyperledger.composer.system.Event;
 import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset;
+import org.hyperledger.fabric.protos.peer.FabricTransaction.TxValidationCode;
 import org.hyperledger.fabric.sdk.*;
 import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
 import org.hyperledger.fabric.sdk.exception.ProposalException;
@@ -44,6 +52,14 @@ public class FabricConnector implements ComposerConnector {
 	SecurityContext context;
 
 	private Logger logger = LoggerFactory.getLogger(FabricConnector.class);
+	// rotates the queries over the peers, so concurrent queries are spread evenly
+	private final AtomicInteger nextQueryPeer = new AtomicInteger();
+
+	private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(task -> {
+		Thread thread = new Thread(task, "composer-commit-timeout");
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	FabricConnector() {
 	}
@@ -223,7 +239,7 @@ public class FabricConnector implements ComposerConnector {
 		Collection<ProposalResponse> responses;
 		try {
 			long start = System.currentTimeMillis();
-			responses = channel.queryByChaincode(request, randomPeer());
+			responses = channel.queryByChaincode(request, nextQueryPeer());
 			logger.debug("Received {} results(s) from invoking the chaincode", responses.size());
 
 			ValidatedResponse result = validateResponse(responses);
@@ -234,6 +250,16 @@ public class FabricConnector implements ComposerConnector {
 		}
 	}
 
+	private Collection<Peer> nextQueryPeer() {
+		Collection<Peer> peers = channel.getPeers();
+		if (peers.isEmpty()) {
+			throw new IllegalArgumentException("no peer specified");
+		}
+		int peerSize = peers.size();
+		int next = (nextQueryPeer.getAndIncrement() & Integer.MAX_VALUE) % peerSize;
+		return Collections.singleton(peers.toArray(new Peer[peerSize])[next]);
+	}
+
 	private Collection<Peer> randomPeer() {
 		Collection<Peer> peers = channel.getPeers();
 		if (peers.isEmpty()) {
@@ -245,20 +271,7 @@ public class FabricConnector implements ComposerConnector {
 
 	@Override
 	public String _invokeChaincode(String functionName, Map<String, byte[]> transientMap, String... args) throws ComposerException {
-		checkSecurityContext();
-
-		TransactionProposalRequest request = client.newTransactionProposalRequest();
-		request.setChaincodeID(ccId);
-		request.setArgs(args);
-		request.setFcn(functionName);
-		request.setProposalWaitTime(connectOptions.invokeWaitMillis());
-		if (transientMap != null) {
-			try {
-				request.setTransientMap(transientMap);
-			} catch (InvalidArgumentException e) {
-				throw new ComposerException(INVALID_INPUT_ERROR, e.getMessage());
-			}
-		}
+		TransactionProposalRequest request = newTransactionProposal(functionName, transientMap, args);
 		try {
 			long start = System.currentTimeMillis();
 			Collection<ProposalResponse> proposalResponses = channel.sendTransactionProposal(request, randomPeer());
@@ -277,21 +290,100 @@ public class FabricConnector implements ComposerConnector {
 			}
 			return result.response;
 		} catch (InterruptedException | TimeoutException e) {
-			throw new ComposerException(INTERNAL_ERROR_CODE, "Failed to receive commit notification for transaction within the timeout period", e);
+			throw commitTimeout(e);
 		} catch (ExecutionException e) {
-			Throwable cause = e.getCause();
-			if (cause instanceof TransactionEventException) {
-				BlockEvent.TransactionEvent te = ((TransactionEventException) cause).getTransactionEvent();
-				if (te != null) {
-					throw new ComposerException("Transaction(" + te.getTransactionID() + ") failed: " + cause.getMessage());
-				}
-			}
-			throw new ComposerException("sendTransaction failed " + cause.getMessage());
+			throw commitFailure(e.getCause());
 		} catch (ProposalException | InvalidArgumentException e) {
 			return handleProposalException(e.getMessage());
 		}
 	}
 
+	/**
+	 * Endorses the proposal on the executor, then completes the future from the commit callback of the SDK, so no
+	 * thread waits for the transaction to be ordered and committed.
+	 */
+	@Override
+	public CompletableFuture<String> _invokeChaincodeAsync(Executor executor, String functionName, Map<String, byte[]> transientMap, String... args) {
+		CompletableFuture<String> future = new CompletableFuture<>();
+		executor.execute(() -> {
+			try {
+				TransactionProposalRequest request = newTransactionProposal(functionName, transientMap, args);
+				Collection<ProposalResponse> proposalResponses = channel.sendTransactionProposal(request, randomPeer());
+				logger.debug("Received {} results(s) from invoking the chaincode", proposalResponses.size());
+
+				ValidatedResponse result = validateResponse(proposalResponses);
+				if (!result.needCommit) {
+					future.complete(result.response);
+					return;
+				}
+				ScheduledFuture<?> timeout = TIMEOUTS.schedule(() -> future.completeExceptionally(commitTimeout(null)),
+						connectOptions.invokeWaitMillis(), TimeUnit.MILLISECONDS);
+				channel.sendTransaction(proposalResponses, channel.getOrderers()).whenComplete((response, e) -> {
+					timeout.cancel(false);
+					if (e == null) {
+						logger.trace("Received response from orderer: {}", response);
+						future.complete(result.response);
+					} else {
+						future.completeExceptionally(commitFailure(e instanceof CompletionException ? e.getCause() : e));
+					}
+				});
+			} catch (ProposalException | InvalidArgumentException e) {
+				try {
+					handleProposalException(e.getMessage());
+				} catch (ComposerException | RuntimeException ce) {
+					future.completeExceptionally(ce);
+				}
+			} catch (Exception e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	private TransactionProposalRequest newTransactionProposal(String functionName, Map<String, byte[]> transientMap, String... args) throws ComposerException {
+		checkSecurityContext();
+
+		TransactionProposalRequest request = client.newTransactionProposalRequest();
+		request.setChaincodeID(ccId);
+		request.setArgs(args);
+		request.setFcn(functionName);
+		request.setProposalWaitTime(connectOptions.invokeWaitMillis());
+		if (transientMap != null) {
+			try {
+				request.setTransientMap(transientMap);
+			} catch (InvalidArgumentException e) {
+				throw new ComposerException(INVALID_INPUT_ERROR, e.getMessage());
+			}
+		}
+		return request;
+	}
+
+	private static ComposerException commitTimeout(Exception cause) {
+		return new ComposerException(INTERNAL_ERROR_CODE, "Failed to receive commit notification for transaction within the timeout period", cause);
+	}
+
+	/**
+	 * Transactions invalidated by a read conflict get their own error code, so {@link org.hyperledger.composer.RetryPolicy}
+	 * can submit them again
+	 */
+	static ComposerException commitFailure(Throwable cause) {
+		if (cause instanceof TransactionEventException) {
+			BlockEvent.TransactionEvent te = ((TransactionEventException) cause).getTransactionEvent();
+			if (te != null) {
+				String message = "Transaction(" + te.getTransactionID() + ") failed: " + cause.getMessage();
+				switch (te.getValidationCode()) {
+					case TxValidationCode.MVCC_READ_CONFLICT_VALUE:
+						return new ComposerException(MVCC_READ_CONFLICT, message, cause);
+					case TxValidationCode.PHANTOM_READ_CONFLICT_VALUE:
+						return new ComposerException(PHANTOM_READ_CONFLICT, message, cause);
+					default:
+						return new ComposerException(message);
+				}
+			}
+		}
+		return new ComposerException("sendTransaction failed " + cause.getMessage());
+	}
+
 	@Override
 	public void on(ComposerEventListener listener) throws ComposerException {
 		try {
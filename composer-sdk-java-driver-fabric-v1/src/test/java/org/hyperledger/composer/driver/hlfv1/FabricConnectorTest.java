@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.hyperledger.composer.ComposerException;
@@ -22,6 +23,7 @@ import org.hyperledger.composer.client.ComposerUser;
 import org.hyperledger.composer.client.Wallet;
 import org.hyperledger.composer.system.Event;
 import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset;
+import org.hyperledger.fabric.protos.peer.FabricTransaction.TxValidationCode;
 import org.hyperledger.fabric.sdk.*;
 import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
 import org.hyperledger.fabric.sdk.exception.ProposalException;
@@ -502,6 +504,19 @@ public class FabricConnectorTest {
 		connector._invokeChaincode(func, null, arg);
 	}
 
+	@Test
+	public void testCommitFailureReadConflicts() {
+		when(te.getTransactionID()).thenReturn("txId");
+		when(te.getValidationCode()).thenReturn((byte) TxValidationCode.MVCC_READ_CONFLICT_VALUE);
+		ComposerException e = FabricConnector.commitFailure(new TransactionEventException("msg", te));
+		assertEquals(e.getErrorCode(), ComposerException.MVCC_READ_CONFLICT);
+		assertEquals(e.getMessage(), "Transaction(txId) failed: msg");
+
+		when(te.getValidationCode()).thenReturn((byte) TxValidationCode.PHANTOM_READ_CONFLICT_VALUE);
+		assertEquals(FabricConnector.commitFailure(new TransactionEventException("msg", te)).getErrorCode(),
+				ComposerException.PHANTOM_READ_CONFLICT);
+	}
+
 	@Test(expectedExceptions = ComposerException.class, expectedExceptionsMessageRegExp = "exception")
 	public void test_invokeChaincodeWithSetTransientMapException() throws Exception {
 		when(context.user()).thenReturn(fabricUser);
@@ -542,6 +557,91 @@ public class FabricConnectorTest {
 		verify(future).get(anyLong(), any());
 	}
 
+	@Test
+	public void test_invokeChaincodeAsync() throws Exception {
+		final Set<Peer> peers = Collections.singleton(peer);
+		final Set<Orderer> orderers = Collections.singleton(orderer);
+		final String result = "hello world", func = "func", arg = "arg0";
+		final Set<ProposalResponse> responses = Collections.singleton(response);
+		final CompletableFuture<BlockEvent.TransactionEvent> commit = new CompletableFuture<>();
+		when(context.user()).thenReturn(fabricUser);
+		when(hfClient.newTransactionProposalRequest()).thenReturn(invokeRequest);
+		when(channel.getPeers()).thenReturn(peers);
+		when(channel.getOrderers()).thenReturn(orderers);
+		when(channel.sendTransactionProposal(invokeRequest, peers)).thenReturn(responses);
+		when(channel.sendTransaction(responses, orderers)).thenReturn(commit);
+
+		FabricConnector connector = spy(this.connector);
+		doReturn(new FabricConnector.ValidatedResponse(true, result))
+				.when(connector).validateResponse(anyCollection());
+		connector.context = context;
+		connector.channel = channel;
+		CompletableFuture<String> invocation = connector._invokeChaincodeAsync(Runnable::run, func, null, arg);
+		assertFalse(invocation.isDone());
+		commit.complete(te);
+		assertEquals(invocation.get(), result);
+		verify(invokeRequest).setFcn(func);
+	}
+
+	@Test
+	public void test_invokeChaincodeAsyncWithTransactionEventException() throws Exception {
+		final Set<Peer> peers = Collections.singleton(peer);
+		final Set<Orderer> orderers = Collections.singleton(orderer);
+		final Set<ProposalResponse> responses = Collections.singleton(response);
+		final CompletableFuture<BlockEvent.TransactionEvent> commit = new CompletableFuture<>();
+		when(context.user()).thenReturn(fabricUser);
+		when(hfClient.newTransactionProposalRequest()).thenReturn(invokeRequest);
+		when(channel.getPeers()).thenReturn(peers);
+		when(channel.getOrderers()).thenReturn(orderers);
+		when(channel.sendTransactionProposal(invokeRequest, peers)).thenReturn(responses);
+		when(channel.sendTransaction(responses, orderers)).thenReturn(commit);
+		when(te.getTransactionID()).thenReturn("txId");
+
+		FabricConnector connector = spy(this.connector);
+		doReturn(new FabricConnector.ValidatedResponse(true, "result"))
+				.when(connector).validateResponse(anyCollection());
+		connector.context = context;
+		connector.channel = channel;
+		CompletableFuture<String> invocation = connector._invokeChaincodeAsync(Runnable::run, "func", null, "arg0");
+		commit.completeExceptionally(new TransactionEventException("msg", te));
+		try {
+			invocation.get();
+			fail("the failed commit should fail the invocation");
+		} catch (ExecutionException e) {
+			assertEquals(e.getCause().getMessage(), "Transaction(txId) failed: msg");
+		}
+	}
+
+	@Test
+	public void test_invokeChaincodeAsyncWithUnparsableProposalException() throws Exception {
+		final Set<Peer> peers = Collections.singleton(peer);
+		when(context.user()).thenReturn(fabricUser);
+		when(hfClient.newTransactionProposalRequest()).thenReturn(invokeRequest);
+		when(channel.getPeers()).thenReturn(peers);
+		doThrow(new ProposalException("chaincode error (status: 500, message: msg")).when(channel).sendTransactionProposal(invokeRequest, peers);
+		connector.context = context;
+		connector.channel = channel;
+		CompletableFuture<String> invocation = connector._invokeChaincodeAsync(Runnable::run, "func", null, "arg0");
+		try {
+			invocation.get(1, TimeUnit.SECONDS);
+			fail("the failed proposal should fail the invocation");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof StringIndexOutOfBoundsException);
+		}
+	}
+
+	@Test
+	public void test_invokeChaincodeAsyncWithoutSecurityContext() throws Exception {
+		connector.context = null;
+		CompletableFuture<String> invocation = connector._invokeChaincodeAsync(Runnable::run, "func", null, "arg0");
+		try {
+			invocation.get();
+			fail("the invocation should fail when not logged in");
+		} catch (ExecutionException e) {
+			assertEquals(e.getCause().getMessage(), "Not logged in yet");
+		}
+	}
+
 	@Test
 	public void testOn() throws Exception {
 		TestEvent e0 = new TestEvent("id1", 1, "msg1");